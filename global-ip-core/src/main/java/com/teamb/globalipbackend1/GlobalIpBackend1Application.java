@@ -1,9 +1,12 @@
 package com.teamb.globalipbackend1;
 
+import com.teamb.globalipbackend1.admin.audit.ApiUsageLogProperties;
 import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
 import com.teamb.globalipbackend1.external.patentsview.config.PatentsViewProperties;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
 import com.teamb.globalipbackend1.external.trendsApi.config.PatentAnalyticsServiceConfig;
 import com.teamb.globalipbackend1.security.JwtConfig;
+import com.teamb.globalipbackend1.service.patent.search.PatentSearchProperties;
 import jakarta.annotation.PostConstruct;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -11,7 +14,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
-@EnableConfigurationProperties({EpoProperties.class, PatentsViewProperties.class, PatentAnalyticsServiceConfig.class})
+@EnableConfigurationProperties({EpoProperties.class, PatentsViewProperties.class, PatentAnalyticsServiceConfig.class, ApiUsageLogProperties.class, ResilienceProperties.class, PatentSearchProperties.class})
 @EnableScheduling
 public class GlobalIpBackend1Application {
 
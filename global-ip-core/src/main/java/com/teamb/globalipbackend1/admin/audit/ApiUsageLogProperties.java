@@ -0,0 +1,27 @@
+package com.teamb.globalipbackend1.admin.audit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "audit.api-usage")
+@Data
+public class ApiUsageLogProperties {
+
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    /** Records held in memory before the overflow policy applies. */
+    private int capacity = 8192;
+
+    /** Rows per JDBC batch insert. */
+    private int batchSize = 500;
+
+    /** Longest a record waits before it is written. */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+    /** How long BLOCK waits for space before dropping the record anyway. */
+    private Duration blockTimeout = Duration.ofMillis(100);
+}
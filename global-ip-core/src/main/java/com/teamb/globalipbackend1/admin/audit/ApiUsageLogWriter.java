@@ -0,0 +1,189 @@
+package com.teamb.globalipbackend1.admin.audit;
+
+import com.teamb.globalipbackend1.util.concurrent.MpscRingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes {@link ApiUsageLog} rows off the request thread.
+ * <p>
+ * Requests publish into a lock-free ring buffer; one drainer thread writes them
+ * with JDBC batch inserts once {@code batchSize} rows are queued or
+ * {@code flushInterval} has passed. When the buffer is full, records are dropped
+ * or the caller waits up to {@code blockTimeout}, depending on the overflow policy.
+ * On shutdown the buffer is drained before the thread exits.
+ */
+@Slf4j
+@Component
+public class ApiUsageLogWriter implements SmartLifecycle {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO api_usage_log (user_id, service, action, status, response_time_ms, timestamp)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final JdbcTemplate jdbc;
+    private final ApiUsageLogProperties properties;
+    private final MpscRingBuffer<ApiUsageLog> buffer;
+
+    private final Counter dropped;
+    private final Counter failed;
+    private final Timer flushTimer;
+
+    private volatile boolean running;
+    private volatile Thread drainer;
+
+    public ApiUsageLogWriter(JdbcTemplate jdbc,
+                             ApiUsageLogProperties properties,
+                             MeterRegistry meterRegistry) {
+        this.jdbc = jdbc;
+        this.properties = properties;
+        this.buffer = new MpscRingBuffer<>(properties.getCapacity());
+
+        Gauge.builder("api.usage.log.queue.depth", buffer, MpscRingBuffer::size)
+                .description("API usage records waiting to be written")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("api.usage.log.dropped")
+                .description("API usage records discarded because the buffer was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("api.usage.log.failed")
+                .description("API usage records lost to failed batch inserts")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("api.usage.log.flush")
+                .description("Batch insert latency")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a record; never throws and only waits under the BLOCK policy.
+     *
+     * @return false if the record was dropped
+     */
+    public boolean submit(ApiUsageLog record) {
+        if (buffer.offer(record) || (properties.getOverflowPolicy() == ApiUsageLogProperties.OverflowPolicy.BLOCK
+                && offerWithin(record, properties.getBlockTimeout().toNanos()))) {
+            if (buffer.size() >= properties.getBatchSize()) {
+                wakeDrainer();
+            }
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private boolean offerWithin(ApiUsageLog record, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        long park = 10_000;
+        wakeDrainer();
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(park);
+            if (buffer.offer(record)) return true;
+            park = Math.min(park * 2, 1_000_000);
+        }
+        return false;
+    }
+
+    private void wakeDrainer() {
+        Thread t = drainer;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        drainer = Thread.ofPlatform()
+                .name("api-usage-log-writer")
+                .daemon(true)
+                .start(this::drainLoop);
+    }
+
+    /**
+     * Stops accepting wake-ups, writes everything still queued and waits for the drainer.
+     */
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        Thread t = drainer;
+        LockSupport.unpark(t);
+        try {
+            t.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainer = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // stopped before the DataSource and other default-phase beans
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 1;
+    }
+
+    private void drainLoop() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        long intervalNanos = properties.getFlushInterval().toNanos();
+        List<ApiUsageLog> batch = new ArrayList<>(batchSize);
+        long lastFlush = System.nanoTime();
+
+        while (running) {
+            buffer.drainTo(batch, batchSize - batch.size());
+
+            long sinceFlush = System.nanoTime() - lastFlush;
+            if (batch.size() >= batchSize || (!batch.isEmpty() && sinceFlush >= intervalNanos)) {
+                flush(batch);
+                lastFlush = System.nanoTime();
+            } else if (batch.size() < batchSize) {
+                LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, Math.max(1, intervalNanos - sinceFlush)));
+            }
+        }
+
+        // shutdown: write whatever is left
+        do {
+            buffer.drainTo(batch, batchSize - batch.size());
+            flush(batch);
+        } while (!buffer.isEmpty());
+    }
+
+    private void flush(List<ApiUsageLog> batch) {
+        if (batch.isEmpty()) return;
+
+        long start = System.nanoTime();
+        try {
+            jdbc.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, r) -> {
+                ps.setString(1, r.getUserId());
+                ps.setString(2, r.getService());
+                ps.setString(3, r.getAction());
+                ps.setString(4, r.getStatus());
+                ps.setLong(5, r.getResponseTimeMs());
+                ps.setTimestamp(6, r.getTimestamp() == null ? null : Timestamp.valueOf(r.getTimestamp()));
+            });
+        } catch (RuntimeException e) {
+            failed.increment(batch.size());
+            log.error("Failed to write {} API usage records", batch.size(), e);
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batch.clear();
+        }
+    }
+}
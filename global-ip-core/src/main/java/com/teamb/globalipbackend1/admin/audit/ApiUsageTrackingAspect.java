@@ -1,13 +1,11 @@
 package com.teamb.globalipbackend1.admin.audit;
 
-import com.teamb.globalipbackend1.admin.repository.ApiUsageLogRepository;
 import com.teamb.globalipbackend1.security.SecurityUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
@@ -20,7 +18,7 @@ import java.time.ZoneOffset;
 @Slf4j
 public class ApiUsageTrackingAspect {
 
-    private final ApiUsageLogRepository repository;
+    private final ApiUsageLogWriter writer;
     private final SecurityUtil securityUtil;
 
     @Around("@annotation(trackApiUsage)")
@@ -49,9 +47,8 @@ public class ApiUsageTrackingAspect {
             apiUsageLoglog.setTimestamp(
                     LocalDateTime.ofInstant(Instant.now(), ZoneOffset.UTC)
             );
-          writeLog(apiUsageLoglog);
-            // ADD THIS LOG STATEMENT
-            log.info("Saving API usage: service='{}', action='{}', status='{}',userId='{}'",
+            writer.submit(apiUsageLoglog);
+            log.debug("Queued API usage: service='{}', action='{}', status='{}',userId='{}'",
                     apiUsageLoglog.getService(), apiUsageLoglog.getAction(), apiUsageLoglog.getStatus(),apiUsageLoglog.getUserId());
 
         }
@@ -167,10 +164,4 @@ public class ApiUsageTrackingAspect {
 
         return "TREND_OTHER";
     }
-
-     @Async
-    public void writeLog(ApiUsageLog log){
-        repository.save(log);
-    }
-
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.teamb.globalipbackend1.cache;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.teamb.globalipbackend1.model.user.ApiKey;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.CacheManager;
@@ -168,4 +169,19 @@ public class CaffeineCacheConfig {
                 .build();
     }
 
+    /**
+     * API keys that passed verification, keyed by their HMAC digest.
+     * Evicted on revoke; the TTL bounds how long other changes take to show.
+     */
+    @Bean
+    public com.github.benmanes.caffeine.cache.Cache<@NonNull String, ApiKey>
+    verifiedApiKeyCache() {
+
+        return Caffeine.newBuilder()
+                .expireAfterWrite(10, TimeUnit.MINUTES)
+                .maximumSize(10_000)
+                .recordStats()
+                .build();
+    }
+
 }
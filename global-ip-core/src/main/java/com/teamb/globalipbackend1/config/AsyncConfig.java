@@ -11,9 +11,13 @@ import java.util.concurrent.Executors;
 @EnableAsync
 public class AsyncConfig {
 
+    /**
+     * Provider searches block on their upstream; concurrency per upstream is capped by
+     * its UpstreamGuard rather than by the size of this pool.
+     */
     @Bean
     public Executor patentSearchExecutor() {
-        return Executors.newCachedThreadPool();
+        return Executors.newVirtualThreadPerTaskExecutor();
     }
 }
 
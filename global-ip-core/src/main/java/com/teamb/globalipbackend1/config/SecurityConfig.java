@@ -6,6 +6,7 @@ import com.teamb.globalipbackend1.security.CustomUserDetailsService;
 import com.teamb.globalipbackend1.security.JwtAuthFilter;
 import com.teamb.globalipbackend1.security.RestAuthenticationEntryPoint;
 import com.teamb.globalipbackend1.util.validUtils.valid.Password;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -79,6 +80,8 @@ public class SecurityConfig {
                 )
 
                 .authorizeHttpRequests(auth -> auth
+                        // async dispatches finish requests (e.g. search streams) already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(
                                 "/api/auth/**",
                                 "/oauth2/**",
@@ -95,6 +98,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         .requestMatchers("/api/patents/**").hasAnyRole("USER","ADMIN","ANALYST")
                         .requestMatchers("/api/search/").hasAnyRole("USER","ADMIN","ANALYST")
+                        .requestMatchers("/api/search/stream").hasAnyRole("USER","ADMIN","ANALYST")
                         .requestMatchers("/api/search/advanced").hasAnyRole("ANALYST","ADMIN")
                         .requestMatchers("/api/trademarks/**").hasAnyRole("USER", "ANALYST", "ADMIN")
                         .requestMatchers("/api/role-requests/admin").hasAnyRole("USER","ANALYST","ADMIN")
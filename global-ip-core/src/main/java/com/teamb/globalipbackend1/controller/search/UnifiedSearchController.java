@@ -5,6 +5,7 @@ package com.teamb.globalipbackend1.controller.search;
 import com.teamb.globalipbackend1.dto.search.GlobalSearchRequest;
 import com.teamb.globalipbackend1.dto.search.UnifiedSearchResponse;
 import com.teamb.globalipbackend1.service.search.SearchActivityService;
+import com.teamb.globalipbackend1.service.patent.search.PatentSearchProperties;
 import com.teamb.globalipbackend1.service.patent.search.UnifiedSearchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -15,9 +16,15 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Executor;
 
 @Slf4j
 @RestController
@@ -29,6 +36,8 @@ public class UnifiedSearchController {
 
     private final UnifiedSearchService unifiedSearchService;
     private final SearchActivityService searchActivityService;
+    private final PatentSearchProperties patentSearchProperties;
+    private final Executor patentSearchExecutor;
 
     /**
      * Unified searchByKeyword across patents + trademarks
@@ -72,6 +81,54 @@ public class UnifiedSearchController {
         }
     }
 
+    /**
+     * Same search as {@link #searchByKeyword}, streamed as server-sent events so the
+     * fastest provider's results show up without waiting for the slowest.
+     */
+    @Operation(
+            summary = "Streamed unified keyword search",
+            description = "Server-sent events: 'patents' per patent provider as it answers (filtered), "
+                    + "'trademarks' once, and a final 'summary' with per-provider completeness.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Event stream"),
+                    @ApiResponse(responseCode = "400", description = "Invalid request"),
+                    @ApiResponse(responseCode = "401", description = "Unauthorized")
+            }
+    )
+    @PostMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('USER','ADMIN','ANALYST')")
+    public ResponseEntity<@NonNull SseEmitter> streamByKeyword(
+            @RequestBody GlobalSearchRequest request) {
+
+        log.info("Received streamed unified search request: {}", request);
+
+        if (request.getKeyword() == null || request.getKeyword().isBlank()) {
+            log.warn("Streamed unified search missing keyword");
+            return ResponseEntity.badRequest().build();
+        }
+
+        searchActivityService.incrementSearchCount("SIMPLE");
+
+        // the patent search answers within its deadline; the margin covers the trademark search
+        SseEmitter emitter = new SseEmitter(patentSearchProperties.deadline().plusSeconds(30).toMillis());
+        patentSearchExecutor.execute(() -> {
+            try {
+                unifiedSearchService.streamByKeyword(request, (event, data) -> {
+                    try {
+                        emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                emitter.complete();
+            } catch (Exception e) {
+                log.error("Streamed unified search failed", e);
+                emitter.completeWithError(e);
+            }
+        });
+        return ResponseEntity.ok(emitter);
+    }
+
     @Operation(
             summary = "Advanced search",
             description = "Performs advanced filtered search (admin and analyst only).",
@@ -74,4 +74,27 @@ public class GlobalPatentDetailDto {
     private ApplicationLifecycleDto applicationLifecycleDto;
 
 
+    /** Shallow copy, for callers that enrich a DTO another request may share. */
+    public GlobalPatentDetailDto copy() {
+        GlobalPatentDetailDto copy = new GlobalPatentDetailDto();
+        copy.publicationNumber = publicationNumber;
+        copy.source = source;
+        copy.jurisdiction = jurisdiction;
+        copy.title = title;
+        copy.abstractText = abstractText;
+        copy.wipoKind = wipoKind;
+        copy.filingDate = filingDate;
+        copy.grantDate = grantDate;
+        copy.expiryDate = expiryDate;
+        copy.inventors = inventors;
+        copy.assignees = assignees;
+        copy.cpcClasses = cpcClasses;
+        copy.ipcClasses = ipcClasses;
+        copy.timesCited = timesCited;
+        copy.totalCitations = totalCitations;
+        copy.bookmarked = bookmarked;
+        copy.citationNetwork = citationNetwork;
+        copy.applicationLifecycleDto = applicationLifecycleDto;
+        return copy;
+    }
 }
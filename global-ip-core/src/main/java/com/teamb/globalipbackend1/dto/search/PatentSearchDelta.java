@@ -0,0 +1,15 @@
+package com.teamb.globalipbackend1.dto.search;
+
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+
+import java.util.List;
+
+/**
+ * One provider's answer to a streamed patent search, already filtered. A failed provider
+ * arrives with no patents.
+ */
+public record PatentSearchDelta(
+        ProviderCompleteness provider,
+        List<PatentDocument> patents
+) {
+}
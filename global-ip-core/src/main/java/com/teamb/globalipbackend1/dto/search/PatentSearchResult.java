@@ -0,0 +1,23 @@
+package com.teamb.globalipbackend1.dto.search;
+
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+
+import java.util.List;
+
+/**
+ * Filtered patents from a unified search, with how each provider it fanned out to fared.
+ */
+public record PatentSearchResult(
+        List<PatentDocument> patents,
+        List<ProviderCompleteness> providers
+) {
+
+    public static PatentSearchResult empty() {
+        return new PatentSearchResult(List.of(), List.of());
+    }
+
+    /** Whether every provider answered in time. */
+    public boolean complete() {
+        return providers.stream().allMatch(p -> p.status() == ProviderCompleteness.Status.COMPLETE);
+    }
+}
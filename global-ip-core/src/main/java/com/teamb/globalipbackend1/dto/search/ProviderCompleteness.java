@@ -0,0 +1,22 @@
+package com.teamb.globalipbackend1.dto.search;
+
+/**
+ * How one patent search provider fared within the request's deadline.
+ *
+ * @param results       documents the provider returned, before filtering
+ * @param elapsedMillis time until the provider answered, or until the response was built
+ *                      when it had not
+ */
+public record ProviderCompleteness(
+        String source,
+        Status status,
+        int results,
+        long elapsedMillis
+) {
+
+    public enum Status {
+        COMPLETE,
+        TIMED_OUT,
+        FAILED
+    }
+}
@@ -12,4 +12,10 @@ public class UnifiedSearchResponse {
 
     private List<PatentDocument> patents;
     private List<TrademarkResultDto> trademarks;
+
+    /** Per patent provider: whether it answered within the search deadline. */
+    private List<ProviderCompleteness> providers;
+
+    /** False when some patent provider missed the deadline or failed. */
+    private boolean complete;
 }
@@ -0,0 +1,18 @@
+package com.teamb.globalipbackend1.dto.search;
+
+import java.util.List;
+
+/**
+ * Last event of a streamed unified search.
+ *
+ * @param providers per patent provider, including those that missed the deadline and so
+ *                  never sent patents
+ */
+public record UnifiedSearchSummary(
+        int patents,
+        int trademarks,
+        List<ProviderCompleteness> providers,
+        boolean complete,
+        long elapsedMillis
+) {
+}
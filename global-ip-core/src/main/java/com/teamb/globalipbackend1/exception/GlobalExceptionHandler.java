@@ -1,5 +1,6 @@
 package com.teamb.globalipbackend1.exception;
 
+import com.teamb.globalipbackend1.external.resilience.UpstreamUnavailableException;
 import com.teamb.globalipbackend1.external.trendsApi.exception.PatentServiceException;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -66,6 +67,22 @@ public class GlobalExceptionHandler {
                 .body(error);
     }
 
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<@NonNull Map<String, Object>> handleUpstreamUnavailableException(
+            UpstreamUnavailableException ex) {
+        log.warn("Upstream refused: {}", ex.getMessage());
+
+        Map<String, Object> error = new HashMap<>();
+        error.put("timestamp", LocalDateTime.now());
+        error.put("message", ex.getMessage());
+        error.put("error", "Upstream Service Unavailable");
+
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "30")
+                .body(error);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<@NonNull Map<String, Object>> handleGenericException(Exception ex) {
         log.error("Unexpected error: {}", ex.getMessage(), ex);
@@ -1,19 +1,22 @@
 package com.teamb.globalipbackend1.external.epo;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.teamb.globalipbackend1.admin.audit.TrackApiUsage;
 import com.teamb.globalipbackend1.dto.patent.GlobalPatentDetailDto;
 import com.teamb.globalipbackend1.dto.search.PatentSearchFilter;
 import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
 import com.teamb.globalipbackend1.external.epo.dto.*;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
 import com.teamb.globalipbackend1.service.patent.lifecycle.PatentExpiryCalculator;
+import com.teamb.globalipbackend1.util.concurrent.SingleFlight;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
@@ -21,59 +24,53 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class EpoClient {
 
+    // OPS accepts at most this many numbers in one bulk biblio request
+    static final int BIBLIO_BATCH_LIMIT = 100;
+
     private final EpoProperties properties;
     private final EpoPublicationParser parser;
+    private final EpoThrottle throttle;
+    private final EpoTokenManager tokens;
+    private final UpstreamGuards upstreamGuards;
 
     private final HttpClient httpClient = HttpClient.newHttpClient();
     private final XmlMapper xmlMapper = (XmlMapper) new XmlMapper()
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
-    private String accessToken;
-    private Instant expiry = Instant.EPOCH;
-
-    private synchronized String token() {
-        if (accessToken != null && Instant.now().isBefore(expiry)) return accessToken;
-
-        try {
-            String auth = Base64.getEncoder().encodeToString(
-                    (properties.consumerKey() + ":" + properties.consumerSecret()).getBytes()
-            );
+    // concurrent detail requests for one publication share its biblio, abstract and claims calls;
+    // only callers of the same priority share, so a user never waits behind a background leader
+    private final SingleFlight<DetailKey, GlobalPatentDetailDto> detailFlights = new SingleFlight<>();
 
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create("https://ops.epo.org/3.2/auth/accesstoken"))
-                    .POST(HttpRequest.BodyPublishers.ofString("grant_type=client_credentials"))
-                    .header("Authorization", "Basic " + auth)
-                    .header("Content-Type", "application/x-www-form-urlencoded")
-                    .build();
-
-            HttpResponse<String> res = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
-            JsonNode json = new ObjectMapper().readTree(res.body());
-
-            accessToken = json.get("access_token").asText();
-            expiry = Instant.now().plusSeconds(json.get("expires_in").asLong() - 60);
-
-            return accessToken;
-        } catch (Exception e) {
-            throw new RuntimeException("OPS token failure", e);
-        }
+    private record DetailKey(String publicationNumber, EpoPriority priority) {
     }
 
     @TrackApiUsage(service = "EPO", action = "PATENT_DETAIL")
     public GlobalPatentDetailDto fetchGlobalDetail(String publicationNumber) {
+        return detailFlights.execute(new DetailKey(publicationNumber, EpoPriority.current()),
+                () -> loadGlobalDetail(publicationNumber));
+    }
+
+    private GlobalPatentDetailDto loadGlobalDetail(String publicationNumber) {
         log.info("Fetching global detail for: {}", publicationNumber);
 
         EpoDocumentId id = parser.parse(publicationNumber);
@@ -190,25 +187,61 @@ public class EpoClient {
     }
 
     private HttpResponse<String> send(String url) throws Exception {
-        return httpClient.send(
+        return call(
                 HttpRequest.newBuilder()
                         .uri(URI.create(url))
-                        .header("Authorization", "Bearer " + token())
+                        .header("Authorization", "Bearer " + tokens.token())
                         .header("Accept", "application/xml")
                         .timeout(Duration.ofSeconds(30))
                         .build(),
+                EpoThrottle.RETRIEVAL,
                 HttpResponse.BodyHandlers.ofString()
         );
     }
 
-    private String buildUrl(EpoDocumentId id, String resource) {
-        String fmt = "EP".equals(id.getCountry()) ? "epodoc" : "docdb";
-        String ident = fmt.equals("epodoc")
-                ? id.getCountry() + id.getDocNumber() + id.getKind()
-                : id.getCountry() + "." + id.getDocNumber() + "." + id.getKind();
+    // every OPS data call goes through the throttle and reports the quota state back to it;
+    // the upstream guard only covers the exchange itself, not the wait for quota
+    private <T> HttpResponse<T> call(HttpRequest request,
+                                     String service,
+                                     HttpResponse.BodyHandler<T> bodyHandler) throws Exception {
+        try (EpoThrottle.Permit ignored = throttle.acquire(service)) {
+            HttpResponse<T> response = upstreamGuards.guard(UpstreamGuards.EPO).call(
+                    () -> httpClient.send(request, bodyHandler),
+                    r -> r.statusCode() >= 500
+            );
+            throttle.update(response.headers());
+            return response;
+        }
+    }
+
+    // multi-document responses are parsed off the stream; only error bodies are read into a string.
+    // The throttle permit and the guard's slot are both held until the caller closes the body.
+    private HttpResponse<InputStream> stream(HttpRequest request, String service) throws Exception {
+        EpoThrottle.Permit permit = throttle.acquire(service);
+        HttpResponse<InputStream> response = upstreamGuards.guard(UpstreamGuards.EPO).stream(
+                () -> httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream()),
+                r -> r.statusCode() >= 500,
+                permit::close
+        );
+        throttle.update(response.headers());
+        return response;
+    }
+
+    private static String snippet(InputStream body, int maxBytes) throws IOException {
+        return new String(body.readNBytes(maxBytes), StandardCharsets.UTF_8);
+    }
 
+    private String opsRoot() {
+        String base = properties.baseUrl();
+        if (base.endsWith("/rest-services")) {
+            base = base.substring(0, base.length() - 14);
+        }
+        return base;
+    }
+
+    private String buildUrl(EpoDocumentId id, String resource) {
         return properties.baseUrl() + "/rest-services/published-data/publication/"
-                + fmt + "/" + ident + "/" + resource;
+                + format(id) + "/" + identifier(id) + "/" + resource;
     }
 
     private String extractAbstract(EpoBibliographicData b) {
@@ -351,9 +384,7 @@ public class EpoClient {
         if (dateStr == null || dateStr.isBlank()) return null;
 
         try {
-            // EPO dates are in format YYYYMMDD
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd");
-            return LocalDate.parse(dateStr, formatter);
+            return LocalDate.parse(dateStr, EpoOpsStreamParser.OPS_DATE);
         } catch (Exception e) {
             log.warn("Failed to parse date: {}", dateStr, e);
             return null;
@@ -377,13 +408,7 @@ public class EpoClient {
         }
 
         try {
-            String keyword = titleKeyword.trim().toLowerCase();
-
-            String cql = keyword.contains(" ")
-                    ? "ti=\"" + keyword + "\""
-                    : "ti=" + keyword;
-
-            return executeSearch(cql);
+            return executeSearch(buildTitleCql(titleKeyword, null));
 
         } catch (Exception e) {
             log.error("EPO title search failed", e);
@@ -399,24 +424,7 @@ public class EpoClient {
         }
 
         try {
-            String keyword = titleKeyword.trim().toLowerCase();
-
-            String titlePart = keyword.contains(" ")
-                    ? "ti=\"" + keyword + "\""
-                    : "ti=" + keyword;
-
-            String cql;
-            if (jurisdiction != null && !jurisdiction.isBlank() && !"ALL".equalsIgnoreCase(jurisdiction)) {
-                String jurisdictionCode = jurisdiction.trim().toUpperCase();
-                // Use 'pn' (publication number) with country prefix - this is the correct EPO OPS approach
-                cql = titlePart + " and pn=" + jurisdictionCode;
-                log.info("EPO Search with jurisdiction filter (pn wildcard): {}", cql);
-            } else {
-                cql = titlePart;
-                log.info("EPO Search without jurisdiction filter: {}", cql);
-            }
-
-            return executeSearch(cql);
+            return executeSearch(buildTitleCql(titleKeyword, jurisdiction));
 
         } catch (Exception e) {
             log.error("EPO title search with jurisdiction failed", e);
@@ -424,6 +432,71 @@ public class EpoClient {
         }
     }
 
+    public String buildTitleCql(String titleKeyword, String jurisdiction) {
+        String keyword = titleKeyword.trim().toLowerCase();
+
+        String titlePart = keyword.contains(" ")
+                ? "ti=\"" + keyword + "\""
+                : "ti=" + keyword;
+
+        if (jurisdiction != null && !jurisdiction.isBlank() && !"ALL".equalsIgnoreCase(jurisdiction)) {
+            String jurisdictionCode = jurisdiction.trim().toUpperCase();
+            // Use 'pn' (publication number) with country prefix - this is the correct EPO OPS approach
+            String cql = titlePart + " and pn=" + jurisdictionCode;
+            log.info("EPO Search with jurisdiction filter (pn wildcard): {}", cql);
+            return cql;
+        }
+        return titlePart;
+    }
+
+    /**
+     * Runs the query against the search/biblio constituent: each hit comes back with its
+     * bibliographic data, so the results need no follow-up biblio requests.
+     */
+    @TrackApiUsage(service = "EPO", action = "SEARCH_BIBLIO")
+    public List<PatentDocument> searchWithBiblio(String cql) {
+        try {
+            String url = opsRoot() + "/rest-services/published-data/search/biblio?q="
+                    + URLEncoder.encode(cql, StandardCharsets.UTF_8);
+            log.info("EPO Search (with biblio) CQL: {}", cql);
+
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .header("Authorization", "Bearer " + tokens.token())
+                    .header("Accept", "application/xml")
+                    .header("X-OPS-Range", "1-25")
+                    .header("User-Agent", "global-ip/1.0 (academic project)")
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+
+            HttpResponse<InputStream> response = stream(request, EpoThrottle.SEARCH);
+
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 404) {
+                    log.info("No EPO results for query: {}", cql);
+                    return List.of();
+                }
+                if (response.statusCode() != 200) {
+                    log.warn("EPO search with biblio failed [{}]: {}", response.statusCode(), snippet(body, 500));
+                    return List.of();
+                }
+
+                List<PatentDocument> results = EpoOpsStreamParser.readDocuments(body)
+                        .stream()
+                        .filter(doc -> doc.getWipoKind() != null)
+                        .toList();
+
+                log.info("EPO search with biblio returned {} results", results.size());
+                return results;
+            }
+
+        } catch (Exception e) {
+            log.error("EPO search with biblio failed", e);
+            return List.of();
+        }
+    }
+
     private List<EpoDocumentId> executeSearch(String cql) throws Exception {
         String encoded = URLEncoder.encode(cql, StandardCharsets.UTF_8);
 
@@ -438,7 +511,7 @@ public class EpoClient {
 
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(url))
-                .header("Authorization", "Bearer " + token())
+                .header("Authorization", "Bearer " + tokens.token())
                 .header("Accept", "application/xml")
                 .header("X-OPS-Range", "1-25")
                 .header("User-Agent", "global-ip/1.0 (academic project)")
@@ -446,37 +519,22 @@ public class EpoClient {
                 .GET()
                 .build();
 
-        HttpResponse<String> response =
-                httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-        if (response.statusCode() != 200) {
-            log.warn("EPO search failed [{}]: {}",
-                    response.statusCode(),
-                    response.body() != null ? response.body().substring(0, Math.min(500, response.body().length())) : "null");
-            return List.of();
-        }
+        HttpResponse<InputStream> response = stream(request, EpoThrottle.SEARCH);
 
-        EpoSearchResponse searchResponse =
-                xmlMapper.readValue(response.body(), EpoSearchResponse.class);
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                log.warn("EPO search failed [{}]: {}", response.statusCode(), snippet(body, 500));
+                return List.of();
+            }
 
-        if (searchResponse == null ||
-                searchResponse.getBiblioSearch() == null ||
-                searchResponse.getBiblioSearch().getSearchResult() == null ||
-                searchResponse.getBiblioSearch().getSearchResult().getPublications() == null) {
+            List<EpoDocumentId> results = EpoOpsStreamParser.readSearchReferences(body)
+                    .stream()
+                    .filter(id -> id.getKind() != null)
+                    .toList();
 
-            return List.of();
+            log.info("EPO search returned {} results", results.size());
+            return results;
         }
-
-        List<EpoDocumentId> results = searchResponse.getBiblioSearch()
-                .getSearchResult()
-                .getPublications()
-                .stream()
-                .map(EpoPublicationReferenceSearch::getDocumentId)
-                .filter(id -> id != null && id.getKind() != null)
-                .toList();
-
-        log.info("EPO search returned {} results", results.size());
-        return results;
     }
 
     public List<EpoAbstract> fetchAbstract(EpoDocumentId id) {
@@ -576,6 +634,124 @@ public class EpoClient {
         }
     }
 
+    /**
+     * Fetches biblio for many publication numbers, up to {@value #BIBLIO_BATCH_LIMIT} per OPS request.
+     * Numbers OPS does not know are reported as missing, numbers in a chunk whose request failed
+     * as failed.
+     */
+    @TrackApiUsage(service = "EPO", action = "BIBLIO_BATCH_FETCH")
+    public EpoBiblioBatch fetchBiblioBatch(Collection<String> publicationNumbers) {
+        Map<String, PatentDocument> found = new LinkedHashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        Set<String> failed = new LinkedHashSet<>();
+
+        // EP numbers go in epodoc format, the rest in docdb, as in buildUrl; one format per request
+        Map<String, List<String>> byFormat = new LinkedHashMap<>();
+        Map<String, EpoDocumentId> ids = new LinkedHashMap<>();
+        for (String number : publicationNumbers) {
+            if (number == null || ids.containsKey(number)) continue;
+            try {
+                EpoDocumentId id = parser.parse(number);
+                ids.put(number, id);
+                byFormat.computeIfAbsent(format(id), f -> new ArrayList<>()).add(number);
+            } catch (IllegalArgumentException e) {
+                missing.add(number);
+            }
+        }
+
+        for (Map.Entry<String, List<String>> group : byFormat.entrySet()) {
+            List<String> numbers = group.getValue();
+            for (int from = 0; from < numbers.size(); from += BIBLIO_BATCH_LIMIT) {
+                List<String> chunk = numbers.subList(from, Math.min(numbers.size(), from + BIBLIO_BATCH_LIMIT));
+                try {
+                    matchDocuments(chunk, ids, fetchBiblioChunk(group.getKey(), chunk, ids), found, missing);
+                } catch (Exception e) {
+                    log.warn("Bulk biblio fetch failed for {} publications", chunk.size(), e);
+                    failed.addAll(chunk);
+                }
+            }
+        }
+
+        // callers get the documents back in the order they asked for them
+        Map<String, PatentDocument> ordered = new LinkedHashMap<>();
+        for (String number : ids.keySet()) {
+            PatentDocument doc = found.get(number);
+            if (doc != null) ordered.put(number, doc);
+        }
+
+        if (!missing.isEmpty()) {
+            log.debug("OPS returned no biblio for {} of {} publications: {}",
+                    missing.size(), publicationNumbers.size(), missing);
+        }
+        return new EpoBiblioBatch(ordered, missing, failed);
+    }
+
+    private List<PatentDocument> fetchBiblioChunk(String format,
+                                                  List<String> chunk,
+                                                  Map<String, EpoDocumentId> ids) throws Exception {
+        String body = chunk.stream()
+                .map(number -> identifier(ids.get(number)))
+                .collect(Collectors.joining(","));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(opsRoot() + "/rest-services/published-data/publication/" + format + "/biblio"))
+                .header("Authorization", "Bearer " + tokens.token())
+                .header("Accept", "application/xml")
+                .header("Content-Type", "text/plain")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        HttpResponse<InputStream> res = stream(request, EpoThrottle.RETRIEVAL);
+
+        try (InputStream in = res.body()) {
+            if (res.statusCode() == 404) {
+                log.debug("None of {} publications found in OPS", chunk.size());
+                return List.of();
+            }
+            if (res.statusCode() != 200) {
+                throw new IllegalStateException("EPO bulk biblio returned " + res.statusCode() + ": " + snippet(in, 500));
+            }
+            return EpoOpsStreamParser.readDocuments(in);
+        }
+    }
+
+    // a request without a kind code (or with one OPS does not have) takes the first document for the number
+    private void matchDocuments(List<String> chunk,
+                                Map<String, EpoDocumentId> ids,
+                                List<PatentDocument> documents,
+                                Map<String, PatentDocument> found,
+                                Set<String> missing) {
+        // the parser already leaves out not-found entries, which come back without biblio
+        Map<String, PatentDocument> byNumberAndKind = new HashMap<>();
+        Map<String, PatentDocument> byNumber = new HashMap<>();
+        for (PatentDocument doc : documents) {
+            byNumberAndKind.putIfAbsent(doc.getPublicationNumber() + doc.getWipoKind(), doc);
+            byNumber.putIfAbsent(doc.getPublicationNumber(), doc);
+        }
+
+        for (String publicationNumber : chunk) {
+            EpoDocumentId id = ids.get(publicationNumber);
+            String number = id.getCountry() + id.getDocNumber();
+            PatentDocument doc = byNumberAndKind.getOrDefault(number + id.getKind(), byNumber.get(number));
+            if (doc == null) {
+                missing.add(publicationNumber);
+                continue;
+            }
+            if (doc.getWipoKind() == null) doc.setWipoKind(id.getKind());
+            found.put(publicationNumber, doc);
+        }
+    }
+
+    private static String format(EpoDocumentId id) {
+        return "EP".equals(id.getCountry()) ? "epodoc" : "docdb";
+    }
+
+    private static String identifier(EpoDocumentId id) {
+        return "epodoc".equals(format(id))
+                ? id.getCountry() + id.getDocNumber() + id.getKind()
+                : id.getCountry() + "." + id.getDocNumber() + "." + id.getKind();
+    }
+
     public String buildCqlQuery(PatentSearchFilter f) {
         List<String> parts = new ArrayList<>();
 
@@ -656,7 +832,7 @@ public class EpoClient {
 
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create(url))
-                    .header("Authorization", "Bearer " + token())
+                    .header("Authorization", "Bearer " + tokens.token())
                     .header("Accept", "application/xml")
                     .header("X-OPS-Range", "1-25")
                     .header("User-Agent", "global-ip/1.0 (academic project)")
@@ -664,46 +840,35 @@ public class EpoClient {
                     .GET()
                     .build();
 
-            HttpResponse<String> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<InputStream> response = stream(request, EpoThrottle.SEARCH);
 
             log.info("Response Status: {}", response.statusCode());
 
-            if (response.statusCode() == 404) {
-                log.warn("404 - No results found for query: {}", cql);
-                return List.of();
-            }
-
-            if (response.statusCode() != 200) {
-                log.error("EPO search failed with status {}: {}",
-                        response.statusCode(),
-                        response.body() != null ? response.body().substring(0, Math.min(500, response.body().length())) : "null");
-                return List.of();
-            }
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 404) {
+                    log.warn("404 - No results found for query: {}", cql);
+                    return List.of();
+                }
 
-            // Parse response
-            EpoSearchResponse searchResponse =
-                    xmlMapper.readValue(response.body(), EpoSearchResponse.class);
+                if (response.statusCode() != 200) {
+                    log.error("EPO search failed with status {}: {}", response.statusCode(), snippet(body, 500));
+                    return List.of();
+                }
 
-            if (searchResponse == null ||
-                    searchResponse.getBiblioSearch() == null ||
-                    searchResponse.getBiblioSearch().getSearchResult() == null ||
-                    searchResponse.getBiblioSearch().getSearchResult().getPublications() == null) {
-                log.warn("No publications in search response");
-                return List.of();
-            }
+                // Parse response
+                List<EpoDocumentId> results = EpoOpsStreamParser.readSearchReferences(body)
+                        .stream()
+                        .filter(id -> id.getKind() != null)
+                        .toList();
 
-            List<EpoDocumentId> results = searchResponse.getBiblioSearch()
-                    .getSearchResult()
-                    .getPublications()
-                    .stream()
-                    .map(EpoPublicationReferenceSearch::getDocumentId)
-                    .filter(id -> id != null && id.getKind() != null)
-                    .toList();
+                if (results.isEmpty()) {
+                    log.warn("No publications in search response");
+                }
 
-            log.info("Successfully parsed {} document IDs", results.size());
-            log.info("=== END EPO DEBUG ===");
-            return results;
+                log.info("Successfully parsed {} document IDs", results.size());
+                log.info("=== END EPO DEBUG ===");
+                return results;
+            }
 
         } catch (Exception e) {
             log.error("EPO advanced search failed", e);
@@ -711,91 +876,108 @@ public class EpoClient {
         }
     }
 
+    /**
+     * Every hit of the query published between {@code from} and {@code to}, paged and, past
+     * the OPS range limit, split by publication date as the stream is consumed. Requests run
+     * on the consuming thread, except the concurrent probes when a window is split.
+     */
+    public Stream<PatentDocument> searchAll(String cql, LocalDate from, LocalDate to) {
+        Objects.requireNonNull(from, "from");
+        Objects.requireNonNull(to, "to");
+        return EpoSearchStream.open(this::searchPage, cql, from, to, properties.throttle().detailConcurrency());
+    }
+
+    // hits from..to of the query, with biblio either inline (BIBLIO mode) or from one bulk request
+    private EpoSearchPage searchPage(String cql, int from, int to) throws Exception {
+        boolean biblio = properties.search().mode() == EpoProperties.SearchMode.BIBLIO;
+        String url = opsRoot() + "/rest-services/published-data/search" + (biblio ? "/biblio" : "")
+                + "?q=" + URLEncoder.encode(cql, StandardCharsets.UTF_8);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Authorization", "Bearer " + tokens.token())
+                .header("Accept", "application/xml")
+                .header("X-OPS-Range", from + "-" + to)
+                .header("User-Agent", "global-ip/1.0")
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+
+        HttpResponse<InputStream> response = stream(request, EpoThrottle.SEARCH);
+
+        EpoSearchPage page;
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 404) return EpoSearchPage.empty();
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("EPO search returned " + response.statusCode() + ": " + snippet(body, 500));
+            }
+            page = EpoOpsStreamParser.readSearchPage(body);
+        }
+        if (biblio) return page;
+
+        Map<String, EpoDocumentId> ids = new LinkedHashMap<>();
+        for (EpoDocumentId id : page.references()) {
+            if (id.getKind() != null) ids.put(id.getCountry() + id.getDocNumber() + id.getKind(), id);
+        }
+        EpoBiblioBatch batch = fetchBiblioBatch(ids.keySet());
+        // a hit whose biblio request failed is unknown, not biblio-less; the stream must not yield it
+        if (!batch.complete()) {
+            throw new IllegalStateException("EPO bulk biblio failed for " + batch.failed().size()
+                    + " of " + ids.size() + " hits in range " + from + "-" + to + " of " + cql);
+        }
+        Map<String, PatentDocument> details = batch.documents();
+
+        // hits OPS has no biblio for still count; they come through with just their number
+        List<PatentDocument> documents = new ArrayList<>(ids.size());
+        ids.forEach((number, id) -> {
+            PatentDocument doc = details.get(number);
+            if (doc == null) {
+                doc = new PatentDocument();
+                doc.setPublicationNumber(id.getCountry() + id.getDocNumber());
+                doc.setJurisdiction(id.getCountry());
+                doc.setWipoKind(id.getKind());
+            }
+            documents.add(doc);
+        });
+        return new EpoSearchPage(page.total(), page.references(), documents);
+    }
+
+    /**
+     * Every EPO filing of the assignees since {@code fromDate}. An assignee whose search
+     * fails is listed in the result, with whatever filings were read before it failed.
+     */
     @TrackApiUsage(service = "EPO", action = "COMPETITOR_FETCH")
-    public List<EpoCompetitorFilingDto> fetchCompetitorFilings(
+    public EpoCompetitorFilings fetchCompetitorFilings(
             List<String> assignees,
             LocalDate fromDate
     ) {
         List<EpoCompetitorFilingDto> results = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
 
         if (assignees == null || assignees.isEmpty()) {
-            return results;
+            return new EpoCompetitorFilings(results, failed);
         }
 
         for (String assignee : assignees) {
-            try {
-                String cql = "pa=\"" + assignee + "\" and pd>=" +
-                        fromDate.format(DateTimeFormatter.BASIC_ISO_DATE);
-
-                String encoded = URLEncoder.encode(cql, StandardCharsets.UTF_8);
-
-                String base = properties.baseUrl();
-                if (base.endsWith("/rest-services")) {
-                    base = base.substring(0, base.length() - 14);
-                }
-
-                String url = base + "/rest-services/published-data/search?q=" + encoded;
-
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(url))
-                        .header("Authorization", "Bearer " + token())
-                        .header("Accept", "application/xml")
-                        .header("X-OPS-Range", "1-25")
-                        .header("User-Agent", "global-ip/1.0")
-                        .timeout(Duration.ofSeconds(30))
-                        .GET()
-                        .build();
-
-                HttpResponse<String> response =
-                        httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() != 200) {
-                    log.warn("EPO competitor search failed for {} [{}]",
-                            assignee, response.statusCode());
-                    continue;
-                }
-
-                EpoSearchResponse searchResponse =
-                        xmlMapper.readValue(response.body(), EpoSearchResponse.class);
-
-                if (searchResponse == null ||
-                        searchResponse.getBiblioSearch() == null ||
-                        searchResponse.getBiblioSearch().getSearchResult() == null ||
-                        searchResponse.getBiblioSearch().getSearchResult().getPublications() == null) {
-                    continue;
-                }
-
-                for (EpoPublicationReferenceSearch pub :
-                        searchResponse.getBiblioSearch()
-                                .getSearchResult()
-                                .getPublications()) {
-
-                    EpoDocumentId id = pub.getDocumentId();
-                    if (id == null) continue;
-
-                    String publicationNumber =
-                            id.getCountry() + id.getDocNumber() + id.getKind();
-
-                    GlobalPatentDetailDto detail =
-                            fetchGlobalDetail(publicationNumber);
-
-                    results.add(
-                            EpoCompetitorFilingDto.builder()
-                                    .publicationNumber(publicationNumber)
-                                    .kind(id.getKind())
-                                    .applicant(assignee)
-                                    .title(detail != null ? detail.getTitle() : null)
-                                    .publicationDate(detail != null ? detail.getGrantDate() : null)
-                                    .build()
-                    );
-                }
-
+            // every filing since fromDate, not just the first page of hits
+            try (Stream<PatentDocument> filings = searchAll("pa=\"" + assignee + "\"", fromDate, LocalDate.now())) {
+                filings.forEach(doc -> results.add(
+                        EpoCompetitorFilingDto.builder()
+                                .publicationNumber(doc.getPublicationNumber() + doc.getWipoKind())
+                                .kind(doc.getWipoKind())
+                                .applicant(assignee)
+                                .title(doc.getTitle())
+                                .publicationDate(doc.getGrantDate())
+                                .build()
+                ));
             } catch (Exception e) {
                 log.error("Failed competitor fetch for assignee={}", assignee, e);
+                failed.add(assignee);
             }
         }
 
-        log.info("Fetched {} EPO competitor filings", results.size());
-        return results;
+        log.info("Fetched {} EPO competitor filings{}", results.size(),
+                failed.isEmpty() ? "" : ", incomplete for " + failed);
+        return new EpoCompetitorFilings(results, failed);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package com.teamb.globalipbackend1.external.epo;
+
+import java.util.function.Supplier;
+
+/**
+ * Who an OPS call is made for, which decides its share of the quota.
+ * <p>
+ * The priority applies to every call made on the current thread inside {@link #call} or
+ * {@link #run}, and to threads started from there (the fan-outs in {@link EpoClient}),
+ * so callers do not have to pass it through the client. Calls made outside any scope
+ * are {@link #INTERACTIVE}.
+ */
+public enum EpoPriority {
+
+    /** A user is waiting for the answer. */
+    INTERACTIVE,
+    /** Scheduled refreshes of tracked patents. */
+    TRACKING,
+    /** Large syncs nobody is waiting on, such as competitor filings. */
+    BULK;
+
+    private static final InheritableThreadLocal<EpoPriority> CURRENT = new InheritableThreadLocal<>();
+
+    public static EpoPriority current() {
+        EpoPriority priority = CURRENT.get();
+        return priority == null ? INTERACTIVE : priority;
+    }
+
+    public <T> T call(Supplier<T> work) {
+        EpoPriority previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+}
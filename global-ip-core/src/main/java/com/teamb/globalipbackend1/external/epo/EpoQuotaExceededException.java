@@ -0,0 +1,21 @@
+package com.teamb.globalipbackend1.external.epo;
+
+import lombok.Getter;
+
+/**
+ * An OPS call refused before it was sent, because the quota is being kept for
+ * higher-priority callers. Background jobs should stop and try again on their next run.
+ */
+@Getter
+public class EpoQuotaExceededException extends RuntimeException {
+
+    private final EpoPriority priority;
+    private final EpoQuotaGovernor.Pressure pressure;
+
+    public EpoQuotaExceededException(EpoPriority priority, EpoQuotaGovernor.Pressure pressure) {
+        super("EPO OPS call refused for " + priority + " work under " + pressure + " quota pressure",
+                null, false, false);
+        this.priority = priority;
+        this.pressure = pressure;
+    }
+}
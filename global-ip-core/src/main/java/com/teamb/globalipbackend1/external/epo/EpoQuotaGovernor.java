@@ -0,0 +1,195 @@
+package com.teamb.globalipbackend1.external.epo;
+
+import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.http.HttpHeaders;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Shares the OPS quota between priorities, so background jobs cannot use up what
+ * interactive users need.
+ * <p>
+ * Each {@link EpoPriority} has its own token bucket. How much of its configured rate a
+ * priority gets depends on the pressure OPS reports: the overall traffic state and the
+ * worst service light in {@code X-Throttling-Control}, and how much of the hourly and
+ * weekly quota is used ({@code X-IndividualQuotaPerHour-Used},
+ * {@code X-RegisteredQuotaPerWeek-Used}). As pressure rises bulk work is slowed and then
+ * refused, then tracking; interactive calls are never refused here. A reading expires
+ * after {@code pressureTtl}, so the next call after a quiet spell probes OPS again.
+ */
+@Slf4j
+public class EpoQuotaGovernor {
+
+    public enum Pressure { NORMAL, ELEVATED, HIGH, CRITICAL }
+
+    static final String HOURLY_USED = "X-IndividualQuotaPerHour-Used";
+    static final String WEEKLY_USED = "X-RegisteredQuotaPerWeek-Used";
+
+    private static final Pattern SERVICE_COLOR = Pattern.compile("[a-z-]+=([a-z]+):\\d+");
+
+    private final EpoProperties.Quota quota;
+    private final Map<EpoPriority, EpoThrottle.TokenBucket> buckets = new EnumMap<>(EpoPriority.class);
+    private final long backgroundMaxWaitNanos;
+    private final long pressureTtlNanos;
+
+    private volatile Pressure loadPressure = Pressure.NORMAL;
+    private volatile long loadObservedAt;
+    private volatile Pressure quotaPressure = Pressure.NORMAL;
+    private volatile long quotaObservedAt;
+    private Pressure applied = Pressure.NORMAL;
+
+    public EpoQuotaGovernor(EpoProperties.Quota quota) {
+        this.quota = quota;
+        this.backgroundMaxWaitNanos = quota.backgroundMaxWait().toNanos();
+        this.pressureTtlNanos = quota.pressureTtl().toNanos();
+        for (EpoPriority priority : EpoPriority.values()) {
+            buckets.put(priority, new EpoThrottle.TokenBucket(baseRate(priority)));
+        }
+    }
+
+    /**
+     * The part of its configured rate a priority gets under the given pressure; 0 means
+     * its calls are refused.
+     */
+    public static double share(EpoPriority priority, Pressure pressure) {
+        return switch (priority) {
+            case INTERACTIVE -> 1.0;
+            case TRACKING -> switch (pressure) {
+                case NORMAL, ELEVATED -> 1.0;
+                case HIGH -> 0.5;
+                case CRITICAL -> 0.0;
+            };
+            case BULK -> switch (pressure) {
+                case NORMAL -> 1.0;
+                case ELEVATED -> 0.5;
+                case HIGH, CRITICAL -> 0.0;
+            };
+        };
+    }
+
+    public static Pressure quotaPressure(double usedFraction) {
+        if (usedFraction >= 0.95) return Pressure.CRITICAL;
+        if (usedFraction >= 0.8) return Pressure.HIGH;
+        if (usedFraction >= 0.6) return Pressure.ELEVATED;
+        return Pressure.NORMAL;
+    }
+
+    /**
+     * Waits for the priority's token. Tracking and bulk calls are refused when their
+     * share is 0 or the token is further away than {@code backgroundMaxWait}.
+     */
+    public void admit(EpoPriority priority) throws InterruptedException {
+        Pressure pressure = pressure();
+        applyRates(pressure);
+
+        if (share(priority, pressure) == 0) {
+            throw new EpoQuotaExceededException(priority, pressure);
+        }
+        EpoThrottle.TokenBucket bucket = buckets.get(priority);
+        if (priority == EpoPriority.INTERACTIVE) {
+            bucket.take();
+        } else if (!bucket.tryTake(backgroundMaxWaitNanos)) {
+            throw new EpoQuotaExceededException(priority, pressure);
+        }
+    }
+
+    /**
+     * Whether a call at this priority would currently be let through at all; background
+     * jobs check this to stop early instead of failing every remaining item.
+     */
+    public boolean admits(EpoPriority priority) {
+        return share(priority, pressure()) > 0;
+    }
+
+    public Pressure pressure() {
+        long now = System.nanoTime();
+        Pressure load = now - loadObservedAt < pressureTtlNanos ? loadPressure : Pressure.NORMAL;
+        Pressure used = now - quotaObservedAt < pressureTtlNanos ? quotaPressure : Pressure.NORMAL;
+        return load.compareTo(used) >= 0 ? load : used;
+    }
+
+    public void update(HttpHeaders headers) {
+        headers.firstValue(EpoThrottle.HEADER).ifPresent(this::updateLoad);
+        long hourly = headers.firstValueAsLong(HOURLY_USED).orElse(-1);
+        long weekly = headers.firstValueAsLong(WEEKLY_USED).orElse(-1);
+        if (hourly >= 0 || weekly >= 0) {
+            updateUsage(hourly, weekly);
+        }
+    }
+
+    /** Reads the traffic state ({@code idle}, {@code busy}, {@code overloaded}) and the service lights. */
+    void updateLoad(String headerValue) {
+        String value = headerValue.toLowerCase(Locale.ROOT).trim();
+        Pressure pressure;
+        if (value.startsWith("overloaded")) {
+            pressure = Pressure.HIGH;
+        } else if (value.startsWith("busy")) {
+            pressure = Pressure.ELEVATED;
+        } else {
+            pressure = Pressure.NORMAL;
+        }
+
+        Matcher m = SERVICE_COLOR.matcher(value);
+        while (m.find()) {
+            Pressure light = switch (m.group(1)) {
+                case "yellow" -> Pressure.ELEVATED;
+                // black pauses the service itself in EpoThrottle; here it only sheds background work
+                case "red", "black" -> Pressure.HIGH;
+                default -> Pressure.NORMAL;
+            };
+            if (light.compareTo(pressure) > 0) pressure = light;
+        }
+
+        loadPressure = pressure;
+        loadObservedAt = System.nanoTime();
+    }
+
+    /** Bytes used so far this hour and this week; negative when OPS did not report it. */
+    void updateUsage(long hourlyUsed, long weeklyUsed) {
+        double used = 0;
+        if (hourlyUsed >= 0 && quota.hourlyQuotaBytes() > 0) {
+            used = Math.max(used, (double) hourlyUsed / quota.hourlyQuotaBytes());
+        }
+        if (weeklyUsed >= 0 && quota.weeklyQuotaBytes() > 0) {
+            used = Math.max(used, (double) weeklyUsed / quota.weeklyQuotaBytes());
+        }
+        quotaPressure = quotaPressure(used);
+        quotaObservedAt = System.nanoTime();
+    }
+
+    public int ratePerMinute(EpoPriority priority) {
+        applyRates(pressure());
+        return buckets.get(priority).perMinute();
+    }
+
+    private synchronized void applyRates(Pressure pressure) {
+        if (pressure == applied) return;
+        for (EpoPriority priority : EpoPriority.values()) {
+            double share = share(priority, pressure);
+            if (share > 0) {
+                buckets.get(priority).setRate((int) Math.max(1, Math.round(baseRate(priority) * share)));
+            }
+        }
+        if (pressure.compareTo(applied) > 0) {
+            log.warn("EPO OPS quota pressure {} -> {}: tracking at {}%, bulk at {}%", applied, pressure,
+                    Math.round(share(EpoPriority.TRACKING, pressure) * 100),
+                    Math.round(share(EpoPriority.BULK, pressure) * 100));
+        } else {
+            log.info("EPO OPS quota pressure {} -> {}", applied, pressure);
+        }
+        applied = pressure;
+    }
+
+    private int baseRate(EpoPriority priority) {
+        return switch (priority) {
+            case INTERACTIVE -> quota.interactivePerMinute();
+            case TRACKING -> quota.trackingPerMinute();
+            case BULK -> quota.bulkPerMinute();
+        };
+    }
+}
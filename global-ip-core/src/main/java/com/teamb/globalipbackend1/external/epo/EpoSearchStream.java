@@ -0,0 +1,213 @@
+package com.teamb.globalipbackend1.external.epo;
+
+import com.teamb.globalipbackend1.external.epo.dto.EpoSearchPage;
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+import com.teamb.globalipbackend1.util.concurrent.BoundedFanOut;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Every hit of an OPS query as a lazy stream, one range request at a time.
+ * <p>
+ * OPS serves at most {@value #RANGE_LIMIT} hits per query, {@value #PAGE_SIZE} per request.
+ * A query over a publication-date window that reports more than that is split into
+ * smaller windows until each fits; the windows are probed concurrently (the throttle
+ * still paces the calls) and then read in date order. Later pages are only requested
+ * once the consumer gets to them.
+ * <p>
+ * A failed probe or page ends the stream with an {@link IllegalStateException} rather
+ * than leaving its hits out, so a consumer never mistakes a partial result for all of it.
+ */
+@Slf4j
+final class EpoSearchStream {
+
+    static final int PAGE_SIZE = 100;
+    static final int RANGE_LIMIT = 2000;
+
+    @FunctionalInterface
+    interface PageFetcher {
+        /** Hits {@code from}..{@code to} (1-based, inclusive) of the query. */
+        EpoSearchPage fetch(String cql, int from, int to) throws Exception;
+    }
+
+    private record Window(LocalDate from, LocalDate to) {
+        String cql(String query) {
+            return query + " and pd within \"" + from.format(DateTimeFormatter.BASIC_ISO_DATE)
+                    + " " + to.format(DateTimeFormatter.BASIC_ISO_DATE) + "\"";
+        }
+
+        long days() {
+            return ChronoUnit.DAYS.between(from, to) + 1;
+        }
+    }
+
+    private record Probe(Window window, String cql, EpoSearchPage firstPage) {
+    }
+
+    private EpoSearchStream() {
+    }
+
+    static Stream<PatentDocument> open(PageFetcher fetcher, String query, LocalDate from, LocalDate to, int concurrency) {
+        return StreamSupport.stream(new Pages(fetcher, query, new Window(from, to), concurrency), false);
+    }
+
+    private static final class Pages extends Spliterators.AbstractSpliterator<PatentDocument> {
+
+        private final PageFetcher fetcher;
+        private final String query;
+        private final Window window;
+        private final int concurrency;
+
+        private Deque<Shard> shards;
+        private Iterator<PatentDocument> page = List.<PatentDocument>of().iterator();
+
+        Pages(PageFetcher fetcher, String query, Window window, int concurrency) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.fetcher = fetcher;
+            this.query = query;
+            this.window = window;
+            this.concurrency = concurrency;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super PatentDocument> action) {
+            while (!page.hasNext()) {
+                if (!nextPage()) return false;
+            }
+            action.accept(page.next());
+            return true;
+        }
+
+        private boolean nextPage() {
+            // nothing is requested until the first element is
+            if (shards == null) shards = new ArrayDeque<>(plan());
+
+            while (!shards.isEmpty()) {
+                Shard shard = shards.peek();
+                List<PatentDocument> next = shard.next(fetcher);
+                if (next != null) {
+                    page = next.iterator();
+                    return true;
+                }
+                shards.poll();
+            }
+            return false;
+        }
+
+        /**
+         * Probes the window and splits it until every part reports at most RANGE_LIMIT hits.
+         * Each probe's response is kept as the first page of its shard.
+         */
+        private List<Shard> plan() {
+            List<Shard> planned = new ArrayList<>();
+            List<Window> pending = List.of(window);
+
+            while (!pending.isEmpty()) {
+                List<Throwable> failures = new ArrayList<>();
+                List<Probe> probes = BoundedFanOut.map(pending, concurrency, this::probe, (w, ex) -> failures.add(ex));
+                if (probes.size() < pending.size()) {
+                    IllegalStateException failed = new IllegalStateException(
+                            "EPO search over " + window.from() + ".." + window.to() + ": "
+                                    + (pending.size() - probes.size()) + " of " + pending.size() + " date windows failed",
+                            failures.isEmpty() ? null : failures.getFirst());
+                    failures.stream().skip(1).forEach(failed::addSuppressed);
+                    throw failed;
+                }
+
+                List<Window> split = new ArrayList<>();
+                for (Probe probe : probes) {
+                    int total = probe.firstPage().total();
+                    if (total > RANGE_LIMIT && probe.window().days() > 1) {
+                        split.addAll(split(probe.window(), total));
+                    } else {
+                        if (total > RANGE_LIMIT) {
+                            log.warn("EPO query has {} hits on {} alone; only the first {} are reachable",
+                                    total, probe.window().from(), RANGE_LIMIT);
+                        }
+                        planned.add(new Shard(probe.window(), probe.cql(), probe.firstPage()));
+                    }
+                }
+                pending = split;
+            }
+
+            planned.sort(Comparator.comparing((Shard shard) -> shard.window.from()));
+            if (planned.size() > 1) {
+                log.info("EPO query over {}..{} split into {} date windows", window.from(), window.to(), planned.size());
+            }
+            return planned;
+        }
+
+        private Probe probe(Window w) {
+            String cql = w.cql(query);
+            try {
+                return new Probe(w, cql, fetcher.fetch(cql, 1, PAGE_SIZE));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // equal-length windows sized for the hit count, with headroom for uneven spread
+        private static List<Window> split(Window w, int total) {
+            long parts = Math.min(w.days(), Math.max(2, (long) Math.ceil(total * 1.25 / RANGE_LIMIT)));
+            long step = Math.ceilDiv(w.days(), parts);
+
+            List<Window> windows = new ArrayList<>();
+            for (LocalDate start = w.from(); !start.isAfter(w.to()); start = start.plusDays(step)) {
+                LocalDate end = start.plusDays(step - 1);
+                windows.add(new Window(start, end.isAfter(w.to()) ? w.to() : end));
+            }
+            return windows;
+        }
+    }
+
+    private static final class Shard {
+
+        private final Window window;
+        private final String cql;
+        private final int last;
+        private EpoSearchPage firstPage;
+        private int nextFrom = PAGE_SIZE + 1;
+
+        Shard(Window window, String cql, EpoSearchPage firstPage) {
+            this.window = window;
+            this.cql = cql;
+            this.firstPage = firstPage;
+            this.last = Math.min(firstPage.total(), RANGE_LIMIT);
+        }
+
+        /** The next page, or null once the shard is exhausted. */
+        List<PatentDocument> next(PageFetcher fetcher) {
+            if (firstPage != null) {
+                List<PatentDocument> documents = firstPage.documents();
+                firstPage = null;
+                return documents;
+            }
+            if (nextFrom > last) return null;
+
+            int from = nextFrom;
+            int to = Math.min(from + PAGE_SIZE - 1, last);
+            nextFrom = to + 1;
+            try {
+                return fetcher.fetch(cql, from, to).documents();
+            } catch (Exception e) {
+                throw new IllegalStateException("EPO search range " + from + "-" + to + " failed for " + cql, e);
+            }
+        }
+    }
+}
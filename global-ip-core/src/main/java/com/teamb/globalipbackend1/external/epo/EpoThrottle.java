@@ -0,0 +1,247 @@
+package com.teamb.globalipbackend1.external.epo;
+
+import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpHeaders;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps OPS traffic inside the fair-use quotas: a semaphore caps the calls in flight
+ * and a token bucket per OPS service (search, retrieval, inpadoc, ...) paces them.
+ * <p>
+ * Every OPS response carries a header such as
+ * {@code X-Throttling-Control: idle (images=green:200, inpadoc=green:60, other=green:1000, retrieval=green:200, search=green:30)}
+ * giving the allowed requests per minute for each service; {@link #update} feeds it
+ * back into the buckets. A black light means the quota is exhausted, so the service is
+ * paused for the Retry-After period (or a minute).
+ * <p>
+ * Calls are also admitted by priority through an {@link EpoQuotaGovernor}, and a few
+ * concurrency slots are kept for {@link EpoPriority#INTERACTIVE} calls, so background
+ * jobs can neither use up the quota nor fill every slot while a user waits.
+ */
+@Slf4j
+@Component
+public class EpoThrottle {
+
+    public static final String SEARCH = "search";
+    public static final String RETRIEVAL = "retrieval";
+    public static final String INPADOC = "inpadoc";
+    public static final String OTHER = "other";
+
+    static final String HEADER = "X-Throttling-Control";
+
+    private static final Pattern SERVICE_STATE = Pattern.compile("([a-z-]+)=([a-z]+):(\\d+)");
+    private static final long BLACK_PAUSE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Semaphore inFlight;
+    private final Semaphore backgroundSlots;
+    private final EpoQuotaGovernor governor;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final int defaultPerMinute;
+
+    public EpoThrottle(EpoProperties properties) {
+        EpoProperties.Throttle t = properties.throttle();
+        this.inFlight = new Semaphore(Math.max(1, t.maxConcurrentRequests()), true);
+        this.defaultPerMinute = t.otherPerMinute();
+
+        EpoProperties.Quota quota = properties.quota();
+        this.backgroundSlots = new Semaphore(
+                Math.max(1, t.maxConcurrentRequests() - quota.interactiveReservedSlots()), true);
+        this.governor = new EpoQuotaGovernor(quota);
+
+        buckets.put(SEARCH, new TokenBucket(t.searchPerMinute()));
+        buckets.put(RETRIEVAL, new TokenBucket(t.retrievalPerMinute()));
+        buckets.put(INPADOC, new TokenBucket(t.inpadocPerMinute()));
+        buckets.put(OTHER, new TokenBucket(t.otherPerMinute()));
+    }
+
+    /**
+     * Blocks until the caller's priority and the service have a token and a concurrency
+     * slot is free. The returned permit must be closed once the response has been read.
+     *
+     * @throws EpoQuotaExceededException when the quota is being kept for higher priorities
+     */
+    public Permit acquire(String service) throws InterruptedException {
+        EpoPriority priority = EpoPriority.current();
+        governor.admit(priority);
+        bucket(service).take();
+
+        if (priority == EpoPriority.INTERACTIVE) {
+            inFlight.acquire();
+            return inFlight::release;
+        }
+        backgroundSlots.acquire();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            backgroundSlots.release();
+            throw e;
+        }
+        return () -> {
+            inFlight.release();
+            backgroundSlots.release();
+        };
+    }
+
+    /**
+     * Whether calls at this priority are currently let through at all.
+     */
+    public boolean admits(EpoPriority priority) {
+        return governor.admits(priority);
+    }
+
+    public EpoQuotaGovernor governor() {
+        return governor;
+    }
+
+    /**
+     * Applies the quota state reported on an OPS response.
+     */
+    public void update(HttpHeaders headers) {
+        governor.update(headers);
+        headers.firstValue(HEADER).ifPresent(value -> update(value,
+                headers.firstValueAsLong("Retry-After").orElse(-1)));
+    }
+
+    void update(String headerValue, long retryAfterSeconds) {
+        Matcher m = SERVICE_STATE.matcher(headerValue.toLowerCase(Locale.ROOT));
+        while (m.find()) {
+            String service = m.group(1);
+            String color = m.group(2);
+            int perMinute = Integer.parseInt(m.group(3));
+
+            TokenBucket bucket = bucket(service);
+            bucket.setRate(perMinute);
+
+            if ("black".equals(color)) {
+                long pause = retryAfterSeconds > 0
+                        ? TimeUnit.SECONDS.toNanos(retryAfterSeconds)
+                        : BLACK_PAUSE_NANOS;
+                bucket.pause(pause);
+                log.warn("EPO OPS quota exhausted for '{}', pausing for {} s",
+                        service, TimeUnit.NANOSECONDS.toSeconds(pause));
+            }
+        }
+    }
+
+    int ratePerMinute(String service) {
+        return bucket(service).perMinute;
+    }
+
+    public int availableSlots() {
+        return inFlight.availablePermits();
+    }
+
+    private TokenBucket bucket(String service) {
+        return buckets.computeIfAbsent(service, s -> new TokenBucket(defaultPerMinute));
+    }
+
+    @FunctionalInterface
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Refills continuously at the per-minute rate and holds at most a few seconds'
+     * worth of tokens. Callers reserve a token under the lock and wait outside it,
+     * so waiters are served in arrival order.
+     */
+    static final class TokenBucket {
+
+        private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile int perMinute;
+        private double capacity;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+        private long pausedUntil;
+
+        TokenBucket(int perMinute) {
+            setRate(perMinute);
+            this.tokens = capacity;
+        }
+
+        void setRate(int perMinute) {
+            lock.lock();
+            try {
+                refill(System.nanoTime());
+                this.perMinute = Math.max(1, perMinute);
+                // up to five seconds of burst, never less than one call
+                this.capacity = Math.max(1, this.perMinute / 12.0);
+                this.tokens = Math.min(tokens, capacity);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void pause(long nanos) {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                pausedUntil = Math.max(pausedUntil, now + nanos);
+                tokens = Math.min(tokens, 0);
+                lastRefill = pausedUntil;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void take() throws InterruptedException {
+            tryTake(Long.MAX_VALUE);
+        }
+
+        /**
+         * As {@link #take}, but gives up without using a token when it would have to
+         * wait longer than {@code maxWaitNanos}.
+         */
+        boolean tryTake(long maxWaitNanos) throws InterruptedException {
+            long waitNanos;
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                refill(now);
+                // while paused, refilling only starts once the pause is over
+                waitNanos = Math.max(0, pausedUntil - now);
+                if (tokens < 1) {
+                    waitNanos += (long) ((1 - tokens) * MINUTE / perMinute);
+                }
+                if (waitNanos > maxWaitNanos) {
+                    return false;
+                }
+                tokens -= 1;
+            } finally {
+                lock.unlock();
+            }
+
+            long deadline = System.nanoTime() + waitNanos;
+            while (waitNanos > 0) {
+                LockSupport.parkNanos(this, waitNanos);
+                if (Thread.interrupted()) throw new InterruptedException();
+                waitNanos = deadline - System.nanoTime();
+            }
+            return true;
+        }
+
+        int perMinute() {
+            return perMinute;
+        }
+
+        private void refill(long now) {
+            if (now <= lastRefill) return;
+            tokens = Math.min(capacity, tokens + (double) (now - lastRefill) * perMinute / MINUTE);
+            lastRefill = now;
+        }
+    }
+}
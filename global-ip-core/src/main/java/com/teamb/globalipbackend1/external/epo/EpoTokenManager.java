@@ -0,0 +1,180 @@
+package com.teamb.globalipbackend1.external.epo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the OPS access token without a lock.
+ * <p>
+ * Callers read the current token from an atomic snapshot. A background task renews it
+ * once {@value #REFRESH_AT} of its lifetime has passed, so callers normally never wait.
+ * If the token has expired anyway (first use, or a failed background refresh), the
+ * callers that notice share one in-flight refresh and wait on its future.
+ */
+@Slf4j
+@Component
+public class EpoTokenManager implements AutoCloseable {
+
+    static final double REFRESH_AT = 0.8;
+
+    private static final Duration MAX_SKEW = Duration.ofSeconds(60);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    record Token(String value, Instant expiresAt) {
+    }
+
+    private final String tokenUrl;
+    private final String basicAuth;
+    private final Clock clock;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "epo-token-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicReference<Token> current = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<Token>> inFlight = new AtomicReference<>();
+
+    @Autowired
+    public EpoTokenManager(EpoProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    public EpoTokenManager(EpoProperties properties, Clock clock) {
+        String base = properties.baseUrl();
+        if (base.endsWith("/rest-services")) {
+            base = base.substring(0, base.length() - 14);
+        }
+        this.tokenUrl = base + "/auth/accesstoken";
+        this.basicAuth = "Basic " + Base64.getEncoder().encodeToString(
+                (properties.consumerKey() + ":" + properties.consumerSecret()).getBytes(StandardCharsets.UTF_8));
+        this.clock = clock;
+    }
+
+    /**
+     * The current access token. Returns immediately while the token is valid; otherwise
+     * waits for the shared refresh.
+     */
+    public String token() {
+        Token token = current.get();
+        if (token != null && clock.instant().isBefore(token.expiresAt())) {
+            return token.value();
+        }
+
+        try {
+            return refresh().get(REQUEST_TIMEOUT.toSeconds() + 5, TimeUnit.SECONDS).value();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for OPS token", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("OPS token failure", e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("OPS token failure", e);
+        }
+    }
+
+    /**
+     * Starts a token request unless one is already running, and returns the future all
+     * callers wait on.
+     */
+    CompletableFuture<Token> refresh() {
+        while (true) {
+            CompletableFuture<Token> running = inFlight.get();
+            if (running != null) return running;
+
+            CompletableFuture<Token> mine = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, mine)) {
+                requestToken().whenComplete((token, ex) -> {
+                    if (ex == null) current.set(token);
+                    // cleared before completing, so anyone woken by the future sees the new token
+                    inFlight.compareAndSet(mine, null);
+                    if (ex == null) {
+                        mine.complete(token);
+                    } else {
+                        log.warn("OPS token refresh failed", ex);
+                        mine.completeExceptionally(ex);
+                    }
+                });
+                return mine;
+            }
+        }
+    }
+
+    private CompletableFuture<Token> requestToken() {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(tokenUrl))
+                .POST(HttpRequest.BodyPublishers.ofString("grant_type=client_credentials"))
+                .header("Authorization", basicAuth)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .timeout(REQUEST_TIMEOUT)
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(this::toToken);
+    }
+
+    private Token toToken(HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("OPS token endpoint returned " + response.statusCode());
+        }
+        try {
+            JsonNode json = JSON.readTree(response.body());
+            // OPS sends expires_in as a string
+            long lifetimeSeconds = json.get("expires_in").asLong();
+            Duration lifetime = Duration.ofSeconds(lifetimeSeconds);
+
+            // expire a little early so a token is never sent in its last moments
+            Duration skew = lifetime.dividedBy(10).compareTo(MAX_SKEW) < 0 ? lifetime.dividedBy(10) : MAX_SKEW;
+            Token token = new Token(json.get("access_token").asText(), clock.instant().plus(lifetime).minus(skew));
+
+            scheduleRefresh(lifetime.multipliedBy((long) (REFRESH_AT * 1000)).dividedBy(1000));
+            log.debug("OPS token valid for {} s", lifetimeSeconds);
+            return token;
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable OPS token response", e);
+        }
+    }
+
+    private void scheduleRefresh(Duration delay) {
+        if (scheduler.isShutdown() || delay.isZero() || delay.isNegative()) return;
+        scheduler.schedule(() -> {
+            refresh().exceptionally(ex -> {
+                // callers keep the current token until it expires; retry halfway to expiry
+                Token token = current.get();
+                if (token != null) {
+                    Duration left = Duration.between(clock.instant(), token.expiresAt());
+                    if (left.toSeconds() > 1) scheduleRefresh(left.dividedBy(2));
+                }
+                return null;
+            });
+        }, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
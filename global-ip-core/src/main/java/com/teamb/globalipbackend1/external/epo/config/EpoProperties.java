@@ -4,16 +4,76 @@ package com.teamb.globalipbackend1.external.epo.config;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
-import lombok.Getter;
-import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.stereotype.Component;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
 
 @ConfigurationProperties(prefix = "epo")
 public record EpoProperties (
     @NotNull @NotBlank  String baseUrl,
     @NotNull @NotBlank  String consumerKey,
-    @NotNull @NotBlank  String consumerSecret
-){}
+    @NotNull @NotBlank  String consumerSecret,
+    @DefaultValue Throttle throttle,
+    @DefaultValue Search search,
+    @DefaultValue Quota quota
+){
+
+    public enum SearchMode {
+        /** search/biblio: bibliographic data comes back inline with the hits */
+        BIBLIO,
+        /** plain search for references, then a bulk biblio request for the hits */
+        REFERENCES
+    }
+
+    /**
+     * @param abstractFallback fetch the abstract endpoint per document when biblio has no abstract;
+     *                         costs one extra OPS call per such document
+     */
+    public record Search(
+            @DefaultValue("BIBLIO") SearchMode mode,
+            @DefaultValue("false") boolean abstractFallback
+    ) {}
+
+    /**
+     * Client-side limits for OPS calls. The per-minute rates are only the starting
+     * point; they are replaced by whatever OPS reports in X-Throttling-Control.
+     *
+     * @param maxConcurrentRequests OPS calls in flight at once, across all callers
+     * @param detailConcurrency     detail fetches in flight for a single search
+     */
+    public record Throttle(
+            @DefaultValue("8") int maxConcurrentRequests,
+            @DefaultValue("8") int detailConcurrency,
+            @DefaultValue("30") int searchPerMinute,
+            @DefaultValue("200") int retrievalPerMinute,
+            @DefaultValue("60") int inpadocPerMinute,
+            @DefaultValue("100") int otherPerMinute
+    ) {}
 
+    /**
+     * How the OPS quota is shared between interactive users and background jobs.
+     * The per-minute rates are for the whole process and are cut back for tracking and
+     * bulk work as OPS reports more load or more of the quota is used.
+     *
+     * @param backgroundMaxWait        how long tracking and bulk calls may wait for a token before they are refused
+     * @param interactiveReservedSlots concurrency slots that only interactive calls may use
+     * @param hourlyQuotaBytes         the account's hourly download quota, 0 if it has none
+     * @param weeklyQuotaBytes         the account's weekly download quota (4 GB on the free tier), 0 if it has none
+     * @param pressureTtl              how long a reported load or quota level is trusted without a fresh response
+     */
+    public record Quota(
+            @DefaultValue("300") int interactivePerMinute,
+            @DefaultValue("60") int trackingPerMinute,
+            @DefaultValue("30") int bulkPerMinute,
+            @DefaultValue("30s") Duration backgroundMaxWait,
+            @DefaultValue("2") int interactiveReservedSlots,
+            @DefaultValue("0") long hourlyQuotaBytes,
+            @DefaultValue("4000000000") long weeklyQuotaBytes,
+            @DefaultValue("5m") Duration pressureTtl
+    ) {
+        public static Quota defaults() {
+            return new Quota(300, 60, 30, Duration.ofSeconds(30), 2, 0, 4_000_000_000L, Duration.ofMinutes(5));
+        }
+    }
+}
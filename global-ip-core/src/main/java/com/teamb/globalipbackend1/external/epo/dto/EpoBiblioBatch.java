@@ -0,0 +1,20 @@
+package com.teamb.globalipbackend1.external.epo.dto;
+
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of a bulk biblio lookup.
+ *
+ * @param documents found documents, keyed by the publication number as requested, in request order
+ * @param missing   requested numbers OPS returned nothing for
+ * @param failed    requested numbers whose request failed or was refused, so nothing is known about them
+ */
+public record EpoBiblioBatch(Map<String, PatentDocument> documents, Set<String> missing, Set<String> failed) {
+
+    public boolean complete() {
+        return failed.isEmpty();
+    }
+}
@@ -0,0 +1,16 @@
+package com.teamb.globalipbackend1.external.epo.dto;
+
+import java.util.List;
+
+/**
+ * Result of a competitor filings fetch.
+ *
+ * @param filings         filings found, including those read for a failed assignee before it failed
+ * @param failedAssignees assignees whose search did not run to the end
+ */
+public record EpoCompetitorFilings(List<EpoCompetitorFilingDto> filings, List<String> failedAssignees) {
+
+    public boolean complete() {
+        return failedAssignees.isEmpty();
+    }
+}
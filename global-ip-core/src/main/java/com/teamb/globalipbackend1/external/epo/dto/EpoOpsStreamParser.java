@@ -0,0 +1,406 @@
+package com.teamb.globalipbackend1.external.epo.dto;
+
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Reads OPS exchange-document and search responses with StAX, straight off the response
+ * stream. Only the bibliographic fields that end up on {@link PatentDocument} are kept;
+ * every other subtree (citations, priority claims, claims, descriptions) is skipped
+ * without being materialised.
+ */
+public final class EpoOpsStreamParser {
+
+    // EPO dates are in format YYYYMMDD
+    public static final DateTimeFormatter OPS_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_COMMA = Pattern.compile(",\\s*$");
+    private static final Pattern COMMA = Pattern.compile(",\\s+");
+
+    private EpoOpsStreamParser() {
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Every exchange-document carrying bibliographic data, in document order. Works for
+     * bulk biblio, search/biblio and abstract responses; not-found entries are left out.
+     */
+    public static List<PatentDocument> readDocuments(InputStream in) throws XMLStreamException {
+        return readSearchPage(in).documents();
+    }
+
+    /**
+     * The document ids of a published-data/search response.
+     */
+    public static List<EpoDocumentId> readSearchReferences(InputStream in) throws XMLStreamException {
+        return readSearchPage(in).references();
+    }
+
+    /**
+     * A search or search/biblio response, with the query's total-result-count (0 when the
+     * response has none).
+     */
+    public static EpoSearchPage readSearchPage(InputStream in) throws XMLStreamException {
+        XMLStreamReader r = FACTORY.createXMLStreamReader(in);
+        try {
+            int total = 0;
+            List<EpoDocumentId> references = new ArrayList<>();
+            List<PatentDocument> documents = new ArrayList<>();
+            while (r.hasNext()) {
+                if (r.next() != START_ELEMENT) continue;
+                switch (r.getLocalName()) {
+                    case "biblio-search" -> total = parseCount(r.getAttributeValue(null, "total-result-count"));
+                    // search hits; the publication-reference inside biblio is read by readBibliographicData
+                    case "publication-reference" -> {
+                        while (nextChild(r)) {
+                            if ("document-id".equals(r.getLocalName())) {
+                                references.add(readDocumentId(r));
+                            } else {
+                                skip(r);
+                            }
+                        }
+                    }
+                    case "exchange-document" -> {
+                        PatentDocument doc = readExchangeDocument(r);
+                        if (doc != null) documents.add(doc);
+                    }
+                    default -> { }
+                }
+            }
+            return new EpoSearchPage(total, references, documents);
+        } finally {
+            r.close();
+        }
+    }
+
+    public static LocalDate parseDate(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return LocalDate.parse(value.trim(), OPS_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static int parseCount(String value) {
+        if (value == null || value.isBlank()) return 0;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static PatentDocument readExchangeDocument(XMLStreamReader r) throws XMLStreamException {
+        String country = r.getAttributeValue(null, "country");
+        String docNumber = r.getAttributeValue(null, "doc-number");
+        String kind = r.getAttributeValue(null, "kind");
+
+        Biblio biblio = null;
+        while (nextChild(r)) {
+            if ("bibliographic-data".equals(r.getLocalName())) {
+                biblio = readBibliographicData(r);
+            } else {
+                skip(r);
+            }
+        }
+        if (biblio == null) return null;
+
+        PatentDocument patent = new PatentDocument();
+        patent.setPublicationNumber(country + docNumber);
+        patent.setJurisdiction(country);
+        patent.setWipoKind(kind);
+        patent.setTitle(biblio.englishTitle != null ? biblio.englishTitle : biblio.firstTitle);
+        patent.setAbstractText(biblio.englishAbstract != null ? biblio.englishAbstract : biblio.firstAbstract);
+        patent.setAssignees(List.copyOf(biblio.applicants));
+        patent.setInventors(List.copyOf(biblio.inventors));
+        patent.setIpcClasses(List.copyOf(biblio.ipc));
+        patent.setCpcClasses(List.copyOf(biblio.cpc));
+        patent.setFilingDate(parseDate(biblio.filingDate));
+        patent.setGrantDate(parseDate(biblio.publicationDate));
+        return patent;
+    }
+
+    private static Biblio readBibliographicData(XMLStreamReader r) throws XMLStreamException {
+        Biblio b = new Biblio();
+        while (nextChild(r)) {
+            switch (r.getLocalName()) {
+                case "invention-title" -> {
+                    String lang = r.getAttributeValue(null, "lang");
+                    String title = blankToNull(text(r));
+                    if (title == null) break;
+                    if (b.firstTitle == null) b.firstTitle = title;
+                    if (b.englishTitle == null && "en".equalsIgnoreCase(lang)) b.englishTitle = title;
+                }
+                case "abstract" -> {
+                    String lang = r.getAttributeValue(null, "lang");
+                    String text = readAbstract(r);
+                    if (text == null) break;
+                    if (b.firstAbstract == null) b.firstAbstract = text;
+                    if (b.englishAbstract == null && "en".equalsIgnoreCase(lang)) b.englishAbstract = text;
+                }
+                case "publication-reference" -> b.publicationDate = referenceDate(r);
+                case "application-reference" -> b.filingDate = referenceDate(r);
+                case "parties" -> readParties(r, b);
+                case "classification-ipcr" -> addIfPresent(b.ipc, readIpc(r));
+                case "patent-classification" -> addIfPresent(b.cpc, readCpc(r));
+                case "classifications-ipcr" -> {
+                    while (nextChild(r)) {
+                        if ("classification-ipcr".equals(r.getLocalName())) addIfPresent(b.ipc, readIpc(r));
+                        else skip(r);
+                    }
+                }
+                case "patent-classifications" -> {
+                    while (nextChild(r)) {
+                        if ("patent-classification".equals(r.getLocalName())) addIfPresent(b.cpc, readCpc(r));
+                        else skip(r);
+                    }
+                }
+                default -> skip(r);
+            }
+        }
+        return b;
+    }
+
+    // direct text first, then each paragraph, as EpoAbstract.getFullText does
+    private static String readAbstract(XMLStreamReader r) throws XMLStreamException {
+        StringBuilder direct = new StringBuilder();
+        List<String> paragraphs = new ArrayList<>();
+        while (r.hasNext()) {
+            int event = r.next();
+            if (event == CHARACTERS || event == CDATA) {
+                direct.append(r.getText());
+            } else if (event == START_ELEMENT) {
+                if ("p".equals(r.getLocalName())) {
+                    String p = blankToNull(text(r));
+                    if (p != null) paragraphs.add(p);
+                } else {
+                    skip(r);
+                }
+            } else if (event == END_ELEMENT) {
+                break;
+            }
+        }
+
+        StringBuilder text = new StringBuilder(direct.toString().trim());
+        for (String p : paragraphs) {
+            if (!text.isEmpty()) text.append(' ');
+            text.append(p);
+        }
+        return text.isEmpty() ? null : text.toString();
+    }
+
+    // the docdb date when the reference carries several document-ids
+    private static String referenceDate(XMLStreamReader r) throws XMLStreamException {
+        String date = null;
+        while (nextChild(r)) {
+            if (!"document-id".equals(r.getLocalName())) {
+                skip(r);
+                continue;
+            }
+            boolean docdb = "docdb".equals(r.getAttributeValue(null, "document-id-type"));
+            String value = blankToNull(readDocumentId(r).getDate());
+            if (value != null && (date == null || docdb)) date = value;
+        }
+        return date;
+    }
+
+    private static EpoDocumentId readDocumentId(XMLStreamReader r) throws XMLStreamException {
+        EpoDocumentId id = new EpoDocumentId();
+        while (nextChild(r)) {
+            switch (r.getLocalName()) {
+                case "country" -> id.setCountry(blankToNull(text(r)));
+                case "doc-number" -> id.setDocNumber(blankToNull(text(r)));
+                case "kind" -> id.setKind(blankToNull(text(r)));
+                case "date" -> id.setDate(blankToNull(text(r)));
+                default -> skip(r);
+            }
+        }
+        return id;
+    }
+
+    private static void readParties(XMLStreamReader r, Biblio b) throws XMLStreamException {
+        while (nextChild(r)) {
+            switch (r.getLocalName()) {
+                case "applicants" -> readNames(r, "applicant", "applicant-name", b.applicants);
+                case "inventors" -> {
+                    Set<String> raw = new LinkedHashSet<>();
+                    readNames(r, "inventor", "inventor-name", raw);
+                    // "SMITH, Steven" and "SMITH Steven" are the same inventor
+                    for (String name : raw) {
+                        String cleaned = TRAILING_COMMA.matcher(name).replaceAll("").trim();
+                        b.inventors.add(COMMA.matcher(cleaned).replaceAll(" "));
+                    }
+                }
+                default -> skip(r);
+            }
+        }
+    }
+
+    private static void readNames(XMLStreamReader r, String party, String nameElement, Set<String> into)
+            throws XMLStreamException {
+        while (nextChild(r)) {
+            if (!party.equals(r.getLocalName())) {
+                skip(r);
+                continue;
+            }
+            while (nextChild(r)) {
+                if (!nameElement.equals(r.getLocalName())) {
+                    skip(r);
+                    continue;
+                }
+                while (nextChild(r)) {
+                    if ("name".equals(r.getLocalName())) addIfPresent(into, blankToNull(text(r)));
+                    else skip(r);
+                }
+            }
+        }
+    }
+
+    private static String readIpc(XMLStreamReader r) throws XMLStreamException {
+        Classification c = readClassification(r);
+        if (c.text != null) {
+            return blankToNull(WHITESPACE.matcher(c.text).replaceAll("").split("A")[0].trim());
+        }
+        return blankToNull(c.code());
+    }
+
+    private static String readCpc(XMLStreamReader r) throws XMLStreamException {
+        Classification c = readClassification(r);
+        return c.text != null ? c.text : blankToNull(c.code());
+    }
+
+    private static Classification readClassification(XMLStreamReader r) throws XMLStreamException {
+        Classification c = new Classification();
+        while (nextChild(r)) {
+            switch (r.getLocalName()) {
+                case "text" -> c.text = blankToNull(text(r));
+                case "section" -> c.section = blankToNull(text(r));
+                case "class" -> c.classCode = blankToNull(text(r));
+                case "subclass" -> c.subclass = blankToNull(text(r));
+                case "main-group" -> c.mainGroup = blankToNull(text(r));
+                case "subgroup" -> c.subgroup = blankToNull(text(r));
+                default -> skip(r);
+            }
+        }
+        return c;
+    }
+
+    // moves to the next child element; false once the enclosing element has ended
+    private static boolean nextChild(XMLStreamReader r) throws XMLStreamException {
+        while (r.hasNext()) {
+            int event = r.next();
+            if (event == START_ELEMENT) return true;
+            if (event == END_ELEMENT) return false;
+        }
+        return false;
+    }
+
+    // all text below the current element, nested markup included; leaves the reader on its end tag
+    private static String text(XMLStreamReader r) throws XMLStreamException {
+        int event = r.next();
+        if (event == END_ELEMENT) return "";
+        String first = null;
+        if (event == CHARACTERS || event == CDATA) {
+            first = r.getText();
+            // the common case: a single text node and no markup
+            if ((event = r.next()) == END_ELEMENT) return first;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        if (first != null) sb.append(first);
+        int depth = 1;
+        if (event == START_ELEMENT) depth++;
+        else if (event == END_ELEMENT) depth--;
+        else if (event == CHARACTERS || event == CDATA) sb.append(r.getText());
+        while (depth > 0 && r.hasNext()) {
+            switch (r.next()) {
+                case START_ELEMENT -> depth++;
+                case END_ELEMENT -> depth--;
+                case CHARACTERS, CDATA -> sb.append(r.getText());
+                default -> { }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void skip(XMLStreamReader r) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && r.hasNext()) {
+            int event = r.next();
+            if (event == START_ELEMENT) depth++;
+            else if (event == END_ELEMENT) depth--;
+        }
+    }
+
+    private static String blankToNull(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static void addIfPresent(Set<String> into, String value) {
+        if (value != null) into.add(value);
+    }
+
+    private static final class Biblio {
+        String firstTitle;
+        String englishTitle;
+        String firstAbstract;
+        String englishAbstract;
+        String publicationDate;
+        String filingDate;
+        final Set<String> applicants = new LinkedHashSet<>();
+        final Set<String> inventors = new LinkedHashSet<>();
+        final Set<String> ipc = new LinkedHashSet<>();
+        final Set<String> cpc = new LinkedHashSet<>();
+    }
+
+    private static final class Classification {
+        String text;
+        String section;
+        String classCode;
+        String subclass;
+        String mainGroup;
+        String subgroup;
+
+        String code() {
+            StringBuilder code = new StringBuilder();
+            if (section != null) code.append(section);
+            if (classCode != null) code.append(classCode);
+            if (subclass != null) code.append(subclass);
+            if (mainGroup != null) {
+                code.append(mainGroup);
+                if (subgroup != null) code.append('/').append(subgroup);
+            }
+            return code.toString();
+        }
+    }
+}
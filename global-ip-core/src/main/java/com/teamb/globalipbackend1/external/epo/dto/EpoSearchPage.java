@@ -0,0 +1,19 @@
+package com.teamb.globalipbackend1.external.epo.dto;
+
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+
+import java.util.List;
+
+/**
+ * One range of an OPS search response.
+ *
+ * @param total      total-result-count reported for the query, across all ranges
+ * @param references hits of a plain search, in rank order
+ * @param documents  hits with their biblio (search/biblio), in rank order
+ */
+public record EpoSearchPage(int total, List<EpoDocumentId> references, List<PatentDocument> documents) {
+
+    public static EpoSearchPage empty() {
+        return new EpoSearchPage(0, List.of(), List.of());
+    }
+}
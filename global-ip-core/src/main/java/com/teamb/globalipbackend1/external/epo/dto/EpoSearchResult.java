@@ -14,4 +14,9 @@ public class EpoSearchResult {
     @JacksonXmlElementWrapper(useWrapping = false)
     @JacksonXmlProperty(localName = "publication-reference", namespace = "http://ops.epo.org")
     private List<EpoPublicationReferenceSearch> publications;
+
+    // search/biblio and search/full-cycle: each hit comes wrapped in its own exchange-documents
+    @JacksonXmlElementWrapper(useWrapping = false)
+    @JacksonXmlProperty(localName = "exchange-documents")
+    private List<EpoExchangeDocuments> exchangeDocuments;
 }
\ No newline at end of file
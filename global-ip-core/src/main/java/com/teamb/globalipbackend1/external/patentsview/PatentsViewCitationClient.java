@@ -1,36 +1,59 @@
 package com.teamb.globalipbackend1.external.patentsview;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teamb.globalipbackend1.external.patentsview.config.PatentsViewProperties;
 import com.teamb.globalipbackend1.external.patentsview.dto.*;
 import com.teamb.globalipbackend1.external.patentsview.querybuilder.PatentsViewCitationQueryBuilder;
+import com.teamb.globalipbackend1.util.concurrent.BoundedFanOut;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Component
 
 @Slf4j
 public class PatentsViewCitationClient {
 
+    // Patent IDs per batched query, and rows per page of its result
+    private static final int BATCH_IDS_PER_QUERY = 500;
+    private static final int BATCH_PAGE_SIZE = 1000;
+    private static final int BATCH_MAX_PAGES = 20;
+    private static final int BATCH_CONCURRENCY = 4;
+
+    private static final ExecutorService SECTIONS = Executors.newVirtualThreadPerTaskExecutor();
+
     private final PatentsViewHttpClient httpClient;
     private final PatentsViewCitationQueryBuilder queryBuilder;
-    @Qualifier("jsonObjectMapper")
-    private final ObjectMapper objectMapper;
 
-    private static final String US_PATENT_CITATION_ENDPOINT =
-            "https://search.patentsview.org/api/v1/patent/us_patent_citation";
-    private static final String US_APPLICATION_CITATION_ENDPOINT =
-            "https://search.patentsview.org/api/v1/patent/us_application_citation";
-    private static final String FOREIGN_CITATION_ENDPOINT =
-            "https://search.patentsview.org/api/v1/patent/foreign_citation";
+    private final String US_PATENT_CITATION_ENDPOINT;
+    private final String US_APPLICATION_CITATION_ENDPOINT;
+    private final String FOREIGN_CITATION_ENDPOINT;
+    private final Duration citationDeadline;
 
-    public PatentsViewCitationClient(PatentsViewHttpClient httpClient, PatentsViewCitationQueryBuilder queryBuilder,@Qualifier("jsonObjectMapper") ObjectMapper objectMapper) {
+    public PatentsViewCitationClient(PatentsViewHttpClient httpClient,
+                                     PatentsViewCitationQueryBuilder queryBuilder,
+                                     PatentsViewProperties patentsViewProperties) {
         this.httpClient = httpClient;
         this.queryBuilder = queryBuilder;
-        this.objectMapper = objectMapper;
+
+        String baseUrl = patentsViewProperties.citationBaseUrl().replaceAll("/+$", "");
+        this.US_PATENT_CITATION_ENDPOINT = baseUrl + "/us_patent_citation";
+        this.US_APPLICATION_CITATION_ENDPOINT = baseUrl + "/us_application_citation";
+        this.FOREIGN_CITATION_ENDPOINT = baseUrl + "/foreign_citation";
+        this.citationDeadline = patentsViewProperties.transport().citationDeadline();
     }
 
     /**
@@ -42,10 +65,8 @@ public class PatentsViewCitationClient {
             String queryJson = queryBuilder.buildBackwardCitationsQuery(patentId);
             log.info("Fetching backward citations for patent: {}", patentId);
 
-            String responseJson = httpClient.post(US_PATENT_CITATION_ENDPOINT, queryJson);
-
             PatentsViewUSPatentCitationResponse response =
-                    objectMapper.readValue(responseJson, PatentsViewUSPatentCitationResponse.class);
+                    httpClient.post(US_PATENT_CITATION_ENDPOINT, queryJson, PatentsViewUSPatentCitationResponse.class);
 
             if (response.getUsPatentCitations() == null) {
                 log.info("No backward citations found for patent: {}", patentId);
@@ -72,10 +93,8 @@ public class PatentsViewCitationClient {
             String queryJson = queryBuilder.buildForwardCitationsQuery(patentId);
             log.info("Fetching forward citations for patent: {}", patentId);
 
-            String responseJson = httpClient.post(US_PATENT_CITATION_ENDPOINT, queryJson);
-
             PatentsViewUSPatentCitationResponse response =
-                    objectMapper.readValue(responseJson, PatentsViewUSPatentCitationResponse.class);
+                    httpClient.post(US_PATENT_CITATION_ENDPOINT, queryJson, PatentsViewUSPatentCitationResponse.class);
 
             if (response.getUsPatentCitations() == null) {
                 log.info("No forward citations found for patent: {}", patentId);
@@ -99,10 +118,8 @@ public class PatentsViewCitationClient {
     public PatentsViewUSPatentCitationResponse getBackwardCitationsResponse(String patentId) {
         try {
             String queryJson = queryBuilder.buildBackwardCitationsQuery(patentId);
-            String responseJson = httpClient.post(US_PATENT_CITATION_ENDPOINT, queryJson);
-
             PatentsViewUSPatentCitationResponse response =
-                    objectMapper.readValue(responseJson, PatentsViewUSPatentCitationResponse.class);
+                    httpClient.post(US_PATENT_CITATION_ENDPOINT, queryJson, PatentsViewUSPatentCitationResponse.class);
 
             if (response.getUsPatentCitations() == null) {
                 response.setUsPatentCitations(new ArrayList<>());
@@ -124,10 +141,8 @@ public class PatentsViewCitationClient {
     public PatentsViewUSPatentCitationResponse getForwardCitationsResponse(String patentId) {
         try {
             String queryJson = queryBuilder.buildForwardCitationsQuery(patentId);
-            String responseJson = httpClient.post(US_PATENT_CITATION_ENDPOINT, queryJson);
-
             PatentsViewUSPatentCitationResponse response =
-                    objectMapper.readValue(responseJson, PatentsViewUSPatentCitationResponse.class);
+                    httpClient.post(US_PATENT_CITATION_ENDPOINT, queryJson, PatentsViewUSPatentCitationResponse.class);
 
             if (response.getUsPatentCitations() == null) {
                 response.setUsPatentCitations(new ArrayList<>());
@@ -150,10 +165,8 @@ public class PatentsViewCitationClient {
         try {
             String queryJson = queryBuilder.buildApplicationCitationsQuery(patentId);
 
-            String responseJson = httpClient.post(US_APPLICATION_CITATION_ENDPOINT, queryJson);
-
             PatentsViewUSApplicationCitationResponse response =
-                    objectMapper.readValue(responseJson, PatentsViewUSApplicationCitationResponse.class);
+                    httpClient.post(US_APPLICATION_CITATION_ENDPOINT, queryJson, PatentsViewUSApplicationCitationResponse.class);
 
             if (response.getUsApplicationCitations() == null) {
                 response.setUsApplicationCitations(new ArrayList<>());
@@ -180,10 +193,8 @@ public class PatentsViewCitationClient {
         try {
             String queryJson = queryBuilder.buildForeignCitationsQuery(patentId);
 
-            String responseJson = httpClient.post(FOREIGN_CITATION_ENDPOINT, queryJson);
-
             PatentsViewForeignCitationResponse response =
-                    objectMapper.readValue(responseJson, PatentsViewForeignCitationResponse.class);
+                    httpClient.post(FOREIGN_CITATION_ENDPOINT, queryJson, PatentsViewForeignCitationResponse.class);
 
             // Check if API returned error
             if (response.getError() != null && response.getError()) {
@@ -212,28 +223,102 @@ public class PatentsViewCitationClient {
     }
 
     /**
-     * Get ALL citations for a patent (for PatentCitationService - database storage)
+     * Backward citations of many patents (what each of them cites), keyed by the
+     * normalized patent ID. Patents without citations are absent from the map.
      */
-    public AllCitationsResponse getAllCitations(String patentId) {
-        log.info("Fetching all citations for patent: {}", patentId);
+    public Map<String, List<PatentsViewUSPatentCitation>> getBackwardCitations(Collection<String> patentIds) {
+        return citationsByPatent(patentIds, false, PatentsViewUSPatentCitation::getPatentId);
+    }
 
-        AllCitationsResponse allCitations = new AllCitationsResponse();
+    /**
+     * Forward citations of many patents (who cites each of them), keyed by the
+     * normalized patent ID. Patents without citations are absent from the map.
+     */
+    public Map<String, List<PatentsViewUSPatentCitation>> getForwardCitations(Collection<String> patentIds) {
+        return citationsByPatent(patentIds, true, PatentsViewUSPatentCitation::getCitationPatentId);
+    }
 
-        // Backward US patent citations
-        PatentsViewUSPatentCitationResponse backward = getBackwardCitationsResponse(patentId);
-        allCitations.setBackwardUSPatentCitations(backward.getUsPatentCitations());
+    private Map<String, List<PatentsViewUSPatentCitation>> citationsByPatent(
+            Collection<String> patentIds,
+            boolean forward,
+            Function<PatentsViewUSPatentCitation, String> key) {
 
-        // Forward US patent citations
-        PatentsViewUSPatentCitationResponse forward = getForwardCitationsResponse(patentId);
-        allCitations.setForwardUSPatentCitations(forward.getUsPatentCitations());
+        Set<String> ids = new LinkedHashSet<>();
+        for (String patentId : patentIds) {
+            String id = queryBuilder.normalizeToPatentId(patentId);
+            if (id != null) ids.add(id);
+        }
+        if (ids.isEmpty()) return Map.of();
 
-        // US application citations
-        PatentsViewUSApplicationCitationResponse applications = getApplicationCitations(patentId);
-        allCitations.setUsApplicationCitations(applications.getUsApplicationCitations());
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> all = List.copyOf(ids);
+        for (int i = 0; i < all.size(); i += BATCH_IDS_PER_QUERY) {
+            chunks.add(all.subList(i, Math.min(i + BATCH_IDS_PER_QUERY, all.size())));
+        }
+        log.info("Fetching {} citations for {} patents in {} queries",
+                forward ? "forward" : "backward", ids.size(), chunks.size());
+
+        List<List<PatentsViewUSPatentCitation>> results = BoundedFanOut.map(
+                chunks,
+                BATCH_CONCURRENCY,
+                chunk -> fetchAllPages(chunk, forward),
+                (chunk, e) -> log.error("Error fetching {} citations for {} patents: {}",
+                        forward ? "forward" : "backward", chunk.size(), e.getMessage())
+        );
+
+        Map<String, List<PatentsViewUSPatentCitation>> byPatent = new HashMap<>();
+        results.forEach(citations -> citations.forEach(citation -> {
+            String patentId = key.apply(citation);
+            if (patentId != null) byPatent.computeIfAbsent(patentId, k -> new ArrayList<>()).add(citation);
+        }));
+        return byPatent;
+    }
+
+    private List<PatentsViewUSPatentCitation> fetchAllPages(List<String> ids, boolean forward) {
+        List<PatentsViewUSPatentCitation> citations = new ArrayList<>();
+        List<Object> after = null;
+
+        for (int page = 0; page < BATCH_MAX_PAGES; page++) {
+            String queryJson = queryBuilder.buildUsPatentCitationsBatchQuery(ids, forward, BATCH_PAGE_SIZE, after);
+            PatentsViewUSPatentCitationResponse response =
+                    httpClient.post(US_PATENT_CITATION_ENDPOINT, queryJson, PatentsViewUSPatentCitationResponse.class);
+
+            List<PatentsViewUSPatentCitation> rows = response.getUsPatentCitations();
+            if (rows == null || rows.isEmpty()) return citations;
+            citations.addAll(rows);
+            if (rows.size() < BATCH_PAGE_SIZE) return citations;
+
+            PatentsViewUSPatentCitation last = rows.getLast();
+            if (last.getPatentId() == null || last.getCitationSequence() == null) return citations;
+            after = List.of(last.getPatentId(), last.getCitationSequence());
+        }
+        log.warn("Stopped after {} pages of citations for {} patents", BATCH_MAX_PAGES, ids.size());
+        return citations;
+    }
+
+    /**
+     * Get ALL citations for a patent (for PatentCitationService - database storage)
+     * <p>
+     * The four endpoints are queried concurrently under one deadline; a section whose
+     * call fails or is still outstanding at the deadline comes back empty.
+     */
+    public AllCitationsResponse getAllCitations(String patentId) {
+        log.info("Fetching all citations for patent: {}", patentId);
 
-        // Foreign citations
-        PatentsViewForeignCitationResponse foreign = getForeignCitations(patentId);
-        allCitations.setForeignCitations(foreign.getForeignCitations());
+        CompletableFuture<List<PatentsViewUSPatentCitation>> backward =
+                section(patentId, "backward", () -> getBackwardCitationsResponse(patentId).getUsPatentCitations());
+        CompletableFuture<List<PatentsViewUSPatentCitation>> forward =
+                section(patentId, "forward", () -> getForwardCitationsResponse(patentId).getUsPatentCitations());
+        CompletableFuture<List<PatentsViewUSApplicationCitation>> applications =
+                section(patentId, "application", () -> getApplicationCitations(patentId).getUsApplicationCitations());
+        CompletableFuture<List<PatentsViewForeignCitation>> foreign =
+                section(patentId, "foreign", () -> getForeignCitations(patentId).getForeignCitations());
+
+        AllCitationsResponse allCitations = new AllCitationsResponse();
+        allCitations.setBackwardUSPatentCitations(backward.join());
+        allCitations.setForwardUSPatentCitations(forward.join());
+        allCitations.setUsApplicationCitations(applications.join());
+        allCitations.setForeignCitations(foreign.join());
 
         log.info("Total citations for {}: {} backward, {} forward",
                 patentId,
@@ -242,4 +327,21 @@ public class PatentsViewCitationClient {
 
         return allCitations;
     }
-}
\ No newline at end of file
+
+    private <T> CompletableFuture<List<T>> section(String patentId, String name, Supplier<List<T>> call) {
+        long started = System.nanoTime();
+        return CompletableFuture.supplyAsync(call, SECTIONS)
+                .exceptionally(e -> {
+                    log.error("Error fetching {} citations for {}: {}", name, patentId, e.getMessage());
+                    return null;
+                })
+                .completeOnTimeout(null, citationDeadline.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(citations -> {
+                    if (citations != null) return citations;
+                    if (System.nanoTime() - started >= citationDeadline.toNanos()) {
+                        log.warn("{} citations for {} missed the {} ms deadline", name, patentId, citationDeadline.toMillis());
+                    }
+                    return new ArrayList<>();
+                });
+    }
+}
@@ -1,18 +1,24 @@
 package com.teamb.globalipbackend1.external.patentsview;
 
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.teamb.globalipbackend1.external.patentsview.config.PatentsViewProperties;
 import com.teamb.globalipbackend1.external.patentsview.dto.PatentsViewResponse;
 import com.teamb.globalipbackend1.external.patentsview.dto.PatentsViewResponseDocument;
+import com.teamb.globalipbackend1.external.patentsview.mapper.PatentsViewMapStructMapper;
 import com.teamb.globalipbackend1.external.patentsview.querybuilder.PatentsViewQueryBuilder;
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+import com.teamb.globalipbackend1.util.concurrent.BoundedFanOut;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * High-level client for PatentsView API operations
@@ -22,16 +28,21 @@ import java.util.List;
 @Slf4j
 public class PatentsViewClient {
 
+    /** The most PatentsView returns per request. */
+    static final int PAGE_SIZE = 1000;
+
+    /** Multi-ID lookups in flight at once for a single call. */
+    static final int DETAIL_CONCURRENCY = 4;
+
     private final PatentsViewHttpClient httpClient;
     private final PatentsViewQueryBuilder queryBuilder;
-    @Qualifier("jsonObjectMapper")
-    private final ObjectMapper objectMapper;
+    private final PatentsViewMapStructMapper mapper;
     private final PatentsViewProperties properties;
 
-    public PatentsViewClient(PatentsViewHttpClient httpClient, PatentsViewQueryBuilder queryBuilder, @Qualifier("jsonObjectMapper") ObjectMapper objectMapper, PatentsViewProperties properties) {
+    public PatentsViewClient(PatentsViewHttpClient httpClient, PatentsViewQueryBuilder queryBuilder, PatentsViewMapStructMapper mapper, PatentsViewProperties properties) {
         this.httpClient = httpClient;
         this.queryBuilder = queryBuilder;
-        this.objectMapper = objectMapper;
+        this.mapper = mapper;
         this.properties = properties;
     }
 
@@ -40,48 +51,51 @@ public class PatentsViewClient {
      *
      * @param assigneeOrganizations List of exact assignee names (e.g., "Google LLC", "Google Inc.")
      * @param fromDate Optional - filter patents from this date onwards
-     * @return List of patent documents matching the criteria
+     * @return All patent documents matching the criteria, across every result page
      */
     public List<PatentsViewResponseDocument> searchByAssignees(
             List<String> assigneeOrganizations,
             LocalDate fromDate
+    ) {
+        return searchByAssigneesInRange(assigneeOrganizations, fromDate, null);
+    }
+
+    /**
+     * Every patent of the assignees granted between fromDate and toDate (either may be null),
+     * newest first. Pages are requested as the stream is consumed; close the stream to stop
+     * paging early. A page that fails, or that the API flags as an error, ends the stream
+     * with a PatentsViewException.
+     */
+    public Stream<PatentsViewResponseDocument> streamByAssignees(
+            List<String> assigneeOrganizations,
+            LocalDate fromDate,
+            LocalDate toDate
     ) {
         if (assigneeOrganizations == null || assigneeOrganizations.isEmpty()) {
             log.warn("No assignee organizations provided for search");
-            return Collections.emptyList();
+            return Stream.empty();
         }
 
-        try {
-            log.info("Searching patents for {} assignees from date: {}",
-                    assigneeOrganizations.size(), fromDate);
+        log.info("Searching patents for {} assignees from {} to {}",
+                assigneeOrganizations.size(), fromDate, toDate);
 
-            // Build query
-            String queryJson = queryBuilder.buildCompetitorFilingQuery(
-                    assigneeOrganizations,
-                    fromDate,
-                    500  // Default page size
-            );
-
-            // Execute request
-            String responseJson = httpClient.post(properties.apiUrl(), queryJson);
+        return PatentsViewCursorStream.open(
+                after -> fetchAssigneePage(assigneeOrganizations, fromDate, toDate, after),
+                PAGE_SIZE
+        );
+    }
 
-            // Parse response
-            PatentsViewResponse response = objectMapper.readValue(
-                    responseJson,
-                    PatentsViewResponse.class
+    private PatentsViewResponse fetchAssigneePage(
+            List<String> assigneeOrganizations,
+            LocalDate fromDate,
+            LocalDate toDate,
+            List<String> after
+    ) {
+        try {
+            String queryJson = queryBuilder.buildCompetitorFilingQuery(
+                    assigneeOrganizations, fromDate, toDate, PAGE_SIZE, after
             );
-
-            if (response.isError()) {
-                log.error("PatentsView API returned error flag");
-                return Collections.emptyList();
-            }
-
-            List<PatentsViewResponseDocument> documents = response.getResponseDocuments();
-            log.info("Found {} patents for assignees: {}",
-                    documents != null ? documents.size() : 0,
-                    assigneeOrganizations);
-
-            return documents != null ? documents : Collections.emptyList();
+            return httpClient.post(properties.apiUrl(), queryJson, PatentsViewResponse.class);
 
         } catch (Exception e) {
             log.error("Failed to search patents for assignees: {}", assigneeOrganizations, e);
@@ -116,14 +130,8 @@ public class PatentsViewClient {
             // Build query
             String queryJson = queryBuilder.buildPatentDetailQuery(publicationNumber);
 
-            // Execute request
-            String responseJson = httpClient.post(properties.apiUrl(), queryJson);
-
-            // Parse response
-            PatentsViewResponse response = objectMapper.readValue(
-                    responseJson,
-                    PatentsViewResponse.class
-            );
+            // Execute request and parse the response
+            PatentsViewResponse response = httpClient.post(properties.apiUrl(), queryJson, PatentsViewResponse.class);
 
             if (response.isError()) {
                 log.error("PatentsView API returned error for patent: {}", publicationNumber);
@@ -145,6 +153,66 @@ public class PatentsViewClient {
         }
     }
 
+    /**
+     * Look up many patents at once: one request per {@link PatentsViewQueryBuilder#MAX_IDS_PER_QUERY}
+     * IDs, with the requests run concurrently.
+     *
+     * @param publicationNumbers Patent numbers in any format getPatentByNumber accepts
+     * @return Found patents keyed by the number as given; numbers that are invalid or
+     *         not found, or whose request failed, are absent
+     */
+    public Map<String, PatentDocument> getPatentsByNumbers(Collection<String> publicationNumbers) {
+        if (publicationNumbers == null || publicationNumbers.isEmpty()) {
+            return Map.of();
+        }
+
+        // PatentsView patent_id -> the numbers the caller asked for it by
+        Map<String, List<String>> requested = new LinkedHashMap<>();
+        for (String number : publicationNumbers) {
+            if (number == null || number.isBlank()) continue;
+            try {
+                requested.computeIfAbsent(queryBuilder.normalizeToPatentId(number), id -> new ArrayList<>())
+                        .add(number);
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping invalid patent number: {}", number);
+            }
+        }
+        if (requested.isEmpty()) {
+            return Map.of();
+        }
+
+        List<List<String>> chunks = chunk(new ArrayList<>(requested.keySet()), PatentsViewQueryBuilder.MAX_IDS_PER_QUERY);
+        log.info("Fetching {} patents in {} requests", requested.size(), chunks.size());
+
+        List<List<PatentsViewResponseDocument>> pages = BoundedFanOut.map(chunks, DETAIL_CONCURRENCY,
+                chunk -> {
+                    PatentsViewResponse response = httpClient.post(
+                            properties.apiUrl(), queryBuilder.buildPatentsByIdsQuery(chunk), PatentsViewResponse.class);
+                    if (response.isError() || response.getResponseDocuments() == null) return List.of();
+                    return response.getResponseDocuments();
+                },
+                (chunk, e) -> log.error("Failed to fetch {} patents starting at {}", chunk.size(), chunk.getFirst(), e));
+
+        Map<String, PatentDocument> found = new LinkedHashMap<>();
+        for (List<PatentsViewResponseDocument> page : pages) {
+            for (PatentsViewResponseDocument document : page) {
+                List<String> numbers = requested.get(document.getPatentId());
+                if (numbers == null) continue;
+                PatentDocument patent = mapper.toPatentDocument(document);
+                numbers.forEach(number -> found.put(number, patent));
+            }
+        }
+        return found;
+    }
+
+    private static <T> List<List<T>> chunk(List<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += size) {
+            chunks.add(items.subList(i, Math.min(i + size, items.size())));
+        }
+        return chunks;
+    }
+
     /**
      * Advanced search with multiple criteria (preserved from original implementation)
      */
@@ -164,14 +232,8 @@ public class PatentsViewClient {
                     keyword, fromDate, toDate, assignee, inventor
             );
 
-            // Execute request
-            String responseJson = httpClient.post(properties.apiUrl(), queryJson);
-
-            // Parse response
-            PatentsViewResponse response = objectMapper.readValue(
-                    responseJson,
-                    PatentsViewResponse.class
-            );
+            // Execute request and parse the response
+            PatentsViewResponse response = httpClient.post(properties.apiUrl(), queryJson, PatentsViewResponse.class);
 
             if (response.isError()) {
                 log.error("PatentsView API returned error for advanced search");
@@ -209,24 +271,12 @@ public class PatentsViewClient {
             LocalDate fromDate,
             LocalDate toDate
     ) {
-        // Note: PatentsView v1 API doesn't directly support toDate in the same query
-        // This is a limitation - we fetch all patents >= fromDate
-        // Additional filtering needed in the service layer if toDate is critical
-
-        List<PatentsViewResponseDocument> documents = searchByAssignees(
-                assigneeOrganizations,
-                fromDate
-        );
-
-        // Filter by toDate if provided (in-memory filtering)
-        if (toDate != null) {
-            return documents.stream()
-                    .filter(doc -> doc.getPatentDate() != null &&
-                            !doc.getPatentDate().isAfter(toDate))
-                    .toList();
+        try (Stream<PatentsViewResponseDocument> documents =
+                     streamByAssignees(assigneeOrganizations, fromDate, toDate)) {
+            List<PatentsViewResponseDocument> all = documents.toList();
+            log.info("Found {} patents for assignees: {}", all.size(), assigneeOrganizations);
+            return all;
         }
-
-        return documents;
     }
 }
 
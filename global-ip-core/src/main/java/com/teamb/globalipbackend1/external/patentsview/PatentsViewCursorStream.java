@@ -0,0 +1,138 @@
+package com.teamb.globalipbackend1.external.patentsview;
+
+import com.teamb.globalipbackend1.external.patentsview.dto.PatentsViewResponse;
+import com.teamb.globalipbackend1.external.patentsview.dto.PatentsViewResponseDocument;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Every patent of a PatentsView query as a lazy stream, walked with the {@code after}
+ * cursor (patent_date, patent_id of the last patent on the previous page).
+ * <p>
+ * As soon as a full page arrives the next one is requested in the background, so the
+ * consumer rarely waits on the network; no more than that one page is ever fetched
+ * ahead. Patents are de-duplicated by patent_id, since grants published while the walk
+ * is running can shift a patent across a page boundary.
+ * <p>
+ * A page the API flags as an error ends the stream with a {@link PatentsViewException},
+ * so a failed walk is never mistaken for a complete one.
+ */
+@Slf4j
+final class PatentsViewCursorStream {
+
+    private static final ExecutorService PREFETCH = Executors.newVirtualThreadPerTaskExecutor();
+
+    @FunctionalInterface
+    interface PageFetcher {
+        /** The page after the cursor, or the first page when {@code after} is null. */
+        PatentsViewResponse fetch(List<String> after);
+    }
+
+    private PatentsViewCursorStream() {
+    }
+
+    static Stream<PatentsViewResponseDocument> open(PageFetcher fetcher, int pageSize) {
+        Pages pages = new Pages(fetcher, pageSize);
+        return StreamSupport.stream(pages, false).onClose(pages::close);
+    }
+
+    private static final class Pages extends Spliterators.AbstractSpliterator<PatentsViewResponseDocument> {
+
+        private final PageFetcher fetcher;
+        private final int pageSize;
+        private final Set<String> seen = new HashSet<>();
+
+        private boolean started;
+        private CompletableFuture<PatentsViewResponse> next;
+        // the after values of the page in flight, null for the first
+        private List<String> cursor;
+        private Iterator<PatentsViewResponseDocument> page = List.<PatentsViewResponseDocument>of().iterator();
+
+        Pages(PageFetcher fetcher, int pageSize) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT);
+            this.fetcher = fetcher;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super PatentsViewResponseDocument> action) {
+            while (true) {
+                while (page.hasNext()) {
+                    PatentsViewResponseDocument doc = page.next();
+                    if (doc.getPatentId() == null || seen.add(doc.getPatentId())) {
+                        action.accept(doc);
+                        return true;
+                    }
+                }
+                if (!nextPage()) return false;
+            }
+        }
+
+        private boolean nextPage() {
+            // nothing is requested until the first element is
+            if (!started) {
+                started = true;
+                next = fetchAsync(null);
+            }
+            if (next == null) return false;
+
+            PatentsViewResponse response = await(next);
+            next = null;
+
+            if (response == null || response.isError()) {
+                throw new PatentsViewException("PatentsView returned an error for the page after "
+                        + (cursor == null ? "the start" : cursor) + ", after " + seen.size() + " patents");
+            }
+            List<PatentsViewResponseDocument> documents = response.getResponseDocuments();
+            if (documents == null || documents.isEmpty()) return false;
+
+            if (documents.size() >= pageSize) {
+                List<String> after = cursor(documents.getLast());
+                if (after != null) {
+                    cursor = after;
+                    next = fetchAsync(after);
+                } else {
+                    log.warn("PatentsView patent {} has no patent_date; cannot page past it",
+                            documents.getLast().getPatentId());
+                }
+            }
+            page = documents.iterator();
+            return true;
+        }
+
+        private CompletableFuture<PatentsViewResponse> fetchAsync(List<String> after) {
+            return CompletableFuture.supplyAsync(() -> fetcher.fetch(after), PREFETCH);
+        }
+
+        private static PatentsViewResponse await(CompletableFuture<PatentsViewResponse> future) {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                throw e;
+            }
+        }
+
+        private static List<String> cursor(PatentsViewResponseDocument last) {
+            if (last.getPatentDate() == null || last.getPatentId() == null) return null;
+            return List.of(last.getPatentDate().toString(), last.getPatentId());
+        }
+
+        void close() {
+            if (next != null) next.cancel(false);
+        }
+    }
+}
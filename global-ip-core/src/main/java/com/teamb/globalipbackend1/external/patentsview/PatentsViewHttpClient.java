@@ -1,72 +1,198 @@
 package com.teamb.globalipbackend1.external.patentsview;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import com.teamb.globalipbackend1.admin.audit.TrackApiUsage;
 import com.teamb.globalipbackend1.external.patentsview.config.PatentsViewProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuard;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
+/**
+ * Transport for every PatentsView call.
+ * <p>
+ * All callers share one HTTP/2 client whose work runs on a fixed-size executor. Responses
+ * are requested gzip-compressed and parsed with Jackson's streaming parser straight off
+ * the (decompressed) response stream, so a page of patents is never held as a String.
+ * Calls pass through the {@code patentsview} upstream guard; when it refuses one, an
+ * {@link com.teamb.globalipbackend1.external.resilience.UpstreamUnavailableException}
+ * is thrown without a request being sent.
+ */
 @Component
 @Slf4j
-public class PatentsViewHttpClient {
+public class PatentsViewHttpClient implements AutoCloseable {
+
+    private static final int ERROR_SNIPPET_BYTES = 2048;
+    private static final int LOGGED_BODY_CHARS = 4000;
+
+    /** Reads a response body off the parser. */
+    @FunctionalInterface
+    public interface ResponseReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
 
     private final String API_URL;
     private final String API_KEY;
 
-    private final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(120))
-            .build();
+    private final ObjectMapper objectMapper;
+    private final Duration requestTimeout;
+    private final double bodyLogSampleRate;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final UpstreamGuard guard;
 
-    public PatentsViewHttpClient(PatentsViewProperties patentsViewProperties) {
+    public PatentsViewHttpClient(PatentsViewProperties patentsViewProperties,
+                                 @Qualifier("jsonObjectMapper") ObjectMapper objectMapper,
+                                 UpstreamGuards upstreamGuards) {
         this.API_URL = patentsViewProperties.apiUrl();
         this.API_KEY = patentsViewProperties.apiKey();
+        this.objectMapper = objectMapper;
+        this.guard = upstreamGuards.guard(UpstreamGuards.PATENTSVIEW);
+
+        PatentsViewProperties.Transport transport = patentsViewProperties.transport();
+        this.requestTimeout = transport.requestTimeout();
+        this.bodyLogSampleRate = transport.bodyLogSampleRate();
+
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, transport.executorThreads()), r -> {
+            Thread t = new Thread(r, "patentsview-http-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(transport.connectTimeout())
+                .executor(executor)
+                .build();
         log.info("PatentsView API URL configured: {}", API_URL);
     }
 
+    /**
+     * POSTs the query to the default endpoint and binds the response to {@code type}.
+     */
+    @TrackApiUsage(service = "USPTO", action = "POST")
+    public <T> T post(String jsonBody, Class<T> type) {
+        return exchange(API_URL, jsonBody, parser -> objectMapper.readValue(parser, type));
+    }
+
+    @TrackApiUsage(service = "USPTO", action = "POST")
+    public <T> T post(String endpoint, String jsonBody, Class<T> type) {
+        return exchange(endpoint, jsonBody, parser -> objectMapper.readValue(parser, type));
+    }
+
+    /**
+     * POSTs the query to the default endpoint and returns the response as a tree.
+     */
+    @TrackApiUsage(service = "USPTO", action = "POST")
+    public JsonNode postForTree(String jsonBody) {
+        return exchange(API_URL, jsonBody, parser -> {
+            JsonNode tree = objectMapper.readTree(parser);
+            return tree != null ? tree : MissingNode.getInstance();
+        });
+    }
 
+    /**
+     * POSTs the query and hands the response parser to {@code reader}, for callers that
+     * walk the tokens themselves.
+     */
     @TrackApiUsage(service = "USPTO", action = "POST")
-    public String post(String endpoint, String jsonBody) {
+    public <T> T post(String endpoint, String jsonBody, ResponseReader<T> reader) {
+        return exchange(endpoint, jsonBody, reader);
+    }
+
+    private <T> T exchange(String endpoint, String jsonBody, ResponseReader<T> reader) {
+        boolean sampled = sampleBodies();
         try {
-            log.info("POST to: {}", endpoint);
-            log.info("Request body: {}", jsonBody);
+            log.debug("POST to: {}", endpoint);
+            if (sampled) log.debug("Request body: {}", jsonBody);
 
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create(endpoint))
                     .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
                     .header("Content-Type", "application/json")
+                    .header("Accept-Encoding", "gzip")
                     .header("X-Api-Key", API_KEY)
-                    .timeout(Duration.ofSeconds(120))
+                    .timeout(requestTimeout)
                     .build();
 
-            HttpResponse<String> response = httpClient.send(
-                    request,
-                    HttpResponse.BodyHandlers.ofString()
+            // the guard holds the call's slot until the body is closed
+            HttpResponse<InputStream> response = guard.stream(
+                    () -> httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream()),
+                    r -> r.statusCode() >= 500
             );
 
-            log.info("API response status: {}", response.statusCode());
+            try (InputStream raw = response.body(); InputStream body = decoded(response, raw)) {
+                if (response.statusCode() != 200) {
+                    String snippet = new String(body.readNBytes(ERROR_SNIPPET_BYTES), StandardCharsets.UTF_8);
+                    log.error("API error {} from {}: {}", response.statusCode(), endpoint, snippet);
+                    log.debug("Failed request body: {}", jsonBody);
+                    throw new RuntimeException("API error: " + response.statusCode() + " - " + snippet);
+                }
 
-            if (response.statusCode() != 200) {
-                log.error("API error response body: {}", response.body());
-                log.error("Failed request body: {}", jsonBody);
-                throw new RuntimeException("API error: " + response.statusCode() + " - " + response.body());
-            }
+                InputStream source = body;
+                if (sampled) {
+                    // only sampled calls pay for holding the whole body
+                    byte[] bytes = body.readAllBytes();
+                    log.debug("Response body ({} bytes): {}", bytes.length, truncate(bytes));
+                    source = new ByteArrayInputStream(bytes);
+                }
 
-            return response.body();
+                try (JsonParser parser = objectMapper.getFactory().createParser(source)) {
+                    return reader.read(parser);
+                }
+            }
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("HTTP call interrupted", e);
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
             log.error("HTTP call failed to {}", endpoint, e);
             throw new RuntimeException("HTTP call failed", e);
         }
     }
 
-    // Keep your existing post() method for backward compatibility
-    @TrackApiUsage(service = "USPTO", action = "POST")
-    public String post(String jsonBody) {
-        return post(API_URL, jsonBody);
+    private static InputStream decoded(HttpResponse<?> response, InputStream body) throws IOException {
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        return gzip ? new GZIPInputStream(body, 8192) : body;
+    }
+
+    private boolean sampleBodies() {
+        return bodyLogSampleRate > 0
+                && log.isDebugEnabled()
+                && ThreadLocalRandom.current().nextDouble() < bodyLogSampleRate;
+    }
+
+    private static String truncate(byte[] bytes) {
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        return text.length() <= LOGGED_BODY_CHARS ? text : text.substring(0, LOGGED_BODY_CHARS) + "...";
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+        executor.shutdownNow();
     }
 }
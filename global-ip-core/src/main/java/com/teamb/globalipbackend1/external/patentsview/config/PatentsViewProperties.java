@@ -3,9 +3,41 @@ package com.teamb.globalipbackend1.external.patentsview.config;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 
+import java.time.Duration;
+
+/**
+ * @param citationBaseUrl base of the us_patent_citation, us_application_citation and
+ *                        foreign_citation endpoints
+ */
 @ConfigurationProperties(prefix = "patentsview")
 public record PatentsViewProperties(
         @NotNull @NotBlank String apiUrl,
-        @NotNull @NotBlank String apiKey
-) {}
+        @NotNull @NotBlank String apiKey,
+        @DefaultValue("https://search.patentsview.org/api/v1/patent") String citationBaseUrl,
+        @DefaultValue Transport transport
+) {
+
+    /**
+     * The one HttpClient every PatentsView caller shares.
+     *
+     * @param executorThreads     threads the client uses to complete exchanges
+     * @param bodyLogSampleRate   fraction of calls whose request and response bodies are
+     *                            logged at debug level; 0 turns body logging off
+     * @param citationDeadline    how long getAllCitations waits for its concurrent sub-calls;
+     *                            sections still outstanding come back empty
+     */
+    public record Transport(
+            @DefaultValue("8") int executorThreads,
+            @DefaultValue("30s") Duration connectTimeout,
+            @DefaultValue("120s") Duration requestTimeout,
+            @DefaultValue("0.01") double bodyLogSampleRate,
+            @DefaultValue("15s") Duration citationDeadline
+    ) {
+
+        public static Transport defaults() {
+            return new Transport(8, Duration.ofSeconds(30), Duration.ofSeconds(120), 0.01, Duration.ofSeconds(15));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.teamb.globalipbackend1.external.patentsview.dto;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of a batched PatentsView detail lookup.
+ *
+ * @param details found details, keyed by the number as requested, in request order
+ * @param missing requested numbers PatentsView returned nothing for
+ * @param failed  requested numbers whose batch request failed, so nothing is known about them
+ */
+public record PatentDetailBatch(Map<String, PatentDetailDto> details, Set<String> missing, Set<String> failed) {
+
+    public boolean complete() {
+        return failed.isEmpty();
+    }
+}
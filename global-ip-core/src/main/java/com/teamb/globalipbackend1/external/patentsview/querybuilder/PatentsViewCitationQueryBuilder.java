@@ -1,10 +1,14 @@
 package com.teamb.globalipbackend1.external.patentsview.querybuilder;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.List;
+
 @Component
 @Slf4j
 public class PatentsViewCitationQueryBuilder {
@@ -146,10 +150,50 @@ public class PatentsViewCitationQueryBuilder {
         return queryJson;
     }
 
+    /**
+     * Build one query for the US patent citations of many patents: what they cite
+     * (matched on patent_id) or, when {@code forward}, who cites them (matched on
+     * citation_patent_id). IDs must already be normalized.
+     * <p>
+     * Rows are sorted by patent_id and citation_sequence, which together identify a row,
+     * so {@code after} (the values of the last row of the previous page) continues a walk.
+     */
+    public String buildUsPatentCitationsBatchQuery(Collection<String> patentIds,
+                                                   boolean forward,
+                                                   int pageSize,
+                                                   List<Object> after) {
+        ObjectNode root = mapper.createObjectNode();
+
+        // an array value matches any of its elements
+        ArrayNode ids = mapper.createArrayNode();
+        patentIds.forEach(ids::add);
+        root.putObject("q").set(forward ? "citation_patent_id" : "patent_id", ids);
+
+        root.putArray("f")
+                .add("patent_id")
+                .add("citation_patent_id")
+                .add("citation_sequence")
+                .add("citation_category")
+                .add("citation_date");
+
+        ObjectNode options = root.putObject("o").put("size", pageSize);
+        if (after != null && !after.isEmpty()) {
+            options.set("after", mapper.valueToTree(after));
+        }
+
+        root.putArray("s")
+                .add(mapper.createObjectNode().put("patent_id", "asc"))
+                .add(mapper.createObjectNode().put("citation_sequence", "asc"));
+
+        String queryJson = root.toString();
+        log.debug("Batched {} citations query JSON: {}", forward ? "forward" : "backward", queryJson);
+        return queryJson;
+    }
+
     /**
      * Normalize patent ID (remove US prefix, hyphens, spaces)
      */
-    private String normalizeToPatentId(String input) {
+    public String normalizeToPatentId(String input) {
         if (input == null || input.isBlank()) {
             throw new IllegalArgumentException("Patent number cannot be empty");
         }
@@ -8,11 +8,15 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Component
 public class PatentsViewQueryBuilder {
 
+    /** The most patents PatentsView returns for one request. */
+    public static final int MAX_IDS_PER_QUERY = 1000;
+
     private final ObjectMapper mapper = new ObjectMapper();
 
     /**
@@ -23,6 +27,22 @@ public class PatentsViewQueryBuilder {
             List<String> assigneeOrganizations,
             LocalDate fromDate,
             Integer pageSize
+    ) {
+        return buildCompetitorFilingQuery(assigneeOrganizations, fromDate, null, pageSize, null);
+    }
+
+    /**
+     * One page of competitor filings granted between fromDate and toDate (either may be null).
+     * Results are sorted by patent_date then patent_id, both descending, so the pair is a
+     * stable cursor: pass the values of the last patent of a page as {@code after} to get
+     * the next one.
+     */
+    public String buildCompetitorFilingQuery(
+            List<String> assigneeOrganizations,
+            LocalDate fromDate,
+            LocalDate toDate,
+            Integer pageSize,
+            List<String> after
     ) {
         if (assigneeOrganizations == null || assigneeOrganizations.isEmpty()) {
             throw new IllegalArgumentException("At least one assignee organization is required");
@@ -68,6 +88,14 @@ public class PatentsViewQueryBuilder {
             andArray.add(gteNode);
         }
 
+        if (toDate != null) {
+            ObjectNode lteNode = mapper.createObjectNode();
+            ObjectNode dateField = mapper.createObjectNode();
+            dateField.put("patent_date", toDate.toString());
+            lteNode.set("_lte", dateField);
+            andArray.add(lteNode);
+        }
+
         queryRoot.set("_and", andArray);
         root.set("q", queryRoot);
 
@@ -93,13 +121,14 @@ public class PatentsViewQueryBuilder {
 
         ObjectNode options = root.putObject("o");
         options.put("size", pageSize != null ? pageSize : 100);
-        options.put("page", 1);
-
+        if (after != null && !after.isEmpty()) {
+            ArrayNode cursor = options.putArray("after");
+            after.forEach(cursor::add);
+        }
 
         ArrayNode sort = root.putArray("s");
-        ObjectNode sortNode = mapper.createObjectNode();
-        sortNode.put("patent_date", "desc");
-        sort.add(sortNode);
+        sort.add(mapper.createObjectNode().put("patent_date", "desc"));
+        sort.add(mapper.createObjectNode().put("patent_id", "desc"));
 
         return root.toString();
     }
@@ -151,6 +180,50 @@ public class PatentsViewQueryBuilder {
         return root.toString();
     }
 
+    /**
+     * Build one query for several patents by ID. IDs must already be normalized
+     * (see {@link #normalizeToPatentId}); at most {@link #MAX_IDS_PER_QUERY} per query.
+     */
+    public String buildPatentsByIdsQuery(Collection<String> patentIds) {
+        if (patentIds == null || patentIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one patent ID is required");
+        }
+        if (patentIds.size() > MAX_IDS_PER_QUERY) {
+            throw new IllegalArgumentException(
+                    "At most " + MAX_IDS_PER_QUERY + " patent IDs per query, got " + patentIds.size());
+        }
+
+        ObjectNode root = mapper.createObjectNode();
+
+        // an array value matches any of its elements
+        ArrayNode ids = mapper.createArrayNode();
+        patentIds.forEach(ids::add);
+        root.putObject("q").set("patent_id", ids);
+
+        ArrayNode fields = root.putArray("f");
+        fields.add("patent_id");
+        fields.add("patent_title");
+        fields.add("patent_abstract");
+        fields.add("patent_date");
+        fields.add("patent_earliest_application_date");
+        fields.add("assignees.assignee_organization");
+        fields.add("assignees.assignee_country");
+        fields.add("inventors.inventor_name_first");
+        fields.add("inventors.inventor_name_last");
+        fields.add("cpc_current.cpc_class");
+        fields.add("cpc_current.cpc_subclass");
+        fields.add("cpc_current.cpc_group");
+        fields.add("ipcr.ipc_class");
+        fields.add("wipo_kind");
+        fields.add("patent_num_times_cited_by_us_patents");
+        fields.add("patent_num_total_documents_cited");
+
+        ObjectNode options = root.putObject("o");
+        options.put("size", patentIds.size());
+
+        return root.toString();
+    }
+
     /**
      * Original advanced search query
      */
@@ -252,7 +325,12 @@ public class PatentsViewQueryBuilder {
         return root.toString();
     }
 
-    private String normalizeToPatentId(String input) {
+    /**
+     * PatentsView patent_id for a publication number: "US10123456B2" becomes "10123456B2".
+     *
+     * @throws IllegalArgumentException if the number is not a US patent number
+     */
+    public String normalizeToPatentId(String input) {
         String n = input.trim().toUpperCase();
 
         if (n.startsWith("US")) {
@@ -0,0 +1,49 @@
+package com.teamb.globalipbackend1.external.resilience;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Bulkhead and circuit breaker settings per upstream, keyed by the names in
+ * {@link UpstreamGuards}. Upstreams without an entry use {@link Upstream#defaults()}.
+ */
+@ConfigurationProperties(prefix = "resilience")
+public record ResilienceProperties(
+        @DefaultValue Map<String, Upstream> upstreams
+) {
+
+    public Upstream forUpstream(String name) {
+        return upstreams != null && upstreams.containsKey(name) ? upstreams.get(name) : Upstream.defaults();
+    }
+
+    /**
+     * @param maxConcurrentCalls   calls in flight at once
+     * @param maxWait              how long a call waits for a free slot before it is refused
+     * @param slidingWindowSize    calls the failure rate is computed over
+     * @param minimumCalls         calls recorded before the failure rate can open the circuit
+     * @param failureRateThreshold failure percentage that opens the circuit
+     * @param openDuration         how long an open circuit refuses calls before trial calls
+     * @param halfOpenCalls        trial calls that must all succeed to close the circuit
+     * @param bodyReadTimeout      how long a streamed response body may stay open after its
+     *                             headers arrived before it is cut off
+     */
+    public record Upstream(
+            @DefaultValue("16") int maxConcurrentCalls,
+            @DefaultValue("250ms") Duration maxWait,
+            @DefaultValue("20") int slidingWindowSize,
+            @DefaultValue("10") int minimumCalls,
+            @DefaultValue("50") float failureRateThreshold,
+            @DefaultValue("30s") Duration openDuration,
+            @DefaultValue("3") int halfOpenCalls,
+            @DefaultValue("60s") Duration bodyReadTimeout
+    ) {
+
+        public static Upstream defaults() {
+            return new Upstream(16, Duration.ofMillis(250), 20, 10, 50f, Duration.ofSeconds(30), 3,
+                    Duration.ofSeconds(60));
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.teamb.globalipbackend1.external.resilience;
+
+import com.teamb.globalipbackend1.util.resilience.Bulkhead;
+import com.teamb.globalipbackend1.util.resilience.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import lombok.Getter;
+
+import javax.net.ssl.SSLSession;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * The bulkhead and circuit breaker in front of one upstream.
+ * <p>
+ * A call is refused straight away while the circuit is open, and after the bulkhead's
+ * {@code maxWait} when every slot is taken; either way an
+ * {@link UpstreamUnavailableException} is thrown without touching the network. Calls
+ * that throw, or whose result the caller classifies as failed (typically a 5xx), count
+ * against the circuit.
+ * <p>
+ * A response whose body is streamed ({@link #stream}) keeps its slot until the body is
+ * closed, and is only then recorded, since most of the exchange happens after the
+ * headers. A body left open longer than {@code bodyReadTimeout} is cut off.
+ */
+public final class UpstreamGuard {
+
+    private static final ScheduledExecutorService READ_DEADLINES = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "upstream-read-deadline");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @FunctionalInterface
+    public interface UpstreamCall<T> {
+        T call() throws Exception;
+    }
+
+    @Getter
+    private final String name;
+    @Getter
+    private final Bulkhead bulkhead;
+    @Getter
+    private final CircuitBreaker circuitBreaker;
+    private final Duration bodyReadTimeout;
+    private final Counter circuitOpenRejections;
+    private final Counter bulkheadFullRejections;
+
+    UpstreamGuard(String name,
+                  Bulkhead bulkhead,
+                  CircuitBreaker circuitBreaker,
+                  Duration bodyReadTimeout,
+                  Counter circuitOpenRejections,
+                  Counter bulkheadFullRejections) {
+        this.name = name;
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+        this.bodyReadTimeout = bodyReadTimeout;
+        this.circuitOpenRejections = circuitOpenRejections;
+        this.bulkheadFullRejections = bulkheadFullRejections;
+    }
+
+    public <T> T call(UpstreamCall<T> call) throws Exception {
+        return call(call, result -> false);
+    }
+
+    public <T> T call(UpstreamCall<T> call, Predicate<? super T> failed) throws Exception {
+        acquire();
+        try {
+            T result = call.call();
+            if (failed.test(result)) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            return result;
+        } catch (Exception | Error e) {
+            circuitBreaker.onFailure();
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Guards an exchange whose body is read after it returns. The slot is held until the
+     * returned response's body is closed; the call counts as failed if {@code failed}
+     * classifies the response so, reading the body fails, or the body is still open
+     * {@code bodyReadTimeout} after the headers arrived, in which case it is closed and
+     * further reads throw an {@link HttpTimeoutException}.
+     */
+    public HttpResponse<InputStream> stream(UpstreamCall<HttpResponse<InputStream>> call,
+                                            Predicate<? super HttpResponse<InputStream>> failed) throws Exception {
+        return stream(call, failed, () -> {
+        });
+    }
+
+    /**
+     * As {@link #stream(UpstreamCall, Predicate)}, and runs {@code onRelease} exactly once
+     * when the slot is given back, or straight away if the call is refused or throws; lets
+     * a caller tie its own permits to the lifetime of the body.
+     */
+    public HttpResponse<InputStream> stream(UpstreamCall<HttpResponse<InputStream>> call,
+                                            Predicate<? super HttpResponse<InputStream>> failed,
+                                            Runnable onRelease) throws Exception {
+        try {
+            acquire();
+        } catch (Exception | Error e) {
+            onRelease.run();
+            throw e;
+        }
+        HttpResponse<InputStream> response;
+        try {
+            response = call.call();
+        } catch (Exception | Error e) {
+            circuitBreaker.onFailure();
+            bulkhead.release();
+            onRelease.run();
+            throw e;
+        }
+        return new GuardedResponse(response, new GuardedBody(response.body(), failed.test(response), onRelease));
+    }
+
+    /**
+     * Guards a call that completes asynchronously; the slot is held until the future
+     * completes. A refused call comes back as a failed future.
+     */
+    public <T> CompletableFuture<T> callAsync(Supplier<CompletableFuture<T>> call, Predicate<? super T> failed) {
+        try {
+            acquire();
+        } catch (UpstreamUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            circuitBreaker.onFailure();
+            bulkhead.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, error) -> {
+            if (error != null || failed.test(result)) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            bulkhead.release();
+        });
+    }
+
+    private void acquire() throws InterruptedException {
+        if (!circuitBreaker.tryAcquire()) {
+            circuitOpenRejections.increment();
+            throw new UpstreamUnavailableException(name, UpstreamUnavailableException.Reason.CIRCUIT_OPEN);
+        }
+        boolean acquired = false;
+        try {
+            acquired = bulkhead.tryAcquire();
+        } finally {
+            if (!acquired) circuitBreaker.release();
+        }
+        if (!acquired) {
+            bulkheadFullRejections.increment();
+            throw new UpstreamUnavailableException(name, UpstreamUnavailableException.Reason.BULKHEAD_FULL);
+        }
+    }
+
+    /**
+     * Response body that gives the slot back, and records the outcome, once closed or
+     * once the read deadline cuts it off, whichever comes first.
+     */
+    private final class GuardedBody extends FilterInputStream {
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+        // null until scheduled; a deadline shorter than the scheduling can expire first
+        private volatile ScheduledFuture<?> deadline;
+        private volatile boolean failed;
+        private volatile boolean timedOut;
+        private final Runnable onRelease;
+
+        GuardedBody(InputStream in, boolean failed, Runnable onRelease) {
+            super(in);
+            this.failed = failed;
+            this.onRelease = onRelease;
+            this.deadline = READ_DEADLINES.schedule(this::expire, bodyReadTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                throw readFailed(e);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                throw readFailed(e);
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            try {
+                return super.skip(n);
+            } catch (IOException e) {
+                throw readFailed(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                finish();
+            }
+        }
+
+        private IOException readFailed(IOException e) {
+            failed = true;
+            if (timedOut) {
+                HttpTimeoutException timeout = new HttpTimeoutException(
+                        name + " response body not read within " + bodyReadTimeout);
+                timeout.initCause(e);
+                return timeout;
+            }
+            return e;
+        }
+
+        private void expire() {
+            if (finished.get()) return;
+            timedOut = true;
+            failed = true;
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // the reader sees the failure on its next read
+            }
+            finish();
+        }
+
+        private void finish() {
+            if (!finished.compareAndSet(false, true)) return;
+            ScheduledFuture<?> pending = deadline;
+            if (pending != null) pending.cancel(false);
+            if (failed) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            bulkhead.release();
+            onRelease.run();
+        }
+    }
+
+    private record GuardedResponse(HttpResponse<InputStream> response, InputStream body)
+            implements HttpResponse<InputStream> {
+
+        @Override
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return response.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<InputStream>> previousResponse() {
+            return response.previousResponse();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return response.headers();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return response.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return response.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return response.version();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.teamb.globalipbackend1.external.resilience;
+
+import com.teamb.globalipbackend1.util.resilience.Bulkhead;
+import com.teamb.globalipbackend1.util.resilience.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link UpstreamGuard} per external service, created on first use, so a slow or
+ * failing upstream can only exhaust its own slots.
+ * <p>
+ * Each guard publishes, tagged with {@code upstream}:
+ * {@code upstream.bulkhead.available} and {@code upstream.bulkhead.active} (slots),
+ * {@code upstream.circuit.state} (0 closed, 1 open, 2 half-open),
+ * {@code upstream.circuit.failure.rate} (percent over the window) and
+ * {@code upstream.calls.rejected}, additionally tagged with the {@code reason}.
+ */
+@Component
+@Slf4j
+public class UpstreamGuards {
+
+    public static final String PATENTSVIEW = "patentsview";
+    public static final String EPO = "epo";
+    public static final String TRADEMARK = "trademark";
+    public static final String TRENDS = "trends";
+
+    private final ResilienceProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, UpstreamGuard> guards = new ConcurrentHashMap<>();
+
+    public UpstreamGuards(ResilienceProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public UpstreamGuard guard(String upstream) {
+        return guards.computeIfAbsent(upstream, this::create);
+    }
+
+    private UpstreamGuard create(String upstream) {
+        ResilienceProperties.Upstream settings = properties.forUpstream(upstream);
+
+        Bulkhead bulkhead = new Bulkhead(settings.maxConcurrentCalls(), settings.maxWait());
+        CircuitBreaker circuitBreaker = new CircuitBreaker(
+                settings.slidingWindowSize(),
+                settings.minimumCalls(),
+                settings.failureRateThreshold(),
+                settings.openDuration(),
+                settings.halfOpenCalls()
+        );
+
+        Gauge.builder("upstream.bulkhead.available", bulkhead, Bulkhead::availableSlots)
+                .description("Free call slots")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+        Gauge.builder("upstream.bulkhead.active", bulkhead, Bulkhead::activeCalls)
+                .description("Calls in flight")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+        Gauge.builder("upstream.circuit.state", circuitBreaker, cb -> cb.state().ordinal())
+                .description("Circuit state: 0 closed, 1 open, 2 half-open")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+        Gauge.builder("upstream.circuit.failure.rate", circuitBreaker, CircuitBreaker::failureRate)
+                .description("Failure percentage over the sliding window")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+
+        log.info("Guarding upstream {} with {} slots (max wait {}), circuit opens at {}% of {} calls",
+                upstream, settings.maxConcurrentCalls(), settings.maxWait(),
+                settings.failureRateThreshold(), settings.slidingWindowSize());
+
+        return new UpstreamGuard(upstream, bulkhead, circuitBreaker, settings.bodyReadTimeout(),
+                rejected(upstream, UpstreamUnavailableException.Reason.CIRCUIT_OPEN),
+                rejected(upstream, UpstreamUnavailableException.Reason.BULKHEAD_FULL));
+    }
+
+    private Counter rejected(String upstream, UpstreamUnavailableException.Reason reason) {
+        return Counter.builder("upstream.calls.rejected")
+                .description("Calls refused without reaching the upstream")
+                .tag("upstream", upstream)
+                .tag("reason", reason.name().toLowerCase())
+                .register(meterRegistry);
+    }
+}
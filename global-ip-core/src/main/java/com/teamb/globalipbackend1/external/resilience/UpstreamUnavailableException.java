@@ -0,0 +1,25 @@
+package com.teamb.globalipbackend1.external.resilience;
+
+import lombok.Getter;
+
+/**
+ * Thrown instead of calling an upstream that is refusing calls (circuit open) or is
+ * already at its concurrency limit (bulkhead full). Nothing was sent; callers answer
+ * with their fallback.
+ */
+@Getter
+public class UpstreamUnavailableException extends RuntimeException {
+
+    public enum Reason {
+        CIRCUIT_OPEN, BULKHEAD_FULL
+    }
+
+    private final String upstream;
+    private final Reason reason;
+
+    public UpstreamUnavailableException(String upstream, Reason reason) {
+        super(upstream + " unavailable: " + reason, null, false, false);
+        this.upstream = upstream;
+        this.reason = reason;
+    }
+}
@@ -3,8 +3,11 @@ package com.teamb.globalipbackend1.external.trendsApi.client;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.teamb.globalipbackend1.admin.audit.TrackApiUsage;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.external.resilience.UpstreamUnavailableException;
 import com.teamb.globalipbackend1.external.trendsApi.config.PatentAnalyticsServiceConfig;
 import com.teamb.globalipbackend1.external.trendsApi.dto.response.epo.*;
+import com.teamb.globalipbackend1.util.concurrent.SingleFlight;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -23,6 +26,9 @@ public class EpoTrendClientImpl implements EpoTrendClient {
 
     private final HttpClient httpClient;
     private final PatentAnalyticsServiceConfig config;
+    private final UpstreamGuards upstreamGuards;
+    // concurrent requests for one path share a single call
+    private final SingleFlight<String, Object> inFlight = new SingleFlight<>();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
@@ -57,7 +63,12 @@ public class EpoTrendClientImpl implements EpoTrendClient {
 
     // ========== PRIVATE HELPER METHOD (No annotation needed) ==========
 
+    @SuppressWarnings("unchecked")
     private <T> T get(String path, TypeReference<T> typeRef) {
+        return (T) inFlight.execute(path, () -> fetch(path, typeRef));
+    }
+
+    private <T> T fetch(String path, TypeReference<T> typeRef) {
         try {
             URI uri = URI.create(config.getBaseUrl() + "/api" + path);
 
@@ -69,8 +80,10 @@ public class EpoTrendClientImpl implements EpoTrendClient {
                     .build();
 
 
-            HttpResponse<String> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = upstreamGuards.guard(UpstreamGuards.TRENDS).call(
+                    () -> httpClient.send(request, HttpResponse.BodyHandlers.ofString()),
+                    r -> r.statusCode() >= 500
+            );
 
             if (response.statusCode() >= 200 && response.statusCode() < 300) {
                 return objectMapper.readValue(response.body(), typeRef);
@@ -78,6 +91,9 @@ public class EpoTrendClientImpl implements EpoTrendClient {
 
             throw new RuntimeException("EPO Trend API failed: " + response.body());
 
+        } catch (UpstreamUnavailableException e) {
+            log.warn("EPO trend API skipped path={}: {}", path, e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("EPO trend API failed path={}", path, e);
             throw new RuntimeException(e);
@@ -4,9 +4,12 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.teamb.globalipbackend1.admin.audit.TrackApiUsage;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.external.resilience.UpstreamUnavailableException;
 import com.teamb.globalipbackend1.external.trendsApi.config.PatentAnalyticsServiceConfig;
 import com.teamb.globalipbackend1.external.trendsApi.dto.response.patentsview.*;
 import com.teamb.globalipbackend1.external.trendsApi.exception.PatentServiceException;
+import com.teamb.globalipbackend1.util.concurrent.SingleFlight;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -31,6 +34,9 @@ public class PatentsViewPatentTrendClientImpl implements PatentTrendClient {
 
     private final HttpClient httpClient;
     private final PatentAnalyticsServiceConfig config;
+    private final UpstreamGuards upstreamGuards;
+    // concurrent GETs of one path share a single call, retries included
+    private final SingleFlight<String, Object> inFlight = new SingleFlight<>();
     private final ObjectMapper objectMapper = new ObjectMapper()
             .registerModule(new JavaTimeModule());
 
@@ -166,7 +172,12 @@ public class PatentsViewPatentTrendClientImpl implements PatentTrendClient {
         );
     }
 
+    @SuppressWarnings("unchecked")
     private <T> T get(String path, TypeReference<T> typeRef) {
+        return (T) inFlight.execute(path, () -> fetch(path, typeRef));
+    }
+
+    private <T> T fetch(String path, TypeReference<T> typeRef) {
         return withRetry(() -> {
             try {
                 URI uri = buildUri(path);
@@ -175,11 +186,10 @@ public class PatentsViewPatentTrendClientImpl implements PatentTrendClient {
                         .GET()
                         .build();
 
-                HttpResponse<String> response =
-                        httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                return handleResponse(response, typeRef);
+                return handleResponse(send(request), typeRef);
 
+            } catch (UpstreamUnavailableException e) {
+                throw e;
             } catch (Exception e) {
                 throw new RuntimeException(new PatentServiceException("GET failed for " + path, e));
             }
@@ -197,32 +207,48 @@ public class PatentsViewPatentTrendClientImpl implements PatentTrendClient {
                         .POST(HttpRequest.BodyPublishers.ofString(json))
                         .build();
 
-                HttpResponse<String> response =
-                        httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                return handleResponse(response, typeRef);
+                return handleResponse(send(request), typeRef);
 
+            } catch (UpstreamUnavailableException e) {
+                throw e;
             } catch (Exception e) {
                 throw new RuntimeException(new PatentServiceException("POST failed for " + path, e));
             }
         });
     }
 
+    @SuppressWarnings("unchecked")
     private <T> CompletableFuture<T> getAsync(String path, TypeReference<T> typeRef) {
+        return (CompletableFuture<T>) inFlight.executeAsync(path,
+                () -> fetchAsync(path, typeRef).thenApply(Object.class::cast));
+    }
+
+    private <T> CompletableFuture<T> fetchAsync(String path, TypeReference<T> typeRef) {
         URI uri = buildUri(path);
 
         HttpRequest request = baseRequest(uri)
                 .GET()
                 .build();
 
-        return httpClient
-                .sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .orTimeout(config.getTimeout(), TimeUnit.SECONDS)
+        return upstreamGuards.guard(UpstreamGuards.TRENDS)
+                .callAsync(
+                        () -> httpClient
+                                .sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                                .orTimeout(config.getTimeout(), TimeUnit.SECONDS),
+                        response -> response.statusCode() >= 500
+                )
                 .thenApply(response -> handleResponse(response, typeRef));
     }
 
     /* ===================== SHARED HELPERS ===================== */
 
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return upstreamGuards.guard(UpstreamGuards.TRENDS).call(
+                () -> httpClient.send(request, HttpResponse.BodyHandlers.ofString()),
+                response -> response.statusCode() >= 500
+        );
+    }
+
     private HttpRequest.Builder baseRequest(URI uri) {
         return HttpRequest.newBuilder()
                 .uri(uri)
@@ -255,6 +281,9 @@ public class PatentsViewPatentTrendClientImpl implements PatentTrendClient {
         while (true) {
             try {
                 return supplier.get();
+            } catch (UpstreamUnavailableException ex) {
+                // refused without a call; retrying would only wait out the bulkhead again
+                throw ex;
             } catch (Exception ex) {
                 attempts++;
                 if (attempts >= config.getMaxRetries()) {
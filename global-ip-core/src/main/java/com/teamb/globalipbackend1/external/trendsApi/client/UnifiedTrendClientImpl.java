@@ -4,9 +4,12 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.teamb.globalipbackend1.admin.audit.TrackApiUsage;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.external.resilience.UpstreamUnavailableException;
 import com.teamb.globalipbackend1.external.trendsApi.config.PatentAnalyticsServiceConfig;
 import com.teamb.globalipbackend1.external.trendsApi.dto.response.unified.UnifiedCountryTrendDto;
 import com.teamb.globalipbackend1.external.trendsApi.dto.response.unified.UnifiedYearTrendDto;
+import com.teamb.globalipbackend1.util.concurrent.SingleFlight;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -25,6 +28,9 @@ public class UnifiedTrendClientImpl implements UnifiedTrendClient {
 
     private final HttpClient httpClient;
     private final PatentAnalyticsServiceConfig config;
+    private final UpstreamGuards upstreamGuards;
+    // concurrent requests for one path share a single call
+    private final SingleFlight<String, Object> inFlight = new SingleFlight<>();
     private final ObjectMapper objectMapper = new ObjectMapper()
             .registerModule(new JavaTimeModule());
 
@@ -42,7 +48,12 @@ public class UnifiedTrendClientImpl implements UnifiedTrendClient {
 
 
 
+    @SuppressWarnings("unchecked")
     private <T> T get(String path, TypeReference<T> typeRef) {
+        return (T) inFlight.execute(path, () -> fetch(path, typeRef));
+    }
+
+    private <T> T fetch(String path, TypeReference<T> typeRef) {
         try {
             URI uri = URI.create(config.getBaseUrl() + "/api" + path);
 
@@ -54,8 +65,10 @@ public class UnifiedTrendClientImpl implements UnifiedTrendClient {
                     .build();
 
 
-            HttpResponse<String> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = upstreamGuards.guard(UpstreamGuards.TRENDS).call(
+                    () -> httpClient.send(request, HttpResponse.BodyHandlers.ofString()),
+                    r -> r.statusCode() >= 500
+            );
 
             if (response.statusCode() >= 200 && response.statusCode() < 300) {
                 return objectMapper.readValue(response.body(), typeRef);
@@ -63,6 +76,9 @@ public class UnifiedTrendClientImpl implements UnifiedTrendClient {
 
             throw new RuntimeException("UnifiedTrendClient failed: " + response.body());
 
+        } catch (UpstreamUnavailableException e) {
+            log.warn("Unified trend API skipped path={}: {}", path, e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Unified trend API failed path={}", path, e);
             throw new RuntimeException(e);
@@ -6,7 +6,11 @@ import com.teamb.globalipbackend1.admin.audit.TrackApiUsage;
 import com.teamb.globalipbackend1.cache.CacheNames;
 import com.teamb.globalipbackend1.dto.trademark.trend.CodeDistributionDto;
 import com.teamb.globalipbackend1.dto.trademark.trend.SimpleCountDto;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuard;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.external.resilience.UpstreamUnavailableException;
 import com.teamb.globalipbackend1.external.usptotm.config.TrademarkServiceConfig;
+import com.teamb.globalipbackend1.util.concurrent.SingleFlight;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -27,13 +31,18 @@ public class TrademarkTrendClient {
     private  final TrademarkServiceConfig config;
     private final HttpClient httpClient = HttpClient.newHttpClient();
     private final ObjectMapper objectMapper;
+    private final UpstreamGuard guard;
+    // concurrent requests for one path share a single call
+    private final SingleFlight<String, Object> inFlight = new SingleFlight<>();
 
 
     public TrademarkTrendClient(
-            TrademarkServiceConfig config, @Qualifier("jsonObjectMapper") ObjectMapper objectMapper
+            TrademarkServiceConfig config, @Qualifier("jsonObjectMapper") ObjectMapper objectMapper,
+            UpstreamGuards upstreamGuards
     ) {
         this.config = config;
         this.objectMapper = objectMapper;
+        this.guard = upstreamGuards.guard(UpstreamGuards.TRADEMARK);
     }
 
 
@@ -75,18 +84,26 @@ public class TrademarkTrendClient {
                 new TypeReference<>() {});
     }
 
+    @SuppressWarnings("unchecked")
     private <T> T get(String path, TypeReference<T> type) {
+        return (T) inFlight.execute(path, () -> fetch(path, type));
+    }
+
+    private <T> T fetch(String path, TypeReference<T> type) {
         try {
             URI uri = URI.create(config.getBaseUrl() + path);
 
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(uri)
                     .header("X-SERVICE-KEY", config.getServiceApiKey())
+                    .timeout(config.getTimeout())
                     .GET()
                     .build();
 
-            HttpResponse<String> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = guard.call(
+                    () -> httpClient.send(request, HttpResponse.BodyHandlers.ofString()),
+                    r -> r.statusCode() >= 500
+            );
 
             if (response.statusCode() != 200) {
                 throw new RuntimeException("Trademark trend fetch failed: " + path);
@@ -94,6 +111,9 @@ public class TrademarkTrendClient {
 
             return objectMapper.readValue(response.body(), type);
 
+        } catch (UpstreamUnavailableException e) {
+            log.warn("Trademark trend {} skipped: {}", path, e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Trademark trend API error {}", path, e);
             throw new RuntimeException(e);
@@ -8,7 +8,11 @@ import com.teamb.globalipbackend1.dto.search.PageResponse;
 import com.teamb.globalipbackend1.dto.search.TrademarkResultDto;
 import com.teamb.globalipbackend1.dto.search.TrademarkSearchFilter;
 import com.teamb.globalipbackend1.dto.trademark.GlobalTrademarkDetailDto;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuard;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.external.resilience.UpstreamUnavailableException;
 import com.teamb.globalipbackend1.external.usptotm.config.TrademarkServiceConfig;
+import com.teamb.globalipbackend1.util.concurrent.SingleFlight;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -30,13 +34,18 @@ public class UsptoTmClient {
     private final TrademarkServiceConfig config;
     @Qualifier("jsonObjectMapper")
     private final ObjectMapper objectMapper;
+    private final UpstreamGuard guard;
+    private final SingleFlight<String, GlobalTrademarkDetailDto> detailFlights = new SingleFlight<>();
 
     @Value("${services.trademark.base-url}")
     private String trademarkBaseUrl;
 
-    public UsptoTmClient(TrademarkServiceConfig config, @Qualifier("jsonObjectMapper") ObjectMapper objectMapper) {
+    public UsptoTmClient(TrademarkServiceConfig config,
+                         @Qualifier("jsonObjectMapper") ObjectMapper objectMapper,
+                         UpstreamGuards upstreamGuards) {
         this.config = config;
         this.objectMapper = objectMapper;
+        this.guard = upstreamGuards.guard(UpstreamGuards.TRADEMARK);
     }
 
     @TrackApiUsage(
@@ -70,12 +79,15 @@ public class UsptoTmClient {
                     .uri(uri)
                     .header("Content-Type", "application/json")
                     .header("X-SERVICE-KEY", config.getServiceApiKey())
+                    .timeout(config.getTimeout())
                     .POST(HttpRequest.BodyPublishers.ofString(
                             objectMapper.writeValueAsString(filter)
                     ))
                     .build();
-            HttpResponse<String> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = guard.call(
+                    () -> httpClient.send(request, HttpResponse.BodyHandlers.ofString()),
+                    r -> r.statusCode() >= 500
+            );
 
             if (response.statusCode() != 200) {
                 log.warn("Trademark service returned {}", response.statusCode());
@@ -87,6 +99,9 @@ public class UsptoTmClient {
                     new TypeReference<PageResponse<TrademarkResultDto>>() {}
             );
 
+        } catch (UpstreamUnavailableException e) {
+            log.warn("Trademark search skipped: {}", e.getMessage());
+            return emptyPage(page, size);
         } catch (Exception e) {
             log.error("Trademark searchByKeyword failed", e);
             return emptyPage(page, size);
@@ -99,6 +114,11 @@ public class UsptoTmClient {
     )
 
     public GlobalTrademarkDetailDto fetchTrademarkDetail(String trademarkId) {
+        // concurrent requests for one trademark share a single call
+        return detailFlights.execute(trademarkId, () -> loadTrademarkDetail(trademarkId));
+    }
+
+    private GlobalTrademarkDetailDto loadTrademarkDetail(String trademarkId) {
         try {
             URI uri = URI.create(
                     trademarkBaseUrl + "/api/trademarks/" + trademarkId
@@ -107,11 +127,14 @@ public class UsptoTmClient {
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(uri)
                     .header("X-SERVICE-KEY", config.getServiceApiKey())
+                    .timeout(config.getTimeout())
                     .GET()
                     .build();
 
-            HttpResponse<String> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = guard.call(
+                    () -> httpClient.send(request, HttpResponse.BodyHandlers.ofString()),
+                    r -> r.statusCode() >= 500
+            );
 
             if (response.statusCode() != 200) {
                 log.warn("Trademark detail fetch failed: {}", response.statusCode());
@@ -123,6 +146,9 @@ public class UsptoTmClient {
                     GlobalTrademarkDetailDto.class
             );
 
+        } catch (UpstreamUnavailableException e) {
+            log.warn("Trademark detail {} skipped: {}", trademarkId, e.getMessage());
+            return null;
         } catch (Exception e) {
             log.error("Failed to fetch trademark detail {}", trademarkId, e);
             return null;
@@ -4,10 +4,15 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 @ConfigurationProperties(prefix = "services.trademark")
 @Data
 public class TrademarkServiceConfig {
     private String baseUrl;
     private String serviceApiKey;
+
+    /** Longest a trademark service call may take; a hung call otherwise holds its slot forever. */
+    private Duration timeout = Duration.ofSeconds(30);
 }
\ No newline at end of file
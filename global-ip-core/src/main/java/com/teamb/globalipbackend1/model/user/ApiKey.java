@@ -7,7 +7,10 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "api_keys")
+@Table(
+        name = "api_keys",
+        indexes = @Index(name = "idx_api_keys_key_prefix", columnList = "key_prefix")
+)
 @Getter
 @Setter
 public class ApiKey {
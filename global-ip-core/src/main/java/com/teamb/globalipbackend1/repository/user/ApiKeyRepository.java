@@ -1,11 +1,16 @@
 package com.teamb.globalipbackend1.repository.user;
 
 import com.teamb.globalipbackend1.model.user.ApiKey;
+import com.teamb.globalipbackend1.model.user.ApiKeyStatus;
 import lombok.NonNull;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,5 +20,11 @@ public interface ApiKeyRepository extends JpaRepository<@NonNull ApiKey, @NonNul
 
     Optional<ApiKey> findByIdAndUserId(Long id, String userId);
 
+    List<ApiKey> findByKeyPrefixAndStatus(String keyPrefix, ApiKeyStatus status);
+
     Page<@NonNull ApiKey> findAll(Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE ApiKey k SET k.lastUsedAt = :usedAt WHERE k.id = :id")
+    void updateLastUsedAt(@Param("id") Long id, @Param("usedAt") LocalDateTime usedAt);
 }
@@ -2,6 +2,9 @@ package com.teamb.globalipbackend1.scheduler;
 
 import com.teamb.globalipbackend1.dto.epo.EpoPatentDetailDto;
 import com.teamb.globalipbackend1.dto.lifecycle.ApplicationLifecycleDto;
+import com.teamb.globalipbackend1.external.epo.EpoPriority;
+import com.teamb.globalipbackend1.external.epo.EpoThrottle;
+import com.teamb.globalipbackend1.external.patentsview.dto.PatentDetailBatch;
 import com.teamb.globalipbackend1.external.patentsview.dto.PatentDetailDto;
 import com.teamb.globalipbackend1.model.subscription.MonitoringSubscription;
 import com.teamb.globalipbackend1.model.subscription.MonitoringType;
@@ -25,6 +28,7 @@ import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -43,6 +47,7 @@ public class UnifiedPatentTrackingScheduler {
     private final PatentTrackingNotificationService notificationService;
     private final PatentSourceDetector sourceDetector;
     private final MonitoringSubscriptionRepository subscriptionRepository;
+    private final EpoThrottle epoThrottle;
 
     /**
      * Check for patent updates every hour
@@ -106,17 +111,22 @@ public class UnifiedPatentTrackingScheduler {
             log.info("Found {} US patents and {} EPO patents to check",
                     usPatents.size(), epoPatents.size());
 
-            // Check US patents (can be checked more frequently)
+            // Check US patents: details for all of them in a few batched PatentsView requests
+            PatentDetailBatch usDetails = usPatents.isEmpty()
+                    ? new PatentDetailBatch(Map.of(), Set.of(), Set.of())
+                    : patentsViewDetailsService.fetchPatentDetails(usPatents.keySet());
+            if (!usDetails.complete()) {
+                log.warn("PatentsView batch failed for {} US patents, checking them on the next run",
+                        usDetails.failed().size());
+            }
             for (Map.Entry<String, List<UserTrackingPreferences>> entry : usPatents.entrySet()) {
-                checkUsPatent(entry.getKey(), entry.getValue());
-                Thread.sleep(500); // 0.5 second delay for US patents
+                if (usDetails.failed().contains(entry.getKey())) continue;
+                checkUsPatent(entry.getKey(), entry.getValue(), usDetails.details().get(entry.getKey()));
             }
 
-            // Check EPO patents (need more respect for rate limits)
-            for (Map.Entry<String, List<UserTrackingPreferences>> entry : epoPatents.entrySet()) {
-                checkEpoPatent(entry.getKey(), entry.getValue());
-                Thread.sleep(2000); // 2 second delay for EPO patents
-            }
+            // Check EPO patents at tracking priority: the OPS quota governor paces them and
+            // stops the run when the quota is needed for interactive searches
+            EpoPriority.TRACKING.run(() -> checkEpoPatents(epoPatents));
 
             log.info("Completed unified patent tracking check");
 
@@ -185,15 +195,13 @@ public class UnifiedPatentTrackingScheduler {
     }
 
     /**
-     * Check US patent using PatentsView API
+     * Check US patent against details already fetched from PatentsView
      */
-    private void checkUsPatent(String patentId, List<UserTrackingPreferences> usersTracking) {
+    private void checkUsPatent(String patentId, List<UserTrackingPreferences> usersTracking,
+                               PatentDetailDto currentDetails) {
         try {
             log.debug("Checking US patent: {}", patentId);
 
-            // Fetch from PatentsView
-            PatentDetailDto currentDetails = patentsViewDetailsService.fetchPatentDetail(patentId);
-
             if (currentDetails == null) {
                 log.warn("Could not fetch US patent details: {}", patentId);
                 return;
@@ -210,6 +218,19 @@ public class UnifiedPatentTrackingScheduler {
         }
     }
 
+    private void checkEpoPatents(Map<String, List<UserTrackingPreferences>> epoPatents) {
+        int checked = 0;
+        for (Map.Entry<String, List<UserTrackingPreferences>> entry : epoPatents.entrySet()) {
+            if (!epoThrottle.admits(EpoPriority.TRACKING)) {
+                log.warn("EPO OPS quota under {} pressure, deferring {} EPO patents to the next run",
+                        epoThrottle.governor().pressure(), epoPatents.size() - checked);
+                return;
+            }
+            checkEpoPatent(entry.getKey(), entry.getValue());
+            checked++;
+        }
+    }
+
     /**
      * Check EPO patent using EPO OPS API
      */
@@ -11,7 +11,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
 
 @Component
 @RequiredArgsConstructor
@@ -30,7 +29,7 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
 
         if (apiKey != null) {
             ApiKey key = service.validate(apiKey);
-            key.setLastUsedAt(LocalDateTime.now());
+            service.recordUse(key);
         }
 
         chain.doFilter(request, response);
@@ -2,7 +2,9 @@ package com.teamb.globalipbackend1.service.patent.citations;
 
 import com.teamb.globalipbackend1.dto.citation.*;
 import com.teamb.globalipbackend1.external.patentsview.PatentsViewCitationClient;
+import com.teamb.globalipbackend1.external.patentsview.PatentsViewClient;
 import com.teamb.globalipbackend1.external.patentsview.dto.*;
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.Cacheable;
@@ -18,6 +20,7 @@ public class EnhancedCitationNetworkService {
 
 
     private PatentsViewCitationClient citationClient;
+    private PatentsViewClient patentsViewClient;
 
     // Constants for depth control
     private static final int MAX_BACKWARD_DEPTH = 1;
@@ -66,10 +69,16 @@ public class EnhancedCitationNetworkService {
             // Return partial results
         }
 
+        // Citations among the level-1 patents themselves, in one batched lookup
+        addCrossCitations(nodeMap, edges);
+
         // Log statistics
         log.info("Citation network complete - Nodes: {}, Edges: {}, Backward: {}, Forward: {}, Errors: {}",
                 nodeMap.size(), edges.size(), stats.backwardCount, stats.forwardCount, stats.errorCount);
 
+        // Titles, assignees and classifications for every node in one batched lookup
+        enrichNodes(nodeMap);
+
         // Calculate metrics and clusters
         NetworkMetrics metrics = calculateNetworkMetrics(nodeMap, edges, stats);
         Map<String, TechnologyCluster> clusters = identifyClusters(nodeMap, edges);
@@ -260,11 +269,83 @@ public class EnhancedCitationNetworkService {
     }
 
     /**
-     * Create a patent node with basic info
+     * Add edges between level-1 patents that cite each other. Each node's edge to or from
+     * the root is already present, so only citations between two non-root nodes are added.
+     */
+    private void addCrossCitations(Map<String, PatentNode> nodes, List<CitationEdge> edges) {
+        List<String> levelOne = nodes.values().stream()
+                .filter(node -> node.getDepth() == 1)
+                .map(PatentNode::getPatentId)
+                .toList();
+        if (levelOne.size() < 2) {
+            return;
+        }
+
+        Map<String, List<PatentsViewUSPatentCitation>> citationsByPatent;
+        try {
+            citationsByPatent = citationClient.getBackwardCitations(levelOne);
+        } catch (Exception e) {
+            log.error("Error fetching cross citations for {} citation network nodes: {}", levelOne.size(), e.getMessage());
+            return;
+        }
+
+        Set<String> existing = edges.stream()
+                .map(edge -> edge.getSource() + "->" + edge.getTarget())
+                .collect(Collectors.toCollection(HashSet::new));
+        int added = 0;
+        for (String patentId : levelOne) {
+            for (PatentsViewUSPatentCitation citation : citationsByPatent.getOrDefault(patentId, List.of())) {
+                String cited = citation.getCitationPatentId();
+                PatentNode target = cited != null ? nodes.get(cited) : null;
+                if (target == null || target.getDepth() != 1 || !existing.add(patentId + "->" + cited)) {
+                    continue;
+                }
+                edges.add(CitationEdge.builder()
+                        .source(patentId)
+                        .target(cited)
+                        .citationType(citation.getCitationCategory())
+                        .citationDate(citation.getCitationDate())
+                        .weight(1)
+                        .build());
+                added++;
+            }
+        }
+        log.info("Added {} cross citations between {} citation network nodes", added, levelOne.size());
+    }
+
+    /**
+     * Fill in patent details for the nodes PatentsView knows; the rest keep their placeholders
+     */
+    private void enrichNodes(Map<String, PatentNode> nodes) {
+        Map<String, PatentDocument> patents;
+        try {
+            patents = patentsViewClient.getPatentsByNumbers(nodes.keySet());
+        } catch (Exception e) {
+            log.error("Error fetching details for {} citation network nodes: {}", nodes.size(), e.getMessage());
+            return;
+        }
+
+        patents.forEach((patentId, patent) -> {
+            PatentNode node = nodes.get(patentId);
+            if (patent.getTitle() != null) node.setTitle(patent.getTitle());
+            node.setAbstractText(patent.getAbstractText());
+            node.setFilingDate(patent.getFilingDate());
+            node.setGrantDate(patent.getGrantDate());
+            node.setPatentType(patent.getWipoKind());
+            if (patent.getAssignees() != null && !patent.getAssignees().isEmpty()) {
+                node.setAssignee(patent.getAssignees().getFirst());
+            }
+            if (patent.getIpcClasses() != null) node.setIpcClasses(new ArrayList<>(patent.getIpcClasses()));
+            if (patent.getCpcClasses() != null) node.setCpcClasses(new ArrayList<>(patent.getCpcClasses()));
+            if (patent.getInventors() != null) node.setInventors(new ArrayList<>(patent.getInventors()));
+        });
+        log.info("Enriched {} of {} citation network nodes", patents.size(), nodes.size());
+    }
+
+    /**
+     * Create a patent node with basic info; details are filled in by enrichNodes
      */
     private PatentNode createPatentNode(String patentId, int depth, boolean isRoot) {
-        // TODO: Fetch actual patent details from PatentsView API
-        // For now, create a basic node
         return PatentNode.builder()
                 .patentId(patentId)
                 .title("Patent " + patentId) // Placeholder
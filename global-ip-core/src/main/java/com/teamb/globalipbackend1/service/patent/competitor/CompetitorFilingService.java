@@ -3,7 +3,10 @@ package com.teamb.globalipbackend1.service.patent.competitor;
 import com.teamb.globalipbackend1.dto.competitor.*;
 import com.teamb.globalipbackend1.dto.websocket.CompetitorFilingEvent;
 import com.teamb.globalipbackend1.external.epo.EpoClient;
+import com.teamb.globalipbackend1.external.epo.EpoPriority;
+import com.teamb.globalipbackend1.external.epo.EpoThrottle;
 import com.teamb.globalipbackend1.external.epo.dto.EpoCompetitorFilingDto;
+import com.teamb.globalipbackend1.external.epo.dto.EpoCompetitorFilings;
 import com.teamb.globalipbackend1.external.patentsview.PatentsViewClient;
 import com.teamb.globalipbackend1.external.patentsview.dto.PatentsViewAssignee;
 import com.teamb.globalipbackend1.external.patentsview.dto.PatentsViewResponseDocument;
@@ -23,6 +26,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.*;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -34,6 +38,7 @@ public class CompetitorFilingService {
     private final CompetitorRepository competitorRepository;
     private final PatentsViewMapStructMapper mapper;
     private final EpoClient epoClient;
+    private final EpoThrottle epoThrottle;
 
     private final MonitoringSubscriptionRepository subscriptionRepository;
     private final WebSocketNotificationService wsService;
@@ -213,15 +218,17 @@ public class CompetitorFilingService {
             Competitor c, LocalDate from
     ) {
         int n = 0, d = 0;
-        for (PatentsViewResponseDocument doc :
-                patentsViewClient.searchByAssignees(c.getAssigneeNames(), from)) {
+        try (Stream<PatentsViewResponseDocument> docs =
+                     patentsViewClient.streamByAssignees(c.getAssigneeNames(), from, null)) {
+            for (PatentsViewResponseDocument doc : (Iterable<PatentsViewResponseDocument>) docs::iterator) {
 
-            if (filingRepository.existsByPatentId(doc.getPatentId())) {
-                d++; continue;
-            }
+                if (filingRepository.existsByPatentId(doc.getPatentId())) {
+                    d++; continue;
+                }
 
-            filingRepository.save(buildFilingFromPatent(c, doc));
-            n++;
+                filingRepository.save(buildFilingFromPatent(c, doc));
+                n++;
+            }
         }
         return CompetitorSyncResult.builder()
                 .competitorCode(c.getCode())
@@ -234,9 +241,23 @@ public class CompetitorFilingService {
     private CompetitorSyncResult syncEpoCompetitor(
             Competitor c, LocalDate from
     ) {
+        // competitor syncs are bulk work: the first to be slowed or refused when OPS is busy
+        if (!epoThrottle.admits(EpoPriority.BULK)) {
+            log.warn("EPO OPS quota under {} pressure, deferring filings sync for competitor {}",
+                    epoThrottle.governor().pressure(), c.getCode());
+            return CompetitorSyncResult.builder()
+                    .competitorCode(c.getCode())
+                    .newFilings(0)
+                    .duplicates(0)
+                    .status("DEFERRED")
+                    .build();
+        }
+
+        EpoCompetitorFilings fetched = EpoPriority.BULK.call(
+                () -> epoClient.fetchCompetitorFilings(c.getAssigneeNames(), from));
+
         int n = 0, d = 0;
-        for (EpoCompetitorFilingDto dto :
-                epoClient.fetchCompetitorFilings(c.getAssigneeNames(), from)) {
+        for (EpoCompetitorFilingDto dto : fetched.filings()) {
 
             if (filingRepository.existsByPatentId(dto.getPublicationNumber())) {
                 d++; continue;
@@ -264,11 +285,16 @@ public class CompetitorFilingService {
 
             n++;
         }
+        if (!fetched.complete()) {
+            // what was read is kept; the next sync picks up the rest, skipping these as duplicates
+            log.warn("EPO filings sync for competitor {} is incomplete: search failed for {}",
+                    c.getCode(), fetched.failedAssignees());
+        }
         return CompetitorSyncResult.builder()
                 .competitorCode(c.getCode())
                 .newFilings(n)
                 .duplicates(d)
-                .status("SUCCESS")
+                .status(fetched.complete() ? "SUCCESS" : "PARTIAL")
                 .build();
     }
 
@@ -27,9 +27,10 @@ public class GlobalPatentDetailsService {
 
         if (resolver.isEpoPatent(publicationNumber)) {
             log.info("Routing patent [{}] to EPO OPS", publicationNumber);
-            dto = epoClient.fetchGlobalDetail(publicationNumber);
-            if (dto == null) return null;
-
+            GlobalPatentDetailDto shared = epoClient.fetchGlobalDetail(publicationNumber);
+            if (shared == null) return null;
+            // concurrent requests for one publication get the same instance from the client
+            dto = shared.copy();
 
             ApplicationLifecycleDto lifecycle =
                     PatentLifecycleCalculator.compute(
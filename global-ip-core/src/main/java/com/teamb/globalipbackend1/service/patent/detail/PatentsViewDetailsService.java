@@ -6,31 +6,47 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.teamb.globalipbackend1.dto.lifecycle.ApplicationLifecycleDto;
 import com.teamb.globalipbackend1.dto.patent.GlobalPatentDetailDto;
 import com.teamb.globalipbackend1.external.patentsview.PatentsViewHttpClient;
+import com.teamb.globalipbackend1.external.patentsview.dto.PatentDetailBatch;
 import com.teamb.globalipbackend1.external.patentsview.dto.PatentDetailDto;
 import com.teamb.globalipbackend1.external.patentsview.dto.PatentsViewCpcCurrent;
 import com.teamb.globalipbackend1.external.patentsview.querybuilder.PatentsViewQueryBuilder;
 import com.teamb.globalipbackend1.security.SecurityUtil;
 import com.teamb.globalipbackend1.service.lifecycle.PatentLifecycleCalculator;
 import com.teamb.globalipbackend1.service.patent.lifecycle.PatentLifecyclePersistenceService;
+import com.teamb.globalipbackend1.util.concurrent.BoundedFanOut;
+import com.teamb.globalipbackend1.util.concurrent.SingleFlight;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.StreamSupport;
 
 @Slf4j
 @Service
 public class PatentsViewDetailsService {
 
+    private static final int BATCH_CONCURRENCY = 4;
+
     private final PatentsViewHttpClient httpClient;
     private final PatentsViewQueryBuilder queryBuilder;
     private final ObjectMapper objectMapper;
     private final PatentLifecyclePersistenceService lifecyclePersistenceService;
     private final SecurityUtil securityUtil;
 
+    // concurrent lookups of one number share a single upstream call
+    private final SingleFlight<String, PatentDetailDto> detailFlights = new SingleFlight<>();
+
     public PatentsViewDetailsService(
             PatentsViewHttpClient httpClient,
             PatentsViewQueryBuilder queryBuilder,
@@ -48,12 +64,14 @@ public class PatentsViewDetailsService {
     /* ===================== RAW FETCH ===================== */
 
     public PatentDetailDto fetchPatentDetail(String publicationNumber) {
+        return detailFlights.execute(publicationNumber, () -> loadPatentDetail(publicationNumber));
+    }
+
+    private PatentDetailDto loadPatentDetail(String publicationNumber) {
 
         try {
             String query = queryBuilder.buildPatentDetailQuery(publicationNumber);
-            String response = httpClient.post(query);
-
-            JsonNode root = objectMapper.readTree(response);
+            JsonNode root = httpClient.postForTree(query);
             JsonNode patents = root.path("patents");
 
             if (!patents.isArray() || patents.isEmpty()) {
@@ -68,6 +86,61 @@ public class PatentsViewDetailsService {
         }
     }
 
+    /**
+     * Details for many patents, one request per {@link PatentsViewQueryBuilder#MAX_IDS_PER_QUERY}
+     * IDs instead of one per patent. Numbers a successful batch does not find fall back to
+     * {@link #fetchPatentDetail}, which also tries alternative formats. Numbers whose batch
+     * request failed are reported as failed without single lookups, which would multiply the
+     * traffic while PatentsView is struggling.
+     */
+    public PatentDetailBatch fetchPatentDetails(Collection<String> publicationNumbers) {
+        Map<String, String> patentIds = new LinkedHashMap<>();
+        for (String number : publicationNumbers) {
+            try {
+                patentIds.put(number, queryBuilder.normalizeToPatentId(number));
+            } catch (IllegalArgumentException e) {
+                patentIds.put(number, null);
+            }
+        }
+
+        List<String> ids = patentIds.values().stream().filter(Objects::nonNull).distinct().toList();
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += PatentsViewQueryBuilder.MAX_IDS_PER_QUERY) {
+            chunks.add(ids.subList(from, Math.min(ids.size(), from + PatentsViewQueryBuilder.MAX_IDS_PER_QUERY)));
+        }
+
+        Map<String, PatentDetailDto> byPatentId = new HashMap<>();
+        Set<String> failedIds = new HashSet<>();
+        BoundedFanOut.map(chunks, BATCH_CONCURRENCY,
+                        chunk -> httpClient.postForTree(queryBuilder.buildPatentsByIdsQuery(chunk)),
+                        (chunk, e) -> {
+                            log.error("PatentsView batch detail fetch failed for {} patents", chunk.size(), e);
+                            failedIds.addAll(chunk);
+                        })
+                .forEach(root -> root.path("patents").forEach(p -> {
+                    PatentDetailDto dto = parsePatentNode(p);
+                    if (dto.getPatentId() != null) byPatentId.put(dto.getPatentId(), dto);
+                }));
+
+        Map<String, PatentDetailDto> details = new LinkedHashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        Set<String> failed = new LinkedHashSet<>();
+        patentIds.forEach((number, patentId) -> {
+            if (failedIds.contains(patentId)) {
+                failed.add(number);
+                return;
+            }
+            PatentDetailDto dto = patentId != null ? byPatentId.get(patentId) : null;
+            if (dto == null) dto = fetchPatentDetail(number);
+            if (dto != null) details.put(number, dto);
+            else missing.add(number);
+        });
+
+        log.info("Fetched {} of {} patents in {} batch requests, {} failed",
+                details.size(), patentIds.size(), chunks.size(), failed.size());
+        return new PatentDetailBatch(details, missing, failed);
+    }
+
     /* ===================== PARSER ===================== */
 
     private PatentDetailDto parsePatentNode(JsonNode p) {
@@ -194,7 +267,7 @@ public class PatentsViewDetailsService {
         for (String f : List.of(originalId, digits, "US" + digits + "A1", "US" + digits + "B2")) {
             try {
                 String q = queryBuilder.buildPatentDetailQuery(f);
-                JsonNode r = objectMapper.readTree(httpClient.post(q));
+                JsonNode r = httpClient.postForTree(q);
                 JsonNode p = r.path("patents");
                 if (p.isArray() && !p.isEmpty()) return parsePatentNode(p.get(0));
             } catch (Exception ignored) {}
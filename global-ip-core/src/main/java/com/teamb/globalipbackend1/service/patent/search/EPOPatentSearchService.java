@@ -2,16 +2,16 @@ package com.teamb.globalipbackend1.service.patent.search;
 
 import com.teamb.globalipbackend1.dto.search.PatentSearchFilter;
 import com.teamb.globalipbackend1.external.epo.EpoClient;
+import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
 import com.teamb.globalipbackend1.external.epo.dto.*;
-import com.teamb.globalipbackend1.external.epo.mapper.EpoPatentMapper;
 import com.teamb.globalipbackend1.model.patents.PatentDocument;
+import com.teamb.globalipbackend1.util.concurrent.BoundedFanOut;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * Service for searching patents from EPO (European Patent Office)
@@ -23,12 +23,19 @@ import java.util.Objects;
 public class EPOPatentSearchService {
 
     private final EpoClient epoClient;
-    private final EpoPatentMapper epoPatentMapper;
     private final PatentFilterService patentFilterService;
+    private final EpoProperties epoProperties;
 
     public List<PatentDocument> searchPatents(String keyword) {
         log.info("Starting EPO patent search for keyword: {}", keyword);
 
+        if (biblioMode()) {
+            if (keyword == null || keyword.isBlank()) return List.of();
+            List<PatentDocument> results = searchWithBiblio(epoClient.buildTitleCql(keyword, null));
+            log.info("EPO search completed. Total patents fetched: {}", results.size());
+            return results;
+        }
+
         List<EpoDocumentId> ids = searchByKeyword(keyword);
 
         if (ids.isEmpty()) {
@@ -48,6 +55,13 @@ public class EPOPatentSearchService {
     public List<PatentDocument> searchPatents(String keyword, String jurisdiction) {
         log.info("Starting EPO patent search for keyword: {} with jurisdiction: {}", keyword, jurisdiction);
 
+        if (biblioMode()) {
+            if (keyword == null || keyword.isBlank()) return List.of();
+            List<PatentDocument> results = searchWithBiblio(epoClient.buildTitleCql(keyword, jurisdiction));
+            log.info("EPO search completed. Total patents fetched: {}", results.size());
+            return results;
+        }
+
         List<EpoDocumentId> ids = searchByKeywordWithJurisdiction(keyword, jurisdiction);
 
         if (ids.isEmpty()) {
@@ -81,51 +95,60 @@ public class EPOPatentSearchService {
         }
     }
 
-    private List<PatentDocument> fetchPatentDetails(List<EpoDocumentId> ids) {
-
-        List<PatentDocument> results = new ArrayList<>();
-
-        for (EpoDocumentId id : ids) {
-
-            try {
-
-                List<EpoExchangeDocument> documents = epoClient.fetchBiblio(id);
-
-                if (documents.isEmpty()) {
-                    log.debug("No biblio data for {}{}{}",
-                            id.getCountry(), id.getDocNumber(), id.getKind());
-                    continue;
-                }
+    private boolean biblioMode() {
+        return epoProperties.search().mode() == EpoProperties.SearchMode.BIBLIO;
+    }
 
-                EpoExchangeDocument doc = documents.get(0);
+    // one OPS call returns the hits together with their biblio
+    private List<PatentDocument> searchWithBiblio(String cql) {
+        return withAbstractFallback(epoClient.searchWithBiblio(cql));
+    }
 
-                PatentDocument patent = epoPatentMapper.map(doc, id);
-                if (patent == null) {
-                    log.warn("Mapper returned null for {}{}{}",
-                            id.getCountry(), id.getDocNumber(), id.getKind());
-                    continue;
-                }
+    // biblio for the whole result page comes back in one bulk request
+    private List<PatentDocument> fetchPatentDetails(List<EpoDocumentId> ids) {
+        List<String> numbers = ids.stream()
+                .map(id -> id.getCountry() + id.getDocNumber() + id.getKind())
+                .distinct()
+                .toList();
+        EpoBiblioBatch batch = epoClient.fetchBiblioBatch(numbers);
 
-                // Enrich with abstract - FIXED to use getFullText()
-                enrichWithAbstract(patent, id);
+        if (!batch.missing().isEmpty()) {
+            log.debug("No EPO biblio for {} of {} ids", batch.missing().size(), numbers.size());
+        }
+        if (!batch.complete()) {
+            log.warn("EPO biblio request failed for {} of {} ids", batch.failed().size(), numbers.size());
+        }
+        return withAbstractFallback(new ArrayList<>(batch.documents().values()));
+    }
 
-                // Enrich with classifications
-                enrichWithClassifications(patent, doc);
+    // opt-in: the abstract endpoint costs one OPS call per document whose biblio carried none
+    private List<PatentDocument> withAbstractFallback(List<PatentDocument> results) {
+        if (!epoProperties.search().abstractFallback()) return results;
 
-                results.add(patent);
+        List<PatentDocument> withoutAbstract = results.stream()
+                .filter(p -> p.getAbstractText() == null)
+                .toList();
 
-            } catch (Exception ex) {
-                log.warn("Failed to fetch/map patent {}{}{}",
-                        id.getCountry(),
-                        id.getDocNumber(),
-                        id.getKind(),
-                        ex);
-            }
-        }
+        BoundedFanOut.map(
+                withoutAbstract,
+                epoProperties.throttle().detailConcurrency(),
+                patent -> {
+                    enrichWithAbstract(patent, documentId(patent));
+                    return patent;
+                },
+                (patent, ex) -> log.warn("Failed to fetch abstract for {}", patent.getPublicationNumber(), ex));
 
         return results;
     }
 
+    private static EpoDocumentId documentId(PatentDocument patent) {
+        EpoDocumentId id = new EpoDocumentId();
+        id.setCountry(patent.getPublicationNumber().substring(0, 2));
+        id.setDocNumber(patent.getPublicationNumber().substring(2));
+        id.setKind(patent.getWipoKind());
+        return id;
+    }
+
     private void enrichWithAbstract(PatentDocument patent, EpoDocumentId id) {
         try {
             List<EpoAbstract> abstracts = epoClient.fetchAbstract(id);
@@ -165,41 +188,19 @@ public class EPOPatentSearchService {
         }
     }
 
-    private void enrichWithClassifications(
-            PatentDocument patent,
-            EpoExchangeDocument doc
-    ) {
-        if (doc.getBibliographicData() == null) return;
-
-        var biblio = doc.getBibliographicData();
-
-        // Extract IPC classifications
-        List<String> ipcCodes = biblio.getIpcList().stream()
-                .filter(Objects::nonNull)
-                .map(EpoIpcClassification::getFullClassificationCode)
-                .filter(code -> code != null && !code.isBlank())
-                .distinct()
-                .toList();
-        patent.setIpcClasses(ipcCodes);
-
-        // Extract CPC classifications
-        List<String> cpcCodes = biblio.getCpcList().stream()
-                .filter(cpc -> cpc != null)
-                .map(EpoCpcClassification::getFullClassificationCode)
-                .filter(code -> code != null && !code.isBlank())
-                .distinct()
-                .toList();
-        patent.setCpcClasses(cpcCodes);
-    }
-
     public List<PatentDocument> searchAdvanced(PatentSearchFilter filter) {
         log.info("Starting EPO advanced search with filter: {}", filter);
 
-        List<EpoDocumentId> ids = epoClient.advancedSearch(filter);
+        List<PatentDocument> docs;
+        if (biblioMode()) {
+            docs = searchWithBiblio(epoClient.buildCqlQuery(filter));
+        } else {
+            List<EpoDocumentId> ids = epoClient.advancedSearch(filter);
 
-        log.info("EPO advanced search returned {} document IDs", ids.size());
+            log.info("EPO advanced search returned {} document IDs", ids.size());
 
-        List<PatentDocument> docs = fetchPatentDetails(ids);
+            docs = fetchPatentDetails(ids);
+        }
 
         log.info("Fetched {} patent details, applying post-filters", docs.size());
 
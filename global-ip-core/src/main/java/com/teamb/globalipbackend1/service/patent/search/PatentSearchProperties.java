@@ -0,0 +1,23 @@
+package com.teamb.globalipbackend1.service.patent.search;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param deadline          how long a patent search waits for its providers before it
+ *                          answers with the results that did arrive
+ * @param lateResultTimeout how much longer a provider that missed the deadline may run to
+ *                          complete the cached result before it is cancelled
+ */
+@ConfigurationProperties(prefix = "patent-search")
+public record PatentSearchProperties(
+        @DefaultValue("8s") Duration deadline,
+        @DefaultValue("60s") Duration lateResultTimeout
+) {
+
+    public static PatentSearchProperties defaults() {
+        return new PatentSearchProperties(Duration.ofSeconds(8), Duration.ofSeconds(60));
+    }
+}
@@ -9,7 +9,6 @@ import com.teamb.globalipbackend1.model.patents.PatentDocument;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import tools.jackson.databind.ObjectMapper;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -21,7 +20,6 @@ public class PatentsViewSearchService {
 
     private final PatentsViewHttpClient httpClient;
     private final PatentsViewQueryBuilder queryBuilder;
-    private final ObjectMapper objectMapper;
     private final PatentsViewMapStructMapper mapper;
 
     public List<PatentDocument> advancedSearch(PatentSearchFilter filter) {
@@ -36,10 +34,7 @@ public class PatentsViewSearchService {
             );
             log.debug("PatentsView Advanced Query: {}", queryJson);
 
-            String responseBody = httpClient.post(queryJson);
-
-            PatentsViewResponse response =
-                    objectMapper.readValue(responseBody, PatentsViewResponse.class);
+            PatentsViewResponse response = httpClient.post(queryJson, PatentsViewResponse.class);
 
             if (response == null || response.getResponseDocuments() == null) {
                 return List.of();
@@ -71,12 +66,7 @@ public class PatentsViewSearchService {
 
             log.debug("PatentsView query: {}", queryJson);
 
-            String responseBody = httpClient.post(queryJson);
-
-            PatentsViewResponse response = objectMapper.readValue(
-                    responseBody,
-                    PatentsViewResponse.class
-            );
+            PatentsViewResponse response = httpClient.post(queryJson, PatentsViewResponse.class);
 
             if (response == null || response.getResponseDocuments() == null) {
                 log.warn("PatentsView returned no results for keyword: {}", keyword);
@@ -0,0 +1,10 @@
+package com.teamb.globalipbackend1.service.patent.search;
+
+/**
+ * Receives the named events of a streamed search, e.g. an {@code SseEmitter}.
+ */
+@FunctionalInterface
+public interface SearchEventSink {
+
+    void send(String event, Object data);
+}
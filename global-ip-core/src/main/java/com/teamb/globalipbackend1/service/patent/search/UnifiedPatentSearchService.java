@@ -1,90 +1,103 @@
 package com.teamb.globalipbackend1.service.patent.search;
 
 import com.teamb.globalipbackend1.cache.CacheNames;
+import com.teamb.globalipbackend1.dto.search.PatentSearchDelta;
 import com.teamb.globalipbackend1.dto.search.PatentSearchFilter;
+import com.teamb.globalipbackend1.dto.search.PatentSearchResult;
+import com.teamb.globalipbackend1.dto.search.ProviderCompleteness;
 import com.teamb.globalipbackend1.model.patents.PatentDocument;
 import com.teamb.globalipbackend1.service.patent.detail.PatentSnapshotCacheService;
 import com.teamb.globalipbackend1.service.patent.search.provider.PatentSearchProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * Unified service that searches patents from multiple sources (EPO, PatentsView)
- * using parallel execution and applies common filtering logic
+ * using parallel execution and applies common filtering logic.
+ * <p>
+ * A search answers within {@code patent-search.deadline} with whatever the providers
+ * returned by then, and reports per provider whether it was complete. Only complete
+ * results are cached: a keyword search that missed a provider lets it run on for up to
+ * {@code patent-search.late-result-timeout} so its late answer completes the cached
+ * entry for the next identical query. Providers still running after that, or after the
+ * deadline of an uncached search, are cancelled.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UnifiedPatentSearchService {
 
+    public static final String CACHE_SOURCE = "cache";
+
     private final List<PatentSearchProvider> providers;
     private final PatentFilterService filterService;
     private final PatentSnapshotCacheService snapshotCacheService;
     private final Executor patentSearchExecutor;
+    private final CacheManager cacheManager;
+    private final PatentSearchProperties properties;
+
+    public PatentSearchResult searchByKeyword(PatentSearchFilter filter) {
+        return searchByKeyword(filter, delta -> { });
+    }
 
-    @Cacheable(
-            cacheNames = CacheNames.PATENT_SEARCH,
-            key = "T(java.util.Objects).hash("
-                    + "#filter.keyword,"
-                    + "#filter.jurisdiction,"
-                    + "#filter.filingDateFrom,"
-                    + "#filter.filingDateTo,"
-                    + "#filter.assignee,"
-                    + "#filter.inventor)"
-    )
-    public List<PatentDocument> searchByKeyword(PatentSearchFilter filter) {
+    /**
+     * Keyword search that also hands each provider's filtered results to {@code onDelta} as
+     * soon as that provider answers, one delta at a time, and none after this method
+     * returns. A cached result arrives as a single delta from source {@value #CACHE_SOURCE}.
+     */
+    public PatentSearchResult searchByKeyword(PatentSearchFilter filter, Consumer<PatentSearchDelta> onDelta) {
         log.info("=== UNIFIED PATENT SEARCH - KEYWORD ===");
         log.info("Filter: {}", filter);
-        log.info("Total providers available: {}", providers.size());
 
-        // Filter providers that support this jurisdiction
-        List<PatentSearchProvider> selectedProviders = providers.stream()
-                .filter(p -> {
-                    boolean supports = p.supportsJurisdiction(filter.getJurisdiction());
-                    log.info("Provider {} supports jurisdiction '{}': {}",
-                            p.getSource(), filter.getJurisdiction(), supports);
-                    return supports;
-                })
-                .toList();
-
-        log.info("Selected {} providers: {}",
-                selectedProviders.size(),
-                selectedProviders.stream().map(PatentSearchProvider::getSource).collect(Collectors.joining(", ")));
-
-        if (selectedProviders.isEmpty()) {
-            log.warn("No providers selected for jurisdiction: {}", filter.getJurisdiction());
-            return List.of();
+        Cache cache = cacheManager.getCache(CacheNames.PATENT_SEARCH);
+        Object key = cacheKey(filter);
+        PatentSearchResult cached = cache != null ? cache.get(key, PatentSearchResult.class) : null;
+        if (cached != null) {
+            log.info("Patent search served from cache: {} patents", cached.patents().size());
+            onDelta.accept(new PatentSearchDelta(
+                    new ProviderCompleteness(CACHE_SOURCE, ProviderCompleteness.Status.COMPLETE, cached.patents().size(), 0),
+                    cached.patents()));
+            return cached;
         }
 
-        List<CompletableFuture<List<PatentDocument>>> futures =
-                selectedProviders.stream()
-                        .map(p -> CompletableFuture.supplyAsync(
-                                () -> {
-                                    log.info("Starting {} search", p.getSource());
-                                    List<PatentDocument> results = p.searchByKeyword(filter);
-                                    log.info("{} returned {} results", p.getSource(), results.size());
-                                    return results;
-                                },
-                                patentSearchExecutor
-                        ).exceptionally(ex -> {
-                            log.error("{} search failed", p.getSource(), ex);
-                            return List.of();
-                        }))
-                        .toList();
-
-        return collectAndFilter(filter, futures);
+        return search(filter, PatentSearchProvider::searchByKeyword, cache, key, onDelta);
     }
 
-    public List<PatentDocument> searchAdvanced(PatentSearchFilter filter) {
+    public PatentSearchResult searchAdvanced(PatentSearchFilter filter) {
         log.info("=== UNIFIED PATENT SEARCH - ADVANCED ===");
         log.info("Filter: {}", filter);
+
+        return search(filter, PatentSearchProvider::searchAdvanced, null, null, delta -> { });
+    }
+
+    private static Object cacheKey(PatentSearchFilter filter) {
+        return Objects.hash(
+                filter.getKeyword(),
+                filter.getJurisdiction(),
+                filter.getFilingDateFrom(),
+                filter.getFilingDateTo(),
+                filter.getAssignee(),
+                filter.getInventor());
+    }
+
+    private List<PatentSearchProvider> selectProviders(PatentSearchFilter filter) {
         log.info("Total providers available: {}", providers.size());
 
         // Filter providers that support this jurisdiction
@@ -100,43 +113,81 @@ public class UnifiedPatentSearchService {
         log.info("Selected {} providers: {}",
                 selectedProviders.size(),
                 selectedProviders.stream().map(PatentSearchProvider::getSource).collect(Collectors.joining(", ")));
+        return selectedProviders;
+    }
 
+    /**
+     * Fans out to the selected providers and waits for them until the deadline.
+     * {@code cache} is null for searches whose results are not cached.
+     */
+    private PatentSearchResult search(
+            PatentSearchFilter filter,
+            BiFunction<PatentSearchProvider, PatentSearchFilter, List<PatentDocument>> query,
+            Cache cache,
+            Object key,
+            Consumer<PatentSearchDelta> onDelta
+    ) {
+        List<PatentSearchProvider> selectedProviders = selectProviders(filter);
         if (selectedProviders.isEmpty()) {
             log.warn("No providers selected for jurisdiction: {}", filter.getJurisdiction());
-            return List.of();
+            return PatentSearchResult.empty();
+        }
+
+        long deadline = System.nanoTime() + properties.deadline().toNanos();
+        List<ProviderCall> calls = selectedProviders.stream()
+                .map(p -> ProviderCall.start(p.getSource(), () -> query.apply(p, filter), patentSearchExecutor))
+                .toList();
+        DeltaGate gate = new DeltaGate(onDelta);
+        calls.forEach(call -> call.result.whenComplete((documents, failure) ->
+                gate.accept(new PatentSearchDelta(call.completeness(),
+                        documents != null ? filterService.applyFilters(documents, filter) : List.of()))));
+        calls.forEach(call -> call.awaitUntil(deadline));
+        gate.close();
+
+        PatentSearchResult result = collectAndFilter(filter, calls);
+        if (result.complete()) {
+            if (cache != null) cache.put(key, result);
+        } else if (cache != null && result.providers().stream()
+                .noneMatch(p -> p.status() == ProviderCompleteness.Status.FAILED)) {
+            completeCacheLater(filter, calls, cache, key);
+        } else {
+            calls.forEach(ProviderCall::cancel);
         }
 
-        List<CompletableFuture<List<PatentDocument>>> futures =
-                selectedProviders.stream()
-                        .map(p -> CompletableFuture.supplyAsync(
-                                () -> {
-                                    log.info("Starting {} advanced search", p.getSource());
-                                    List<PatentDocument> results = p.searchAdvanced(filter);
-                                    log.info("{} returned {} results", p.getSource(), results.size());
-                                    return results;
-                                },
-                                patentSearchExecutor
-                        ).exceptionally(ex -> {
-                            log.error("{} advanced search failed", p.getSource(), ex);
-                            return List.of();
-                        }))
-                        .toList();
-
-        return collectAndFilter(filter, futures);
+        log.info("=== SEARCH {} ===", result.complete() ? "COMPLETE" : "PARTIAL");
+        return result;
     }
 
-    private List<PatentDocument> collectAndFilter(
-            PatentSearchFilter filter,
-            List<CompletableFuture<List<PatentDocument>>> futures
-    ) {
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    private void completeCacheLater(PatentSearchFilter filter, List<ProviderCall> calls, Cache cache, Object key) {
+        CompletableFuture<?>[] pending = calls.stream()
+                .filter(call -> !call.result.isDone())
+                .map(call -> call.result)
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(pending)
+                .orTimeout(properties.lateResultTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((ignored, ex) -> {
+                    if (ex instanceof TimeoutException) {
+                        log.warn("Late patent search providers still running after {}, cancelling",
+                                properties.lateResultTimeout());
+                        calls.forEach(ProviderCall::cancel);
+                        return;
+                    }
+                    PatentSearchResult late = collectAndFilter(filter, calls);
+                    if (late.complete()) {
+                        cache.put(key, late);
+                        log.info("Late provider results cached: {} patents", late.patents().size());
+                    }
+                });
+    }
 
-        List<PatentDocument> all =
-                futures.stream()
-                        .flatMap(f -> f.join().stream())
-                        .toList();
+    private PatentSearchResult collectAndFilter(PatentSearchFilter filter, List<ProviderCall> calls) {
+        List<ProviderCompleteness> completeness = calls.stream().map(ProviderCall::completeness).toList();
+        List<PatentDocument> all = calls.stream()
+                .flatMap(call -> call.documents().stream())
+                .toList();
 
-        log.info("Combined results from all providers: {} patents", all.size());
+        log.info("Combined results from providers {}: {} patents", completeness, all.size());
 
         List<PatentDocument> filtered =
                 filterService.applyFilters(all, filter);
@@ -145,7 +196,128 @@ public class UnifiedPatentSearchService {
 
         filtered.forEach(snapshotCacheService::logPatents);
 
-        log.info("=== SEARCH COMPLETE ===");
-        return filtered;
+        return new PatentSearchResult(filtered, completeness);
+    }
+
+    /**
+     * Passes deltas on one at a time until closed; a provider answering after the deadline
+     * only completes the cache.
+     */
+    @RequiredArgsConstructor
+    private static final class DeltaGate {
+
+        private final Consumer<PatentSearchDelta> downstream;
+        private boolean closed;
+
+        synchronized void accept(PatentSearchDelta delta) {
+            if (closed || delta.provider().status() == ProviderCompleteness.Status.TIMED_OUT) return;
+            try {
+                downstream.accept(delta);
+            } catch (RuntimeException e) {
+                log.warn("Could not pass on {} results: {}", delta.provider().source(), e.toString());
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * One provider's search. Cancelling it interrupts the thread running it, which aborts
+     * a blocking upstream call.
+     */
+    private static final class ProviderCall {
+
+        private final String source;
+        private final long startedAt = System.nanoTime();
+        private final CompletableFuture<List<PatentDocument>> result = new CompletableFuture<>();
+        private volatile long finishedAt;
+        private Thread runner; // guarded by this
+
+        private ProviderCall(String source) {
+            this.source = source;
+        }
+
+        static ProviderCall start(String source, Supplier<List<PatentDocument>> search, Executor executor) {
+            ProviderCall call = new ProviderCall(source);
+            try {
+                executor.execute(() -> call.run(search));
+            } catch (RuntimeException e) {
+                call.finish(null, e);
+            }
+            return call;
+        }
+
+        private void run(Supplier<List<PatentDocument>> search) {
+            synchronized (this) {
+                if (result.isDone()) return;
+                runner = Thread.currentThread();
+            }
+            try {
+                log.info("Starting {} search", source);
+                List<PatentDocument> documents = search.get();
+                log.info("{} returned {} results", source, documents.size());
+                finish(documents, null);
+            } catch (Throwable t) {
+                if (!result.isCancelled()) {
+                    log.error("{} search failed", source, t);
+                }
+                finish(null, t);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                // a cancel that raced with the search finishing must not leak into the next task
+                Thread.interrupted();
+            }
+        }
+
+        private void finish(List<PatentDocument> documents, Throwable failure) {
+            finishedAt = System.nanoTime();
+            if (failure == null) {
+                result.complete(documents);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        }
+
+        void awaitUntil(long deadline) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return;
+            try {
+                result.get(remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException | ExecutionException | CancellationException ignored) {
+                // reported through completeness()
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized void cancel() {
+            if (result.cancel(false) && runner != null) {
+                log.info("Cancelling {} search", source);
+                runner.interrupt();
+            }
+        }
+
+        List<PatentDocument> documents() {
+            return result.state() == Future.State.SUCCESS ? result.resultNow() : List.of();
+        }
+
+        ProviderCompleteness completeness() {
+            return switch (result.state()) {
+                case SUCCESS -> new ProviderCompleteness(source, ProviderCompleteness.Status.COMPLETE,
+                        result.resultNow().size(), elapsedMillis(finishedAt));
+                case FAILED -> new ProviderCompleteness(source, ProviderCompleteness.Status.FAILED,
+                        0, elapsedMillis(finishedAt));
+                case RUNNING, CANCELLED -> new ProviderCompleteness(source, ProviderCompleteness.Status.TIMED_OUT,
+                        0, elapsedMillis(System.nanoTime()));
+            };
+        }
+
+        private long elapsedMillis(long until) {
+            return TimeUnit.NANOSECONDS.toMillis(until - startedAt);
+        }
     }
-}
\ No newline at end of file
+}
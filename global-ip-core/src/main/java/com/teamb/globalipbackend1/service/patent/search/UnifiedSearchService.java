@@ -4,7 +4,6 @@ package com.teamb.globalipbackend1.service.patent.search;
 
 import com.teamb.globalipbackend1.dto.search.*;
 import com.teamb.globalipbackend1.external.usptotm.UsptoTmClient;
-import com.teamb.globalipbackend1.model.patents.PatentDocument;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -12,6 +11,7 @@ import org.springframework.stereotype.Service;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 
 @Slf4j
@@ -19,6 +19,10 @@ import java.util.concurrent.Executor;
 @RequiredArgsConstructor
 public class UnifiedSearchService {
 
+    public static final String PATENTS_EVENT = "patents";
+    public static final String TRADEMARKS_EVENT = "trademarks";
+    public static final String SUMMARY_EVENT = "summary";
+
     private final UnifiedPatentSearchService patentSearchService;
     private final UsptoTmClient usptoTmClient;
     private final Executor patentSearchExecutor;
@@ -30,13 +34,13 @@ public class UnifiedSearchService {
         PatentSearchFilter patentFilter = request.toPatentFilter();
         TrademarkSearchFilter trademarkFilter = request.toTrademarkFilter();
 
-        CompletableFuture<List<PatentDocument>> patentFuture =
+        CompletableFuture<PatentSearchResult> patentFuture =
                 CompletableFuture.supplyAsync(
                         () -> patentSearchService.searchByKeyword(patentFilter),
                         patentSearchExecutor
                 ).exceptionally(ex -> {
                     log.error("Patent searchByKeyword failed", ex);
-                    return List.of();
+                    return PatentSearchResult.empty();
                 });
 
 
@@ -53,12 +57,58 @@ public class UnifiedSearchService {
         CompletableFuture.allOf(patentFuture, trademarkFuture).join();
 
 
+        PatentSearchResult patents = patentFuture.join();
         return new UnifiedSearchResponse(
-                patentFuture.join(),
-                trademarkFuture.join().getContent()
+                patents.patents(),
+                trademarkFuture.join().getContent(),
+                patents.providers(),
+                patents.complete()
         );
     }
 
+    /**
+     * Keyword search that sends results as they arrive instead of all at once: a
+     * {@value #PATENTS_EVENT} event per patent provider ({@link PatentSearchDelta}), one
+     * {@value #TRADEMARKS_EVENT} event, then a {@value #SUMMARY_EVENT} event
+     * ({@link UnifiedSearchSummary}) once everything that will arrive has. Returns after
+     * the summary was sent.
+     */
+    public void streamByKeyword(GlobalSearchRequest request, SearchEventSink sink) {
+        long started = System.nanoTime();
+        PatentSearchFilter patentFilter = request.toPatentFilter();
+        TrademarkSearchFilter trademarkFilter = request.toTrademarkFilter();
+
+        // patent deltas and trademarks come from different threads
+        SearchEventSink events = (event, data) -> {
+            synchronized (sink) {
+                sink.send(event, data);
+            }
+        };
+
+        CompletableFuture<List<TrademarkResultDto>> trademarkFuture =
+                CompletableFuture.supplyAsync(
+                        () -> usptoTmClient.search(trademarkFilter, 0, 15),
+                        patentSearchExecutor
+                ).exceptionally(ex -> {
+                    log.error("Trademark searchByKeyword failed", ex);
+                    return emptyTrademarkPage(0, 15);
+                }).thenApply(page -> {
+                    events.send(TRADEMARKS_EVENT, page.getContent());
+                    return page.getContent();
+                });
+
+        PatentSearchResult patents = patentSearchService.searchByKeyword(
+                patentFilter, delta -> events.send(PATENTS_EVENT, delta));
+        List<TrademarkResultDto> trademarks = trademarkFuture.join();
+
+        events.send(SUMMARY_EVENT, new UnifiedSearchSummary(
+                patents.patents().size(),
+                trademarks.size(),
+                patents.providers(),
+                patents.complete(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+    }
+
     public UnifiedSearchResponse searchAdvanced(GlobalSearchRequest request) {
 
         log.info("CACHE MISS → executing patent advanced search");
@@ -67,13 +117,13 @@ public class UnifiedSearchService {
         PatentSearchFilter patentFilter = request.toPatentFilter();
         TrademarkSearchFilter trademarkFilter = request.toTrademarkFilter();
 
-        CompletableFuture<List<PatentDocument>> patentFuture =
+        CompletableFuture<PatentSearchResult> patentFuture =
                 CompletableFuture.supplyAsync(
                         () -> patentSearchService.searchAdvanced(patentFilter),
                         patentSearchExecutor
                 ).exceptionally(ex -> {
                     log.error("Patent searchByKeyword failed", ex);
-                    return List.of();
+                    return PatentSearchResult.empty();
                 });
 
 
@@ -88,9 +138,12 @@ public class UnifiedSearchService {
 
         CompletableFuture.allOf(patentFuture, trademarkFuture).join();
 
+        PatentSearchResult patents = patentFuture.join();
         return new UnifiedSearchResponse(
-                patentFuture.join(),
-                trademarkFuture.join().getContent()
+                patents.patents(),
+                trademarkFuture.join().getContent(),
+                patents.providers(),
+                patents.complete()
         );
     }
     private PageResponse<TrademarkResultDto> emptyTrademarkPage(int page, int size) {
@@ -10,6 +10,9 @@ import com.teamb.globalipbackend1.repository.user.UserRepository;
 import com.teamb.globalipbackend1.security.MyUserDetails;
 import com.teamb.globalipbackend1.util.apikey.ApiKeyGenerator;
 import com.teamb.globalipbackend1.util.apikey.ApiKeyHasher;
+import com.teamb.globalipbackend1.util.resilience.Bulkhead;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -17,10 +20,15 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
@@ -31,6 +39,22 @@ public class ApiKeyService {
     private final ApiKeyGenerator generator;
     private final ApiKeyHasher hasher;
     private final UserRepository userRepository;
+    private final Cache<@NonNull String, ApiKey> verifiedKeys;
+
+    // digests that failed verification, so repeating an unknown key costs no lookup
+    private final Cache<@NonNull String, Boolean> rejectedKeys = Caffeine.newBuilder()
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .maximumSize(10_000)
+            .build();
+
+    // BCrypt over every legacy row is expensive; cap how many misses pay it at once
+    private final Bulkhead legacyChecks = new Bulkhead(2, Duration.ofMillis(200));
+
+    // keys whose last use was written recently
+    private final Cache<@NonNull Long, Boolean> recentlyUsed = Caffeine.newBuilder()
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .maximumSize(10_000)
+            .build();
 
     /* CREATE */
     public CreatedApiKey create(Authentication authentication) {
@@ -45,7 +69,7 @@ public class ApiKeyService {
             key.setUserId(user.getUser_id());
             key.setName(user.getUsername());
             key.setKeyHash(hasher.hash(rawKey));
-            key.setKeyPrefix(rawKey.substring(0, 6));
+            key.setKeyPrefix(ApiKeyGenerator.prefixOf(rawKey));
             key.setStatus(ApiKeyStatus.ACTIVE);
             key.setCreatedAt(LocalDateTime.now());
 
@@ -79,18 +103,102 @@ public class ApiKeyService {
                     .orElseThrow(() -> new RuntimeException("KEY_NOT_FOUND"));
 
             key.setStatus(ApiKeyStatus.REVOKED);
+            evictAfterCommit(key);
         }
 
 
     }
 
     /* VALIDATE (runtime auth) */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public ApiKey validate(String rawKey) {
-        return repository.findAll().stream()
-                .filter(k -> k.getStatus() == ApiKeyStatus.ACTIVE)
+        String prefix = ApiKeyGenerator.prefixOf(rawKey);
+        if (prefix == null) {
+            throw new RuntimeException("INVALID_API_KEY");
+        }
+
+        String digest = hasher.hash(rawKey);
+        ApiKey cached = verifiedKeys.getIfPresent(digest);
+        if (cached != null) {
+            return cached;
+        }
+        if (rejectedKeys.getIfPresent(digest) != null) {
+            throw new RuntimeException("INVALID_API_KEY");
+        }
+
+        ApiKey key = repository.findByKeyPrefixAndStatus(prefix, ApiKeyStatus.ACTIVE).stream()
                 .filter(k -> hasher.matches(rawKey, k.getKeyHash()))
                 .findFirst()
-                .orElseThrow(() -> new RuntimeException("INVALID_API_KEY"));
+                .orElseGet(() -> migrateLegacy(rawKey, prefix, digest));
+
+        verifiedKeys.put(digest, key);
+        return key;
+    }
+
+    /**
+     * Records that a validated key was used, at most once a minute per key, without
+     * touching the instance shared through the verified-key cache.
+     */
+    public void recordUse(ApiKey key) {
+        if (recentlyUsed.asMap().putIfAbsent(key.getId(), Boolean.TRUE) == null) {
+            repository.updateLastUsedAt(key.getId(), LocalDateTime.now());
+        }
+    }
+
+    /*
+     * Keys created before prefix lookup share one stored prefix and a BCrypt hash,
+     * and the raw key is needed to rehash them, so they can only be migrated when
+     * presented. A match is rewritten to the HMAC digest and full prefix, so each
+     * legacy key pays the BCrypt cost once; a miss is remembered so an unknown key
+     * pays it once per rejectedKeys TTL. Misses beyond the legacyChecks limit are
+     * rejected without being remembered.
+     */
+    private ApiKey migrateLegacy(String rawKey, String prefix, String digest) {
+        List<ApiKey> legacy = repository.findByKeyPrefixAndStatus(ApiKeyGenerator.LEGACY_PREFIX, ApiKeyStatus.ACTIVE);
+        if (legacy.isEmpty()) {
+            rejectedKeys.put(digest, Boolean.TRUE);
+            throw new RuntimeException("INVALID_API_KEY");
+        }
+
+        try {
+            if (!legacyChecks.tryAcquire()) {
+                throw new RuntimeException("INVALID_API_KEY");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("INVALID_API_KEY", e);
+        }
+        ApiKey key;
+        try {
+            key = legacy.stream()
+                    .filter(k -> hasher.isLegacy(k.getKeyHash()))
+                    .filter(k -> hasher.matches(rawKey, k.getKeyHash()))
+                    .findFirst()
+                    .orElse(null);
+        } finally {
+            legacyChecks.release();
+        }
+        if (key == null) {
+            rejectedKeys.put(digest, Boolean.TRUE);
+            throw new RuntimeException("INVALID_API_KEY");
+        }
+
+        key.setKeyHash(digest);
+        key.setKeyPrefix(prefix);
+        return repository.save(key);
+    }
+
+    private void evictAfterCommit(ApiKey key) {
+        String digest = key.getKeyHash();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    verifiedKeys.invalidate(digest);
+                }
+            });
+        }
+        verifiedKeys.invalidate(digest);
     }
 
     @Transactional(readOnly = true)
@@ -104,5 +212,6 @@ public class ApiKeyService {
                 .orElseThrow(() -> new RuntimeException("KEY_NOT_FOUND"));
 
         key.setStatus(ApiKeyStatus.REVOKED);
+        evictAfterCommit(key);
     }
 }
\ No newline at end of file
@@ -10,11 +10,33 @@ public class ApiKeyGenerator {
 
     private static final SecureRandom RANDOM = new SecureRandom();
 
+    private static final String KEY_TYPE = "gip_sk_";
+
+    /**
+     * Stored prefix of keys created before indexed lookup; it is the same for every key.
+     */
+    public static final String LEGACY_PREFIX = "gip_sk";
+
+    /**
+     * "gip_sk_" plus 9 random characters, enough to identify a key by index lookup.
+     */
+    public static final int PREFIX_LENGTH = 16;
+
     public String generate() {
         byte[] bytes = new byte[32];
         RANDOM.nextBytes(bytes);
-        return "gip_sk_" + Base64.getUrlEncoder()
+        return KEY_TYPE + Base64.getUrlEncoder()
                 .withoutPadding()
                 .encodeToString(bytes);
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the lookup prefix of a raw key, or null if it is too short to be one
+     */
+    public static String prefixOf(String rawKey) {
+        if (rawKey == null || rawKey.length() <= PREFIX_LENGTH || !rawKey.startsWith(KEY_TYPE)) {
+            return null;
+        }
+        return rawKey.substring(0, PREFIX_LENGTH);
+    }
+}
@@ -1,19 +1,68 @@
 package com.teamb.globalipbackend1.util.apikey;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * API keys are 256-bit random tokens, so a keyed digest (HMAC-SHA-256 with a
+ * server-side pepper) is enough and costs microseconds instead of a BCrypt round.
+ * BCrypt hashes of keys created before the switch are still accepted.
+ */
 @Component
 public class ApiKeyHasher {
 
-    private final PasswordEncoder encoder = new BCryptPasswordEncoder();
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final PasswordEncoder legacyEncoder = new BCryptPasswordEncoder();
+    private final SecretKeySpec pepper;
+    private final ThreadLocal<Mac> mac;
+
+    public ApiKeyHasher(@Value("${api-key.pepper}") String pepper) {
+        if (pepper == null || pepper.isBlank()) {
+            throw new IllegalStateException("api-key.pepper must be set");
+        }
+        this.pepper = new SecretKeySpec(pepper.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::newMac);
+    }
 
     public String hash(String rawKey) {
-        return encoder.encode(rawKey);
+        byte[] digest = mac.get().doFinal(rawKey.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest);
     }
 
     public boolean matches(String rawKey, String hash) {
-        return encoder.matches(rawKey, hash);
+        if (hash == null) return false;
+        if (isLegacy(hash)) {
+            return legacyEncoder.matches(rawKey, hash);
+        }
+        return MessageDigest.isEqual(
+                hash(rawKey).getBytes(StandardCharsets.US_ASCII),
+                hash.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * True for BCrypt hashes, which should be replaced by {@link #hash} on next use.
+     */
+    public boolean isLegacy(String hash) {
+        return hash != null && hash.startsWith("$2");
+    }
+
+    private Mac newMac() {
+        try {
+            Mac m = Mac.getInstance(ALGORITHM);
+            m.init(pepper);
+            return m;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA-256 unavailable", e);
+        }
     }
 }
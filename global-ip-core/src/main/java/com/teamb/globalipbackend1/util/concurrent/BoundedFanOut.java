@@ -0,0 +1,65 @@
+package com.teamb.globalipbackend1.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Runs one blocking task per input on virtual threads, with at most
+ * {@code maxConcurrency} running at once.
+ * <p>
+ * Results come back in input order. A task that throws is reported to the failure
+ * handler and left out of the result, as is a task that returns null; the rest of
+ * the batch is unaffected.
+ */
+public final class BoundedFanOut {
+
+    private BoundedFanOut() {
+    }
+
+    public static <T, R> List<R> map(List<T> inputs,
+                                     int maxConcurrency,
+                                     Function<? super T, ? extends R> task,
+                                     BiConsumer<? super T, Throwable> onFailure) {
+        if (inputs.isEmpty()) return List.of();
+
+        Semaphore slots = new Semaphore(Math.max(1, maxConcurrency));
+        List<Future<R>> futures = new ArrayList<>(inputs.size());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (T input : inputs) {
+                futures.add(executor.submit(() -> {
+                    slots.acquire();
+                    try {
+                        return task.apply(input);
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+
+            List<R> results = new ArrayList<>(inputs.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    onFailure.accept(inputs.get(i), e.getCause());
+                } catch (InterruptedException e) {
+                    // close() would otherwise wait for every remaining task
+                    futures.forEach(f -> f.cancel(true));
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            results.removeIf(Objects::isNull);
+            return results;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.teamb.globalipbackend1.util.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the calls in flight to one upstream. A caller that finds every slot taken waits
+ * at most {@code maxWait} for one to free up, so a hung upstream ties up a fixed number
+ * of threads instead of every thread that calls it.
+ */
+public final class Bulkhead {
+
+    private final int maxConcurrentCalls;
+    private final long maxWaitNanos;
+    private final Semaphore slots;
+
+    public Bulkhead(int maxConcurrentCalls, Duration maxWait) {
+        if (maxConcurrentCalls < 1) {
+            throw new IllegalArgumentException("maxConcurrentCalls must be at least 1");
+        }
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.slots = new Semaphore(maxConcurrentCalls);
+    }
+
+    /**
+     * @return false if no slot freed up within {@code maxWait}
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        return slots.tryAcquire() || (maxWaitNanos > 0 && slots.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS));
+    }
+
+    public void release() {
+        slots.release();
+    }
+
+    public int availableSlots() {
+        return slots.availablePermits();
+    }
+
+    public int activeCalls() {
+        return maxConcurrentCalls - slots.availablePermits();
+    }
+}
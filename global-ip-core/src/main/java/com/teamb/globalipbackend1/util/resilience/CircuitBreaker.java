@@ -0,0 +1,149 @@
+package com.teamb.globalipbackend1.util.resilience;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based sliding-window circuit breaker.
+ * <p>
+ * While CLOSED, the outcome of the last {@code windowSize} calls is kept in a ring; once at
+ * least {@code minimumCalls} have been recorded and the share of failures reaches
+ * {@code failureRateThreshold} percent, the breaker OPENs and refuses calls for
+ * {@code openDuration}. After that it lets {@code halfOpenCalls} trial calls through
+ * (HALF_OPEN): one failure opens it again, all of them succeeding closes it with a fresh
+ * window.
+ * <p>
+ * State changes are rare and the critical sections tiny, so the breaker simply
+ * synchronizes on itself.
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int minimumCalls;
+    private final float failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+
+    private final boolean[] window;
+    private int recorded;
+    private int next;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public CircuitBreaker(int windowSize,
+                          int minimumCalls,
+                          float failureRateThreshold,
+                          Duration openDuration,
+                          int halfOpenCalls) {
+        this(windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls, System::nanoTime);
+    }
+
+    CircuitBreaker(int windowSize,
+                   int minimumCalls,
+                   float failureRateThreshold,
+                   Duration openDuration,
+                   int halfOpenCalls,
+                   LongSupplier clock) {
+        if (windowSize < 1 || halfOpenCalls < 1) {
+            throw new IllegalArgumentException("windowSize and halfOpenCalls must be at least 1");
+        }
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.clock = clock;
+    }
+
+    /**
+     * Asks to make a call. Every call permitted here must end in exactly one of
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #release()}.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialsStarted = 0;
+                trialsSucceeded = 0;
+                // fall through to hand out the first trial
+            default:
+                if (trialsStarted >= halfOpenCalls) {
+                    return false;
+                }
+                trialsStarted++;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.CLOSED) {
+            record(false);
+        } else if (state == State.HALF_OPEN && ++trialsSucceeded >= halfOpenCalls) {
+            state = State.CLOSED;
+            resetWindow();
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failureRate() >= failureRateThreshold) {
+                open();
+            }
+        } else if (state == State.HALF_OPEN) {
+            open();
+        }
+    }
+
+    /** Gives back a permitted call that was never made. */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && trialsStarted > trialsSucceeded) {
+            trialsStarted--;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /** Failure percentage over the current window; 0 until the window has {@code minimumCalls}. */
+    public synchronized float failureRate() {
+        return recorded < minimumCalls ? 0f : 100f * failures / recorded;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[next]) failures--;
+        } else {
+            recorded++;
+        }
+        window[next] = failure;
+        if (failure) failures++;
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+}
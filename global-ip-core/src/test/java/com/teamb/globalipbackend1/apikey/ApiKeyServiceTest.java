@@ -0,0 +1,174 @@
+package com.teamb.globalipbackend1.apikey;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.teamb.globalipbackend1.model.user.ApiKey;
+import com.teamb.globalipbackend1.model.user.ApiKeyStatus;
+import com.teamb.globalipbackend1.repository.user.ApiKeyRepository;
+import com.teamb.globalipbackend1.repository.user.UserRepository;
+import com.teamb.globalipbackend1.service.user.ApiKeyService;
+import com.teamb.globalipbackend1.util.apikey.ApiKeyGenerator;
+import com.teamb.globalipbackend1.util.apikey.ApiKeyHasher;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ApiKeyServiceTest {
+
+    ApiKeyRepository repository = mock(ApiKeyRepository.class);
+    ApiKeyGenerator generator = new ApiKeyGenerator();
+    ApiKeyHasher hasher = spy(new ApiKeyHasher("test-pepper"));
+    Cache<String, ApiKey> verifiedKeys = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    ApiKeyService service = new ApiKeyService(
+            repository, generator, hasher, mock(UserRepository.class), verifiedKeys);
+
+    // stands in for the key_prefix index
+    Map<String, List<ApiKey>> byPrefix = new HashMap<>();
+
+    private ApiKey store(long id, String prefix, String hash) {
+        ApiKey key = new ApiKey();
+        key.setId(id);
+        key.setKeyPrefix(prefix);
+        key.setKeyHash(hash);
+        key.setStatus(ApiKeyStatus.ACTIVE);
+        byPrefix.computeIfAbsent(prefix, p -> new ArrayList<>()).add(key);
+        return key;
+    }
+
+    private List<String> storeKeys(int count) {
+        List<String> raw = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String key = generator.generate();
+            store(i, ApiKeyGenerator.prefixOf(key), hasher.hash(key));
+            raw.add(key);
+        }
+        return raw;
+    }
+
+    private void indexLookup() {
+        when(repository.findByKeyPrefixAndStatus(anyString(), eq(ApiKeyStatus.ACTIVE)))
+                .thenAnswer(inv -> byPrefix.getOrDefault(inv.getArgument(0), List.of()).stream()
+                        .filter(k -> k.getStatus() == ApiKeyStatus.ACTIVE)
+                        .toList());
+        when(repository.save(any(ApiKey.class))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    private double microsPerValidation(int storedKeys) {
+        byPrefix.clear();
+        verifiedKeys.invalidateAll();
+        List<String> raw = storeKeys(storedKeys);
+
+        int rounds = 2_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            // distinct keys, so every call misses the verified-key cache
+            assertNotNull(service.validate(raw.get(i % raw.size())));
+            if (i % raw.size() == raw.size() - 1) verifiedKeys.invalidateAll();
+        }
+        return (System.nanoTime() - start) / 1_000.0 / rounds;
+    }
+
+    @Test
+    void validationCostDoesNotGrowWithNumberOfKeys() {
+        indexLookup();
+
+        microsPerValidation(1_000); // warm-up
+        double small = microsPerValidation(100);
+        double large = microsPerValidation(20_000);
+
+        verify(repository, never()).findAll();
+        verify(hasher, never()).isLegacy(argThat(h -> h.startsWith("$2")));
+        // each cache miss is one indexed lookup and one HMAC comparison, whatever the key count
+        assertTrue(large < 1_000, "validation took " + small + " us with 100 keys, " + large + " us with 20000");
+    }
+
+    @Test
+    void cachedKeySkipsRepositoryUntilRevoked() {
+        indexLookup();
+        String raw = storeKeys(1).get(0);
+        ApiKey key = byPrefix.values().iterator().next().get(0);
+        when(repository.findById(key.getId())).thenReturn(Optional.of(key));
+
+        assertSame(key, service.validate(raw));
+        assertSame(key, service.validate(raw));
+        verify(repository, times(1)).findByKeyPrefixAndStatus(anyString(), any());
+
+        service.adminRevoke(key.getId());
+
+        assertThrows(RuntimeException.class, () -> service.validate(raw));
+    }
+
+    @Test
+    void legacyBcryptKeyIsMigratedOnFirstUse() {
+        indexLookup();
+        String raw = generator.generate();
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        ApiKey legacy = store(7, ApiKeyGenerator.LEGACY_PREFIX, bcrypt.encode(raw));
+        store(8, ApiKeyGenerator.LEGACY_PREFIX, bcrypt.encode(generator.generate()));
+
+        assertSame(legacy, service.validate(raw));
+
+        verify(repository).save(legacy);
+        assertEquals(ApiKeyGenerator.prefixOf(raw), legacy.getKeyPrefix());
+        assertEquals(hasher.hash(raw), legacy.getKeyHash());
+        assertFalse(hasher.isLegacy(legacy.getKeyHash()));
+
+        // next lookup goes through the prefix index without BCrypt
+        verifiedKeys.invalidateAll();
+        byPrefix.get(ApiKeyGenerator.LEGACY_PREFIX).remove(legacy);
+        byPrefix.computeIfAbsent(legacy.getKeyPrefix(), p -> new ArrayList<>()).add(legacy);
+        assertSame(legacy, service.validate(raw));
+        verify(repository, times(1)).save(any());
+    }
+
+    @Test
+    void unknownKeyPaysTheLegacyScanOnce() {
+        indexLookup();
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        store(7, ApiKeyGenerator.LEGACY_PREFIX, bcrypt.encode(generator.generate()));
+        store(8, ApiKeyGenerator.LEGACY_PREFIX, bcrypt.encode(generator.generate()));
+        String unknown = generator.generate();
+
+        for (int i = 0; i < 5; i++) {
+            assertThrows(RuntimeException.class, () -> service.validate(unknown));
+        }
+
+        verify(repository, times(1)).findByKeyPrefixAndStatus(eq(ApiKeyGenerator.LEGACY_PREFIX), any());
+        verify(hasher, times(2)).matches(eq(unknown), argThat(h -> h.startsWith("$2")));
+    }
+
+    @Test
+    void useIsRecordedThroughTheRepositoryNotOnTheCachedKey() {
+        indexLookup();
+        String raw = storeKeys(1).get(0);
+
+        ApiKey key = service.validate(raw);
+        service.recordUse(key);
+        service.recordUse(service.validate(raw));
+
+        assertNull(key.getLastUsedAt());
+        verify(repository, times(1)).updateLastUsedAt(eq(key.getId()), any());
+    }
+
+    @Test
+    void rejectsUnknownAndMalformedKeys() {
+        indexLookup();
+        storeKeys(10);
+
+        assertThrows(RuntimeException.class, () -> service.validate(generator.generate()));
+        assertThrows(RuntimeException.class, () -> service.validate("short"));
+        assertThrows(RuntimeException.class, () -> service.validate(null));
+        verify(repository, never()).save(any());
+    }
+}
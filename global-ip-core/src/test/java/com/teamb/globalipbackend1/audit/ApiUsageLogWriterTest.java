@@ -0,0 +1,186 @@
+package com.teamb.globalipbackend1.audit;
+
+import com.teamb.globalipbackend1.admin.audit.ApiUsageLog;
+import com.teamb.globalipbackend1.admin.audit.ApiUsageLogProperties;
+import com.teamb.globalipbackend1.admin.audit.ApiUsageLogWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ApiUsageLogWriterTest {
+
+    JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    List<List<ApiUsageLog>> batches = Collections.synchronizedList(new ArrayList<>());
+    ApiUsageLogWriter writer;
+
+    private ApiUsageLogWriter writer(int capacity, int batchSize, Duration interval,
+                                     ApiUsageLogProperties.OverflowPolicy policy) {
+        return writer(capacity, batchSize, interval, policy, new ApiUsageLogProperties().getBlockTimeout());
+    }
+
+    private ApiUsageLogWriter writer(int capacity, int batchSize, Duration interval,
+                                     ApiUsageLogProperties.OverflowPolicy policy, Duration blockTimeout) {
+        ApiUsageLogProperties props = new ApiUsageLogProperties();
+        props.setCapacity(capacity);
+        props.setBatchSize(batchSize);
+        props.setFlushInterval(interval);
+        props.setOverflowPolicy(policy);
+        props.setBlockTimeout(blockTimeout);
+
+        doAnswer(inv -> {
+            Collection<ApiUsageLog> batch = inv.getArgument(1);
+            batches.add(new ArrayList<>(batch));
+            return new int[0][];
+        }).when(jdbc).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+
+        writer = new ApiUsageLogWriter(jdbc, props, registry);
+        return writer;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) writer.stop();
+    }
+
+    private static ApiUsageLog record(String userId, long n) {
+        ApiUsageLog log = new ApiUsageLog();
+        log.setUserId(userId);
+        log.setService("TEST");
+        log.setAction("A");
+        log.setStatus("SUCCESS");
+        log.setResponseTimeMs(n);
+        return log;
+    }
+
+    private List<ApiUsageLog> written() {
+        synchronized (batches) {
+            return batches.stream().flatMap(List::stream).toList();
+        }
+    }
+
+    @Test
+    void writesRecordsInSubmissionOrder() {
+        writer(1024, 50, Duration.ofMillis(20), ApiUsageLogProperties.OverflowPolicy.DROP).start();
+
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(writer.submit(record("u", i)));
+        }
+        writer.stop();
+
+        List<ApiUsageLog> rows = written();
+        assertEquals(1_000, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(i, rows.get(i).getResponseTimeMs());
+        }
+        batches.forEach(b -> assertTrue(b.size() <= 50));
+    }
+
+    @Test
+    void flushesPartialBatchAfterInterval() throws Exception {
+        writer(1024, 500, Duration.ofMillis(50), ApiUsageLogProperties.OverflowPolicy.DROP).start();
+
+        writer.submit(record("u", 1));
+        writer.submit(record("u", 2));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (written().size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, written().size());
+        assertEquals(1, batches.size());
+        assertTrue(registry.get("api.usage.log.flush").timer().count() >= 1);
+    }
+
+    @Test
+    void keepsPerProducerOrderAndLosesNothingUnderLoad() throws Exception {
+        // a stalled drainer on a loaded runner must not turn into a drop
+        writer(4096, 200, Duration.ofMillis(10), ApiUsageLogProperties.OverflowPolicy.BLOCK,
+                Duration.ofSeconds(30)).start();
+
+        int producers = 8;
+        int perProducer = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch go = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            String user = "user-" + p;
+            pool.submit(() -> {
+                go.await();
+                for (int i = 0; i < perProducer; i++) {
+                    while (!writer.submit(record(user, i))) {
+                        Thread.onSpinWait();
+                    }
+                }
+                return null;
+            });
+        }
+        go.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        writer.stop();
+        List<ApiUsageLog> rows = written();
+        assertEquals(producers * perProducer, rows.size());
+        assertEquals(0, registry.get("api.usage.log.dropped").counter().count());
+
+        long[] next = new long[producers];
+        for (ApiUsageLog r : rows) {
+            int p = Integer.parseInt(r.getUserId().substring(5));
+            assertEquals(next[p]++, r.getResponseTimeMs(), "out of order for " + r.getUserId());
+        }
+        assertEquals(0, registry.get("api.usage.log.queue.depth").gauge().value());
+    }
+
+    @Test
+    void dropPolicyCountsRecordsThatDoNotFit() {
+        // not started: nothing drains, so the buffer fills up
+        writer(8, 100, Duration.ofSeconds(10), ApiUsageLogProperties.OverflowPolicy.DROP);
+
+        int accepted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (writer.submit(record("u", i))) accepted++;
+        }
+
+        assertEquals(8, accepted);
+        assertEquals(12, registry.get("api.usage.log.dropped").counter().count());
+        assertEquals(8, registry.get("api.usage.log.queue.depth").gauge().value());
+
+        // a late start still writes what was buffered, then shuts down cleanly
+        writer.start();
+        writer.stop();
+        assertEquals(8, written().size());
+        verify(jdbc, atLeastOnce()).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+    }
+
+    @Test
+    void failedBatchIsCountedAndWriterKeepsGoing() {
+        writer(1024, 10, Duration.ofMillis(10), ApiUsageLogProperties.OverflowPolicy.DROP);
+        doThrow(new org.springframework.dao.DataAccessResourceFailureException("down"))
+                .doAnswer(inv -> {
+                    batches.add(new ArrayList<>(inv.<Collection<ApiUsageLog>>getArgument(1)));
+                    return new int[0][];
+                })
+                .when(jdbc).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+
+        for (int i = 0; i < 20; i++) writer.submit(record("u", i));
+        writer.start();
+        writer.stop();
+
+        assertEquals(10, registry.get("api.usage.log.failed").counter().count());
+        assertEquals(10, written().size());
+    }
+}
@@ -0,0 +1,117 @@
+package com.teamb.globalipbackend1.resilience;
+
+import com.teamb.globalipbackend1.external.epo.EpoPriority;
+import com.teamb.globalipbackend1.external.epo.EpoQuotaExceededException;
+import com.teamb.globalipbackend1.external.epo.EpoQuotaGovernor;
+import com.teamb.globalipbackend1.external.epo.EpoQuotaGovernor.Pressure;
+import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The scheduling policy of the OPS quota governor, fed with the headers OPS sends.
+ */
+class EpoQuotaGovernorTest {
+
+    private static final String GREEN =
+            "idle (images=green:200, inpadoc=green:60, other=green:1000, retrieval=green:200, search=green:30)";
+
+    private static EpoQuotaGovernor governor(int bulkPerMinute, Duration maxWait, Duration ttl) {
+        return new EpoQuotaGovernor(new EpoProperties.Quota(
+                300, 60, bulkPerMinute, maxWait, 2, 0, 4_000_000_000L, ttl));
+    }
+
+    private static HttpHeaders headers(String throttling, Map<String, String> extra) {
+        Map<String, List<String>> map = new java.util.HashMap<>();
+        map.put("X-Throttling-Control", List.of(throttling));
+        extra.forEach((k, v) -> map.put(k, List.of(v)));
+        return HttpHeaders.of(map, (k, v) -> true);
+    }
+
+    @Test
+    void backgroundWorkIsShedBeforeInteractive() {
+        for (Pressure pressure : Pressure.values()) {
+            double interactive = EpoQuotaGovernor.share(EpoPriority.INTERACTIVE, pressure);
+            double tracking = EpoQuotaGovernor.share(EpoPriority.TRACKING, pressure);
+            double bulk = EpoQuotaGovernor.share(EpoPriority.BULK, pressure);
+            assertEquals(1.0, interactive, "interactive is never cut back");
+            assertTrue(bulk <= tracking && tracking <= interactive, pressure + ": " + bulk + " / " + tracking);
+        }
+        assertEquals(0.0, EpoQuotaGovernor.share(EpoPriority.BULK, Pressure.HIGH));
+        assertTrue(EpoQuotaGovernor.share(EpoPriority.TRACKING, Pressure.HIGH) > 0);
+        assertEquals(0.0, EpoQuotaGovernor.share(EpoPriority.TRACKING, Pressure.CRITICAL));
+
+        assertEquals(Pressure.NORMAL, EpoQuotaGovernor.quotaPressure(0.3));
+        assertEquals(Pressure.ELEVATED, EpoQuotaGovernor.quotaPressure(0.6));
+        assertEquals(Pressure.HIGH, EpoQuotaGovernor.quotaPressure(0.85));
+        assertEquals(Pressure.CRITICAL, EpoQuotaGovernor.quotaPressure(1.2));
+    }
+
+    @Test
+    void headersDrivePressureAndRates() throws Exception {
+        EpoQuotaGovernor governor = governor(30, Duration.ofSeconds(30), Duration.ofMinutes(5));
+
+        governor.update(headers(GREEN, Map.of()));
+        assertEquals(Pressure.NORMAL, governor.pressure());
+        assertEquals(30, governor.ratePerMinute(EpoPriority.BULK));
+
+        governor.update(headers(GREEN.replace("idle", "busy"), Map.of()));
+        assertEquals(Pressure.ELEVATED, governor.pressure());
+        assertEquals(15, governor.ratePerMinute(EpoPriority.BULK), "bulk halved");
+        assertEquals(60, governor.ratePerMinute(EpoPriority.TRACKING));
+
+        governor.update(headers(GREEN.replace("retrieval=green", "retrieval=red"), Map.of()));
+        assertEquals(Pressure.HIGH, governor.pressure());
+        assertFalse(governor.admits(EpoPriority.BULK));
+        assertThrows(EpoQuotaExceededException.class, () -> governor.admit(EpoPriority.BULK));
+        governor.admit(EpoPriority.TRACKING);
+        assertEquals(30, governor.ratePerMinute(EpoPriority.TRACKING), "tracking halved");
+
+        // 3.9 of 4 GB used this week, although OPS itself is idle again
+        governor.update(headers(GREEN, Map.of("X-RegisteredQuotaPerWeek-Used", "3900000000")));
+        assertEquals(Pressure.CRITICAL, governor.pressure());
+        EpoQuotaExceededException e = assertThrows(EpoQuotaExceededException.class,
+                () -> governor.admit(EpoPriority.TRACKING));
+        assertEquals(EpoPriority.TRACKING, e.getPriority());
+        assertEquals(Pressure.CRITICAL, e.getPressure());
+        governor.admit(EpoPriority.INTERACTIVE);
+
+        governor.update(headers(GREEN, Map.of("X-RegisteredQuotaPerWeek-Used", "1000")));
+        assertEquals(Pressure.NORMAL, governor.pressure());
+        assertEquals(30, governor.ratePerMinute(EpoPriority.BULK), "rates restored");
+    }
+
+    @Test
+    void readingsExpire() throws Exception {
+        EpoQuotaGovernor governor = governor(30, Duration.ofSeconds(30), Duration.ofMillis(100));
+
+        governor.update(headers(GREEN.replace("idle", "overloaded"), Map.of()));
+        assertFalse(governor.admits(EpoPriority.BULK));
+
+        Thread.sleep(150);
+        assertEquals(Pressure.NORMAL, governor.pressure());
+        governor.admit(EpoPriority.BULK);
+    }
+
+    @Test
+    void backgroundCallsAreRefusedRatherThanQueuedPastMaxWait() throws Exception {
+        // 6 a minute holds a single token; the next one is ten seconds away
+        EpoQuotaGovernor governor = governor(6, Duration.ofMillis(50), Duration.ofMinutes(5));
+        governor.admit(EpoPriority.BULK);
+
+        long started = System.nanoTime();
+        assertThrows(EpoQuotaExceededException.class, () -> governor.admit(EpoPriority.BULK));
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1), "refusal queued for the next token");
+
+        // other priorities have buckets of their own
+        governor.admit(EpoPriority.TRACKING);
+        governor.admit(EpoPriority.INTERACTIVE);
+    }
+}
@@ -0,0 +1,225 @@
+package com.teamb.globalipbackend1.resilience;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.teamb.globalipbackend1.dto.trademark.GlobalTrademarkDetailDto;
+import com.teamb.globalipbackend1.external.patentsview.PatentsViewHttpClient;
+import com.teamb.globalipbackend1.external.patentsview.config.JacksonConfig;
+import com.teamb.globalipbackend1.external.patentsview.config.PatentsViewProperties;
+import com.teamb.globalipbackend1.external.patentsview.dto.PatentDetailDto;
+import com.teamb.globalipbackend1.external.patentsview.querybuilder.PatentsViewQueryBuilder;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.external.trendsApi.client.EpoTrendClientImpl;
+import com.teamb.globalipbackend1.external.trendsApi.config.PatentAnalyticsServiceConfig;
+import com.teamb.globalipbackend1.external.trendsApi.dto.response.epo.EpoYearCountDto;
+import com.teamb.globalipbackend1.external.usptotm.UsptoTmClient;
+import com.teamb.globalipbackend1.external.usptotm.config.TrademarkServiceConfig;
+import com.teamb.globalipbackend1.service.patent.detail.PatentsViewDetailsService;
+import com.teamb.globalipbackend1.util.concurrent.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrent identical requests against a counting stub that holds every response until
+ * all callers are waiting, so none of them can arrive after the first call completed.
+ */
+class SingleFlightTest {
+
+    private static final int CALLERS = 1_000;
+
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+    private final UpstreamGuards guards = new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry());
+
+    private HttpServer server;
+    private String baseUrl;
+    private volatile int status = 200;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::upstream);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        server.stop(0);
+    }
+
+    private void upstream(HttpExchange ex) throws IOException {
+        ex.getRequestBody().readAllBytes();
+        String path = ex.getRequestURI().getPath();
+        calls.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        String body;
+        if (path.startsWith("/api/trademarks/")) {
+            body = "{\"id\":\"97123456\",\"markName\":\"ACME\",\"statusCode\":\"700\"}";
+        } else if (path.startsWith("/api/epo/trends/filings")) {
+            body = "[{\"year\":2023,\"count\":1200},{\"year\":2024,\"count\":1350}]";
+        } else {
+            body = "{\"error\":false,\"count\":1,\"patents\":[{\"patent_id\":\"11886917\","
+                    + "\"patent_title\":\"Sensor array\",\"patent_date\":\"2024-01-30\"}]}";
+        }
+        byte[] bytes = (status == 200 ? body : "{}").getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        ex.getResponseBody().write(bytes);
+        ex.close();
+    }
+
+    private int calls(String path) {
+        return calls.getOrDefault(path, new AtomicInteger()).get();
+    }
+
+    /** Fires CALLERS identical calls, lets the stub answer once they are all waiting, and collects the results. */
+    private <T> List<T> concurrently(Supplier<T> call) throws Exception {
+        CountDownLatch started = new CountDownLatch(CALLERS);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(callers.submit(() -> {
+                started.countDown();
+                return call.get();
+            }));
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        // every caller is past the latch and about to join the flight
+        Thread.sleep(300);
+        release.countDown();
+
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    @Test
+    void trademarkDetailIsFetchedOnce() throws Exception {
+        TrademarkServiceConfig config = new TrademarkServiceConfig();
+        config.setBaseUrl(baseUrl);
+        config.setServiceApiKey("key");
+        UsptoTmClient client = new UsptoTmClient(config, new JacksonConfig().objectMapper(), guards);
+        ReflectionTestUtils.setField(client, "trademarkBaseUrl", baseUrl);
+
+        List<GlobalTrademarkDetailDto> results = concurrently(() -> client.fetchTrademarkDetail("97123456"));
+
+        assertEquals(1, calls("/api/trademarks/97123456"));
+        assertEquals(CALLERS, results.size());
+        assertTrue(results.stream().allMatch(r -> r != null && "ACME".equals(r.getMarkName())));
+    }
+
+    @Test
+    void patentDetailIsFetchedOnce() throws Exception {
+        PatentsViewProperties properties = new PatentsViewProperties(baseUrl + "/api/v1/patent/", "key",
+                baseUrl + "/api/v1/patent", PatentsViewProperties.Transport.defaults());
+        try (PatentsViewHttpClient httpClient = new PatentsViewHttpClient(properties, new JacksonConfig().objectMapper(), guards)) {
+            PatentsViewDetailsService service = new PatentsViewDetailsService(httpClient, new PatentsViewQueryBuilder(),
+                    new JacksonConfig().objectMapper(), null, null);
+
+            List<PatentDetailDto> results = concurrently(() -> service.fetchPatentDetail("US11886917"));
+
+            assertEquals(1, calls("/api/v1/patent/"));
+            assertTrue(results.stream().allMatch(r -> r != null && "Sensor array".equals(r.getTitle())));
+        }
+    }
+
+    @Test
+    void trendIsFetchedOnce() throws Exception {
+        PatentAnalyticsServiceConfig config = new PatentAnalyticsServiceConfig();
+        config.setBaseUrl(baseUrl);
+        config.setTimeout(10);
+        config.setServiceApiKey("key");
+        EpoTrendClientImpl client = new EpoTrendClientImpl(HttpClient.newHttpClient(), config, guards);
+
+        List<List<EpoYearCountDto>> results = concurrently(client::getFilingTrend);
+
+        assertEquals(1, calls("/api/epo/trends/filings"));
+        assertTrue(results.stream().allMatch(r -> r.equals(List.of(new EpoYearCountDto(2023, 1200),
+                new EpoYearCountDto(2024, 1350)))));
+    }
+
+    @Test
+    void failureIsSharedButNotRemembered() throws Exception {
+        status = 500;
+        TrademarkServiceConfig config = new TrademarkServiceConfig();
+        config.setBaseUrl(baseUrl);
+        config.setServiceApiKey("key");
+        UsptoTmClient client = new UsptoTmClient(config, new JacksonConfig().objectMapper(), guards);
+        ReflectionTestUtils.setField(client, "trademarkBaseUrl", baseUrl);
+
+        List<GlobalTrademarkDetailDto> results = concurrently(() -> client.fetchTrademarkDetail("97123456"));
+        assertEquals(1, calls("/api/trademarks/97123456"));
+        assertTrue(results.stream().allMatch(r -> r == null));
+
+        // once the call completed, the next caller goes upstream again
+        status = 200;
+        assertEquals("ACME", client.fetchTrademarkDetail("97123456").getMarkName());
+        assertEquals(2, calls("/api/trademarks/97123456"));
+    }
+
+    @Test
+    void exceptionsReachEveryCallerAndDistinctKeysDoNotWait() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch leaderRunning = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+
+        Future<String> leader = callers.submit(() -> flight.execute("a", () -> {
+            leaderRunning.countDown();
+            await(fail);
+            throw new IllegalStateException("upstream down");
+        }));
+        assertTrue(leaderRunning.await(5, TimeUnit.SECONDS));
+        Future<String> follower = callers.submit(() -> flight.execute("a", () -> "never called"));
+
+        assertEquals("b", flight.execute("b", () -> "b"), "another key ran without waiting");
+        Thread.sleep(100);
+        fail.countDown();
+
+        for (Future<String> f : List.of(leader, follower)) {
+            Exception e = assertThrows(Exception.class, () -> f.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+        assertEquals(0, flight.inFlight());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.teamb.globalipbackend1.resilience;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.teamb.globalipbackend1.external.patentsview.PatentsViewCitationClient;
+import com.teamb.globalipbackend1.external.patentsview.PatentsViewHttpClient;
+import com.teamb.globalipbackend1.external.patentsview.config.JacksonConfig;
+import com.teamb.globalipbackend1.external.patentsview.config.PatentsViewProperties;
+import com.teamb.globalipbackend1.external.patentsview.querybuilder.PatentsViewCitationQueryBuilder;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.external.resilience.UpstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The PatentsView upstream guard against a local stub that can be made to hang (never
+ * answer until released), to stall mid-body, or to answer with a given status.
+ */
+class UpstreamGuardTest {
+
+    private static final String QUERY = "{\"q\":{}}";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger received = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+
+    private volatile boolean hang;
+    private volatile boolean stallBody;
+    private volatile int status = 200;
+
+    private HttpServer server;
+    private PatentsViewHttpClient httpClient;
+    private String url;
+
+    private void start(ResilienceProperties.Upstream settings, Duration requestTimeout) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/v1/patent/", this::upstream);
+        server.start();
+
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/patent/";
+        PatentsViewProperties properties = new PatentsViewProperties(url, "key", url,
+                new PatentsViewProperties.Transport(4, Duration.ofSeconds(2), requestTimeout, 0.0, Duration.ofSeconds(5)));
+        UpstreamGuards guards = new UpstreamGuards(
+                new ResilienceProperties(Map.of(UpstreamGuards.PATENTSVIEW, settings)), registry);
+        httpClient = new PatentsViewHttpClient(properties, new JacksonConfig().objectMapper(), guards);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private void upstream(HttpExchange ex) throws IOException {
+        ex.getRequestBody().readAllBytes();
+        received.incrementAndGet();
+        if (hang) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] body = (status == 200 ? "{\"error\":false,\"count\":0,\"us_patent_citations\":[]}" : "{\"error\":true}")
+                .getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, body.length);
+        if (stallBody) {
+            // headers and the first bytes go out, the rest only once released
+            ex.getResponseBody().write(body, 0, 8);
+            ex.getResponseBody().flush();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ex.getResponseBody().write(body, 8, body.length - 8);
+        } else {
+            ex.getResponseBody().write(body);
+        }
+        ex.close();
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).tag("upstream", UpstreamGuards.PATENTSVIEW).gauge().value();
+    }
+
+    private double rejected(String reason) {
+        return registry.get("upstream.calls.rejected").tag("upstream", UpstreamGuards.PATENTSVIEW)
+                .tag("reason", reason).counter().count();
+    }
+
+    private void awaitReceived(int n) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.get() < n && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(n, received.get());
+    }
+
+    @Test
+    void hungUpstreamOnlyHoldsItsOwnSlots() throws Exception {
+        start(new ResilienceProperties.Upstream(2, Duration.ofMillis(50), 20, 10, 50f, Duration.ofSeconds(30), 1, Duration.ofSeconds(60)),
+                Duration.ofSeconds(30));
+        hang = true;
+
+        CompletableFuture<?> first = CompletableFuture.runAsync(() -> httpClient.postForTree(QUERY), callers);
+        CompletableFuture<?> second = CompletableFuture.runAsync(() -> httpClient.postForTree(QUERY), callers);
+        awaitReceived(2);
+        assertEquals(2, gauge("upstream.bulkhead.active"));
+        assertEquals(0, gauge("upstream.bulkhead.available"));
+
+        long started = System.nanoTime();
+        UpstreamUnavailableException e = assertThrows(UpstreamUnavailableException.class,
+                () -> httpClient.postForTree(QUERY));
+        long waitedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertEquals(UpstreamUnavailableException.Reason.BULKHEAD_FULL, e.getReason());
+        assertTrue(waitedMs < 1_000, "refused after " + waitedMs + " ms");
+        assertEquals(2, received.get(), "the refused call reached the upstream");
+        assertEquals(1, rejected("bulkhead_full"));
+
+        // callers with a fallback answer straight away instead of joining the queue
+        PatentsViewCitationClient citations = new PatentsViewCitationClient(httpClient,
+                new PatentsViewCitationQueryBuilder(),
+                new PatentsViewProperties(url, "key", url, PatentsViewProperties.Transport.defaults()));
+        assertEquals(List.of(), citations.getBackwardCitations("10000000"));
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, gauge("upstream.bulkhead.available"));
+    }
+
+    @Test
+    void slotIsHeldUntilTheBodyIsRead() throws Exception {
+        start(new ResilienceProperties.Upstream(1, Duration.ofMillis(50), 20, 10, 50f, Duration.ofSeconds(30), 1,
+                Duration.ofSeconds(60)), Duration.ofSeconds(30));
+        stallBody = true;
+
+        CompletableFuture<?> first = CompletableFuture.runAsync(() -> httpClient.postForTree(QUERY), callers);
+        awaitReceived(1);
+        Thread.sleep(100);
+        assertEquals(1, gauge("upstream.bulkhead.active"), "slot returned when the headers arrived");
+
+        UpstreamUnavailableException e = assertThrows(UpstreamUnavailableException.class,
+                () -> httpClient.postForTree(QUERY));
+        assertEquals(UpstreamUnavailableException.Reason.BULKHEAD_FULL, e.getReason());
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertEquals(0, gauge("upstream.bulkhead.active"));
+        assertEquals(1, gauge("upstream.bulkhead.available"));
+    }
+
+    @Test
+    void stalledBodyHitsTheReadDeadline() throws Exception {
+        start(new ResilienceProperties.Upstream(1, Duration.ofMillis(50), 20, 1, 50f, Duration.ofSeconds(30), 1,
+                Duration.ofMillis(300)), Duration.ofSeconds(30));
+        stallBody = true;
+
+        long started = System.nanoTime();
+        assertThrows(RuntimeException.class, () -> httpClient.postForTree(QUERY));
+        long waitedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertTrue(waitedMs >= 250 && waitedMs < 3_000, "gave up after " + waitedMs + " ms");
+        assertEquals(0, gauge("upstream.bulkhead.active"));
+        assertEquals(1, gauge("upstream.bulkhead.available"));
+        assertEquals(1, gauge("upstream.circuit.state"), "timed-out read counts as a failure");
+    }
+
+    @Test
+    void timeoutsOpenTheCircuitUntilTrialCallsSucceed() throws Exception {
+        start(new ResilienceProperties.Upstream(8, Duration.ofMillis(50), 4, 4, 50f, Duration.ofMillis(300), 1, Duration.ofSeconds(60)),
+                Duration.ofMillis(100));
+        hang = true;
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(RuntimeException.class, () -> httpClient.postForTree(QUERY));
+        }
+        assertEquals(1, gauge("upstream.circuit.state"), "circuit is open");
+
+        UpstreamUnavailableException e = assertThrows(UpstreamUnavailableException.class,
+                () -> httpClient.postForTree(QUERY));
+        assertEquals(UpstreamUnavailableException.Reason.CIRCUIT_OPEN, e.getReason());
+        assertEquals(4, received.get(), "the refused call reached the upstream");
+        assertEquals(1, rejected("circuit_open"));
+
+        // upstream recovers; after the open period one trial call closes the circuit
+        hang = false;
+        release.countDown();
+        Thread.sleep(350);
+        assertFalse(httpClient.postForTree(QUERY).isMissingNode());
+        assertEquals(0, gauge("upstream.circuit.state"), "circuit is closed");
+        assertEquals(5, received.get());
+    }
+
+    @Test
+    void failedTrialCallReopensTheCircuit() throws Exception {
+        start(new ResilienceProperties.Upstream(8, Duration.ofMillis(50), 4, 4, 50f, Duration.ofMillis(200), 1, Duration.ofSeconds(60)),
+                Duration.ofSeconds(5));
+        status = 503;
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(RuntimeException.class, () -> httpClient.postForTree(QUERY));
+        }
+        assertEquals(1, gauge("upstream.circuit.state"));
+
+        Thread.sleep(250);
+        assertThrows(RuntimeException.class, () -> httpClient.postForTree(QUERY));
+        assertEquals(1, gauge("upstream.circuit.state"), "trial failure reopens the circuit");
+        assertThrows(UpstreamUnavailableException.class, () -> httpClient.postForTree(QUERY));
+        assertEquals(5, received.get());
+    }
+
+    @Test
+    void clientErrorsDoNotCountAgainstTheCircuit() throws Exception {
+        start(new ResilienceProperties.Upstream(8, Duration.ofMillis(50), 4, 4, 50f, Duration.ofSeconds(30), 1, Duration.ofSeconds(60)),
+                Duration.ofSeconds(5));
+        status = 400;
+
+        for (int i = 0; i < 10; i++) {
+            RuntimeException e = assertThrows(RuntimeException.class, () -> httpClient.postForTree(QUERY));
+            assertTrue(e.getMessage().startsWith("API error: 400"), e.getMessage());
+        }
+        assertEquals(0, gauge("upstream.circuit.state"));
+        assertEquals(0, gauge("upstream.circuit.failure.rate"));
+        assertEquals(10, received.get());
+    }
+}
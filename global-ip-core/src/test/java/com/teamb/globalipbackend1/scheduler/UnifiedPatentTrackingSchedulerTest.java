@@ -1,6 +1,7 @@
 package com.teamb.globalipbackend1.scheduler;
 
 import com.teamb.globalipbackend1.dto.lifecycle.ApplicationLifecycleDto;
+import com.teamb.globalipbackend1.external.patentsview.dto.PatentDetailBatch;
 import com.teamb.globalipbackend1.external.patentsview.dto.PatentDetailDto;
 import com.teamb.globalipbackend1.model.tracking.UserTrackingPreferences;
 import com.teamb.globalipbackend1.model.tracking.UserTrackingPreferencesId;
@@ -17,6 +18,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
@@ -80,8 +83,8 @@ class UnifiedPatentTrackingSchedulerTest {
         PatentDetailDto patentDetail = mock(PatentDetailDto.class);
         when(patentDetail.getLifecycle()).thenReturn(current);
 
-        when(patentsViewDetailsService.fetchPatentDetail(patentId))
-                .thenReturn(patentDetail);
+        when(patentsViewDetailsService.fetchPatentDetails(Set.of(patentId)))
+                .thenReturn(new PatentDetailBatch(Map.of(patentId, patentDetail), Set.of(), Set.of()));
 
         // when
         scheduler.checkAllPatentUpdates();
@@ -0,0 +1,195 @@
+package com.teamb.globalipbackend1.search;
+
+import com.teamb.globalipbackend1.external.epo.EpoClient;
+import com.teamb.globalipbackend1.external.epo.EpoThrottle;
+import com.teamb.globalipbackend1.external.epo.EpoTokenManager;
+import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
+import com.teamb.globalipbackend1.external.epo.dto.EpoBiblioBatch;
+import com.teamb.globalipbackend1.external.epo.dto.EpoCompetitorFilingDto;
+import com.teamb.globalipbackend1.external.epo.dto.EpoPublicationParser;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+import com.teamb.globalipbackend1.service.patent.search.EPOPatentSearchService;
+import com.teamb.globalipbackend1.service.patent.search.PatentFilterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Bulk biblio retrieval against recorded OPS responses (src/test/resources/epo).
+ */
+class EpoBiblioBatchTest {
+
+    private OpsStubServer ops;
+    private EpoProperties props;
+    private EpoClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ops = new OpsStubServer()
+                .route("/published-data/search", ex -> ops.respond(ex, 200, OpsStubServer.fixture("search-acme.xml")))
+                .route("/published-data/publication/epodoc/biblio", ex ->
+                        ops.respond(ex, 200, OpsStubServer.fixture("biblio-bulk-epodoc.xml")))
+                .route("/published-data/publication/docdb/biblio", ex ->
+                        ops.respond(ex, 200, OpsStubServer.fixture("biblio-bulk-docdb.xml")))
+                .route("/published-data/publication/epodoc/EP2000002A1/abstract", ex ->
+                        ops.respond(ex, 200, """
+                                <ops:world-patent-data xmlns:ops="http://ops.epo.org" xmlns="http://www.epo.org/exchange">
+                                <exchange-documents><exchange-document country="EP" doc-number="2000002" kind="A1">
+                                <bibliographic-data><abstract lang="en"><p>Cooling plates between cells.</p></abstract>
+                                </bibliographic-data></exchange-document></exchange-documents></ops:world-patent-data>"""));
+        props = ops.properties(8, 8, 6000);
+        client = new EpoClient(props, new EpoPublicationParser(), new EpoThrottle(props), new EpoTokenManager(props),
+                new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ops.close();
+    }
+
+    @Test
+    void fetchesMixedFormatsInOneRequestPerFormat() {
+        EpoBiblioBatch batch = client.fetchBiblioBatch(List.of(
+                "EP1000001B1", "US9876543B2", "EP2000002A1", "WO2020123456A1", "EP9999999B1", "JP2019123456A1"));
+
+        assertEquals(List.of("EP1000001B1", "US9876543B2", "EP2000002A1", "WO2020123456A1"),
+                List.copyOf(batch.documents().keySet()));
+        assertEquals(List.of("EP9999999B1", "JP2019123456A1"), List.copyOf(batch.missing()));
+
+        List<OpsStubServer.Request> requests = ops.requests("/biblio");
+        assertEquals(2, requests.size());
+        assertEquals("POST", requests.get(0).method());
+        assertEquals("EP1000001B1,EP2000002A1,EP9999999B1", requests.get(0).body());
+        assertEquals("US.9876543.B2,WO.2020123456.A1,JP.2019123456.A1", requests.get(1).body());
+
+        PatentDocument ep = batch.documents().get("EP1000001B1");
+        assertEquals("EP1000001", ep.getPublicationNumber());
+        assertEquals("B1", ep.getWipoKind());
+        assertEquals("Key exchange for distributed systems", ep.getTitle());
+        assertEquals("A method for exchanging keys between nodes of a distributed system.", ep.getAbstractText());
+        assertEquals(List.of("ACME CORP [US]"), ep.getAssignees());
+        assertEquals(List.of("DOE JANE [US]"), ep.getInventors());
+        assertEquals(2, ep.getIpcClasses().size());
+        assertEquals(LocalDate.of(2018, 6, 4), ep.getFilingDate());
+        assertEquals(LocalDate.of(2021, 3, 17), ep.getGrantDate());
+
+        assertEquals("Filtration device", batch.documents().get("WO2020123456A1").getTitle());
+        assertNull(batch.documents().get("EP2000002A1").getAbstractText());
+    }
+
+    @Test
+    void matchesRequestsWithoutOrWithDifferentKindCode() {
+        EpoBiblioBatch batch = client.fetchBiblioBatch(List.of("EP1000001", "EP2000002B1"));
+
+        assertEquals("B1", batch.documents().get("EP1000001").getWipoKind());
+        assertEquals("A1", batch.documents().get("EP2000002B1").getWipoKind());
+        assertTrue(batch.missing().isEmpty());
+    }
+
+    @Test
+    void chunksToTheOpsLimit() throws IOException {
+        ops.close();
+        ops = new OpsStubServer().route("/published-data/publication/epodoc/biblio", ex -> {
+            String body = ops.requests().getLast().body();
+            String docs = Arrays.stream(body.split(","))
+                    .map(id -> """
+                            <exchange-document country="EP" doc-number="%s" kind="B1">
+                            <bibliographic-data><invention-title lang="en">T</invention-title></bibliographic-data>
+                            </exchange-document>""".formatted(id.substring(2, id.length() - 2)))
+                    .collect(Collectors.joining());
+            ops.respond(ex, 200, "<ops:world-patent-data xmlns:ops=\"http://ops.epo.org\">"
+                    + "<exchange-documents>" + docs + "</exchange-documents></ops:world-patent-data>");
+        });
+        props = ops.properties(8, 8, 6000);
+        client = new EpoClient(props, new EpoPublicationParser(), new EpoThrottle(props), new EpoTokenManager(props),
+                new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+
+        List<String> numbers = IntStream.range(0, 230).mapToObj(i -> "EP" + (3_000_000 + i) + "B1").toList();
+        EpoBiblioBatch batch = client.fetchBiblioBatch(numbers);
+
+        assertEquals(numbers, List.copyOf(batch.documents().keySet()));
+        assertTrue(batch.missing().isEmpty());
+        assertEquals(List.of(100, 100, 30), ops.requests().stream()
+                .map(r -> r.body().split(",").length)
+                .toList());
+    }
+
+    @Test
+    void failedChunkIsReportedAsFailedNotMissing() throws IOException {
+        ops.close();
+        ops = new OpsStubServer()
+                .route("/published-data/publication/epodoc/biblio", ex -> ops.respond(ex, 503, "<fault>busy</fault>"))
+                .route("/published-data/publication/docdb/biblio", ex ->
+                        ops.respond(ex, 200, OpsStubServer.fixture("biblio-bulk-docdb.xml")));
+        props = ops.properties(8, 8, 6000);
+        client = new EpoClient(props, new EpoPublicationParser(), new EpoThrottle(props), new EpoTokenManager(props),
+                new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+
+        EpoBiblioBatch batch = client.fetchBiblioBatch(List.of("EP1000001B1", "US9876543B2", "EP2000002A1"));
+
+        assertEquals(List.of("US9876543B2"), List.copyOf(batch.documents().keySet()));
+        assertTrue(batch.missing().isEmpty());
+        assertEquals(List.of("EP1000001B1", "EP2000002A1"), List.copyOf(batch.failed()));
+        assertFalse(batch.complete());
+    }
+
+    @Test
+    void failedBiblioChunkEndsTheSearchStream() throws IOException {
+        ops.close();
+        ops = new OpsStubServer()
+                .route("/published-data/search", ex -> ops.respond(ex, 200, OpsStubServer.fixture("search-acme.xml")))
+                .route("/published-data/publication/epodoc/biblio", ex -> ops.respond(ex, 503, "<fault>busy</fault>"));
+        props = ops.properties(8, 8, 6000);
+        client = new EpoClient(props, new EpoPublicationParser(), new EpoThrottle(props), new EpoTokenManager(props),
+                new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+
+        // the hits must not come through as title-less numbers
+        assertThrows(IllegalStateException.class,
+                () -> client.searchAll("pa=acme", LocalDate.of(2020, 1, 1), LocalDate.of(2024, 12, 31)).toList());
+    }
+
+    @Test
+    void searchDetailsComeFromOneBulkRequest() {
+        EPOPatentSearchService service = new EPOPatentSearchService(client, mock(PatentFilterService.class), props);
+
+        List<PatentDocument> results = service.searchPatents("acme");
+
+        assertEquals(List.of("EP1000001", "EP2000002"),
+                results.stream().map(PatentDocument::getPublicationNumber).toList());
+        assertEquals(1, ops.requests("/biblio").size());
+        // only the document whose biblio had no abstract needs the per-id call
+        assertEquals(List.of("/3.2/rest-services/published-data/publication/epodoc/EP2000002A1/abstract"),
+                ops.requests("/abstract").stream().map(OpsStubServer.Request::path).toList());
+        assertEquals("Cooling plates between cells.", results.get(1).getAbstractText());
+    }
+
+    @Test
+    void competitorFilingsUseOneBulkRequestPerAssignee() {
+        List<EpoCompetitorFilingDto> filings =
+                client.fetchCompetitorFilings(List.of("ACME CORP"), LocalDate.of(2020, 1, 1)).filings();
+
+        assertEquals(3, filings.size());
+        assertEquals(1, ops.requests("/biblio").size());
+        assertTrue(ops.requests("/abstract").isEmpty());
+
+        assertEquals("Key exchange for distributed systems", filings.get(0).getTitle());
+        assertEquals(LocalDate.of(2021, 3, 17), filings.get(0).getPublicationDate());
+        assertEquals("Battery thermal management", filings.get(1).getTitle());
+        assertEquals("EP9999999B1", filings.get(2).getPublicationNumber());
+        assertNull(filings.get(2).getTitle());
+    }
+}
@@ -0,0 +1,157 @@
+package com.teamb.globalipbackend1.search;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.teamb.globalipbackend1.external.epo.dto.EpoBiblioResponse;
+import com.teamb.globalipbackend1.external.epo.dto.EpoDocumentId;
+import com.teamb.globalipbackend1.external.epo.dto.EpoOpsStreamParser;
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StAX parsing of recorded OPS responses (src/test/resources/epo), and a comparison with
+ * the String + XmlMapper binding it replaces.
+ */
+class EpoOpsStreamParserTest {
+
+    private static List<PatentDocument> documents(String xml) throws Exception {
+        return EpoOpsStreamParser.readDocuments(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void readsBulkBiblioResponse() throws Exception {
+        List<PatentDocument> docs = documents(OpsStubServer.fixture("biblio-bulk-epodoc.xml"));
+
+        // the not-found entry has no bibliographic data
+        assertEquals(List.of("EP1000001", "EP2000002"), docs.stream().map(PatentDocument::getPublicationNumber).toList());
+
+        PatentDocument ep = docs.getFirst();
+        assertEquals("EP", ep.getJurisdiction());
+        assertEquals("B1", ep.getWipoKind());
+        assertEquals("Key exchange for distributed systems", ep.getTitle());
+        assertEquals("A method for exchanging keys between nodes of a distributed system.", ep.getAbstractText());
+        assertEquals(List.of("ACME CORP [US]"), ep.getAssignees());
+        assertEquals(List.of("DOE JANE [US]"), ep.getInventors());
+        assertEquals(2, ep.getIpcClasses().size());
+        assertEquals(LocalDate.of(2018, 6, 4), ep.getFilingDate());
+        assertEquals(LocalDate.of(2021, 3, 17), ep.getGrantDate());
+
+        assertNull(docs.get(1).getAbstractText());
+        assertTrue(docs.get(1).getInventors().isEmpty());
+    }
+
+    @Test
+    void readsSearchBiblioResponse() throws Exception {
+        List<PatentDocument> docs = documents(OpsStubServer.fixture("search-biblio-acme.xml"));
+
+        assertEquals(List.of("EP1000001", "EP2000002", "WO2020123456"),
+                docs.stream().map(PatentDocument::getPublicationNumber).toList());
+        assertEquals("Filtration device", docs.get(2).getTitle());
+    }
+
+    @Test
+    void readsSearchReferences() throws Exception {
+        List<EpoDocumentId> ids = EpoOpsStreamParser.readSearchReferences(new ByteArrayInputStream(
+                OpsStubServer.fixture("search-acme.xml").getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(List.of("EP1000001B1", "EP2000002A1", "EP9999999B1"),
+                ids.stream().map(id -> id.getCountry() + id.getDocNumber() + id.getKind()).toList());
+    }
+
+    @Test
+    void skipsSubtreesItDoesNotUse() throws Exception {
+        List<PatentDocument> docs = documents("""
+                <ops:world-patent-data xmlns:ops="http://ops.epo.org" xmlns="http://www.epo.org/exchange">
+                <exchange-documents><exchange-document country="EP" doc-number="3000003" kind="A1">
+                <bibliographic-data>
+                  <publication-reference>
+                    <document-id document-id-type="epodoc"><doc-number>EP3000003</doc-number><date>20200102</date></document-id>
+                    <document-id document-id-type="docdb"><country>EP</country><doc-number>3000003</doc-number><date>20200101</date></document-id>
+                  </publication-reference>
+                  <references-cited>
+                    <citation><patcit><document-id><date>19990101</date></document-id></patcit></citation>
+                  </references-cited>
+                  <invention-title lang="fr">Pompe</invention-title>
+                  <abstract lang="fr">Texte <p>premier</p><p><b>second</b> paragraphe</p></abstract>
+                  <parties><inventors>
+                    <inventor data-format="epodoc"><inventor-name><name>SMITH STEVEN</name></inventor-name></inventor>
+                    <inventor data-format="original"><inventor-name><name>SMITH, STEVEN,</name></inventor-name></inventor>
+                  </inventors></parties>
+                  <patent-classifications><patent-classification>
+                    <section>F</section><class>04</class><subclass>B</subclass><main-group>1</main-group><subgroup>00</subgroup>
+                  </patent-classification></patent-classifications>
+                </bibliographic-data>
+                <claims><claim><claim-text>A pump.</claim-text></claim></claims>
+                <description><p>Long description</p></description>
+                </exchange-document></exchange-documents></ops:world-patent-data>""");
+
+        PatentDocument doc = docs.getFirst();
+        assertEquals(1, docs.size());
+        assertEquals(LocalDate.of(2020, 1, 1), doc.getGrantDate(), "docdb date, not the epodoc or cited one");
+        assertEquals("Pompe", doc.getTitle(), "falls back to the first title");
+        assertEquals("Texte premier second paragraphe", doc.getAbstractText());
+        assertEquals(List.of("SMITH STEVEN"), doc.getInventors());
+        assertEquals(List.of("F04B1/00"), doc.getCpcClasses());
+    }
+
+    /**
+     * Allocation and throughput of both paths on a 100-document bulk biblio payload. The
+     * tree path is what EpoClient did before: read the body into a String, then bind it.
+     */
+    @Test
+    void allocatesLessThanTreeBinding() throws Exception {
+        String fixture = OpsStubServer.fixture("biblio-bulk-epodoc.xml");
+        String document = fixture.substring(fixture.indexOf("<exchange-document "), fixture.indexOf("<exchange-document ",
+                fixture.indexOf("<exchange-document ") + 1));
+        String payload = "<ops:world-patent-data xmlns:ops=\"http://ops.epo.org\" xmlns=\"http://www.epo.org/exchange\">"
+                + "<exchange-documents>"
+                + IntStream.range(0, 100)
+                        .mapToObj(i -> document.replace("1000001", String.valueOf(4_000_000 + i)))
+                        .collect(Collectors.joining())
+                + "</exchange-documents></ops:world-patent-data>";
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+
+        XmlMapper xmlMapper = (XmlMapper) new XmlMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        Run tree = measure(() -> xmlMapper.readValue(new String(bytes, StandardCharsets.UTF_8), EpoBiblioResponse.class)
+                .getExchangeDocuments().getDocuments().size());
+        Run stax = measure(() -> EpoOpsStreamParser.readDocuments(new ByteArrayInputStream(bytes)).size());
+
+        assertEquals(100, tree.documents);
+        assertEquals(100, stax.documents);
+        assertTrue(stax.bytesPerOp < tree.bytesPerOp,
+                "StAX " + stax.bytesPerOp + " B/op vs XmlMapper " + tree.bytesPerOp + " B/op");
+    }
+
+    private record Run(int documents, long bytesPerOp) {
+    }
+
+    private interface Parse {
+        int run() throws Exception;
+    }
+
+    private static Run measure(Parse parse) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        // enough warm-up for C2 to settle on both paths; fewer rounds skew the allocation figures
+        int documents = 0;
+        for (int i = 0; i < 1_500; i++) documents = parse.run();
+
+        int iterations = 500;
+        long bytes0 = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) parse.run();
+        long allocated = threads.getCurrentThreadAllocatedBytes() - bytes0;
+
+        return new Run(documents, allocated / iterations);
+    }
+}
@@ -0,0 +1,178 @@
+package com.teamb.globalipbackend1.search;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.teamb.globalipbackend1.external.epo.EpoClient;
+import com.teamb.globalipbackend1.external.epo.EpoThrottle;
+import com.teamb.globalipbackend1.external.epo.EpoTokenManager;
+import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
+import com.teamb.globalipbackend1.external.epo.dto.EpoPublicationParser;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+import com.teamb.globalipbackend1.service.patent.search.EPOPatentSearchService;
+import com.teamb.globalipbackend1.service.patent.search.PatentFilterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs EPO searches against a local OPS stub that delays every data call. The bulk
+ * biblio response carries no abstracts, so each result needs its own abstract call.
+ */
+class EpoParallelDetailFetchTest {
+
+    private static final int IDS = 25;
+    private static final long DELAY_MS = 60;
+
+    private OpsStubServer ops;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startStub() throws IOException {
+        ops = new OpsStubServer()
+                .route("/published-data/search", ex -> ops.respond(ex, 200, searchXml()))
+                .route("/published-data/publication/", this::publication);
+    }
+
+    @AfterEach
+    void stopStub() {
+        ops.close();
+    }
+
+    private void publication(HttpExchange ex) throws IOException {
+        int now = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(now, Math::max);
+        String body;
+        try {
+            String[] parts = ex.getRequestURI().getPath().split("/");
+            String ident = parts[parts.length - 2];
+
+            if ("epodoc".equals(ident)) {
+                // bulk biblio: POST .../epodoc/biblio
+                Thread.sleep(DELAY_MS);
+                body = biblioXml();
+            } else {
+                // .../epodoc/EP1000007B1/abstract; later ids answer faster, so
+                // completion order is the reverse of input order
+                int n = Integer.parseInt(ident.substring(2, ident.length() - 2)) - 1_000_000;
+                Thread.sleep(DELAY_MS + (IDS - n) * 2L);
+                body = abstractXml(n);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            // before the reply goes out: once the client has read it, its slot may serve the next call
+            inFlight.decrementAndGet();
+        }
+        ops.respond(ex, 200, body);
+    }
+
+    private EPOPatentSearchService service(int maxConcurrent, int detailConcurrency) {
+        EpoProperties props = ops.properties(maxConcurrent, detailConcurrency, 6000);
+        EpoClient client = new EpoClient(props, new EpoPublicationParser(), new EpoThrottle(props), new EpoTokenManager(props),
+                new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+        return new EPOPatentSearchService(client, mock(PatentFilterService.class), props);
+    }
+
+    @Test
+    void fetchesDetailsConcurrentlyAndKeepsSearchOrder() {
+        long t0 = System.nanoTime();
+        List<PatentDocument> sequential = service(1, 1).searchPatents("widget");
+        long sequentialMs = (System.nanoTime() - t0) / 1_000_000;
+
+        maxInFlight.set(0);
+        long t1 = System.nanoTime();
+        List<PatentDocument> parallel = service(8, 8).searchPatents("widget");
+        long parallelMs = (System.nanoTime() - t1) / 1_000_000;
+
+        List<String> expected = IntStream.rangeClosed(1, IDS).mapToObj(n -> "EP" + (1_000_000 + n)).toList();
+        assertEquals(expected, sequential.stream().map(PatentDocument::getPublicationNumber).toList());
+        assertEquals(expected, parallel.stream().map(PatentDocument::getPublicationNumber).toList());
+        assertEquals("Abstract 7", parallel.get(6).getAbstractText());
+
+        assertTrue(maxInFlight.get() <= 8, "semaphore exceeded: " + maxInFlight.get());
+        assertTrue(parallelMs * 3 < sequentialMs,
+                "expected at least 3x speed-up, got " + sequentialMs + " -> " + parallelMs + " ms");
+    }
+
+    @Test
+    void failedDetailsAreDroppedWithoutSinkingTheBatch() {
+        failing.add("1000003");
+        failing.add("1000020");
+
+        List<PatentDocument> results = service(8, 8).searchPatents("widget");
+
+        assertEquals(IDS - 2, results.size());
+        assertTrue(results.stream().noneMatch(p -> p.getPublicationNumber().equals("EP1000003")));
+        assertEquals("EP1000004", results.get(2).getPublicationNumber());
+    }
+
+    @Test
+    void quotaReportedByOpsPacesRetrievalCalls() {
+        // 240 retrieval calls a minute is one every 250 ms once the 5 s burst (20 calls) is spent;
+        // the bulk biblio response lowers the configured 6000/min to that, leaving ~5 paced calls
+        ops.throttlingHeader =
+                "busy (images=green:200, inpadoc=green:60, other=green:1000, retrieval=yellow:240, search=green:600)";
+
+        long t0 = System.nanoTime();
+        List<PatentDocument> results = service(8, 8).searchPatents("widget");
+        long elapsedMs = (System.nanoTime() - t0) / 1_000_000;
+
+        assertEquals(IDS, results.size());
+        assertEquals(1, ops.requests("/biblio").size());
+        assertEquals(IDS, ops.requests("/abstract").size());
+        assertTrue(elapsedMs > 1_000, "retrieval calls were not paced: " + elapsedMs + " ms");
+    }
+
+    private static String searchXml() {
+        StringBuilder sb = new StringBuilder("""
+                <ops:world-patent-data xmlns:ops="http://ops.epo.org" xmlns="http://www.epo.org/exchange">
+                <ops:biblio-search><ops:search-result>""");
+        for (int n = 1; n <= IDS; n++) {
+            sb.append("<ops:publication-reference><document-id document-id-type=\"docdb\">")
+                    .append("<country>EP</country><doc-number>").append(1_000_000 + n)
+                    .append("</doc-number><kind>B1</kind></document-id></ops:publication-reference>");
+        }
+        return sb.append("</ops:search-result></ops:biblio-search></ops:world-patent-data>").toString();
+    }
+
+    private String biblioXml() {
+        StringBuilder sb = new StringBuilder("""
+                <ops:world-patent-data xmlns:ops="http://ops.epo.org" xmlns="http://www.epo.org/exchange">
+                <exchange-documents>""");
+        for (int n = 1; n <= IDS; n++) {
+            String number = String.valueOf(1_000_000 + n);
+            if (failing.contains(number)) continue;
+            sb.append("""
+                    <exchange-document country="EP" doc-number="%s" kind="B1">
+                    <bibliographic-data><invention-title lang="en">Widget %d</invention-title></bibliographic-data>
+                    </exchange-document>""".formatted(number, n));
+        }
+        return sb.append("</exchange-documents></ops:world-patent-data>").toString();
+    }
+
+    private static String abstractXml(int n) {
+        return """
+                <ops:world-patent-data xmlns:ops="http://ops.epo.org" xmlns="http://www.epo.org/exchange">
+                <exchange-documents>
+                <exchange-document country="EP" doc-number="%d" kind="B1">
+                <bibliographic-data><abstract lang="en"><p>Abstract %d</p></abstract></bibliographic-data>
+                </exchange-document>
+                </exchange-documents></ops:world-patent-data>""".formatted(1_000_000 + n, n);
+    }
+}
@@ -0,0 +1,149 @@
+package com.teamb.globalipbackend1.search;
+
+import com.teamb.globalipbackend1.external.epo.EpoClient;
+import com.teamb.globalipbackend1.external.epo.EpoPriority;
+import com.teamb.globalipbackend1.external.epo.EpoQuotaGovernor;
+import com.teamb.globalipbackend1.external.epo.EpoThrottle;
+import com.teamb.globalipbackend1.external.epo.EpoTokenManager;
+import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
+import com.teamb.globalipbackend1.external.epo.dto.EpoBiblioBatch;
+import com.teamb.globalipbackend1.external.epo.dto.EpoCompetitorFilings;
+import com.teamb.globalipbackend1.external.epo.dto.EpoPublicationParser;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Interactive, tracking and bulk callers sharing one client against a stub whose
+ * throttling and quota headers change under them.
+ */
+class EpoQuotaGovernorIntegrationTest {
+
+    private static final String IDLE =
+            "idle (images=green:200, inpadoc=green:60, other=green:1000, retrieval=green:6000, search=green:600)";
+
+    private OpsStubServer ops;
+    private EpoThrottle throttle;
+    private EpoClient client;
+    private volatile CountDownLatch bodyGate;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ops = new OpsStubServer()
+                .route("/published-data/search", ex -> ops.respond(ex, 200, OpsStubServer.fixture("search-acme.xml")))
+                .route("/published-data/publication/epodoc/biblio", ex -> {
+                    CountDownLatch gate = bodyGate;
+                    if (gate == null) {
+                        ops.respond(ex, 200, OpsStubServer.fixture("biblio-bulk-epodoc.xml"));
+                        return;
+                    }
+                    // headers and the first bytes go out, the rest only once the gate opens
+                    byte[] body = OpsStubServer.fixture("biblio-bulk-epodoc.xml").getBytes(StandardCharsets.UTF_8);
+                    ex.getResponseHeaders().add("X-Throttling-Control", ops.throttlingHeader);
+                    ex.sendResponseHeaders(200, body.length);
+                    ex.getResponseBody().write(body, 0, 64);
+                    ex.getResponseBody().flush();
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    ex.getResponseBody().write(body, 64, body.length - 64);
+                    ex.close();
+                });
+        EpoProperties props = ops.properties(8, 8, 6000);
+        throttle = new EpoThrottle(props);
+        client = new EpoClient(props, new EpoPublicationParser(), throttle, new EpoTokenManager(props),
+                new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (bodyGate != null) bodyGate.countDown();
+        ops.close();
+    }
+
+    private EpoBiblioBatch lookup() {
+        return client.fetchBiblioBatch(List.of("EP1000001B1"));
+    }
+
+    @Test
+    void backgroundWorkIsRefusedFirstAsOpsReportsPressure() {
+        assertTrue(EpoPriority.BULK.call(this::lookup).documents().containsKey("EP1000001B1"));
+        assertTrue(EpoPriority.TRACKING.call(this::lookup).documents().containsKey("EP1000001B1"));
+        assertEquals(2, ops.requests("/biblio").size());
+
+        // OPS turns busy and retrieval red; the next response tells the governor
+        ops.throttlingHeader = IDLE.replace("idle", "busy").replace("retrieval=green", "retrieval=red");
+        lookup();
+        assertEquals(EpoQuotaGovernor.Pressure.HIGH, throttle.governor().pressure());
+        assertEquals(3, ops.requests("/biblio").size());
+
+        assertFalse(throttle.admits(EpoPriority.BULK));
+        EpoBiblioBatch refused = EpoPriority.BULK.call(this::lookup);
+        assertTrue(refused.documents().isEmpty());
+        assertEquals(List.of("EP1000001B1"), List.copyOf(refused.failed()));
+        assertEquals(3, ops.requests("/biblio").size(), "a refused bulk call reached OPS");
+
+        assertTrue(EpoPriority.TRACKING.call(this::lookup).documents().containsKey("EP1000001B1"));
+        assertEquals(4, ops.requests("/biblio").size());
+
+        // the weekly quota is nearly used up: only users are served
+        ops.throttlingHeader = IDLE;
+        ops.extraHeaders = Map.of("X-RegisteredQuotaPerWeek-Used", "3900000000");
+        lookup();
+        assertEquals(EpoQuotaGovernor.Pressure.CRITICAL, throttle.governor().pressure());
+        assertTrue(EpoPriority.TRACKING.call(this::lookup).documents().isEmpty());
+        assertEquals(5, ops.requests("/biblio").size(), "a refused tracking call reached OPS");
+        assertTrue(lookup().documents().containsKey("EP1000001B1"));
+        assertEquals(6, ops.requests("/biblio").size());
+    }
+
+    @Test
+    void throttleSlotIsHeldUntilTheBodyIsRead() throws Exception {
+        bodyGate = new CountDownLatch(1);
+        CompletableFuture<EpoBiblioBatch> pending = CompletableFuture.supplyAsync(this::lookup);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ops.requests("/biblio").isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(100);
+        assertEquals(7, throttle.availableSlots(), "permit returned before the body was read");
+
+        bodyGate.countDown();
+        assertTrue(pending.get(5, TimeUnit.SECONDS).documents().containsKey("EP1000001B1"));
+        assertEquals(8, throttle.availableSlots());
+    }
+
+    @Test
+    void priorityReachesTheClientsOwnFanOut() {
+        ops.throttlingHeader = IDLE.replace("idle", "overloaded");
+        lookup();
+        int before = ops.requests().size();
+
+        // searchAll probes and pages on threads of its own; they inherit the bulk priority
+        EpoCompetitorFilings filings = EpoPriority.BULK.call(
+                () -> client.fetchCompetitorFilings(List.of("ACME"), LocalDate.of(2020, 1, 1)));
+        assertTrue(filings.filings().isEmpty());
+        assertEquals(List.of("ACME"), filings.failedAssignees(), "refused search reported as complete");
+        assertEquals(before, ops.requests().size(), "bulk search reached OPS while overloaded");
+
+        assertFalse(client.fetchCompetitorFilings(List.of("ACME"), LocalDate.of(2020, 1, 1)).filings().isEmpty(),
+                "interactive callers are still served");
+    }
+}
@@ -0,0 +1,230 @@
+package com.teamb.globalipbackend1.search;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.teamb.globalipbackend1.external.epo.EpoClient;
+import com.teamb.globalipbackend1.external.epo.EpoThrottle;
+import com.teamb.globalipbackend1.external.epo.EpoTokenManager;
+import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
+import com.teamb.globalipbackend1.external.epo.dto.EpoCompetitorFilingDto;
+import com.teamb.globalipbackend1.external.epo.dto.EpoCompetitorFilings;
+import com.teamb.globalipbackend1.external.epo.dto.EpoPublicationParser;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pages and date shards of EpoClient.searchAll against a stub that serves a synthetic
+ * corpus the way OPS does: filtered by "pd within", sliced by X-OPS-Range, and refusing
+ * ranges past 2000.
+ */
+class EpoSearchStreamTest {
+
+    private static final Pattern WITHIN = Pattern.compile("pd within \"(\\d{8}) (\\d{8})\"");
+
+    private record Hit(String number, LocalDate published) {
+    }
+
+    private OpsStubServer ops;
+    private EpoClient client;
+    private volatile List<Hit> corpus = List.of();
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    // requests for this range, or for date windows starting in this year, fail
+    private volatile String failRange;
+    private volatile String failWindowFrom;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ops = new OpsStubServer().route("/published-data/search/biblio", this::search);
+        ops.throttlingHeader =
+                "idle (images=green:200, inpadoc=green:60, other=green:1000, retrieval=green:6000, search=green:6000)";
+        EpoProperties props = new EpoProperties(ops.baseUrl(), "key", "secret",
+                new EpoProperties.Throttle(8, 8, 6000, 6000, 60, 1000),
+                new EpoProperties.Search(EpoProperties.SearchMode.BIBLIO, false),
+                EpoProperties.Quota.defaults());
+        client = new EpoClient(props, new EpoPublicationParser(), new EpoThrottle(props), new EpoTokenManager(props),
+                new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ops.close();
+    }
+
+    private void search(HttpExchange ex) throws IOException {
+        int now = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(now, Math::max);
+        try {
+            Thread.sleep(20);
+            String q = URLDecoder.decode(ex.getRequestURI().getRawQuery().substring(2), StandardCharsets.UTF_8);
+            String range = ex.getRequestHeaders().getFirst("X-OPS-Range");
+            ranges.add(range);
+
+            Matcher m = WITHIN.matcher(q);
+            List<Hit> hits = corpus;
+            boolean windowed = m.find();
+            if (windowed) {
+                LocalDate from = LocalDate.parse(m.group(1), DateTimeFormatter.BASIC_ISO_DATE);
+                LocalDate to = LocalDate.parse(m.group(2), DateTimeFormatter.BASIC_ISO_DATE);
+                hits = hits.stream().filter(h -> !h.published().isBefore(from) && !h.published().isAfter(to)).toList();
+            }
+
+            if (range.equals(failRange) || (windowed && failWindowFrom != null && m.group(1).startsWith(failWindowFrom))) {
+                ops.respond(ex, 500, "<fault>server error</fault>");
+                return;
+            }
+
+            int begin = Integer.parseInt(range.split("-")[0]);
+            int end = Integer.parseInt(range.split("-")[1]);
+            if (end > 2000 || end - begin >= 100) {
+                rejected.incrementAndGet();
+                ops.respond(ex, 413, "<fault>range</fault>");
+                return;
+            }
+            if (hits.isEmpty()) {
+                ops.respond(ex, 404, "<fault>no results</fault>");
+                return;
+            }
+
+            StringBuilder xml = new StringBuilder("""
+                    <ops:world-patent-data xmlns:ops="http://ops.epo.org" xmlns="http://www.epo.org/exchange">
+                    <ops:biblio-search total-result-count="%d"><ops:search-result>""".formatted(hits.size()));
+            for (Hit hit : hits.subList(Math.min(begin - 1, hits.size()), Math.min(end, hits.size()))) {
+                xml.append("""
+                        <exchange-documents><exchange-document country="EP" doc-number="%s" kind="A1">
+                        <bibliographic-data><publication-reference><document-id document-id-type="docdb">
+                        <date>%s</date></document-id></publication-reference>
+                        <invention-title lang="en">Hit %s</invention-title></bibliographic-data>
+                        </exchange-document></exchange-documents>""".formatted(
+                        hit.number(), hit.published().format(DateTimeFormatter.BASIC_ISO_DATE), hit.number()));
+            }
+            ops.respond(ex, 200, xml.append("</ops:search-result></ops:biblio-search></ops:world-patent-data>").toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // n hits spread evenly over the days from..to, in publication order
+    private static List<Hit> corpus(int n, LocalDate from, LocalDate to) {
+        long days = to.toEpochDay() - from.toEpochDay() + 1;
+        return IntStream.range(0, n)
+                .mapToObj(i -> new Hit(String.valueOf(5_000_000 + i), from.plusDays(i * days / n)))
+                .toList();
+    }
+
+    @Test
+    void pagesOnlyAsFarAsTheConsumerReads() {
+        corpus = corpus(450, LocalDate.of(2021, 1, 1), LocalDate.of(2021, 12, 31));
+
+        List<PatentDocument> first = client.searchAll("pa=acme", LocalDate.of(2021, 1, 1), LocalDate.of(2021, 12, 31))
+                .limit(150)
+                .toList();
+
+        assertEquals(150, first.size());
+        assertEquals(List.of("1-100", "101-200"), ranges);
+
+        ranges.clear();
+        long all = client.searchAll("pa=acme", LocalDate.of(2021, 1, 1), LocalDate.of(2021, 12, 31)).count();
+
+        assertEquals(450, all);
+        assertEquals(List.of("1-100", "101-200", "201-300", "301-400", "401-450"), ranges);
+    }
+
+    @Test
+    void splitsQueriesPastTheRangeLimitByPublicationDate() {
+        corpus = corpus(5000, LocalDate.of(2020, 1, 1), LocalDate.of(2023, 12, 31));
+
+        List<PatentDocument> docs = client.searchAll("pa=acme", LocalDate.of(2020, 1, 1), LocalDate.of(2023, 12, 31))
+                .toList();
+
+        assertEquals(5000, docs.size());
+        assertEquals(5000, new HashSet<>(docs.stream().map(PatentDocument::getPublicationNumber).toList()).size());
+        assertEquals(0, rejected.get(), "requested a range OPS refuses");
+
+        List<LocalDate> dates = docs.stream().map(PatentDocument::getGrantDate).toList();
+        List<LocalDate> sorted = new ArrayList<>(dates);
+        sorted.sort(Comparator.naturalOrder());
+        assertEquals(sorted, dates, "shards are read in date order");
+
+        assertTrue(maxInFlight.get() > 1, "shard probes ran one at a time");
+    }
+
+    @Test
+    void singleDayOverTheLimitYieldsTheReachableHits() {
+        List<Hit> hits = new ArrayList<>(corpus(2500, LocalDate.of(2022, 3, 1), LocalDate.of(2022, 3, 1)));
+        hits.addAll(corpus(10, LocalDate.of(2022, 3, 2), LocalDate.of(2022, 3, 2)).stream()
+                .map(h -> new Hit("9" + h.number(), h.published()))
+                .toList());
+        corpus = hits;
+
+        long count = client.searchAll("pa=acme", LocalDate.of(2022, 3, 1), LocalDate.of(2022, 3, 2)).count();
+
+        assertEquals(2010, count);
+        assertEquals(0, rejected.get());
+    }
+
+    @Test
+    void competitorFilingsAreNotCutOffAfterTheFirstPage() {
+        corpus = corpus(300, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 6, 30));
+
+        EpoCompetitorFilings result = client.fetchCompetitorFilings(List.of("ACME CORP"), LocalDate.of(2024, 1, 1));
+        List<EpoCompetitorFilingDto> filings = result.filings();
+
+        assertTrue(result.complete());
+        assertEquals(300, filings.size());
+        assertEquals("EP5000000A1", filings.getFirst().getPublicationNumber());
+        assertEquals("Hit 5000299", filings.getLast().getTitle());
+        assertEquals(LocalDate.of(2024, 1, 1), filings.getFirst().getPublicationDate());
+    }
+
+    @Test
+    void failedPageEndsTheStreamInsteadOfTruncatingIt() {
+        corpus = corpus(300, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 6, 30));
+        failRange = "201-300";
+
+        assertThrows(IllegalStateException.class,
+                () -> client.searchAll("pa=acme", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 6, 30)).count());
+
+        EpoCompetitorFilings result = client.fetchCompetitorFilings(
+                List.of("ACME CORP", "GLOBEX"), LocalDate.of(2024, 1, 1));
+        assertFalse(result.complete());
+        assertEquals(List.of("ACME CORP", "GLOBEX"), result.failedAssignees());
+        // the pages read before the failure are kept
+        assertEquals(400, result.filings().size());
+    }
+
+    @Test
+    void failedProbeEndsTheStream() {
+        corpus = corpus(5000, LocalDate.of(2020, 1, 1), LocalDate.of(2023, 12, 31));
+        failWindowFrom = "2021";
+
+        assertThrows(IllegalStateException.class,
+                () -> client.searchAll("pa=acme", LocalDate.of(2020, 1, 1), LocalDate.of(2023, 12, 31)).count());
+    }
+}
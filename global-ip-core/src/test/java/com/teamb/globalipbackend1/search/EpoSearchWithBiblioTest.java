@@ -0,0 +1,150 @@
+package com.teamb.globalipbackend1.search;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.teamb.globalipbackend1.dto.search.PatentSearchFilter;
+import com.teamb.globalipbackend1.external.epo.EpoClient;
+import com.teamb.globalipbackend1.external.epo.EpoThrottle;
+import com.teamb.globalipbackend1.external.epo.EpoTokenManager;
+import com.teamb.globalipbackend1.external.epo.config.EpoProperties.SearchMode;
+import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
+import com.teamb.globalipbackend1.external.epo.dto.EpoPublicationParser;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+import com.teamb.globalipbackend1.service.patent.search.EPOPatentSearchService;
+import com.teamb.globalipbackend1.service.patent.search.PatentFilterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Compares the search/biblio constituent with reference search + bulk biblio on a stub
+ * that adds a fixed delay to every OPS call.
+ */
+class EpoSearchWithBiblioTest {
+
+    private static final long DELAY_MS = 80;
+
+    private OpsStubServer ops;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ops = new OpsStubServer()
+                .route("/published-data/search", delayed(() -> """
+                        <ops:world-patent-data xmlns:ops="http://ops.epo.org" xmlns="http://www.epo.org/exchange">
+                        <ops:biblio-search><ops:search-result>
+                        <ops:publication-reference><document-id document-id-type="docdb">
+                        <country>EP</country><doc-number>1000001</doc-number><kind>B1</kind></document-id></ops:publication-reference>
+                        <ops:publication-reference><document-id document-id-type="docdb">
+                        <country>EP</country><doc-number>2000002</doc-number><kind>A1</kind></document-id></ops:publication-reference>
+                        <ops:publication-reference><document-id document-id-type="docdb">
+                        <country>WO</country><doc-number>2020123456</doc-number><kind>A1</kind></document-id></ops:publication-reference>
+                        </ops:search-result></ops:biblio-search></ops:world-patent-data>"""))
+                .route("/published-data/search/biblio", delayed(() -> OpsStubServer.fixture("search-biblio-acme.xml")))
+                .route("/published-data/publication/epodoc/biblio", delayed(() -> OpsStubServer.fixture("biblio-bulk-epodoc.xml")))
+                .route("/published-data/publication/docdb/biblio", delayed(() -> OpsStubServer.fixture("biblio-bulk-docdb.xml")))
+                .route("/published-data/publication/epodoc/EP2000002A1/abstract", delayed(() -> """
+                        <ops:world-patent-data xmlns:ops="http://ops.epo.org" xmlns="http://www.epo.org/exchange">
+                        <exchange-documents><exchange-document country="EP" doc-number="2000002" kind="A1">
+                        <bibliographic-data><abstract lang="en"><p>Cooling plates between cells.</p></abstract>
+                        </bibliographic-data></exchange-document></exchange-documents></ops:world-patent-data>"""));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ops.close();
+    }
+
+    private HttpHandler delayed(Supplier<String> body) {
+        return ex -> {
+            try {
+                Thread.sleep(DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ops.respond(ex, 200, body.get());
+        };
+    }
+
+    private EPOPatentSearchService service(SearchMode mode, boolean abstractFallback, PatentFilterService filters) {
+        EpoProperties props = ops.properties(8, 8, 6000, new EpoProperties.Search(mode, abstractFallback));
+        EpoClient client = new EpoClient(props, new EpoPublicationParser(), new EpoThrottle(props), new EpoTokenManager(props),
+                new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+        return new EPOPatentSearchService(client, filters, props);
+    }
+
+    @Test
+    void biblioModeMapsHitsFromASingleResponse() {
+        List<PatentDocument> results = service(SearchMode.BIBLIO, false, mock(PatentFilterService.class))
+                .searchPatents("acme");
+
+        assertEquals(List.of("EP1000001", "EP2000002", "WO2020123456"),
+                results.stream().map(PatentDocument::getPublicationNumber).toList());
+        assertEquals(1, ops.requests().size());
+        assertTrue(ops.requests().getFirst().path().endsWith("/published-data/search/biblio"));
+
+        PatentDocument first = results.getFirst();
+        assertEquals("Key exchange for distributed systems", first.getTitle());
+        assertEquals("A method for exchanging keys between nodes of a distributed system.", first.getAbstractText());
+        assertEquals(List.of("ACME CORP [US]"), first.getAssignees());
+        assertEquals("B1", first.getWipoKind());
+        assertEquals("Filtration device", results.get(2).getTitle());
+        assertNull(results.get(1).getAbstractText(), "abstract fallback is opt-in");
+    }
+
+    @Test
+    void abstractFallbackIsOptIn() {
+        List<PatentDocument> results = service(SearchMode.BIBLIO, true, mock(PatentFilterService.class))
+                .searchPatents("acme");
+
+        assertEquals("Cooling plates between cells.", results.get(1).getAbstractText());
+        assertEquals(2, ops.requests().size());
+        assertEquals(1, ops.requests("/abstract").size());
+    }
+
+    @Test
+    void biblioModeCutsUpstreamCallsAndLatency() {
+        long t0 = System.nanoTime();
+        List<PatentDocument> references = service(SearchMode.REFERENCES, true, mock(PatentFilterService.class))
+                .searchPatents("acme");
+        long referencesMs = (System.nanoTime() - t0) / 1_000_000;
+        int referencesCalls = ops.requests().size();
+
+        ops.requests().clear();
+        long t1 = System.nanoTime();
+        List<PatentDocument> biblio = service(SearchMode.BIBLIO, false, mock(PatentFilterService.class))
+                .searchPatents("acme");
+        long biblioMs = (System.nanoTime() - t1) / 1_000_000;
+        int biblioCalls = ops.requests().size();
+
+        assertEquals(references.stream().map(PatentDocument::getPublicationNumber).toList(),
+                biblio.stream().map(PatentDocument::getPublicationNumber).toList());
+        // search, bulk biblio per format (epodoc + docdb), abstract for the one document without
+        assertEquals(4, referencesCalls);
+        assertEquals(1, biblioCalls);
+        assertTrue(biblioMs < referencesMs, biblioMs + " ms vs " + referencesMs + " ms");
+    }
+
+    @Test
+    void advancedSearchUsesTheConstituentToo() {
+        PatentSearchFilter filter = new PatentSearchFilter();
+        filter.setAssignee("ACME");
+
+        List<PatentDocument> results = service(SearchMode.BIBLIO, false, new PatentFilterService())
+                .searchAdvanced(filter);
+
+        // the assignee post-filter runs on the inline biblio; only the first hit names an applicant
+        assertEquals(List.of("EP1000001"), results.stream().map(PatentDocument::getPublicationNumber).toList());
+        assertEquals(1, ops.requests().size());
+        assertTrue(ops.requests().getFirst().path().endsWith("/published-data/search/biblio"));
+    }
+}
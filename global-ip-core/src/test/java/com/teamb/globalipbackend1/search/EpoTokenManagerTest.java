@@ -0,0 +1,172 @@
+package com.teamb.globalipbackend1.search;
+
+import com.teamb.globalipbackend1.external.epo.EpoTokenManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Token handling against the OPS stub's token endpoint, which numbers the tokens it hands out.
+ */
+class EpoTokenManagerTest {
+
+    private static final int CALLERS = 32;
+
+    private OpsStubServer ops;
+    private EpoTokenManager tokens;
+    private final AtomicInteger issued = new AtomicInteger();
+    private final AtomicBoolean failing = new AtomicBoolean();
+    private volatile String lifetime = "1200";
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ops = new OpsStubServer();
+        ops.tokenHandler = ex -> {
+            int n = issued.incrementAndGet();
+            try {
+                Thread.sleep(150);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing.get()) {
+                ops.respond(ex, 500, "{\"error\":\"server_error\"}");
+            } else {
+                ops.respond(ex, 200, "{\"access_token\":\"t" + n + "\",\"expires_in\":\"" + lifetime + "\"}");
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (tokens != null) tokens.close();
+        ops.close();
+    }
+
+    @Test
+    void concurrentCallersShareOneRefreshWhenTheTokenHasExpired() throws Exception {
+        MutableClock clock = new MutableClock();
+        tokens = new EpoTokenManager(ops.properties(8, 8, 6000), clock);
+
+        assertEquals(List.of("t1"), distinct(callConcurrently()));
+        assertEquals(1, issued.get());
+
+        // still valid: no request at all
+        assertEquals("t1", tokens.token());
+        assertEquals(1, issued.get());
+
+        clock.advance(Duration.ofSeconds(1200));
+
+        assertEquals(List.of("t2"), distinct(callConcurrently()));
+        assertEquals(2, issued.get());
+    }
+
+    @Test
+    void refreshesInTheBackgroundBeforeExpiry() throws Exception {
+        lifetime = "1";
+        tokens = new EpoTokenManager(ops.properties(8, 8, 6000));
+
+        assertEquals("t1", tokens.token());
+
+        // renewed at 80% of the one-second lifetime, without any caller asking
+        long deadline = System.nanoTime() + Duration.ofSeconds(3).toNanos();
+        while (issued.get() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(issued.get() >= 2, "no background refresh");
+        // let the stub's delayed response land
+        Thread.sleep(300);
+
+        long t0 = System.nanoTime();
+        String token = tokens.token();
+        long waitedMs = (System.nanoTime() - t0) / 1_000_000;
+
+        assertNotEquals("t1", token);
+        assertTrue(waitedMs < 100, "caller waited " + waitedMs + " ms for a renewed token");
+    }
+
+    @Test
+    void failedRefreshFailsTheWaitersAndTheNextCallerRetries() throws Exception {
+        failing.set(true);
+        tokens = new EpoTokenManager(ops.properties(8, 8, 6000));
+
+        List<Future<String>> results = submitConcurrently();
+        for (Future<String> result : results) {
+            Exception e = assertThrows(Exception.class, result::get);
+            assertInstanceOf(RuntimeException.class, e.getCause());
+            assertEquals("OPS token failure", e.getCause().getMessage());
+        }
+        assertEquals(1, issued.get(), "waiters should share the failed request");
+
+        failing.set(false);
+        assertEquals("t2", tokens.token());
+        assertEquals(2, issued.get());
+    }
+
+    private List<String> callConcurrently() throws Exception {
+        List<String> values = new ArrayList<>();
+        for (Future<String> f : submitConcurrently()) {
+            values.add(f.get());
+        }
+        return values;
+    }
+
+    private List<Future<String>> submitConcurrently() throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return tokens.token();
+                }));
+            }
+            start.countDown();
+        }
+        return futures;
+    }
+
+    private static List<String> distinct(List<String> values) {
+        return values.stream().distinct().toList();
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
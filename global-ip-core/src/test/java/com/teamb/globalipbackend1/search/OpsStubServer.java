@@ -0,0 +1,103 @@
+package com.teamb.globalipbackend1.search;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.teamb.globalipbackend1.external.epo.config.EpoProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-in for EPO OPS: answers the token endpoint, records every data
+ * request and stamps responses with an X-Throttling-Control header.
+ */
+class OpsStubServer implements AutoCloseable {
+
+    record Request(String method, String path, String body) {
+    }
+
+    private final HttpServer server;
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    volatile String throttlingHeader =
+            "idle (images=green:200, inpadoc=green:60, other=green:1000, retrieval=green:6000, search=green:600)";
+    volatile Map<String, String> extraHeaders = Map.of();
+    volatile HttpHandler tokenHandler = ex -> respond(ex, 200, "{\"access_token\":\"t\",\"expires_in\":\"1200\"}");
+
+    OpsStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/3.2/auth/accesstoken", ex -> tokenHandler.handle(ex));
+        server.start();
+    }
+
+    /**
+     * Routes requests under the path (relative to /3.2/rest-services) to the handler.
+     */
+    OpsStubServer route(String path, HttpHandler handler) {
+        server.createContext("/3.2/rest-services" + path, ex -> {
+            String body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            requests.add(new Request(ex.getRequestMethod(), ex.getRequestURI().getPath(), body));
+            handler.handle(ex);
+        });
+        return this;
+    }
+
+    List<Request> requests() {
+        return requests;
+    }
+
+    List<Request> requests(String pathSuffix) {
+        return requests.stream().filter(r -> r.path().endsWith(pathSuffix)).toList();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/3.2";
+    }
+
+    /**
+     * Reference search followed by bulk biblio, with the per-id abstract fallback on.
+     */
+    EpoProperties properties(int maxConcurrent, int detailConcurrency, int retrievalPerMinute) {
+        return properties(maxConcurrent, detailConcurrency, retrievalPerMinute,
+                new EpoProperties.Search(EpoProperties.SearchMode.REFERENCES, true));
+    }
+
+    EpoProperties properties(int maxConcurrent, int detailConcurrency, int retrievalPerMinute,
+                             EpoProperties.Search search) {
+        return new EpoProperties(baseUrl(), "key", "secret",
+                new EpoProperties.Throttle(maxConcurrent, detailConcurrency, 600, retrievalPerMinute, 60, 1000),
+                search, EpoProperties.Quota.defaults());
+    }
+
+    void respond(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("X-Throttling-Control", throttlingHeader);
+        extraHeaders.forEach(ex.getResponseHeaders()::add);
+        ex.getResponseHeaders().add("Content-Type", "application/xml");
+        ex.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        ex.getResponseBody().write(bytes);
+        ex.close();
+    }
+
+    static String fixture(String name) {
+        try (InputStream in = OpsStubServer.class.getResourceAsStream("/epo/" + name)) {
+            if (in == null) throw new IllegalArgumentException("No fixture " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
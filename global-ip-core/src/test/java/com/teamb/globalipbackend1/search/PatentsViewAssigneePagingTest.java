@@ -0,0 +1,221 @@
+package com.teamb.globalipbackend1.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.teamb.globalipbackend1.external.patentsview.PatentsViewClient;
+import com.teamb.globalipbackend1.external.patentsview.PatentsViewHttpClient;
+import com.teamb.globalipbackend1.external.patentsview.config.JacksonConfig;
+import com.teamb.globalipbackend1.external.patentsview.config.PatentsViewProperties;
+import com.teamb.globalipbackend1.external.patentsview.dto.PatentsViewResponseDocument;
+import com.teamb.globalipbackend1.external.patentsview.mapper.PatentsViewMapStructMapperImpl;
+import com.teamb.globalipbackend1.external.patentsview.querybuilder.PatentsViewQueryBuilder;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cursor paging of PatentsViewClient against a stub that pages the way the PatentsView
+ * search API does: filtered by the patent_date range in the query, sorted by
+ * patent_date and patent_id descending, and continued from the "after" values.
+ */
+class PatentsViewAssigneePagingTest {
+
+    private static final Comparator<Patent> NEWEST_FIRST =
+            Comparator.comparing(Patent::date).thenComparing(Patent::id).reversed();
+
+    private record Patent(String id, LocalDate date) {
+    }
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final List<JsonNode> requests = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+    private PatentsViewHttpClient httpClient;
+    private PatentsViewClient client;
+    private volatile List<Patent> corpus = List.of();
+    private volatile boolean repeatCursorPatent;
+    // index of the request answered with "error": true, -1 for none
+    private volatile int errorOnRequest = -1;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/v1/patent/", this::patents);
+        server.start();
+
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/patent/";
+        PatentsViewProperties properties = new PatentsViewProperties(url, "key", url, PatentsViewProperties.Transport.defaults());
+        httpClient = new PatentsViewHttpClient(properties, objectMapper,
+                new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+        client = new PatentsViewClient(httpClient, new PatentsViewQueryBuilder(), new PatentsViewMapStructMapperImpl(), properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private void patents(HttpExchange ex) throws IOException {
+        JsonNode query = objectMapper.readTree(ex.getRequestBody());
+        requests.add(query);
+        if (requests.size() - 1 == errorOnRequest) {
+            byte[] bytes = "{\"error\":true,\"count\":0,\"patents\":[]}".getBytes();
+            ex.getResponseHeaders().add("Content-Type", "application/json");
+            ex.sendResponseHeaders(200, bytes.length);
+            ex.getResponseBody().write(bytes);
+            ex.close();
+            return;
+        }
+
+        LocalDate from = LocalDate.MIN;
+        LocalDate to = LocalDate.MAX;
+        for (JsonNode clause : query.path("q").path("_and")) {
+            if (clause.has("_gte")) from = LocalDate.parse(clause.path("_gte").path("patent_date").asText());
+            if (clause.has("_lte")) to = LocalDate.parse(clause.path("_lte").path("patent_date").asText());
+        }
+        LocalDate lo = from;
+        LocalDate hi = to;
+        List<Patent> hits = corpus.stream()
+                .filter(p -> !p.date().isBefore(lo) && !p.date().isAfter(hi))
+                .sorted(NEWEST_FIRST)
+                .toList();
+
+        JsonNode after = query.path("o").path("after");
+        if (after.isArray()) {
+            Patent cursor = new Patent(after.get(1).asText(), LocalDate.parse(after.get(0).asText()));
+            List<Patent> rest = new ArrayList<>(hits.stream().filter(p -> NEWEST_FIRST.compare(p, cursor) > 0).toList());
+            // a patent granted mid-walk pushes the last one of the previous page onto this one
+            if (repeatCursorPatent) rest.addFirst(cursor);
+            hits = rest;
+        }
+        hits = hits.subList(0, Math.min(query.path("o").path("size").asInt(), hits.size()));
+
+        ArrayNode patents = objectMapper.createArrayNode();
+        for (Patent p : hits) {
+            patents.addObject().put("patent_id", p.id()).put("patent_date", p.date().toString())
+                    .put("patent_title", "Patent " + p.id());
+        }
+        ObjectNode body = objectMapper.createObjectNode().put("error", false).put("count", hits.size());
+        body.set("patents", patents);
+
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, bytes.length);
+        ex.getResponseBody().write(bytes);
+        ex.close();
+    }
+
+    // n patents spread over the days from..to
+    private static List<Patent> corpus(int n, LocalDate from, LocalDate to) {
+        long days = to.toEpochDay() - from.toEpochDay() + 1;
+        return IntStream.range(0, n)
+                .mapToObj(i -> new Patent(String.valueOf(11_000_000 + i), from.plusDays(i * days / n)))
+                .toList();
+    }
+
+    @Test
+    void followsTheCursorPastTheFirstPage() {
+        corpus = corpus(2500, LocalDate.of(2020, 1, 1), LocalDate.of(2023, 12, 31));
+
+        List<PatentsViewResponseDocument> docs = client.searchByAssignees(List.of("Acme Corp"), null);
+
+        assertEquals(2500, docs.size());
+        assertEquals(2500, new HashSet<>(docs.stream().map(PatentsViewResponseDocument::getPatentId).toList()).size());
+        assertEquals(3, requests.size());
+        assertTrue(requests.getFirst().path("o").path("after").isMissingNode());
+
+        PatentsViewResponseDocument lastOfFirstPage = docs.get(999);
+        assertEquals(List.of(lastOfFirstPage.getPatentDate().toString(), lastOfFirstPage.getPatentId()),
+                objectMapper.convertValue(requests.get(1).path("o").path("after"), List.class));
+    }
+
+    @Test
+    void dateRangeIsFilteredByTheApiNotInMemory() {
+        corpus = corpus(3000, LocalDate.of(2020, 1, 1), LocalDate.of(2023, 12, 31));
+        LocalDate from = LocalDate.of(2021, 1, 1);
+        LocalDate to = LocalDate.of(2021, 12, 31);
+        long expected = corpus.stream().filter(p -> !p.date().isBefore(from) && !p.date().isAfter(to)).count();
+
+        List<PatentsViewResponseDocument> docs = client.searchByAssigneesInRange(List.of("Acme Corp"), from, to);
+
+        assertEquals(expected, docs.size());
+        assertTrue(docs.stream().allMatch(d -> !d.getPatentDate().isBefore(from) && !d.getPatentDate().isAfter(to)));
+        assertEquals(to.toString(), requests.getFirst().path("q").path("_and").get(2).path("_lte").path("patent_date").asText());
+        assertEquals(1, requests.size(), "a year of filings fits in one page");
+    }
+
+    @Test
+    void prefetchesOnlyTheNextPage() throws Exception {
+        corpus = corpus(3500, LocalDate.of(2020, 1, 1), LocalDate.of(2023, 12, 31));
+
+        try (Stream<PatentsViewResponseDocument> docs = client.streamByAssignees(List.of("Acme Corp"), null, null)) {
+            Iterator<PatentsViewResponseDocument> it = docs.iterator();
+            assertEquals(0, requests.size(), "nothing is requested before the first element");
+
+            it.next();
+            long deadline = System.nanoTime() + 2_000_000_000L;
+            while (requests.size() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, requests.size(), "the second page is fetched while the first is read");
+
+            Thread.sleep(200);
+            assertEquals(2, requests.size(), "fetched more than one page ahead");
+
+            int read = 1;
+            while (it.hasNext()) {
+                it.next();
+                read++;
+            }
+            assertEquals(3500, read);
+            assertEquals(4, requests.size());
+        }
+    }
+
+    @Test
+    void errorPageMidWalkFailsInsteadOfTruncating() {
+        corpus = corpus(2500, LocalDate.of(2020, 1, 1), LocalDate.of(2023, 12, 31));
+        errorOnRequest = 1;
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> client.searchByAssignees(List.of("Acme Corp"), null));
+        assertTrue(e.getMessage().contains("after 1000 patents"), e.getMessage());
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void patentsRepeatedAcrossPagesAreReturnedOnce() {
+        corpus = corpus(2500, LocalDate.of(2020, 1, 1), LocalDate.of(2023, 12, 31));
+        repeatCursorPatent = true;
+
+        List<PatentsViewResponseDocument> docs = client.searchByAssignees(List.of("Acme Corp", "Acme Inc."), null);
+
+        assertEquals(2500, docs.size());
+        assertEquals(2500, new HashSet<>(docs.stream().map(PatentsViewResponseDocument::getPatentId).toList()).size());
+    }
+}
@@ -0,0 +1,200 @@
+package com.teamb.globalipbackend1.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.teamb.globalipbackend1.external.patentsview.PatentsViewClient;
+import com.teamb.globalipbackend1.external.patentsview.PatentsViewHttpClient;
+import com.teamb.globalipbackend1.external.patentsview.config.JacksonConfig;
+import com.teamb.globalipbackend1.external.patentsview.config.PatentsViewProperties;
+import com.teamb.globalipbackend1.external.patentsview.dto.PatentDetailBatch;
+import com.teamb.globalipbackend1.external.patentsview.mapper.PatentsViewMapStructMapperImpl;
+import com.teamb.globalipbackend1.external.patentsview.querybuilder.PatentsViewQueryBuilder;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+import com.teamb.globalipbackend1.service.patent.detail.PatentsViewDetailsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Multi-ID lookups through PatentsViewClient and PatentsViewDetailsService against a stub
+ * that answers both the single-patent (_text_phrase) and the multi-ID (patent_id array) query.
+ */
+class PatentsViewBatchLookupTest {
+
+    private static final int KNOWN = 3000;
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final List<Integer> idsPerCall = new ArrayList<>();
+    private final List<String> singleLookups = new ArrayList<>();
+    // a multi-ID query containing this ID gets a 503
+    private volatile String failingId;
+
+    private HttpServer server;
+    private PatentsViewHttpClient httpClient;
+    private PatentsViewClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/v1/patent/", this::patents);
+        server.start();
+
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/patent/";
+        PatentsViewProperties properties = new PatentsViewProperties(url, "key", url, PatentsViewProperties.Transport.defaults());
+        httpClient = new PatentsViewHttpClient(properties, objectMapper,
+                new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+        client = new PatentsViewClient(httpClient, new PatentsViewQueryBuilder(), new PatentsViewMapStructMapperImpl(), properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    // patents 10000000 .. 10000000 + KNOWN - 1 exist
+    private void patents(HttpExchange ex) throws IOException {
+        calls.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(30);
+            JsonNode q = objectMapper.readTree(ex.getRequestBody()).path("q");
+
+            List<String> ids = new ArrayList<>();
+            if (q.path("patent_id").isArray()) {
+                q.path("patent_id").forEach(id -> ids.add(id.asText()));
+            } else {
+                q.path("_and").forEach(c -> ids.add(c.path("_text_phrase").path("patent_id").asText()));
+                synchronized (singleLookups) {
+                    singleLookups.addAll(ids);
+                }
+            }
+            synchronized (idsPerCall) {
+                idsPerCall.add(ids.size());
+            }
+            if (q.path("patent_id").isArray() && ids.contains(failingId)) {
+                ex.sendResponseHeaders(503, -1);
+                ex.close();
+                return;
+            }
+
+            ArrayNode patents = objectMapper.createArrayNode();
+            for (String id : ids) {
+                int n = id.matches("\\d+") ? Integer.parseInt(id) - 10_000_000 : -1;
+                if (n < 0 || n >= KNOWN) continue;
+                ObjectNode patent = patents.addObject()
+                        .put("patent_id", id)
+                        .put("patent_title", "Patent " + id)
+                        .put("patent_date", LocalDate.of(2020, 1, 7).plusWeeks(n % 200).toString());
+                patent.putArray("assignees").addObject().put("assignee_organization", "Assignee " + n % 7);
+            }
+            ObjectNode body = objectMapper.createObjectNode().put("error", false).put("count", patents.size());
+            body.set("patents", patents);
+
+            byte[] bytes = objectMapper.writeValueAsBytes(body);
+            ex.getResponseHeaders().add("Content-Type", "application/json");
+            ex.sendResponseHeaders(200, bytes.length);
+            ex.getResponseBody().write(bytes);
+            ex.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static List<String> numbers(int from, int count) {
+        return IntStream.range(from, from + count).mapToObj(i -> String.valueOf(10_000_000 + i)).toList();
+    }
+
+    @Test
+    void oneRequestPerThousandIdsInsteadOfOnePerPatent() {
+        List<String> numbers = numbers(0, 100);
+
+        for (String number : numbers) {
+            assertNotNull(client.getPatentByNumber(number));
+        }
+        int singleCalls = calls.getAndSet(0);
+
+        Map<String, PatentDocument> batched = client.getPatentsByNumbers(numbers);
+        int batchCalls = calls.get();
+
+        assertEquals(100, singleCalls);
+        assertEquals(1, batchCalls);
+        assertEquals(100, batched.size());
+        assertEquals("Patent 10000042", batched.get("10000042").getTitle());
+        assertEquals(List.of("Assignee 0"), batched.get("10000042").getAssignees());
+    }
+
+    @Test
+    void largeSetsAreChunkedAndFetchedConcurrently() {
+        List<String> numbers = numbers(0, 2500);
+
+        Map<String, PatentDocument> found = client.getPatentsByNumbers(numbers);
+
+        assertEquals(2500, found.size());
+        assertEquals(3, calls.get());
+        assertEquals(Set.of(1000, 500), Set.copyOf(idsPerCall));
+        assertTrue(maxInFlight.get() > 1, "chunks were fetched one at a time");
+    }
+
+    @Test
+    void resultsAreKeyedByTheNumbersAsGiven() {
+        List<String> numbers = List.of("US10000001", "10000001", "US 10000002", "10000002B2",
+                "US20000001", "not-a-patent");
+
+        Map<String, PatentDocument> found = client.getPatentsByNumbers(numbers);
+
+        assertEquals(Set.of("US10000001", "10000001", "US 10000002"), found.keySet());
+        assertSame(found.get("US10000001"), found.get("10000001"));
+        assertEquals("10000002", found.get("US 10000002").getPublicationNumber());
+        assertEquals(1, calls.get());
+        // duplicates share one ID in the query; the invalid number is never sent
+        assertEquals(List.of(4), idsPerCall);
+    }
+
+    @Test
+    void failedDetailChunkIsReportedAsFailedWithoutSingleLookups() {
+        failingId = "10001200";
+        List<String> numbers = new ArrayList<>(numbers(0, 999));
+        numbers.add("19000000");
+        numbers.addAll(numbers(1000, 500));
+        PatentsViewDetailsService details =
+                new PatentsViewDetailsService(httpClient, new PatentsViewQueryBuilder(), objectMapper, null, null);
+
+        PatentDetailBatch batch = details.fetchPatentDetails(numbers);
+
+        assertFalse(batch.complete());
+        assertEquals(Set.copyOf(numbers(1000, 500)), batch.failed());
+        assertEquals(999, batch.details().size());
+        assertEquals("Patent 10000042", batch.details().get("10000042").getTitle());
+        assertEquals(Set.of("19000000"), batch.missing());
+        // the number the successful chunk did not return is looked up alone; the failed chunk is not
+        assertFalse(singleLookups.isEmpty());
+        assertTrue(singleLookups.stream().noneMatch(batch.failed()::contains), "failed chunk fell back to single lookups");
+    }
+}
@@ -0,0 +1,241 @@
+package com.teamb.globalipbackend1.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.teamb.globalipbackend1.external.patentsview.PatentsViewCitationClient;
+import com.teamb.globalipbackend1.external.patentsview.PatentsViewHttpClient;
+import com.teamb.globalipbackend1.external.patentsview.config.JacksonConfig;
+import com.teamb.globalipbackend1.external.patentsview.config.PatentsViewProperties;
+import com.teamb.globalipbackend1.external.patentsview.dto.AllCitationsResponse;
+import com.teamb.globalipbackend1.external.patentsview.dto.PatentsViewUSPatentCitation;
+import com.teamb.globalipbackend1.external.patentsview.querybuilder.PatentsViewCitationQueryBuilder;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PatentsViewCitationClient against a stub of the three citation endpoints, each with its
+ * own injected latency and optionally failing.
+ */
+class PatentsViewCitationFanOutTest {
+
+    // patent n cites patents n+1 .. n+CITED
+    private static final int CITED = 3;
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final Map<String, Long> delays = new ConcurrentHashMap<>();
+    private final Map<String, Integer> statuses = new ConcurrentHashMap<>();
+    private final List<JsonNode> citationQueries = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+    private PatentsViewHttpClient httpClient;
+    private PatentsViewCitationClient client;
+
+    private void start(Duration citationDeadline) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/v1/patent/", this::citations);
+        server.start();
+
+        String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/patent";
+        PatentsViewProperties.Transport transport = new PatentsViewProperties.Transport(
+                8, Duration.ofSeconds(5), Duration.ofSeconds(30), 0.0, citationDeadline);
+        PatentsViewProperties properties = new PatentsViewProperties(base + "/", "key", base, transport);
+        httpClient = new PatentsViewHttpClient(properties, objectMapper,
+                new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+        client = new PatentsViewCitationClient(httpClient, new PatentsViewCitationQueryBuilder(), properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private void citations(HttpExchange ex) throws IOException {
+        String endpoint = ex.getRequestURI().getPath().substring("/api/v1/patent/".length());
+        JsonNode query = objectMapper.readTree(ex.getRequestBody());
+        try {
+            Thread.sleep(delays.getOrDefault(endpoint, 0L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        int status = statuses.getOrDefault(endpoint, 200);
+        if (status != 200) {
+            byte[] body = "{\"error\":true}".getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(status, body.length);
+            ex.getResponseBody().write(body);
+            ex.close();
+            return;
+        }
+
+        ObjectNode body = objectMapper.createObjectNode();
+        switch (endpoint) {
+            case "us_patent_citation" -> {
+                citationQueries.add(query);
+                body.set("us_patent_citations", usPatentCitations(query));
+            }
+            case "us_application_citation" -> body.putArray("us_application_citations").addObject()
+                    .put("patent_id", "10000000").put("citation_document_number", "20190012345");
+            case "foreign_citation" -> body.putArray("foreign_citations").addObject()
+                    .put("patent_id", "10000000").put("citation_number", "EP1234567");
+            default -> {
+                ex.sendResponseHeaders(404, -1);
+                ex.close();
+                return;
+            }
+        }
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, bytes.length);
+        ex.getResponseBody().write(bytes);
+        ex.close();
+    }
+
+    private ArrayNode usPatentCitations(JsonNode query) {
+        JsonNode q = query.path("q");
+        List<ObjectNode> rows = new ArrayList<>();
+        if (q.has("_eq")) {
+            // forward: who cites this patent
+            int cited = Integer.parseInt(q.path("_eq").path("citation_patent_id").asText());
+            for (int i = 1; i <= CITED; i++) rows.add(row(cited - i, i, cited));
+        } else if (q.path("patent_id").isTextual()) {
+            int citing = Integer.parseInt(q.path("patent_id").asText());
+            for (int i = 1; i <= CITED; i++) rows.add(row(citing, i, citing + i));
+        } else {
+            boolean forward = q.has("citation_patent_id");
+            for (JsonNode id : q.path(forward ? "citation_patent_id" : "patent_id")) {
+                int n = Integer.parseInt(id.asText());
+                for (int i = 1; i <= CITED; i++) rows.add(forward ? row(n - i, i, n) : row(n, i, n + i));
+            }
+        }
+
+        // the batched query pages through rows ordered by patent_id, citation_sequence
+        rows.sort(Comparator.comparing((ObjectNode r) -> r.path("patent_id").asText())
+                .thenComparingInt(r -> r.path("citation_sequence").asInt()));
+        JsonNode after = query.path("o").path("after");
+        if (after.isArray()) {
+            String afterId = after.get(0).asText();
+            int afterSeq = after.get(1).asInt();
+            rows.removeIf(r -> {
+                int c = r.path("patent_id").asText().compareTo(afterId);
+                return c < 0 || (c == 0 && r.path("citation_sequence").asInt() <= afterSeq);
+            });
+        }
+        int size = query.path("o").path("size").asInt(100);
+        ArrayNode page = objectMapper.createArrayNode();
+        rows.stream().limit(size).forEach(page::add);
+        return page;
+    }
+
+    private ObjectNode row(int citing, int sequence, int cited) {
+        return objectMapper.createObjectNode()
+                .put("patent_id", String.valueOf(citing))
+                .put("citation_patent_id", String.valueOf(cited))
+                .put("citation_sequence", sequence)
+                .put("citation_category", "cited by examiner");
+    }
+
+    @Test
+    void sectionsAreFetchedConcurrently() throws IOException {
+        start(Duration.ofSeconds(10));
+        delays.put("us_patent_citation", 200L);
+        delays.put("us_application_citation", 150L);
+        delays.put("foreign_citation", 250L);
+        // warm the connection so the timing covers the calls only
+        client.getAllCitations("10000000");
+
+        long started = System.nanoTime();
+        AllCitationsResponse all = client.getAllCitations("10000000");
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertEquals(CITED, all.getBackwardUSPatentCitations().size());
+        assertEquals(CITED, all.getForwardUSPatentCitations().size());
+        assertEquals(1, all.getUsApplicationCitations().size());
+        assertEquals(1, all.getForeignCitations().size());
+        // one at a time the four calls would take at least 800 ms
+        assertTrue(elapsedMs < 500, "took " + elapsedMs + " ms");
+    }
+
+    @Test
+    void failingEndpointLeavesItsSectionEmpty() throws IOException {
+        start(Duration.ofSeconds(10));
+        statuses.put("foreign_citation", 500);
+
+        AllCitationsResponse all = client.getAllCitations("10000000");
+
+        assertNotNull(all.getForeignCitations());
+        assertTrue(all.getForeignCitations().isEmpty());
+        assertEquals(CITED, all.getBackwardUSPatentCitations().size());
+        assertEquals(CITED, all.getForwardUSPatentCitations().size());
+        assertEquals(1, all.getUsApplicationCitations().size());
+    }
+
+    @Test
+    void slowEndpointIsCutOffAtTheDeadline() throws IOException {
+        start(Duration.ofMillis(300));
+        delays.put("us_application_citation", 3_000L);
+
+        long started = System.nanoTime();
+        AllCitationsResponse all = client.getAllCitations("10000000");
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertTrue(elapsedMs < 1_500, "took " + elapsedMs + " ms");
+        assertTrue(all.getUsApplicationCitations().isEmpty());
+        assertEquals(CITED, all.getBackwardUSPatentCitations().size());
+        assertEquals(1, all.getForeignCitations().size());
+    }
+
+    @Test
+    void batchedLookupGroupsCitationsByPatent() throws IOException {
+        start(Duration.ofSeconds(10));
+        List<String> ids = IntStream.range(0, 50).mapToObj(i -> "US" + (10_000_000 + i * 10)).toList();
+
+        Map<String, List<PatentsViewUSPatentCitation>> backward = client.getBackwardCitations(ids);
+        Map<String, List<PatentsViewUSPatentCitation>> forward = client.getForwardCitations(ids);
+
+        assertEquals(2, citationQueries.size(), "one query per direction");
+        assertEquals(50, backward.size());
+        assertEquals(List.of("10000101", "10000102", "10000103"),
+                backward.get("10000100").stream().map(PatentsViewUSPatentCitation::getCitationPatentId).toList());
+        assertEquals(50, forward.size());
+        assertTrue(forward.get("10000100").stream().allMatch(c -> "10000100".equals(c.getCitationPatentId())));
+    }
+
+    @Test
+    void batchedLookupPagesAndChunks() throws IOException {
+        start(Duration.ofSeconds(10));
+        // 1200 patents: chunks of 500, 500 and 200; a 500 chunk has 1500 rows, two pages
+        List<String> ids = IntStream.range(0, 1200).mapToObj(i -> String.valueOf(10_000_000 + i * 10)).toList();
+
+        Map<String, List<PatentsViewUSPatentCitation>> backward = client.getBackwardCitations(ids);
+
+        assertEquals(1200, backward.size());
+        assertTrue(backward.values().stream().allMatch(c -> c.size() == CITED));
+        assertEquals(5, citationQueries.size());
+        assertEquals(2, citationQueries.stream().filter(q -> q.path("o").path("after").isArray()).count());
+    }
+}
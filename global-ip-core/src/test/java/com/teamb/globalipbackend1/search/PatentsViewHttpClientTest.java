@@ -0,0 +1,195 @@
+package com.teamb.globalipbackend1.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.teamb.globalipbackend1.external.patentsview.PatentsViewHttpClient;
+import com.teamb.globalipbackend1.external.patentsview.config.JacksonConfig;
+import com.teamb.globalipbackend1.external.patentsview.config.PatentsViewProperties;
+import com.teamb.globalipbackend1.external.patentsview.dto.PatentsViewResponse;
+import com.teamb.globalipbackend1.external.patentsview.dto.PatentsViewResponseDocument;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PatentsView transport against an in-process stub serving a recorded page of patents,
+ * gzip-compressed when the client asks for it.
+ */
+class PatentsViewHttpClientTest {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final List<String> acceptEncodings = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+    private PatentsViewHttpClient client;
+    private String url;
+    private byte[] page;
+    private volatile int status = 200;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        page = recordedPage(PAGE_SIZE);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/v1/patent/", this::patents);
+        server.start();
+
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/patent/";
+        client = new PatentsViewHttpClient(
+                new PatentsViewProperties(url, "key", url, PatentsViewProperties.Transport.defaults()), objectMapper,
+                new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    private void patents(HttpExchange ex) throws IOException {
+        ex.getRequestBody().readAllBytes();
+        String acceptEncoding = ex.getRequestHeaders().getFirst("Accept-Encoding");
+        acceptEncodings.add(String.valueOf(acceptEncoding));
+
+        byte[] body = status == 200 ? page : "{\"error\":true,\"reason\":\"Invalid field: patent_foo\"}".getBytes(StandardCharsets.UTF_8);
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            body = gzip(body);
+            ex.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, body.length);
+        ex.getResponseBody().write(body);
+        ex.close();
+    }
+
+    @Test
+    void requestsGzipAndBindsTheDecompressedStream() {
+        PatentsViewResponse response = client.post("{\"q\":{}}", PatentsViewResponse.class);
+
+        assertEquals(List.of("gzip"), acceptEncodings);
+        assertEquals(PAGE_SIZE, response.getResponseDocuments().size());
+
+        PatentsViewResponseDocument first = response.getResponseDocuments().getFirst();
+        assertEquals("11886917", first.getPatentId());
+        assertEquals(LocalDate.of(2024, 1, 30), first.getPatentDate());
+        assertEquals("Acme Sensing Corporation", first.getPatentsViewAssignees().getFirst().getAssigneeOrganisation());
+        assertEquals(2, first.getPatentsViewInventors().size());
+    }
+
+    @Test
+    void treeAndCustomReadersSeeTheSameBody() {
+        JsonNode tree = client.postForTree("{\"q\":{}}");
+        assertEquals(PAGE_SIZE, tree.path("patents").size());
+
+        int patents = client.post(url, "{\"q\":{}}", parser -> {
+            int n = 0;
+            while (parser.nextToken() != null) {
+                if ("patent_id".equals(parser.currentName()) && parser.currentToken().isScalarValue()) n++;
+            }
+            return n;
+        });
+        assertEquals(PAGE_SIZE, patents);
+    }
+
+    @Test
+    void errorStatusCarriesTheStartOfTheBody() {
+        status = 400;
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> client.postForTree("{\"q\":{}}"));
+
+        assertTrue(e.getMessage().startsWith("API error: 400"), e.getMessage());
+        assertTrue(e.getMessage().contains("Invalid field: patent_foo"), e.getMessage());
+    }
+
+    /**
+     * Bytes allocated per patent when a recorded page is read the old way (the whole body
+     * decoded into a String, then bound) against the streaming way (gzip stream straight
+     * into the parser). Runs in-process so only the parse path is measured.
+     */
+    @Test
+    void streamingParseAllocatesLessPerPatent() throws IOException {
+        byte[] compressed = gzip(page);
+
+        Path buffered = () -> objectMapper.readValue(new String(page, StandardCharsets.UTF_8), PatentsViewResponse.class);
+        Path streamed = () -> {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed), 8192)) {
+                return objectMapper.readValue(objectMapper.getFactory().createParser(in), PatentsViewResponse.class);
+            }
+        };
+
+        long bufferedBytes = bytesPerPatent(buffered);
+        long streamedBytes = bytesPerPatent(streamed);
+
+        assertTrue(streamedBytes < bufferedBytes,
+                "streaming allocated " + streamedBytes + " B/patent, buffered " + bufferedBytes);
+    }
+
+    @FunctionalInterface
+    private interface Path {
+        PatentsViewResponse read() throws IOException;
+    }
+
+    private static long bytesPerPatent(Path path) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 200; i++) {
+            assertEquals(PAGE_SIZE, path.read().getResponseDocuments().size());
+        }
+        int runs = 100;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < runs; i++) {
+            path.read();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / ((long) runs * PAGE_SIZE);
+    }
+
+    // the recorded patents repeated, with fresh ids, up to a full page
+    private byte[] recordedPage(int size) throws IOException {
+        JsonNode recorded;
+        try (InputStream in = getClass().getResourceAsStream("/patentsview/patents-page.json")) {
+            recorded = objectMapper.readTree(in);
+        }
+        ArrayNode patents = objectMapper.createArrayNode();
+        for (int i = 0; i < size; i++) {
+            ObjectNode patent = recorded.path("patents").get(i % recorded.path("patents").size()).deepCopy();
+            if (i >= recorded.path("patents").size()) patent.put("patent_id", String.valueOf(12_000_000 + i));
+            patents.add(patent);
+        }
+        ObjectNode body = ((ObjectNode) recorded.deepCopy()).put("count", size).put("total_hits", size);
+        body.set("patents", patents);
+        return objectMapper.writeValueAsBytes(body);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,227 @@
+package com.teamb.globalipbackend1.search;
+
+import com.teamb.globalipbackend1.cache.CacheNames;
+import com.teamb.globalipbackend1.dto.search.PatentSearchFilter;
+import com.teamb.globalipbackend1.dto.search.PatentSearchResult;
+import com.teamb.globalipbackend1.dto.search.ProviderCompleteness;
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+import com.teamb.globalipbackend1.service.patent.detail.PatentSnapshotCacheService;
+import com.teamb.globalipbackend1.service.patent.search.PatentFilterService;
+import com.teamb.globalipbackend1.service.patent.search.PatentSearchProperties;
+import com.teamb.globalipbackend1.service.patent.search.UnifiedPatentSearchService;
+import com.teamb.globalipbackend1.service.patent.search.provider.PatentSearchProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Providers with injected latency: the search answers at its deadline with the providers
+ * that made it, and a late provider's answer completes the cached result.
+ */
+class UnifiedPatentSearchDeadlineTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(CacheNames.PATENT_SEARCH);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void answersAtTheDeadlineWithoutTheSlowProvider() {
+        DelayedProvider fast = new DelayedProvider("PatentsView", Duration.ofMillis(50), 3);
+        DelayedProvider slow = new DelayedProvider("EPO", Duration.ofSeconds(5), 4);
+        UnifiedPatentSearchService service = service(Duration.ofMillis(300), Duration.ofSeconds(30), fast, slow);
+
+        long started = System.nanoTime();
+        PatentSearchResult result = service.searchByKeyword(filter("battery"));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertTrue(elapsedMillis >= 300 && elapsedMillis < 1_500, "answered after " + elapsedMillis + " ms");
+        assertFalse(result.complete());
+        assertEquals(3, result.patents().size());
+        assertTrue(result.patents().stream().allMatch(p -> p.getSource().equals("PatentsView")));
+
+        ProviderCompleteness patentsView = status(result, "PatentsView");
+        assertEquals(ProviderCompleteness.Status.COMPLETE, patentsView.status());
+        assertEquals(3, patentsView.results());
+        ProviderCompleteness epo = status(result, "EPO");
+        assertEquals(ProviderCompleteness.Status.TIMED_OUT, epo.status());
+        assertTrue(epo.elapsedMillis() >= 250);
+    }
+
+    @Test
+    void lateResultsFillTheCacheForTheNextIdenticalQuery() throws Exception {
+        DelayedProvider fast = new DelayedProvider("PatentsView", Duration.ofMillis(20), 2);
+        DelayedProvider slow = new DelayedProvider("EPO", Duration.ofMillis(700), 5);
+        UnifiedPatentSearchService service = service(Duration.ofMillis(200), Duration.ofSeconds(30), fast, slow);
+
+        PatentSearchResult first = service.searchByKeyword(filter("solar"));
+        assertFalse(first.complete());
+        assertEquals(2, first.patents().size());
+
+        assertTrue(slow.finished.await(5, TimeUnit.SECONDS));
+        PatentSearchResult cached = awaitCached(filter("solar"));
+        assertTrue(cached.complete());
+        assertEquals(7, cached.patents().size());
+
+        // served from the cache: neither provider is asked again
+        PatentSearchResult second = service.searchByKeyword(filter("solar"));
+        assertTrue(second.complete());
+        assertEquals(7, second.patents().size());
+        assertEquals(1, fast.calls.get());
+        assertEquals(1, slow.calls.get());
+
+        // a different query is not served from that entry
+        service.searchByKeyword(filter("wind"));
+        assertEquals(2, fast.calls.get());
+    }
+
+    @Test
+    void providersStillRunningAfterTheLateResultTimeoutAreCancelled() throws Exception {
+        DelayedProvider fast = new DelayedProvider("PatentsView", Duration.ZERO, 1);
+        DelayedProvider stuck = new DelayedProvider("EPO", Duration.ofSeconds(30), 1);
+        UnifiedPatentSearchService service = service(Duration.ofMillis(100), Duration.ofMillis(300), fast, stuck);
+
+        PatentSearchResult result = service.searchByKeyword(filter("graphene"));
+        assertEquals(ProviderCompleteness.Status.TIMED_OUT, status(result, "EPO").status());
+
+        assertTrue(stuck.interrupted.await(5, TimeUnit.SECONDS), "stuck provider was not cancelled");
+        assertNull(cacheManager.getCache(CacheNames.PATENT_SEARCH).get(cacheKey(filter("graphene"))));
+    }
+
+    @Test
+    void uncachedSearchCancelsProvidersAtTheDeadline() throws Exception {
+        DelayedProvider fast = new DelayedProvider("PatentsView", Duration.ZERO, 2);
+        DelayedProvider slow = new DelayedProvider("EPO", Duration.ofSeconds(30), 2);
+        UnifiedPatentSearchService service = service(Duration.ofMillis(200), Duration.ofSeconds(30), fast, slow);
+
+        PatentSearchResult result = service.searchAdvanced(filter("lidar"));
+
+        assertEquals(2, result.patents().size());
+        assertEquals(ProviderCompleteness.Status.TIMED_OUT, status(result, "EPO").status());
+        assertTrue(slow.interrupted.await(2, TimeUnit.SECONDS), "slow provider was not cancelled");
+    }
+
+    @Test
+    void failedProviderIsReportedAndTheResultIsNotCached() {
+        DelayedProvider ok = new DelayedProvider("PatentsView", Duration.ZERO, 2);
+        PatentSearchProvider broken = new DelayedProvider("EPO", Duration.ZERO, 0) {
+            @Override
+            public List<PatentDocument> searchByKeyword(PatentSearchFilter filter) {
+                throw new IllegalStateException("upstream down");
+            }
+        };
+        UnifiedPatentSearchService service = service(Duration.ofSeconds(2), Duration.ofSeconds(30), ok, broken);
+
+        PatentSearchResult result = service.searchByKeyword(filter("fuel cell"));
+
+        assertEquals(2, result.patents().size());
+        assertEquals(ProviderCompleteness.Status.FAILED, status(result, "EPO").status());
+        assertNull(cacheManager.getCache(CacheNames.PATENT_SEARCH).get(cacheKey(filter("fuel cell"))));
+    }
+
+    private UnifiedPatentSearchService service(Duration deadline, Duration lateResultTimeout,
+                                               PatentSearchProvider... providers) {
+        return new UnifiedPatentSearchService(
+                List.of(providers),
+                new PatentFilterService(),
+                new PatentSnapshotCacheService(),
+                executor,
+                cacheManager,
+                new PatentSearchProperties(deadline, lateResultTimeout));
+    }
+
+    private PatentSearchResult awaitCached(PatentSearchFilter filter) throws InterruptedException {
+        long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < until) {
+            PatentSearchResult cached = cacheManager.getCache(CacheNames.PATENT_SEARCH)
+                    .get(cacheKey(filter), PatentSearchResult.class);
+            if (cached != null) return cached;
+            Thread.sleep(10);
+        }
+        return fail("late results were not cached");
+    }
+
+    private static Object cacheKey(PatentSearchFilter filter) {
+        return Objects.hash(filter.getKeyword(), filter.getJurisdiction(), filter.getFilingDateFrom(),
+                filter.getFilingDateTo(), filter.getAssignee(), filter.getInventor());
+    }
+
+    private static ProviderCompleteness status(PatentSearchResult result, String source) {
+        return result.providers().stream()
+                .filter(p -> p.source().equals(source))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static PatentSearchFilter filter(String keyword) {
+        PatentSearchFilter filter = new PatentSearchFilter();
+        filter.setKeyword(keyword);
+        filter.setJurisdiction("ALL");
+        return filter;
+    }
+
+    private static class DelayedProvider implements PatentSearchProvider {
+
+        private final String source;
+        private final Duration delay;
+        private final int results;
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        DelayedProvider(String source, Duration delay, int results) {
+            this.source = source;
+            this.delay = delay;
+            this.results = results;
+        }
+
+        @Override
+        public String getSource() {
+            return source;
+        }
+
+        @Override
+        public boolean supportsJurisdiction(String jurisdiction) {
+            return true;
+        }
+
+        @Override
+        public List<PatentDocument> searchByKeyword(PatentSearchFilter filter) {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new IllegalStateException("cancelled", e);
+            }
+            List<PatentDocument> documents = IntStream.range(0, results).mapToObj(i -> {
+                PatentDocument document = new PatentDocument();
+                document.setPublicationNumber(source + "-" + filter.getKeyword() + "-" + i);
+                document.setSource(source);
+                return document;
+            }).toList();
+            finished.countDown();
+            return documents;
+        }
+
+        @Override
+        public List<PatentDocument> searchAdvanced(PatentSearchFilter filter) {
+            return searchByKeyword(filter);
+        }
+    }
+}
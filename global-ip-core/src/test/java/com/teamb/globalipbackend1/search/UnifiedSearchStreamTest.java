@@ -0,0 +1,269 @@
+package com.teamb.globalipbackend1.search;
+
+import com.teamb.globalipbackend1.cache.CacheNames;
+import com.teamb.globalipbackend1.controller.search.UnifiedSearchController;
+import com.teamb.globalipbackend1.dto.search.GlobalSearchRequest;
+import com.teamb.globalipbackend1.dto.search.PageResponse;
+import com.teamb.globalipbackend1.dto.search.PatentSearchDelta;
+import com.teamb.globalipbackend1.dto.search.PatentSearchFilter;
+import com.teamb.globalipbackend1.dto.search.ProviderCompleteness;
+import com.teamb.globalipbackend1.dto.search.TrademarkResultDto;
+import com.teamb.globalipbackend1.dto.search.TrademarkSearchFilter;
+import com.teamb.globalipbackend1.dto.search.UnifiedSearchSummary;
+import com.teamb.globalipbackend1.external.patentsview.config.JacksonConfig;
+import com.teamb.globalipbackend1.external.resilience.ResilienceProperties;
+import com.teamb.globalipbackend1.external.resilience.UpstreamGuards;
+import com.teamb.globalipbackend1.external.usptotm.UsptoTmClient;
+import com.teamb.globalipbackend1.external.usptotm.config.TrademarkServiceConfig;
+import com.teamb.globalipbackend1.model.patents.PatentDocument;
+import com.teamb.globalipbackend1.service.patent.detail.PatentSnapshotCacheService;
+import com.teamb.globalipbackend1.service.patent.search.PatentFilterService;
+import com.teamb.globalipbackend1.service.patent.search.PatentSearchProperties;
+import com.teamb.globalipbackend1.service.patent.search.UnifiedPatentSearchService;
+import com.teamb.globalipbackend1.service.patent.search.UnifiedSearchService;
+import com.teamb.globalipbackend1.service.patent.search.provider.PatentSearchProvider;
+import com.teamb.globalipbackend1.service.search.SearchActivityService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Streamed unified search against stub providers with skewed delays: results arrive in
+ * the order the providers answer, the first of them after the fastest provider's delay,
+ * and the summary comes last.
+ */
+class UnifiedSearchStreamTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private record Event(String name, Object data, long atMillis) {
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void streamsEachProviderAsItAnswersAndEndsWithTheSummary() {
+        UnifiedSearchService service = service(Duration.ofSeconds(5),
+                new DelayedProvider("PatentsView", Duration.ofMillis(30), 4),
+                new DelayedProvider("EPO", Duration.ofMillis(800), 6),
+                Duration.ofMillis(300));
+
+        List<Event> events = stream(service, searchRequest("battery", "acme"));
+
+        assertEquals(List.of("patents", "trademarks", "patents", "summary"),
+                events.stream().map(Event::name).toList());
+
+        PatentSearchDelta first = (PatentSearchDelta) events.get(0).data();
+        assertEquals("PatentsView", first.provider().source());
+        assertEquals(4, first.provider().results());
+        // deltas are filtered: only the ACME half of each provider's results passes
+        assertEquals(2, first.patents().size());
+        assertTrue(first.patents().stream().allMatch(p -> p.getAssignees().contains("ACME Corp")));
+
+        PatentSearchDelta second = (PatentSearchDelta) events.get(2).data();
+        assertEquals("EPO", second.provider().source());
+        assertEquals(3, second.patents().size());
+
+        UnifiedSearchSummary summary = (UnifiedSearchSummary) events.get(3).data();
+        assertTrue(summary.complete());
+        assertEquals(5, summary.patents());
+        assertEquals(1, summary.trademarks());
+        assertEquals(2, summary.providers().size());
+    }
+
+    @Test
+    void firstEventArrivesAfterTheFastestProviderNotTheSlowest() {
+        UnifiedSearchService service = service(Duration.ofSeconds(5),
+                new DelayedProvider("PatentsView", Duration.ofMillis(50), 2),
+                new DelayedProvider("EPO", Duration.ofMillis(1_500), 2),
+                Duration.ofMillis(1_200));
+
+        List<Event> events = stream(service, searchRequest("solar", null));
+
+        Event first = events.getFirst();
+        assertEquals("patents", first.name());
+        assertTrue(first.atMillis() < 500, "first event after " + first.atMillis() + " ms");
+        Event last = events.getLast();
+        assertEquals("summary", last.name());
+        assertTrue(last.atMillis() >= 1_500, "summary after " + last.atMillis() + " ms");
+    }
+
+    @Test
+    void providerMissingTheDeadlineOnlyAppearsInTheSummary() {
+        UnifiedSearchService service = service(Duration.ofMillis(300),
+                new DelayedProvider("PatentsView", Duration.ofMillis(20), 2),
+                new DelayedProvider("EPO", Duration.ofSeconds(3), 2),
+                Duration.ZERO);
+
+        List<Event> events = stream(service, searchRequest("graphene", null));
+
+        List<String> names = events.stream().map(Event::name).toList();
+        assertEquals(1, Collections.frequency(names, "patents"));
+        assertEquals("summary", names.getLast());
+        assertTrue(events.getLast().atMillis() < 1_500);
+
+        UnifiedSearchSummary summary = (UnifiedSearchSummary) events.getLast().data();
+        assertFalse(summary.complete());
+        assertEquals(ProviderCompleteness.Status.TIMED_OUT, summary.providers().stream()
+                .filter(p -> p.source().equals("EPO")).findFirst().orElseThrow().status());
+    }
+
+    @Test
+    void controllerWritesTheEventsAsServerSentEvents() throws Exception {
+        UnifiedSearchService service = service(Duration.ofSeconds(5),
+                new DelayedProvider("PatentsView", Duration.ofMillis(10), 2),
+                new DelayedProvider("EPO", Duration.ofMillis(200), 2),
+                Duration.ofMillis(100));
+        UnifiedSearchController controller = new UnifiedSearchController(
+                service, mock(SearchActivityService.class),
+                new PatentSearchProperties(Duration.ofSeconds(5), Duration.ofSeconds(30)), executor);
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        MvcResult result = mvc.perform(post("/api/search/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"keyword\":\"lidar\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5_000);
+
+        assertTrue(result.getResponse().getContentType().startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+        String body = result.getResponse().getContentAsString();
+        List<String> names = new ArrayList<>();
+        Matcher m = Pattern.compile("^event:(\\w+)$", Pattern.MULTILINE).matcher(body);
+        while (m.find()) names.add(m.group(1));
+        assertEquals(List.of("patents", "trademarks", "patents", "summary"), names);
+        assertTrue(body.contains("\"source\":\"PatentsView\""));
+        assertTrue(body.contains("\"complete\":true"));
+    }
+
+    @Test
+    void blankKeywordIsRejected() throws Exception {
+        UnifiedSearchController controller = new UnifiedSearchController(
+                mock(UnifiedSearchService.class), mock(SearchActivityService.class),
+                PatentSearchProperties.defaults(), executor);
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        int status = mvc.perform(post("/api/search/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"keyword\":\" \"}"))
+                .andReturn().getResponse().getStatus();
+        assertEquals(400, status);
+    }
+
+    private List<Event> stream(UnifiedSearchService service, GlobalSearchRequest request) {
+        List<Event> events = Collections.synchronizedList(new ArrayList<>());
+        long started = System.nanoTime();
+        service.streamByKeyword(request, (name, data) -> events.add(
+                new Event(name, data, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started))));
+        return List.copyOf(events);
+    }
+
+    private UnifiedSearchService service(Duration deadline, PatentSearchProvider fast, PatentSearchProvider slow,
+                                         Duration trademarkDelay) {
+        UnifiedPatentSearchService patents = new UnifiedPatentSearchService(
+                List.of(fast, slow),
+                new PatentFilterService(),
+                new PatentSnapshotCacheService(),
+                executor,
+                new ConcurrentMapCacheManager(CacheNames.PATENT_SEARCH),
+                new PatentSearchProperties(deadline, Duration.ofSeconds(30)));
+        return new UnifiedSearchService(patents, new DelayedTrademarks(trademarkDelay), executor);
+    }
+
+    private static GlobalSearchRequest searchRequest(String keyword, String assignee) {
+        try {
+            return new JacksonConfig().objectMapper().readValue(
+                    new JacksonConfig().objectMapper().writeValueAsString(
+                            assignee == null ? Map.of("keyword", keyword) : Map.of("keyword", keyword, "assignee", assignee)),
+                    GlobalSearchRequest.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(Duration delay) {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("cancelled", e);
+        }
+    }
+
+    private static class DelayedTrademarks extends UsptoTmClient {
+
+        private final Duration delay;
+
+        DelayedTrademarks(Duration delay) {
+            super(new TrademarkServiceConfig(), new JacksonConfig().objectMapper(),
+                    new UpstreamGuards(new ResilienceProperties(Map.of()), new SimpleMeterRegistry()));
+            this.delay = delay;
+        }
+
+        @Override
+        public PageResponse<TrademarkResultDto> search(TrademarkSearchFilter filter, int page, int size) {
+            sleep(delay);
+            TrademarkResultDto trademark = new TrademarkResultDto();
+            trademark.setId("97123456");
+            trademark.setMarkName(filter.getGoodsAndServicesText().toUpperCase());
+            PageResponse<TrademarkResultDto> response = new PageResponse<>();
+            response.setContent(List.of(trademark));
+            return response;
+        }
+    }
+
+    private record DelayedProvider(String source, Duration delay, int results) implements PatentSearchProvider {
+
+        @Override
+        public String getSource() {
+            return source;
+        }
+
+        @Override
+        public boolean supportsJurisdiction(String jurisdiction) {
+            return true;
+        }
+
+        @Override
+        public List<PatentDocument> searchByKeyword(PatentSearchFilter filter) {
+            sleep(delay);
+            return IntStream.range(0, results).mapToObj(i -> {
+                PatentDocument document = new PatentDocument();
+                document.setPublicationNumber(source + "-" + i);
+                document.setSource(source);
+                document.setAssignees(List.of(i % 2 == 0 ? "ACME Corp" : "Globex"));
+                return document;
+            }).toList();
+        }
+
+        @Override
+        public List<PatentDocument> searchAdvanced(PatentSearchFilter filter) {
+            return searchByKeyword(filter);
+        }
+    }
+}
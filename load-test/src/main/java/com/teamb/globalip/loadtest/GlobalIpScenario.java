@@ -0,0 +1,96 @@
+package com.teamb.globalip.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * The requests a load run sends to global-ip-core: unified search, patent detail,
+ * citation network and trends. Ids and keywords are drawn from the ones the simulator's
+ * recordings know about, so the core's upstream calls get real answers.
+ */
+public final class GlobalIpScenario {
+
+    public static final String SEARCH = "search";
+    public static final String DETAIL = "detail";
+    public static final String CITATION = "citation";
+    public static final String TRENDS = "trends";
+
+    /** search=4, detail=3, citation=2, trends=1 */
+    public static final Map<String, Integer> DEFAULT_MIX = defaultMix();
+
+    private static final List<String> KEYWORDS = List.of("battery", "sensor array", "cooling plate", "acme", "robot arm");
+    private static final List<String> PATENT_IDS = List.of(
+            "US11886900", "US11886905", "US11886912", "US11886917", "EP1000001B1", "EP2000002A1");
+    private static final List<String> US_PATENT_IDS = List.of("11886900", "11886905", "11886912", "11886917");
+    private static final List<String> TREND_PATHS = List.of(
+            "/api/analyst/trend/filings",
+            "/api/analyst/trend/grants",
+            "/api/analyst/epo/trends/filings",
+            "/api/analyst/unified/trends/filings");
+
+    private GlobalIpScenario() {
+    }
+
+    /**
+     * @param headers sent with every request, typically {@code X-API-KEY} or {@code Authorization}
+     * @param mix     weight per endpoint name; endpoints left out are not sent
+     */
+    public static List<LoadDriver.Endpoint> endpoints(String target, Map<String, String> headers, Map<String, Integer> mix) {
+        String base = target.endsWith("/") ? target.substring(0, target.length() - 1) : target;
+        List<LoadDriver.Endpoint> endpoints = new ArrayList<>();
+        mix.forEach((name, weight) -> {
+            if (weight <= 0) return;
+            endpoints.add(switch (name) {
+                case SEARCH -> new LoadDriver.Endpoint(SEARCH, weight, r -> request(base + "/api/search", headers)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"keyword\":\"" + pick(KEYWORDS, r) + "\"}"))
+                        .build());
+                case DETAIL -> new LoadDriver.Endpoint(DETAIL, weight, r ->
+                        request(base + "/api/patents/" + pick(PATENT_IDS, r), headers).GET().build());
+                case CITATION -> new LoadDriver.Endpoint(CITATION, weight, r ->
+                        request(base + "/api/patents/" + pick(US_PATENT_IDS, r) + "/citations/network", headers)
+                                .GET().build());
+                case TRENDS -> new LoadDriver.Endpoint(TRENDS, weight, r ->
+                        request(base + pick(TREND_PATHS, r), headers).GET().build());
+                default -> throw new IllegalArgumentException("Unknown endpoint " + name + " in mix");
+            });
+        });
+        return endpoints;
+    }
+
+    /** {@code search=4,detail=3,citation=2,trends=1} */
+    public static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) throw new IllegalArgumentException("Expected name=weight in mix, got " + part);
+            mix.put(kv[0].trim(), Integer.parseInt(kv[1].trim()));
+        }
+        return mix;
+    }
+
+    private static HttpRequest.Builder request(String url, Map<String, String> headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).header("Accept", "application/json");
+        headers.forEach(builder::header);
+        return builder;
+    }
+
+    private static String pick(List<String> values, RandomGenerator random) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static Map<String, Integer> defaultMix() {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        mix.put(SEARCH, 4);
+        mix.put(DETAIL, 3);
+        mix.put(CITATION, 2);
+        mix.put(TRENDS, 1);
+        return mix;
+    }
+}
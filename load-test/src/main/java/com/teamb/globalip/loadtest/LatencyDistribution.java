@@ -0,0 +1,112 @@
+package com.teamb.globalip.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+
+/**
+ * Response delay the simulator adds before answering, written as
+ * <ul>
+ *   <li>{@code none}</li>
+ *   <li>{@code fixed:80ms}</li>
+ *   <li>{@code uniform:20ms..200ms}</li>
+ *   <li>{@code lognormal:80ms,p99=900ms}: median and 99th percentile, the usual shape of
+ *       upstream latency with a long tail</li>
+ * </ul>
+ */
+public sealed interface LatencyDistribution {
+
+    long MAX_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    long sampleNanos(RandomGenerator random);
+
+    record None() implements LatencyDistribution {
+        @Override
+        public long sampleNanos(RandomGenerator random) {
+            return 0;
+        }
+    }
+
+    record Fixed(Duration delay) implements LatencyDistribution {
+        @Override
+        public long sampleNanos(RandomGenerator random) {
+            return delay.toNanos();
+        }
+    }
+
+    record Uniform(Duration min, Duration max) implements LatencyDistribution {
+        @Override
+        public long sampleNanos(RandomGenerator random) {
+            long lo = min.toNanos();
+            long hi = max.toNanos();
+            return hi <= lo ? lo : random.nextLong(lo, hi + 1);
+        }
+    }
+
+    record LogNormal(Duration median, Duration p99) implements LatencyDistribution {
+
+        // the 99th percentile of the standard normal distribution
+        private static final double Z_99 = 2.3263478740;
+
+        @Override
+        public long sampleNanos(RandomGenerator random) {
+            double mu = Math.log(median.toNanos());
+            double sigma = Math.log((double) p99.toNanos() / median.toNanos()) / Z_99;
+            double nanos = Math.exp(mu + sigma * random.nextGaussian());
+            return (long) Math.min(MAX_NANOS, nanos);
+        }
+    }
+
+    static LatencyDistribution parse(String spec) {
+        String s = spec.trim().toLowerCase();
+        if (s.isEmpty() || s.equals("none") || s.equals("0")) {
+            return new None();
+        }
+        int colon = s.indexOf(':');
+        if (colon < 0) {
+            return new Fixed(duration(s));
+        }
+        String kind = s.substring(0, colon);
+        String args = s.substring(colon + 1);
+        return switch (kind) {
+            case "fixed" -> new Fixed(duration(args));
+            case "uniform" -> {
+                String[] range = args.split("\\.\\.");
+                if (range.length != 2) throw new IllegalArgumentException("Expected uniform:MIN..MAX, got " + spec);
+                yield new Uniform(duration(range[0]), duration(range[1]));
+            }
+            case "lognormal" -> {
+                String[] parts = args.split(",");
+                if (parts.length != 2 || !parts[1].trim().startsWith("p99=")) {
+                    throw new IllegalArgumentException("Expected lognormal:MEDIAN,p99=P99, got " + spec);
+                }
+                Duration median = duration(parts[0]);
+                Duration p99 = duration(parts[1].trim().substring(4));
+                if (p99.compareTo(median) < 0) throw new IllegalArgumentException("p99 below the median in " + spec);
+                yield new LogNormal(median, p99);
+            }
+            default -> throw new IllegalArgumentException("Unknown latency distribution " + spec);
+        };
+    }
+
+    /** {@code 250ms}, {@code 1.5s}, {@code 2m}; a bare number is milliseconds. */
+    static Duration duration(String value) {
+        String v = value.trim();
+        double amount;
+        double nanosPerUnit;
+        if (v.endsWith("ms")) {
+            amount = Double.parseDouble(v.substring(0, v.length() - 2));
+            nanosPerUnit = 1e6;
+        } else if (v.endsWith("s")) {
+            amount = Double.parseDouble(v.substring(0, v.length() - 1));
+            nanosPerUnit = 1e9;
+        } else if (v.endsWith("m")) {
+            amount = Double.parseDouble(v.substring(0, v.length() - 1));
+            nanosPerUnit = 60e9;
+        } else {
+            amount = Double.parseDouble(v);
+            nanosPerUnit = 1e6;
+        }
+        return Duration.ofNanos((long) (amount * nanosPerUnit));
+    }
+}
@@ -0,0 +1,77 @@
+package com.teamb.globalip.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes a run's results under one directory: {@code summary.txt} with the main
+ * percentiles per endpoint, and one {@code <endpoint>.hgrm} per endpoint (plus
+ * {@code all.hgrm}) with the full percentile distribution in milliseconds, which HdrHistogram's
+ * plotter reads directly.
+ */
+public final class LatencyReport {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private LatencyReport() {
+    }
+
+    public static Path write(LoadDriver.Result result, LoadDriver.Settings settings, Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        for (Map.Entry<String, Histogram> entry : result.latencies().entrySet()) {
+            writeDistribution(entry.getValue(), directory.resolve(entry.getKey() + ".hgrm"));
+        }
+        Histogram total = result.total();
+        writeDistribution(total, directory.resolve("all.hgrm"));
+
+        Path summary = directory.resolve("summary.txt");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(summary), true, "UTF-8")) {
+            out.print(summary(result, settings));
+        }
+        return summary;
+    }
+
+    public static String summary(LoadDriver.Result result, LoadDriver.Settings settings) {
+        StringBuilder sb = new StringBuilder();
+        double seconds = result.measured().toNanos() / 1e9;
+        sb.append(String.format(Locale.ROOT,
+                "Offered %.1f req/s (%s arrivals) for %s after %s warm-up, max %d in flight%n",
+                settings.ratePerSecond(), settings.poissonArrivals() ? "poisson" : "uniform",
+                settings.duration(), settings.warmup(), settings.maxInFlight()));
+        sb.append(String.format(Locale.ROOT, "Scheduled %d, completed %d (%.1f req/s), errors %d, dropped %d%n",
+                result.scheduled(), result.total().getTotalCount(), result.total().getTotalCount() / seconds,
+                result.errorCount(), result.dropped()));
+        sb.append("Status counts: ").append(result.statuses()).append(System.lineSeparator());
+        sb.append(System.lineSeparator());
+        sb.append(String.format(Locale.ROOT, "%-12s %8s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        result.latencies().forEach((name, histogram) ->
+                sb.append(row(name, histogram, result.errors().get(name))));
+        sb.append(row("all", result.total(), result.errorCount()));
+        return sb.toString();
+    }
+
+    private static String row(String name, Histogram h, long errors) {
+        return String.format(Locale.ROOT, "%-12s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                name, h.getTotalCount(), errors,
+                millis(h, 50), millis(h, 90), millis(h, 99), millis(h, 99.9),
+                h.getMaxValue() / MICROS_PER_MILLI);
+    }
+
+    private static double millis(Histogram h, double percentile) {
+        return h.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+    }
+
+    private static void writeDistribution(Histogram histogram, Path file) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), true, "UTF-8")) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+}
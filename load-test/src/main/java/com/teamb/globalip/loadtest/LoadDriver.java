@@ -0,0 +1,173 @@
+package com.teamb.globalip.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.random.RandomGenerator;
+
+/**
+ * Open-model load: requests are started on a schedule at a fixed mean arrival rate,
+ * whether or not earlier ones have finished, the way independent users arrive.
+ * <p>
+ * Latency is measured from when a request was due to start, not from when it was
+ * actually sent, so a stalled dispatcher or a slow target shows up in the percentiles
+ * instead of quietly lowering the offered load (coordinated omission). When
+ * {@code maxInFlight} requests are outstanding, further arrivals are dropped and counted.
+ */
+public final class LoadDriver {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    /**
+     * One kind of request and its share of the mix.
+     */
+    public record Endpoint(String name, int weight, Function<RandomGenerator, HttpRequest> request) {
+    }
+
+    public record Settings(double ratePerSecond,
+                           Duration duration,
+                           Duration warmup,
+                           int maxInFlight,
+                           boolean poissonArrivals,
+                           Duration requestTimeout) {
+    }
+
+    /**
+     * Histograms are in microseconds and only cover requests due after the warm-up.
+     */
+    public record Result(Map<String, Histogram> latencies,
+                         Map<String, Long> errors,
+                         Map<Integer, Long> statuses,
+                         long dropped,
+                         long scheduled,
+                         Duration measured) {
+
+        public Histogram total() {
+            Histogram total = new Histogram(HIGHEST_MICROS, 3);
+            latencies.values().forEach(total::add);
+            return total;
+        }
+
+        public long errorCount() {
+            return errors.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+
+    private final HttpClient client;
+    private final List<Endpoint> endpoints;
+    private final Settings settings;
+    private final int totalWeight;
+
+    public LoadDriver(HttpClient client, List<Endpoint> endpoints, Settings settings) {
+        if (endpoints.isEmpty()) throw new IllegalArgumentException("No endpoints to drive");
+        this.client = client;
+        this.endpoints = List.copyOf(endpoints);
+        this.settings = settings;
+        this.totalWeight = endpoints.stream().mapToInt(Endpoint::weight).sum();
+        if (totalWeight <= 0) throw new IllegalArgumentException("Endpoint weights add up to " + totalWeight);
+    }
+
+    public Result run() throws InterruptedException {
+        Map<String, Histogram> latencies = new LinkedHashMap<>();
+        Map<String, LongAdder> errors = new LinkedHashMap<>();
+        for (Endpoint endpoint : endpoints) {
+            latencies.put(endpoint.name(), new ConcurrentHistogram(HIGHEST_MICROS, 3));
+            errors.put(endpoint.name(), new LongAdder());
+        }
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        LongAdder dropped = new LongAdder();
+        AtomicInteger inFlight = new AtomicInteger();
+        SplittableRandom schedule = new SplittableRandom();
+
+        double meanGapNanos = 1e9 / settings.ratePerSecond();
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup().toNanos();
+        long end = measureFrom + settings.duration().toNanos();
+        long scheduled = 0;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            double due = start;
+            while (true) {
+                due += settings.poissonArrivals()
+                        ? -Math.log(1 - schedule.nextDouble()) * meanGapNanos
+                        : meanGapNanos;
+                long dueAt = (long) due;
+                if (dueAt >= end) break;
+
+                long wait = dueAt - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (Thread.interrupted()) throw new InterruptedException();
+
+                Endpoint endpoint = pick(schedule);
+                boolean measured = dueAt >= measureFrom;
+                if (measured) scheduled++;
+
+                if (inFlight.incrementAndGet() > settings.maxInFlight()) {
+                    inFlight.decrementAndGet();
+                    if (measured) dropped.increment();
+                    continue;
+                }
+
+                SplittableRandom requestRandom = schedule.split();
+                executor.execute(() -> {
+                    int status = -1;
+                    try {
+                        HttpRequest request = HttpRequest.newBuilder(endpoint.request().apply(requestRandom), (n, v) -> true)
+                                .timeout(settings.requestTimeout())
+                                .build();
+                        status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        // connection refused, timeout, ...: recorded as status -1
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                    if (!measured) return;
+
+                    long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueAt);
+                    latencies.get(endpoint.name()).recordValue(Math.min(micros, HIGHEST_MICROS));
+                    statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                    if (status < 200 || status >= 400) {
+                        errors.get(endpoint.name()).increment();
+                    }
+                });
+            }
+            // closing the executor waits for the requests still in flight
+        }
+
+        Map<String, Long> errorCounts = new LinkedHashMap<>();
+        errors.forEach((name, count) -> errorCounts.put(name, count.sum()));
+        Map<Integer, Long> statusCounts = new LinkedHashMap<>();
+        statuses.entrySet().stream().sorted(Map.Entry.comparingByKey())
+                .forEach(e -> statusCounts.put(e.getKey(), e.getValue().sum()));
+        return new Result(latencies, errorCounts, statusCounts, dropped.sum(), scheduled, settings.duration());
+    }
+
+    private Endpoint pick(RandomGenerator random) {
+        int ticket = random.nextInt(totalWeight);
+        for (Endpoint endpoint : endpoints) {
+            ticket -= endpoint.weight();
+            if (ticket < 0) return endpoint;
+        }
+        return endpoints.getLast();
+    }
+}
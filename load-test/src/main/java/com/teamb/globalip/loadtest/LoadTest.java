@@ -0,0 +1,115 @@
+package com.teamb.globalip.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+
+/**
+ * One end-to-end run: starts the {@link UpstreamSimulator}, waits for global-ip-core
+ * (started separately with {@link UpstreamSimulator#coreEnvironment()}) to answer, drives
+ * it with the {@link GlobalIpScenario} and writes the {@link LatencyReport}. Progress and the
+ * summary go to {@code console}.
+ * <p>
+ * Configured with system properties:
+ * <pre>
+ *   load.target         http://localhost:8080
+ *   load.api-key        sent as X-API-KEY
+ *   load.bearer         sent as Authorization: Bearer ...
+ *   load.rate           20          requests per second
+ *   load.duration       60s
+ *   load.warmup         10s
+ *   load.arrivals       poisson     or uniform
+ *   load.max-in-flight  2000
+ *   load.timeout        30s         per request
+ *   load.mix            search=4,detail=3,citation=2,trends=1
+ *   load.await-target   3m          how long to wait for the target to come up
+ *   load.out            target/load-test
+ *   sim.port, sim.&lt;upstream&gt;.*   see UpstreamSimulator and UpstreamProfile
+ * </pre>
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static LoadDriver.Result run(Properties props, PrintStream console) throws Exception {
+        String target = props.getProperty("load.target", "http://localhost:8080");
+        LoadDriver.Settings settings = new LoadDriver.Settings(
+                Double.parseDouble(props.getProperty("load.rate", "20")),
+                LatencyDistribution.duration(props.getProperty("load.duration", "60s")),
+                LatencyDistribution.duration(props.getProperty("load.warmup", "10s")),
+                Integer.parseInt(props.getProperty("load.max-in-flight", "2000")),
+                !"uniform".equalsIgnoreCase(props.getProperty("load.arrivals", "poisson")),
+                LatencyDistribution.duration(props.getProperty("load.timeout", "30s")));
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (props.getProperty("load.api-key") != null) {
+            headers.put("X-API-KEY", props.getProperty("load.api-key"));
+        }
+        if (props.getProperty("load.bearer") != null) {
+            headers.put("Authorization", "Bearer " + props.getProperty("load.bearer"));
+        }
+
+        try (UpstreamSimulator simulator = UpstreamSimulator.fromProperties(props);
+             HttpClient client = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .connectTimeout(Duration.ofSeconds(5))
+                     .executor(Executors.newVirtualThreadPerTaskExecutor())
+                     .build()) {
+
+            console.println("Upstream simulator listening on " + simulator.baseUrl()
+                    + "; start global-ip-core with:");
+            simulator.coreEnvironment().forEach((k, v) -> console.println("  " + k + "=" + v));
+
+            awaitTarget(client, target,
+                    LatencyDistribution.duration(props.getProperty("load.await-target", "3m")));
+
+            LoadDriver driver = new LoadDriver(client,
+                    GlobalIpScenario.endpoints(target, headers,
+                            GlobalIpScenario.parseMix(props.getProperty("load.mix", "search=4,detail=3,citation=2,trends=1"))),
+                    settings);
+            console.printf("Driving %s at %.1f req/s for %s (+%s warm-up)%n",
+                    target, settings.ratePerSecond(), settings.duration(), settings.warmup());
+            LoadDriver.Result result = driver.run();
+
+            Path summary = LatencyReport.write(result, settings, Path.of(props.getProperty("load.out", "target/load-test")));
+            console.print(LatencyReport.summary(result, settings));
+            console.println("Upstream calls: epo=" + simulator.requests(UpstreamSimulator.EPO)
+                    + ", patentsview=" + simulator.requests(UpstreamSimulator.PATENTSVIEW)
+                    + ", trademark=" + simulator.requests(UpstreamSimulator.TRADEMARK)
+                    + ", trends=" + simulator.requests(UpstreamSimulator.TRENDS));
+            console.println("Percentiles written to " + summary.getParent().toAbsolutePath());
+            return result;
+        }
+    }
+
+    // any HTTP answer will do, an unauthenticated 401 included
+    private static void awaitTarget(HttpClient client, String target, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        HttpRequest probe = HttpRequest.newBuilder(URI.create(target)).timeout(Duration.ofSeconds(5)).GET().build();
+        while (true) {
+            try {
+                client.send(probe, HttpResponse.BodyHandlers.discarding());
+                return;
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("No answer from " + target + " within " + timeout, e);
+                }
+                Thread.sleep(1000);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        run(System.getProperties(), System.out);
+    }
+}
@@ -0,0 +1,62 @@
+package com.teamb.globalip.loadtest;
+
+import java.util.Properties;
+
+/**
+ * How one simulated upstream behaves.
+ *
+ * @param errorRate         fraction of requests answered with {@code errorStatus}
+ * @param throttlingControl X-Throttling-Control value stamped on EPO responses, or null
+ * @param hourlyQuotaUsed   X-IndividualQuotaPerHour-Used bytes on EPO responses, negative to leave it out
+ * @param weeklyQuotaUsed   X-RegisteredQuotaPerWeek-Used bytes on EPO responses, negative to leave it out
+ */
+public record UpstreamProfile(
+        LatencyDistribution latency,
+        double errorRate,
+        int errorStatus,
+        String throttlingControl,
+        long hourlyQuotaUsed,
+        long weeklyQuotaUsed
+) {
+
+    public static final String GREEN =
+            "idle (images=green:200, inpadoc=green:60, other=green:1000, retrieval=green:200, search=green:30)";
+
+    public static UpstreamProfile instant() {
+        return new UpstreamProfile(new LatencyDistribution.None(), 0, 503, GREEN, -1, -1);
+    }
+
+    public UpstreamProfile withLatency(LatencyDistribution latency) {
+        return new UpstreamProfile(latency, errorRate, errorStatus, throttlingControl, hourlyQuotaUsed, weeklyQuotaUsed);
+    }
+
+    public UpstreamProfile withErrors(double errorRate, int errorStatus) {
+        return new UpstreamProfile(latency, errorRate, errorStatus, throttlingControl, hourlyQuotaUsed, weeklyQuotaUsed);
+    }
+
+    public UpstreamProfile withThrottling(String throttlingControl, long hourlyQuotaUsed, long weeklyQuotaUsed) {
+        return new UpstreamProfile(latency, errorRate, errorStatus, throttlingControl, hourlyQuotaUsed, weeklyQuotaUsed);
+    }
+
+    /**
+     * Reads {@code sim.<upstream>.latency}, {@code .error-rate}, {@code .error-status},
+     * {@code .throttling}, {@code .quota-hour-used} and {@code .quota-week-used}, falling
+     * back to {@code defaults}.
+     */
+    public static UpstreamProfile from(Properties props, String upstream, UpstreamProfile defaults) {
+        String prefix = "sim." + upstream + ".";
+        String latency = props.getProperty(prefix + "latency");
+        String errorRate = props.getProperty(prefix + "error-rate");
+        String errorStatus = props.getProperty(prefix + "error-status");
+        String hourly = props.getProperty(prefix + "quota-hour-used");
+        String weekly = props.getProperty(prefix + "quota-week-used");
+        return new UpstreamProfile(
+                latency == null ? defaults.latency() : LatencyDistribution.parse(latency),
+                errorRate == null ? defaults.errorRate() : Double.parseDouble(errorRate),
+                errorStatus == null ? defaults.errorStatus() : Integer.parseInt(errorStatus),
+                props.getProperty(prefix + "throttling", defaults.throttlingControl()),
+                hourly == null ? defaults.hourlyQuotaUsed() : Long.parseLong(hourly),
+                weekly == null ? defaults.weeklyQuotaUsed() : Long.parseLong(weekly)
+        );
+    }
+}
@@ -0,0 +1,252 @@
+package com.teamb.globalip.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stands in for every upstream global-ip-core talks to, on one port: EPO OPS under
+ * {@code /3.2}, PatentsView under {@code /api/v1/patent}, tm-mock under
+ * {@code /api/trademarks} and the trends service under {@code /api/trends},
+ * {@code /api/epo/trends} and {@code /api/unified/trends}.
+ * <p>
+ * Answers come from recordings on the classpath ({@code /recordings}) whatever the
+ * query, after a delay drawn from the upstream's {@link UpstreamProfile}, which also sets
+ * the share of failed responses and the throttling headers EPO responses carry. Profiles
+ * can be swapped while the simulator runs.
+ */
+public final class UpstreamSimulator implements AutoCloseable {
+
+    public static final String EPO = "epo";
+    public static final String PATENTSVIEW = "patentsview";
+    public static final String TRADEMARK = "trademark";
+    public static final String TRENDS = "trends";
+
+    private static final Map<String, UpstreamProfile> DEFAULTS = Map.of(
+            EPO, UpstreamProfile.instant()
+                    .withLatency(LatencyDistribution.parse("lognormal:250ms,p99=1500ms"))
+                    .withErrors(0.005, 503),
+            PATENTSVIEW, UpstreamProfile.instant()
+                    .withLatency(LatencyDistribution.parse("lognormal:120ms,p99=800ms"))
+                    .withErrors(0.005, 503),
+            TRADEMARK, UpstreamProfile.instant()
+                    .withLatency(LatencyDistribution.parse("fixed:15ms")),
+            TRENDS, UpstreamProfile.instant()
+                    .withLatency(LatencyDistribution.parse("lognormal:60ms,p99=400ms"))
+    );
+
+    static {
+        // without TCP_NODELAY the JDK server's separate header and body writes meet delayed
+        // ACKs and add ~40 ms to responses, on top of the latency being simulated
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, UpstreamProfile> profiles = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> recordings = new ConcurrentHashMap<>();
+
+    public UpstreamSimulator(int port, Map<String, UpstreamProfile> profiles) throws IOException {
+        for (String upstream : DEFAULTS.keySet()) {
+            this.profiles.put(upstream, profiles.getOrDefault(upstream, DEFAULTS.get(upstream)));
+            requests.put(upstream, new LongAdder());
+            errors.put(upstream, new LongAdder());
+        }
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/3.2/auth/accesstoken", ex ->
+                send(ex, 200, "application/json",
+                        "{\"access_token\":\"simulated\",\"token_type\":\"BearerToken\",\"expires_in\":\"1199\"}"
+                                .getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/3.2/rest-services/", ex -> handle(ex, EPO, this::epo));
+        server.createContext("/api/v1/patent/", ex -> handle(ex, PATENTSVIEW, this::patentsView));
+        server.createContext("/api/trademarks/", ex -> handle(ex, TRADEMARK, this::trademark));
+        server.createContext("/api/trends/", ex -> handle(ex, TRENDS, this::trend));
+        server.createContext("/api/epo/trends/", ex -> handle(ex, TRENDS, this::trend));
+        server.createContext("/api/unified/trends/", ex -> handle(ex, TRENDS, this::trend));
+        server.start();
+    }
+
+    /** Profiles from {@code sim.*} properties, on {@code sim.port} (default 9099). */
+    public static UpstreamSimulator fromProperties(Properties props) throws IOException {
+        Map<String, UpstreamProfile> profiles = new ConcurrentHashMap<>();
+        DEFAULTS.forEach((upstream, defaults) -> profiles.put(upstream, UpstreamProfile.from(props, upstream, defaults)));
+        return new UpstreamSimulator(Integer.parseInt(props.getProperty("sim.port", "9099")), profiles);
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public UpstreamProfile profile(String upstream) {
+        return profiles.get(upstream);
+    }
+
+    public void profile(String upstream, UpstreamProfile profile) {
+        if (!profiles.containsKey(upstream)) throw new IllegalArgumentException("Unknown upstream " + upstream);
+        profiles.put(upstream, profile);
+    }
+
+    public long requests(String upstream) {
+        return requests.get(upstream).sum();
+    }
+
+    public long errors(String upstream) {
+        return errors.get(upstream).sum();
+    }
+
+    /**
+     * The settings that point global-ip-core at this simulator, as environment variables
+     * (Spring's relaxed binding of epo.base-url, patentsview.citation-base-url, ...).
+     */
+    public Map<String, String> coreEnvironment() {
+        String base = baseUrl();
+        return new TreeMap<>(Map.of(
+                "EPO_BASE_URL", base + "/3.2",
+                "PATENTS_VIEW_API_URL", base + "/api/v1/patent/",
+                "PATENTSVIEW_CITATIONBASEURL", base + "/api/v1/patent",
+                "SERVICES_TRADEMARK_BASEURL", base,
+                "PATENTANALYTICS_BASEURL", base
+        ));
+    }
+
+    @FunctionalInterface
+    private interface Route {
+        Response respond(String path, String method);
+    }
+
+    private record Response(int status, String contentType, byte[] body) {
+    }
+
+    private void handle(HttpExchange ex, String upstream, Route route) throws IOException {
+        ex.getRequestBody().readAllBytes();
+        requests.get(upstream).increment();
+        UpstreamProfile profile = profiles.get(upstream);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        // a parked virtual thread per delayed response, so slow answers do not hold others up
+        long delay = profile.latency().sampleNanos(random);
+        if (delay > 0) {
+            LockSupport.parkNanos(delay);
+        }
+
+        if (EPO.equals(upstream)) {
+            if (profile.throttlingControl() != null) {
+                ex.getResponseHeaders().add("X-Throttling-Control", profile.throttlingControl());
+            }
+            if (profile.hourlyQuotaUsed() >= 0) {
+                ex.getResponseHeaders().add("X-IndividualQuotaPerHour-Used", String.valueOf(profile.hourlyQuotaUsed()));
+            }
+            if (profile.weeklyQuotaUsed() >= 0) {
+                ex.getResponseHeaders().add("X-RegisteredQuotaPerWeek-Used", String.valueOf(profile.weeklyQuotaUsed()));
+            }
+        }
+
+        if (profile.errorRate() > 0 && random.nextDouble() < profile.errorRate()) {
+            errors.get(upstream).increment();
+            send(ex, profile.errorStatus(), "text/plain",
+                    ("Simulated " + upstream + " failure").getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        Response response = route.respond(ex.getRequestURI().getPath(), ex.getRequestMethod());
+        send(ex, response.status(), response.contentType(), response.body());
+    }
+
+    private Response epo(String path, String method) {
+        if (path.contains("/published-data/search")) {
+            return xml(path.endsWith("/biblio") ? "epo/search-biblio.xml" : "epo/search.xml");
+        }
+        if (path.contains("/published-data/publication/")) {
+            if (path.endsWith("/biblio")) {
+                return xml(path.contains("/docdb/") ? "epo/biblio-docdb.xml" : "epo/biblio-epodoc.xml");
+            }
+            if (path.endsWith("/abstract")) {
+                return xml("epo/abstract.xml");
+            }
+        }
+        // claims, description, legal, family, ... are not recorded; OPS answers 404 for unknown documents too
+        return new Response(404, "application/xml", new byte[0]);
+    }
+
+    private Response patentsView(String path, String method) {
+        if (path.contains("/us_patent_citation")) return json("patentsview/us_patent_citation.json");
+        if (path.contains("/us_application_citation")) return json("patentsview/us_application_citation.json");
+        if (path.contains("/foreign_citation")) return json("patentsview/foreign_citation.json");
+        return json("patentsview/patents.json");
+    }
+
+    private Response trademark(String path, String method) {
+        return json(path.endsWith("/search") ? "trademark/search.json" : "trademark/detail.json");
+    }
+
+    private Response trend(String path, String method) {
+        if (path.equals("/api/trends/filings")) return json("trends/filings.json");
+        if (path.equals("/api/trends/grants")) return json("trends/grants.json");
+        if (path.equals("/api/epo/trends/filings")) return json("trends/epo-filings.json");
+        if (path.equals("/api/unified/trends/filings")) return json("trends/unified-filings.json");
+        return new Response(200, "application/json", "[]".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Response xml(String name) {
+        return new Response(200, "application/xml", recording(name));
+    }
+
+    private Response json(String name) {
+        return new Response(200, "application/json", recording(name));
+    }
+
+    private byte[] recording(String name) {
+        return recordings.computeIfAbsent(name, n -> {
+            try (InputStream in = UpstreamSimulator.class.getResourceAsStream("/recordings/" + n)) {
+                if (in == null) throw new IllegalArgumentException("No recording " + n);
+                return in.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void send(HttpExchange ex, int status, String contentType, byte[] body) throws IOException {
+        ex.getResponseHeaders().add("Content-Type", contentType);
+        ex.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            ex.getResponseBody().write(body);
+        }
+        ex.close();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** Runs the simulator alone, for pointing a separately started global-ip-core at it. */
+    public static void main(String[] args) throws Exception {
+        UpstreamSimulator simulator = fromProperties(System.getProperties());
+        System.out.println("Upstream simulator listening on " + simulator.baseUrl());
+        simulator.coreEnvironment().forEach((k, v) -> System.out.println("  " + k + "=" + v));
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::close));
+        Thread.currentThread().join();
+    }
+}
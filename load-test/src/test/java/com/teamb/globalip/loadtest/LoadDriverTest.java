@@ -0,0 +1,104 @@
+package com.teamb.globalip.loadtest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The driver against the simulator directly, standing in for a target whose latency is known.
+ */
+class LoadDriverTest {
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private UpstreamSimulator simulator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        simulator = new UpstreamSimulator(0, Map.of(
+                UpstreamSimulator.TRENDS, UpstreamProfile.instant().withLatency(LatencyDistribution.parse("fixed:200ms")),
+                UpstreamSimulator.TRADEMARK, UpstreamProfile.instant().withErrors(1.0, 503)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        simulator.close();
+        client.close();
+    }
+
+    private LoadDriver.Endpoint endpoint(String name, String path) {
+        return new LoadDriver.Endpoint(name, 1,
+                r -> HttpRequest.newBuilder(URI.create(simulator.baseUrl() + path)).GET().build());
+    }
+
+    @Test
+    void keepsTheOfferedRateWhenTheTargetIsSlow() throws Exception {
+        // a closed loop of one user would manage 5 requests a second against 200 ms answers
+        LoadDriver.Settings settings = new LoadDriver.Settings(
+                100, Duration.ofSeconds(2), Duration.ofMillis(500), 1000, false, Duration.ofSeconds(5));
+        LoadDriver.Result result = new LoadDriver(client, List.of(endpoint("trends", "/api/trends/filings")), settings).run();
+
+        assertEquals(200, result.scheduled(), 1);
+        assertEquals(result.scheduled(), result.total().getTotalCount());
+        assertEquals(0, result.dropped());
+        assertEquals(0, result.errorCount());
+        assertTrue(result.total().getValueAtPercentile(50) >= 200_000, "p50 below the upstream delay");
+        assertTrue(result.total().getValueAtPercentile(50) < 400_000,
+                "p50 " + result.total().getValueAtPercentile(50) + " us");
+        assertEquals(250, simulator.requests(UpstreamSimulator.TRENDS), 2);
+    }
+
+    @Test
+    void countsErrorsAndDropsAndWritesPercentiles(@TempDir Path out) throws Exception {
+        LoadDriver.Settings settings = new LoadDriver.Settings(
+                200, Duration.ofSeconds(1), Duration.ZERO, 20, true, Duration.ofSeconds(5));
+        LoadDriver.Result result = new LoadDriver(client, List.of(
+                endpoint("slow", "/api/trends/filings"),
+                endpoint("failing", "/api/trademarks/97123456")), settings).run();
+
+        // 20 slots held 200 ms each admit about 100 a second of the 200 offered
+        assertTrue(result.dropped() > 0, "nothing dropped");
+        assertEquals(result.scheduled(), result.total().getTotalCount() + result.dropped());
+        assertEquals(result.latencies().get("failing").getTotalCount(), (long) result.errors().get("failing"));
+        assertEquals(0, result.errors().get("slow"));
+        assertTrue(result.statuses().containsKey(503));
+
+        Path summary = LatencyReport.write(result, settings, out);
+        String text = Files.readString(summary);
+        assertTrue(text.contains("p99.9 ms"), text);
+        assertTrue(text.contains("dropped " + result.dropped()), text);
+        for (String file : List.of("slow.hgrm", "failing.hgrm", "all.hgrm")) {
+            assertTrue(Files.readString(out.resolve(file)).contains("#[Mean"), file);
+        }
+    }
+
+    @Test
+    void scenarioCoversTheCoreEndpoints() {
+        List<LoadDriver.Endpoint> endpoints = GlobalIpScenario.endpoints("http://localhost:8080/",
+                Map.of("X-API-KEY", "k"), GlobalIpScenario.parseMix("search=4,detail=3,citation=2,trends=1"));
+        assertEquals(List.of("search", "detail", "citation", "trends"),
+                endpoints.stream().map(LoadDriver.Endpoint::name).toList());
+
+        HttpRequest search = endpoints.getFirst().request().apply(new java.util.SplittableRandom(1));
+        assertEquals("POST", search.method());
+        assertEquals("http://localhost:8080/api/search", search.uri().toString());
+        assertEquals("k", search.headers().firstValue("X-API-KEY").orElseThrow());
+        assertTrue(endpoints.get(2).request().apply(new java.util.SplittableRandom(1))
+                .uri().getPath().endsWith("/citations/network"));
+    }
+}
@@ -0,0 +1,25 @@
+package com.teamb.globalip.loadtest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The end-to-end run behind {@code mvn -Pload test}; skipped in a normal build.
+ */
+@EnabledIfSystemProperty(named = "load.run", matches = "true")
+class LoadTestRun {
+
+    @Test
+    void run() throws Exception {
+        LoadDriver.Result result = LoadTest.run(System.getProperties(), new PrintStream(OutputStream.nullOutputStream()));
+        assertTrue(result.total().getTotalCount() > 0, "no request completed");
+        assertTrue(Files.exists(Path.of(System.getProperty("load.out", "target/load-test"), "summary.txt")));
+    }
+}
@@ -0,0 +1,103 @@
+package com.teamb.globalip.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamSimulatorTest {
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private UpstreamSimulator simulator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        UpstreamProfile instant = UpstreamProfile.instant();
+        simulator = new UpstreamSimulator(0, Map.of(
+                UpstreamSimulator.EPO, instant,
+                UpstreamSimulator.PATENTSVIEW, instant,
+                UpstreamSimulator.TRADEMARK, instant,
+                UpstreamSimulator.TRENDS, instant));
+    }
+
+    @AfterEach
+    void tearDown() {
+        simulator.close();
+        client.close();
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(simulator.baseUrl() + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void servesRecordingsForEveryUpstream() throws Exception {
+        HttpResponse<String> search = get("/3.2/rest-services/published-data/search?q=ti%3Dbattery");
+        assertEquals(200, search.statusCode());
+        assertTrue(search.body().contains("total-result-count=\"3\""));
+        assertEquals(UpstreamProfile.GREEN, search.headers().firstValue("X-Throttling-Control").orElseThrow());
+
+        assertTrue(get("/3.2/rest-services/published-data/publication/epodoc/biblio").body().contains("1000001"));
+        assertEquals(404, get("/3.2/rest-services/published-data/publication/epodoc/EP1000001B1/claims").statusCode());
+        assertTrue(get("/api/v1/patent/").body().contains("\"patents\""));
+        assertTrue(get("/api/v1/patent/us_patent_citation/").body().contains("\"us_patent_citations\""));
+        assertTrue(get("/api/trademarks/97123456").body().contains("\"markName\""));
+        assertTrue(get("/api/unified/trends/filings").body().contains("\"epoCount\""));
+        assertEquals("[]", get("/api/epo/trends/families").body());
+
+        assertEquals(3, simulator.requests(UpstreamSimulator.EPO));
+        assertEquals(2, simulator.requests(UpstreamSimulator.PATENTSVIEW));
+        assertEquals(simulator.baseUrl() + "/3.2", simulator.coreEnvironment().get("EPO_BASE_URL"));
+    }
+
+    @Test
+    void injectsErrorsAndThrottlingHeaders() throws Exception {
+        simulator.profile(UpstreamSimulator.EPO, UpstreamProfile.instant()
+                .withErrors(0.5, 503)
+                .withThrottling("busy (images=green:200, retrieval=yellow:100, search=red:10)", 10_000, 3_900_000_000L));
+
+        int failed = 0;
+        for (int i = 0; i < 400; i++) {
+            HttpResponse<String> response = get("/3.2/rest-services/published-data/search");
+            if (response.statusCode() == 503) failed++;
+            assertTrue(response.headers().firstValue("X-Throttling-Control").orElseThrow().startsWith("busy"));
+            assertEquals("3900000000", response.headers().firstValue("X-RegisteredQuotaPerWeek-Used").orElseThrow());
+        }
+        assertTrue(failed > 150 && failed < 250, "failed " + failed + " of 400");
+        assertEquals(failed, simulator.errors(UpstreamSimulator.EPO));
+    }
+
+    @Test
+    void delaysFollowTheConfiguredDistribution() throws Exception {
+        LatencyDistribution logNormal = LatencyDistribution.parse("lognormal:80ms,p99=600ms");
+        Histogram histogram = new Histogram(3);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 200_000; i++) {
+            histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(logNormal.sampleNanos(random)));
+        }
+        assertEquals(80_000, histogram.getValueAtPercentile(50), 4_000);
+        assertEquals(600_000, histogram.getValueAtPercentile(99), 40_000);
+
+        assertEquals(new LatencyDistribution.Uniform(Duration.ofMillis(20), Duration.ofSeconds(2)),
+                LatencyDistribution.parse("uniform:20ms..2s"));
+        assertEquals(new LatencyDistribution.Fixed(Duration.ofMillis(1500)), LatencyDistribution.parse("1.5s"));
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("lognormal:80ms,p99=10ms"));
+
+        simulator.profile(UpstreamSimulator.TRENDS, UpstreamProfile.instant().withLatency(LatencyDistribution.parse("fixed:150ms")));
+        long started = System.nanoTime();
+        assertEquals(200, get("/api/trends/filings").statusCode());
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(150));
+    }
+}
@@ -0,0 +1,69 @@
+package com.teamb.globalip.patenttrendsservice.aggregate;
+
+import java.util.List;
+
+/**
+ * One agg_* table and how to rebuild it from the raw PatentsView tables.
+ * <p>
+ * {@code query} selects the aggregate rows and must contain {@link #PARTITIONS}
+ * where the engine puts the year filter. Changes are detected through
+ * {@code watermarkTable.watermarkColumn}, a DATE that grows with every release.
+ * Partitioned aggregates derive their {@code partitionColumn} from the same date
+ * via {@code partitionExpression}, so only years at or after the previous
+ * watermark have to be recomputed; other aggregates are rebuilt in full.
+ */
+public record AggregateDefinition(
+        String table,
+        List<String> sourceTables,
+        String watermarkTable,
+        String watermarkColumn,
+        String partitionColumn,
+        String partitionExpression,
+        String query
+) {
+
+    public static final String PARTITIONS = "{partitions}";
+
+    public AggregateDefinition {
+        sourceTables = List.copyOf(sourceTables);
+        if (!sourceTables.contains(watermarkTable)) {
+            throw new IllegalArgumentException(table + ": watermark table must be one of its sources");
+        }
+        if (!query.contains(PARTITIONS)) {
+            throw new IllegalArgumentException(table + ": query has no " + PARTITIONS + " filter");
+        }
+        if ((partitionColumn == null) != (partitionExpression == null)) {
+            throw new IllegalArgumentException(table + ": partition column and expression go together");
+        }
+    }
+
+    /**
+     * Aggregate keyed by year, refreshed one year partition at a time.
+     */
+    public static AggregateDefinition yearly(String table,
+                                             List<String> sourceTables,
+                                             String watermarkTable,
+                                             String watermarkColumn,
+                                             String partitionColumn,
+                                             String partitionExpression,
+                                             String query) {
+        return new AggregateDefinition(table, sourceTables, watermarkTable, watermarkColumn,
+                partitionColumn, partitionExpression, query);
+    }
+
+    /**
+     * Aggregate over all years, rebuilt in full whenever its watermark moves.
+     */
+    public static AggregateDefinition global(String table,
+                                             List<String> sourceTables,
+                                             String watermarkTable,
+                                             String watermarkColumn,
+                                             String query) {
+        return new AggregateDefinition(table, sourceTables, watermarkTable, watermarkColumn,
+                null, null, query);
+    }
+
+    public boolean isPartitioned() {
+        return partitionColumn != null;
+    }
+}
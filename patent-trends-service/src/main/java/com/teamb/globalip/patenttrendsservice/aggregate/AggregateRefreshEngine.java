@@ -0,0 +1,191 @@
+package com.teamb.globalip.patenttrendsservice.aggregate;
+
+import com.teamb.globalip.patenttrendsservice.aggregate.AggregateRefreshStateStore.State;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Rebuilds the registered agg_* tables from the raw tables.
+ * <p>
+ * Each aggregate is built into {@code <table>_staging} and swapped in with two
+ * renames in one transaction, so readers see either the old or the new table.
+ * For a partitioned aggregate whose table already exists, only the years from
+ * the previous watermark onwards are recomputed; the other years are copied
+ * over from the live table.
+ */
+@Slf4j
+@Service
+@Profile("refresh")
+@RequiredArgsConstructor
+public class AggregateRefreshEngine {
+
+    public enum Outcome { FULL, PARTIAL, UNCHANGED, SKIPPED }
+
+    public record Result(
+            String aggregate,
+            Outcome outcome,
+            Integer fromYear,
+            Integer toYear,
+            long rowCount,
+            long durationMs
+    ) {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final AggregateRegistry registry;
+    private final AggregateRefreshStateStore stateStore;
+
+    /**
+     * Refreshes every registered aggregate; one failing aggregate does not stop the rest.
+     */
+    public List<Result> refreshAll() {
+        stateStore.createTableIfMissing();
+        Map<String, Optional<LocalDate>> watermarks = new HashMap<>();
+        List<Result> results = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+
+        for (AggregateDefinition definition : registry.all()) {
+            try {
+                results.add(refresh(definition, watermarks));
+            } catch (RuntimeException e) {
+                log.error("Refresh of {} failed", definition.table(), e);
+                failed.add(definition.table());
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            throw new IllegalStateException("Aggregate refresh failed for " + failed);
+        }
+        return results;
+    }
+
+    public Result refresh(AggregateDefinition definition) {
+        stateStore.createTableIfMissing();
+        return refresh(definition, new HashMap<>());
+    }
+
+    private Result refresh(AggregateDefinition definition, Map<String, Optional<LocalDate>> watermarks) {
+        long start = System.nanoTime();
+        String table = definition.table();
+
+        for (String source : definition.sourceTables()) {
+            if (!tableExists(source)) {
+                log.warn("Skipping {}: source table {} does not exist", table, source);
+                return new Result(table, Outcome.SKIPPED, null, null, 0, 0);
+            }
+        }
+
+        // aggregates sharing a watermark column look it up once per run
+        Optional<LocalDate> watermark = watermarks.computeIfAbsent(
+                definition.watermarkTable() + "." + definition.watermarkColumn(),
+                key -> maxWatermark(definition));
+        if (watermark.isEmpty()) {
+            log.warn("Skipping {}: {} is empty", table, definition.watermarkTable());
+            return new Result(table, Outcome.SKIPPED, null, null, 0, 0);
+        }
+
+        boolean exists = tableExists(table);
+        Optional<State> previous = exists ? stateStore.find(table) : Optional.empty();
+        if (previous.isPresent() && !watermark.get().isAfter(previous.get().watermark())) {
+            log.info("{} is up to date (watermark {})", table, previous.get().watermark());
+            return new Result(table, Outcome.UNCHANGED, null, null, previous.get().rowCount(), 0);
+        }
+
+        Integer fromYear = null;
+        Integer toYear = null;
+        if (definition.isPartitioned() && previous.isPresent()) {
+            fromYear = previous.get().watermark().getYear();
+            toYear = watermark.get().getYear();
+        }
+
+        long rows = rebuild(definition, fromYear, toYear);
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        String partitions = fromYear == null ? "all" : fromYear + "-" + toYear;
+
+        stateStore.save(new State(table, watermark.get(), Instant.now(), durationMs, rows, partitions));
+        log.info("Refreshed {} ({} partitions, {} rows) in {} ms", table, partitions, rows, durationMs);
+
+        return new Result(table, fromYear == null ? Outcome.FULL : Outcome.PARTIAL,
+                fromYear, toYear, rows, durationMs);
+    }
+
+    private long rebuild(AggregateDefinition definition, Integer fromYear, Integer toYear) {
+        String table = definition.table();
+        String staging = table + "_staging";
+        String retired = table + "_retired";
+
+        jdbc.execute("DROP TABLE IF EXISTS " + staging);
+
+        if (fromYear == null) {
+            jdbc.execute("CREATE TABLE " + staging + " AS " + definition.query()
+                    .replace(AggregateDefinition.PARTITIONS, "1 = 1"));
+        } else {
+            String years = " BETWEEN " + fromYear + " AND " + toYear;
+            jdbc.execute("CREATE TABLE " + staging + " AS SELECT * FROM " + table
+                    + " WHERE " + definition.partitionColumn() + " NOT" + years);
+            jdbc.execute("INSERT INTO " + staging + " " + definition.query()
+                    .replace(AggregateDefinition.PARTITIONS, definition.partitionExpression() + years));
+        }
+
+        Long rows = jdbc.queryForObject("SELECT COUNT(*) FROM " + staging, Long.class);
+
+        jdbc.execute((ConnectionCallback<Void>) c -> {
+            swap(c, table, staging, retired);
+            return null;
+        });
+        return rows == null ? 0 : rows;
+    }
+
+    // PostgreSQL runs DDL inside the transaction, so the swap is atomic for readers
+    private void swap(Connection c, String table, String staging, String retired) throws SQLException {
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try (Statement st = c.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS " + retired);
+            if (tableExists(c, table)) {
+                st.execute("ALTER TABLE " + table + " RENAME TO " + retired);
+            }
+            st.execute("ALTER TABLE " + staging + " RENAME TO " + table);
+            st.execute("DROP TABLE IF EXISTS " + retired);
+            c.commit();
+        } catch (SQLException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+    private Optional<LocalDate> maxWatermark(AggregateDefinition definition) {
+        LocalDate max = jdbc.queryForObject(
+                "SELECT MAX(" + definition.watermarkColumn() + ") FROM " + definition.watermarkTable(),
+                LocalDate.class);
+        return Optional.ofNullable(max);
+    }
+
+    private boolean tableExists(String table) {
+        Boolean exists = jdbc.execute((ConnectionCallback<Boolean>) c -> tableExists(c, table));
+        return Boolean.TRUE.equals(exists);
+    }
+
+    private static boolean tableExists(Connection c, String table) throws SQLException {
+        try (var rs = c.getMetaData().getTables(null, "public", table, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.teamb.globalip.patenttrendsservice.aggregate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@Profile("refresh")
+@RequiredArgsConstructor
+public class AggregateRefreshRunner implements CommandLineRunner {
+
+    private final AggregateRefreshEngine refreshEngine;
+
+    @Override
+    public void run(String... args) {
+
+        log.info("======================================");
+        log.info("AGGREGATE REFRESH STARTED");
+        log.info("======================================");
+
+        long start = System.currentTimeMillis();
+
+        List<AggregateRefreshEngine.Result> results = refreshEngine.refreshAll();
+
+        long end = System.currentTimeMillis();
+
+        log.info("======================================");
+        log.info("AGGREGATE REFRESH COMPLETED");
+        results.forEach(r -> log.info("{}: {} in {} ms", r.aggregate(), r.outcome(), r.durationMs()));
+        log.info("Time taken: {} seconds", (end - start) / 1000);
+        log.info("======================================");
+
+        // optional: stop JVM after refresh
+        System.exit(0);
+    }
+}
@@ -0,0 +1,88 @@
+package com.teamb.globalip.patenttrendsservice.aggregate;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Last successful refresh of each aggregate, stored in agg_refresh_state.
+ * watermark is the source watermark the aggregate was built from.
+ */
+@Component
+@Profile("refresh")
+@RequiredArgsConstructor
+public class AggregateRefreshStateStore {
+
+    public record State(
+            String aggregate,
+            LocalDate watermark,
+            Instant refreshedAt,
+            long durationMs,
+            long rowCount,
+            String partitions
+    ) {
+    }
+
+    private final JdbcTemplate jdbc;
+
+    public void createTableIfMissing() {
+        jdbc.execute("""
+            CREATE TABLE IF NOT EXISTS agg_refresh_state (
+                aggregate_name VARCHAR(128) PRIMARY KEY,
+                watermark      DATE NOT NULL,
+                refreshed_at   TIMESTAMP NOT NULL,
+                duration_ms    BIGINT NOT NULL,
+                row_count      BIGINT NOT NULL,
+                partitions     VARCHAR(64) NOT NULL
+            )
+        """);
+    }
+
+    public Optional<State> find(String aggregate) {
+        List<State> rows = jdbc.query("""
+                SELECT aggregate_name, watermark, refreshed_at, duration_ms, row_count, partitions
+                FROM agg_refresh_state
+                WHERE aggregate_name = ?
+                """,
+                (rs, i) -> new State(
+                        rs.getString(1),
+                        rs.getDate(2).toLocalDate(),
+                        rs.getTimestamp(3).toInstant(),
+                        rs.getLong(4),
+                        rs.getLong(5),
+                        rs.getString(6)),
+                aggregate);
+        return rows.stream().findFirst();
+    }
+
+    public void save(State state) {
+        Object[] args = {
+                Date.valueOf(state.watermark()),
+                Timestamp.from(state.refreshedAt()),
+                state.durationMs(),
+                state.rowCount(),
+                state.partitions(),
+                state.aggregate()
+        };
+        int updated = jdbc.update("""
+                UPDATE agg_refresh_state
+                SET watermark = ?, refreshed_at = ?, duration_ms = ?, row_count = ?, partitions = ?
+                WHERE aggregate_name = ?
+                """, args);
+        if (updated == 0) {
+            jdbc.update("""
+                    INSERT INTO agg_refresh_state
+                        (watermark, refreshed_at, duration_ms, row_count, partitions, aggregate_name)
+                    VALUES (?, ?, ?, ?, ?, ?)
+                    """, args);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.teamb.globalip.patenttrendsservice.aggregate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Ordered set of aggregate definitions, refreshed in registration order.
+ */
+public class AggregateRegistry {
+
+    private final List<AggregateDefinition> definitions = new ArrayList<>();
+
+    public AggregateRegistry register(AggregateDefinition definition) {
+        if (find(definition.table()).isPresent()) {
+            throw new IllegalArgumentException("Aggregate already registered: " + definition.table());
+        }
+        definitions.add(definition);
+        return this;
+    }
+
+    public Optional<AggregateDefinition> find(String table) {
+        return definitions.stream()
+                .filter(d -> d.table().equals(table))
+                .findFirst();
+    }
+
+    public List<AggregateDefinition> all() {
+        return Collections.unmodifiableList(definitions);
+    }
+}
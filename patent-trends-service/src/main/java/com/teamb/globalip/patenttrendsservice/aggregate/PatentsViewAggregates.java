@@ -0,0 +1,196 @@
+package com.teamb.globalip.patenttrendsservice.aggregate;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.List;
+
+import static com.teamb.globalip.patenttrendsservice.aggregate.AggregateDefinition.global;
+import static com.teamb.globalip.patenttrendsservice.aggregate.AggregateDefinition.yearly;
+
+/**
+ * The agg_* tables read by the PatentsView repositories. New grants arrive with
+ * later grant dates, so patent.grant_date is the watermark for every aggregate.
+ * A new grant can carry a filing date from any earlier year, so the filing trend
+ * is rebuilt in full when it moves rather than per filing year.
+ */
+@Configuration
+@Profile("refresh")
+public class PatentsViewAggregates {
+
+    // the "top" tables are read with small LIMITs; keep them bounded
+    private static final int TOP_ROWS = 10_000;
+
+    private static final String GRANT_YEAR = "CAST(EXTRACT(YEAR FROM p.grant_date) AS INTEGER)";
+    private static final String FILING_YEAR = "CAST(EXTRACT(YEAR FROM pa.filing_date) AS INTEGER)";
+
+    @Bean
+    public AggregateRegistry aggregateRegistry() {
+        return new AggregateRegistry()
+                .register(global("agg_filing_trend_yearly",
+                        List.of("patent_application", "patent"),
+                        "patent", "grant_date", """
+                        SELECT %1$s AS year,
+                               COUNT(*) AS filings
+                        FROM patent_application pa
+                        WHERE pa.filing_date IS NOT NULL
+                          AND {partitions}
+                        GROUP BY %1$s
+                        """.formatted(FILING_YEAR)))
+                .register(yearly("agg_time_to_grant_yearly",
+                        List.of("patent", "patent_application"),
+                        "patent", "grant_date",
+                        "grant_year", GRANT_YEAR, """
+                        SELECT %1$s AS grant_year,
+                               AVG(CAST(p.grant_date - pa.filing_date AS DOUBLE PRECISION) / 365.25) AS avg_years_to_grant
+                        FROM patent p
+                        JOIN patent_application pa ON pa.patent_id = p.patent_id
+                        WHERE p.withdrawn = false
+                          AND p.grant_date IS NOT NULL
+                          AND pa.filing_date IS NOT NULL
+                          AND {partitions}
+                        GROUP BY %1$s
+                        """.formatted(GRANT_YEAR)))
+                .register(yearly("agg_grant_claim_trend",
+                        List.of("patent"),
+                        "patent", "grant_date",
+                        "year", GRANT_YEAR, """
+                        SELECT %1$s AS year,
+                               AVG(CAST(p.claim_count AS DOUBLE PRECISION)) AS avg_claims,
+                               PERCENTILE_CONT(0.5) WITHIN GROUP (ORDER BY p.claim_count) AS median_claims
+                        FROM patent p
+                        WHERE p.withdrawn = false
+                          AND p.grant_date IS NOT NULL
+                          AND {partitions}
+                        GROUP BY %1$s
+                        """.formatted(GRANT_YEAR)))
+                .register(global("agg_country_grants",
+                        List.of("patent"),
+                        "patent", "grant_date", """
+                        SELECT p.country, COUNT(*) AS grant_count
+                        FROM patent p
+                        WHERE p.withdrawn = false
+                          AND p.country IS NOT NULL
+                          AND {partitions}
+                        GROUP BY p.country
+                        """))
+                .register(global("agg_patent_type_distribution",
+                        List.of("patent"),
+                        "patent", "grant_date", """
+                        SELECT p.patent_type, COUNT(*) AS count
+                        FROM patent p
+                        WHERE p.patent_type IS NOT NULL
+                          AND {partitions}
+                        GROUP BY p.patent_type
+                        """))
+                .register(global("agg_top_assignees",
+                        List.of("patent_assignee", "patent"),
+                        "patent", "grant_date", """
+                        SELECT a.organization_name, COUNT(DISTINCT a.patent_id) AS patent_count
+                        FROM patent_assignee a
+                        WHERE a.organization_name IS NOT NULL
+                          AND {partitions}
+                        GROUP BY a.organization_name
+                        ORDER BY patent_count DESC
+                        LIMIT %d
+                        """.formatted(TOP_ROWS)))
+                .register(yearly("agg_assignee_yearly_activity",
+                        List.of("patent_assignee", "patent"),
+                        "patent", "grant_date",
+                        "year", GRANT_YEAR, """
+                        SELECT %1$s AS year,
+                               a.organization_name,
+                               COUNT(DISTINCT a.patent_id) AS patent_count
+                        FROM patent_assignee a
+                        JOIN patent p ON p.patent_id = a.patent_id
+                        WHERE a.organization_name IS NOT NULL
+                          AND p.grant_date IS NOT NULL
+                          AND {partitions}
+                        GROUP BY %1$s, a.organization_name
+                        """.formatted(GRANT_YEAR)))
+                .register(global("agg_assignee_technology_focus",
+                        List.of("patent_assignee", "patent_cpc", "patent"),
+                        "patent", "grant_date", """
+                        SELECT a.organization_name, c.cpc_section, COUNT(DISTINCT a.patent_id) AS patent_count
+                        FROM patent_assignee a
+                        JOIN patent_cpc c ON c.patent_id = a.patent_id
+                        WHERE a.organization_name IS NOT NULL
+                          AND c.cpc_section IS NOT NULL
+                          AND {partitions}
+                        GROUP BY a.organization_name, c.cpc_section
+                        """))
+                .register(global("agg_top_cpc_groups",
+                        List.of("patent_cpc", "patent"),
+                        "patent", "grant_date", """
+                        SELECT c.cpc_group, COUNT(DISTINCT c.patent_id) AS patent_count
+                        FROM patent_cpc c
+                        WHERE c.cpc_group IS NOT NULL
+                          AND {partitions}
+                        GROUP BY c.cpc_group
+                        ORDER BY patent_count DESC
+                        LIMIT %d
+                        """.formatted(TOP_ROWS)))
+                .register(yearly("agg_technology_evolution",
+                        List.of("patent_cpc", "patent"),
+                        "patent", "grant_date",
+                        "year", GRANT_YEAR, """
+                        SELECT %1$s AS year,
+                               c.cpc_section,
+                               COUNT(DISTINCT c.patent_id) AS patent_count
+                        FROM patent_cpc c
+                        JOIN patent p ON p.patent_id = c.patent_id
+                        WHERE c.cpc_section IS NOT NULL
+                          AND p.grant_date IS NOT NULL
+                          AND {partitions}
+                        GROUP BY %1$s, c.cpc_section
+                        """.formatted(GRANT_YEAR)))
+                .register(global("agg_technology_crossovers",
+                        List.of("patent_cpc", "patent"),
+                        "patent", "grant_date", """
+                        SELECT c1.cpc_section AS section1,
+                               c2.cpc_section AS section2,
+                               COUNT(DISTINCT c1.patent_id) AS co_occurrence
+                        FROM patent_cpc c1
+                        JOIN patent_cpc c2 ON c2.patent_id = c1.patent_id
+                                          AND c1.cpc_section < c2.cpc_section
+                        WHERE {partitions}
+                        GROUP BY c1.cpc_section, c2.cpc_section
+                        """))
+                .register(global("agg_top_citing_patents",
+                        List.of("patent_citation", "patent"),
+                        "patent", "grant_date", """
+                        SELECT p.patent_id, p.title, COUNT(*) AS citations_made
+                        FROM patent_citation c
+                        JOIN patent p ON p.patent_id = c.patent_id
+                        WHERE {partitions}
+                        GROUP BY p.patent_id, p.title
+                        ORDER BY citations_made DESC
+                        LIMIT %d
+                        """.formatted(TOP_ROWS)))
+                .register(global("agg_top_cited_patents",
+                        List.of("patent_citation", "patent"),
+                        "patent", "grant_date", """
+                        SELECT c.cited_patent_id, COUNT(*) AS times_cited
+                        FROM patent_citation c
+                        WHERE c.cited_patent_id IS NOT NULL
+                          AND {partitions}
+                        GROUP BY c.cited_patent_id
+                        ORDER BY times_cited DESC
+                        LIMIT %d
+                        """.formatted(TOP_ROWS)))
+                .register(yearly("agg_citation_lag_yearly",
+                        List.of("patent_citation", "patent"),
+                        "patent", "grant_date",
+                        "citation_year", GRANT_YEAR, """
+                        SELECT %1$s AS citation_year,
+                               AVG(CAST(p.grant_date - c.citation_date AS DOUBLE PRECISION) / 365.25) AS avg_citation_lag_years
+                        FROM patent_citation c
+                        JOIN patent p ON p.patent_id = c.patent_id
+                        WHERE c.citation_date IS NOT NULL
+                          AND p.grant_date IS NOT NULL
+                          AND {partitions}
+                        GROUP BY %1$s
+                        """.formatted(GRANT_YEAR)));
+    }
+}
@@ -0,0 +1,275 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streams XML entries out of DOCDB deliveries without extracting them to disk.
+ * Handles plain .xml, .gz, .zip, .tar and .tar.gz/.tgz, nested to any depth;
+ * nested entries are named {@code outer.zip!/inner.zip!/doc.xml}.
+ */
+class EpoArchiveReader {
+
+    @FunctionalInterface
+    interface EntryHandler {
+        /**
+         * @param in entry content; must not be closed by the handler
+         * @return documents parsed from the entry
+         */
+        long ingest(String entryName, InputStream in) throws Exception;
+    }
+
+    private static final int TAR_BLOCK = 512;
+
+    private final int bufferSize;
+
+    EpoArchiveReader(int bufferSize) {
+        this.bufferSize = Math.max(TAR_BLOCK, bufferSize);
+    }
+
+    static boolean isSupported(Path file) {
+        String name = lower(file.getFileName().toString());
+        return name.endsWith(".xml") || isArchiveName(name);
+    }
+
+    static boolean isArchive(Path file) {
+        return isArchiveName(lower(file.getFileName().toString()));
+    }
+
+    private static boolean isArchiveName(String name) {
+        return name.endsWith(".zip") || name.endsWith(".gz") || name.endsWith(".tgz") || name.endsWith(".tar");
+    }
+
+    /**
+     * Opens a plain file, counting the bytes read from disk.
+     */
+    InputStream open(Path file, AtomicLong bytesRead) throws IOException {
+        return new BufferedInputStream(new CountingInputStream(Files.newInputStream(file), bytesRead), bufferSize);
+    }
+
+    /**
+     * Walks every entry of the archive in order and hands XML entries to the handler.
+     *
+     * @param name    name of the archive itself; entry names are built on it
+     * @param skipped receives the names of entries that are neither XML nor an archive
+     * @return total documents reported by the handler
+     */
+    long read(Path archive,
+              String name,
+              AtomicLong bytesRead,
+              Consumer<String> skipped,
+              EntryHandler handler) throws Exception {
+        try (InputStream in = open(archive, bytesRead)) {
+            return readEntry(name, in, skipped, handler);
+        }
+    }
+
+    private long readEntry(String name,
+                           InputStream in,
+                           Consumer<String> skipped,
+                           EntryHandler handler) throws Exception {
+        String lower = lower(name);
+
+        // decompressors are closed to release their Inflater; the wrapped stream stays open
+        if (lower.endsWith(".tar.gz") || lower.endsWith(".tgz")) {
+            try (InputStream gz = new GZIPInputStream(new NonClosingInputStream(in), bufferSize)) {
+                return readTar(name, gz, skipped, handler);
+            }
+        }
+        if (lower.endsWith(".gz")) {
+            String inner = name.substring(0, name.length() - 3);
+            try (InputStream gz = new GZIPInputStream(new NonClosingInputStream(in), bufferSize)) {
+                return readEntry(inner, gz, skipped, handler);
+            }
+        }
+        if (lower.endsWith(".zip")) {
+            try (ZipInputStream zip = new ZipInputStream(new NonClosingInputStream(in))) {
+                return readZip(name, zip, skipped, handler);
+            }
+        }
+        if (lower.endsWith(".tar")) {
+            return readTar(name, in, skipped, handler);
+        }
+        if (lower.endsWith(".xml")) {
+            return handler.ingest(name, in);
+        }
+
+        skipped.accept(name);
+        return 0;
+    }
+
+    private long readZip(String name,
+                         ZipInputStream zip,
+                         Consumer<String> skipped,
+                         EntryHandler handler) throws Exception {
+        long docs = 0;
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (!entry.isDirectory()) {
+                docs += readEntry(name + "!/" + entry.getName(), new NonClosingInputStream(zip), skipped, handler);
+            }
+            zip.closeEntry();
+        }
+        return docs;
+    }
+
+    private long readTar(String name,
+                         InputStream tar,
+                         Consumer<String> skipped,
+                         EntryHandler handler) throws Exception {
+        long docs = 0;
+        byte[] header = new byte[TAR_BLOCK];
+        String longName = null;
+
+        while (readBlock(tar, header)) {
+            if (header[0] == 0) break; // end-of-archive marker
+
+            String entryName = longName != null ? longName : tarName(header);
+            longName = null;
+            long size = octal(header, 124, 12);
+            byte type = header[156];
+
+            BoundedInputStream data = new BoundedInputStream(tar, size);
+            if (type == 'L') {
+                // GNU long name: the data block holds the name of the next entry
+                longName = new String(data.readAllBytes(), StandardCharsets.UTF_8).trim();
+            } else if (type == '0' || type == 0) {
+                docs += readEntry(name + "!/" + entryName, data, skipped, handler);
+            }
+
+            data.skipRemaining();
+            tar.skipNBytes((TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK);
+        }
+        return docs;
+    }
+
+    private static boolean readBlock(InputStream in, byte[] block) throws IOException {
+        int n = in.readNBytes(block, 0, block.length);
+        if (n == 0) return false;
+        if (n < block.length) throw new IOException("Truncated tar header");
+        return true;
+    }
+
+    private static String tarName(byte[] header) {
+        String name = cString(header, 0, 100);
+        String prefix = cString(header, 345, 155);
+        boolean ustar = "ustar".equals(cString(header, 257, 6).trim());
+        return ustar && !prefix.isEmpty() ? prefix + "/" + name : name;
+    }
+
+    private static String cString(byte[] b, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && b[end] != 0) end++;
+        return new String(b, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long octal(byte[] b, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (b[i] >= '0' && b[i] <= '7') value = (value << 3) + (b[i] - '0');
+            else if (value > 0 || (b[i] != ' ' && b[i] != 0)) break;
+        }
+        return value;
+    }
+
+    private static String lower(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong count;
+
+        CountingInputStream(InputStream in, AtomicLong count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count.addAndGet(n);
+            return n;
+        }
+    }
+
+    private static class NonClosingInputStream extends FilterInputStream {
+
+        NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // the enclosing archive owns the stream
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    private static final class BoundedInputStream extends NonClosingInputStream {
+
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long size) {
+            super(in);
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        void skipRemaining() throws IOException {
+            if (remaining > 0) {
+                in.skipNBytes(remaining);
+                remaining = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentAssigneeEntity;
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentCpcEntity;
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentEntity;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Buffers parsed documents and writes them in batches: PostgreSQL COPY when available,
+ * multi-row INSERT ... ON CONFLICT DO NOTHING otherwise (H2).
+ */
+@Slf4j
+class EpoBulkWriter implements EpoDocumentSink {
+
+    private static final String PATENT_TABLE =
+            "epo_patent (epo_patent_id, country, kind, publication_date, application_date, family_id)";
+    private static final String CPC_TABLE =
+            "epo_patent_cpc (epo_patent_id, cpc_section, cpc_class)";
+    private static final String ASSIGNEE_TABLE =
+            "epo_patent_assignee (epo_patent_id, organization_name)";
+
+    private static final int LOOKUP_CHUNK = 1000;
+    private static final int INSERT_CHUNK = 500;
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private final DataSource dataSource;
+    private final EpoFlushListener listener;
+    private final EpoPatentIdFilter idFilter;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+
+    private final Map<String, EpoParsedDocument> buffer = new LinkedHashMap<>();
+    private long lastFlush = System.nanoTime();
+
+    @Getter
+    private long documentsWritten;
+    @Getter
+    private long duplicatesSkipped;
+
+    EpoBulkWriter(DataSource dataSource,
+                  IngestProperties properties,
+                  EpoFlushListener listener,
+                  EpoPatentIdFilter idFilter) {
+        this.dataSource = dataSource;
+        this.listener = listener;
+        this.idFilter = idFilter;
+        this.batchSize = Math.max(1, properties.getBatchSize());
+        this.flushIntervalNanos = properties.getFlushInterval().toNanos();
+    }
+
+    @Override
+    public boolean contains(String epoPatentId) {
+        return buffer.containsKey(epoPatentId);
+    }
+
+    @Override
+    public void accept(EpoParsedDocument document) throws SQLException {
+        if (buffer.putIfAbsent(document.epoPatentId(), document) != null) {
+            duplicatesSkipped++;
+            return;
+        }
+        if (buffer.size() >= batchSize || System.nanoTime() - lastFlush >= flushIntervalNanos) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        lastFlush = System.nanoTime();
+        if (buffer.isEmpty()) return;
+
+        List<EpoParsedDocument> batch = new ArrayList<>(buffer.values());
+        buffer.clear();
+
+        try (Connection c = dataSource.getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try {
+                List<EpoParsedDocument> fresh = dropExisting(c, batch);
+                // published before commit so concurrent writers look these ids up
+                fresh.forEach(d -> idFilter.add(d.epoPatentId()));
+                fresh = write(c, fresh);
+                listener.flushed(c, fresh);
+                c.commit();
+                documentsWritten += fresh.size();
+                duplicatesSkipped += batch.size() - fresh.size();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+        }
+
+        log.debug("Flushed {} EPO documents in {} ms",
+                batch.size(), (System.nanoTime() - lastFlush) / 1_000_000);
+    }
+
+    private List<EpoParsedDocument> write(Connection c, List<EpoParsedDocument> docs) throws SQLException {
+        if (docs.isEmpty()) return docs;
+
+        if (c.isWrapperFor(PGConnection.class)) {
+            Savepoint savepoint = c.setSavepoint();
+            try {
+                CopyManager copy = c.unwrap(PGConnection.class).getCopyAPI();
+                copyRows(copy, PATENT_TABLE, patentRows(docs));
+                copyRows(copy, CPC_TABLE, cpcRows(docs));
+                copyRows(copy, ASSIGNEE_TABLE, assigneeRows(docs));
+                return docs;
+            } catch (SQLException e) {
+                if (!UNIQUE_VIOLATION.equals(e.getSQLState())) throw e;
+                // a concurrent writer stored some of these ids after our lookup
+                c.rollback(savepoint);
+                docs = dropExisting(c, docs);
+            }
+        }
+
+        // ON CONFLICT DO NOTHING skips ids a concurrent writer stored since our lookup; their
+        // CPC and applicant rows are that writer's, and the listener must not count them again
+        Set<String> inserted = insertRows(c, PATENT_TABLE, patentRows(docs), "epo_patent_id");
+        if (inserted.size() < docs.size()) {
+            docs = docs.stream()
+                    .filter(d -> inserted.contains(d.epoPatentId()))
+                    .toList();
+        }
+        insertRows(c, CPC_TABLE, cpcRows(docs), null);
+        insertRows(c, ASSIGNEE_TABLE, assigneeRows(docs), null);
+        return docs;
+    }
+
+    // only ids the filter cannot rule out are checked against the table
+    private List<EpoParsedDocument> dropExisting(Connection c, List<EpoParsedDocument> docs) throws SQLException {
+        List<String> candidates = docs.stream()
+                .map(EpoParsedDocument::epoPatentId)
+                .filter(idFilter::mightContain)
+                .toList();
+        Set<String> existing = new HashSet<>();
+
+        for (int from = 0; from < candidates.size(); from += LOOKUP_CHUNK) {
+            List<String> chunk = candidates.subList(from, Math.min(candidates.size(), from + LOOKUP_CHUNK));
+            String sql = "SELECT epo_patent_id FROM epo_patent WHERE epo_patent_id IN ("
+                    + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                int i = 1;
+                for (String id : chunk) {
+                    ps.setString(i++, id);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) existing.add(rs.getString(1));
+                }
+            }
+        }
+
+        if (existing.isEmpty()) return docs;
+        return docs.stream()
+                .filter(d -> !existing.contains(d.epoPatentId()))
+                .toList();
+    }
+
+    private void copyRows(CopyManager copy, String table, List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+
+        StringBuilder csv = new StringBuilder(rows.size() * 48);
+        for (Object[] row : rows) {
+            appendCsv(csv, row);
+        }
+
+        try {
+            copy.copyIn("COPY " + table + " FROM STDIN WITH (FORMAT csv)", new StringReader(csv.toString()));
+        } catch (IOException e) {
+            throw new SQLException("COPY into " + table + " failed", e);
+        }
+    }
+
+    /**
+     * @param returning column whose values are returned for the rows actually inserted, or
+     *                  null when they are not needed
+     */
+    private Set<String> insertRows(Connection c, String table, List<Object[]> rows, String returning)
+            throws SQLException {
+        Set<String> inserted = new HashSet<>();
+        if (rows.isEmpty()) return inserted;
+
+        String tuple = "(" + String.join(", ", Collections.nCopies(rows.get(0).length, "?")) + ")";
+
+        for (int from = 0; from < rows.size(); from += INSERT_CHUNK) {
+            List<Object[]> chunk = rows.subList(from, Math.min(rows.size(), from + INSERT_CHUNK));
+            String sql = "INSERT INTO " + table + " VALUES "
+                    + String.join(", ", Collections.nCopies(chunk.size(), tuple))
+                    + " ON CONFLICT DO NOTHING";
+
+            try (PreparedStatement ps = returning != null
+                    ? c.prepareStatement(sql, new String[]{returning})
+                    : c.prepareStatement(sql)) {
+                int i = 1;
+                for (Object[] row : chunk) {
+                    for (Object value : row) ps.setObject(i++, value);
+                }
+                ps.executeUpdate();
+                if (returning != null) {
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        while (keys.next()) inserted.add(keys.getString(1));
+                    }
+                }
+            }
+        }
+        return inserted;
+    }
+
+    private static List<Object[]> patentRows(List<EpoParsedDocument> docs) {
+        List<Object[]> rows = new ArrayList<>(docs.size());
+        for (EpoParsedDocument d : docs) {
+            EpoPatentEntity p = d.patent();
+            rows.add(new Object[]{
+                    p.getEpoPatentId(), p.getCountry(), p.getKind(),
+                    p.getPublicationDate(), p.getApplicationDate(), p.getFamilyId()
+            });
+        }
+        return rows;
+    }
+
+    private static List<Object[]> cpcRows(List<EpoParsedDocument> docs) {
+        List<Object[]> rows = new ArrayList<>();
+        for (EpoParsedDocument d : docs) {
+            for (EpoPatentCpcEntity cpc : d.cpcs()) {
+                rows.add(new Object[]{cpc.getEpoPatentId(), cpc.getCpcSection(), cpc.getCpcClass()});
+            }
+        }
+        return rows;
+    }
+
+    private static List<Object[]> assigneeRows(List<EpoParsedDocument> docs) {
+        List<Object[]> rows = new ArrayList<>();
+        for (EpoParsedDocument d : docs) {
+            for (EpoPatentAssigneeEntity a : d.assignees()) {
+                rows.add(new Object[]{a.getEpoPatentId(), a.getOrganizationName()});
+            }
+        }
+        return rows;
+    }
+
+    // NULL is an unquoted empty field; strings are always quoted so "" stays an empty string
+    private static void appendCsv(StringBuilder sb, Object[] row) {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) sb.append(',');
+            Object value = row[i];
+            if (value == null) continue;
+            if (value instanceof String s) {
+                sb.append('"').append(s.replace("\"", "\"\"")).append('"');
+            } else {
+                sb.append(value);
+            }
+        }
+        sb.append('\n');
+    }
+}
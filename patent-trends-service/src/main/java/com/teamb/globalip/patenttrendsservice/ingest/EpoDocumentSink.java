@@ -0,0 +1,24 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import java.sql.SQLException;
+
+/**
+ * Destination for parsed exchange-documents. Implementations are not thread-safe.
+ */
+interface EpoDocumentSink extends AutoCloseable {
+
+    /**
+     * Cheap pre-check used to skip parsing documents that are already stored.
+     * May return false for stored documents; the sink must still ignore duplicates.
+     */
+    boolean contains(String epoPatentId);
+
+    void accept(EpoParsedDocument document) throws SQLException;
+
+    void flush() throws SQLException;
+
+    @Override
+    default void close() throws SQLException {
+        flush();
+    }
+}
@@ -0,0 +1,132 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Incremental replacement for {@link EpoFamilyAggregator#updateFamilySizes()}.
+ * Records the families of every written batch in epo_family_dirty, inside the batch
+ * transaction, and recomputes family_size (distinct countries) only for those,
+ * upserting epo_patent_family in batches. Because the dirty ids commit together with
+ * the documents and their checkpoint, families of files completed by a run that died
+ * before {@link #applyTouchedFamilies()} are still picked up by the next one.
+ */
+@Slf4j
+@Service
+@Profile("ingest")
+@RequiredArgsConstructor
+public class EpoFamilyDeltaAggregator {
+
+    private static final int CHUNK = 1000;
+
+    private final JdbcTemplate jdbc;
+
+    public void createTableIfMissing() {
+        jdbc.execute("""
+            CREATE TABLE IF NOT EXISTS epo_family_dirty (
+                family_id BIGINT NOT NULL
+            )
+        """);
+        jdbc.execute("CREATE INDEX IF NOT EXISTS epo_family_dirty_family_id ON epo_family_dirty (family_id)");
+    }
+
+    // no unique key: concurrent batches may record the same family, reads are DISTINCT
+    EpoFlushListener listener() {
+        return (connection, written) -> {
+            LongHashSet batch = new LongHashSet(written.size());
+            for (EpoParsedDocument d : written) {
+                Long familyId = d.patent().getFamilyId();
+                if (familyId != null) batch.add(familyId);
+            }
+            long[] familyIds = batch.toArray();
+
+            for (int from = 0; from < familyIds.length; from += CHUNK) {
+                int to = Math.min(familyIds.length, from + CHUNK);
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "INSERT INTO epo_family_dirty (family_id) VALUES "
+                                + String.join(", ", Collections.nCopies(to - from, "(?)")))) {
+                    for (int i = from; i < to; i++) ps.setLong(i - from + 1, familyIds[i]);
+                    ps.executeUpdate();
+                }
+            }
+        };
+    }
+
+    public int touchedFamilies() {
+        Integer n = jdbc.queryForObject("SELECT COUNT(DISTINCT family_id) FROM epo_family_dirty", Integer.class);
+        return n == null ? 0 : n;
+    }
+
+    /**
+     * Recomputes and stores the size of every touched family, then forgets them.
+     * A dirty id is only deleted together with the size it produced.
+     */
+    @Transactional
+    public void applyTouchedFamilies() {
+        long start = System.nanoTime();
+        long[] familyIds = jdbc.queryForList("SELECT DISTINCT family_id FROM epo_family_dirty", Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+
+        for (int from = 0; from < familyIds.length; from += CHUNK) {
+            int to = Math.min(familyIds.length, from + CHUNK);
+            upsert(countCountries(familyIds, from, to));
+            forget(familyIds, from, to);
+        }
+
+        log.info("Updated {} EPO families in {} ms",
+                familyIds.length, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void forget(long[] familyIds, int from, int to) {
+        List<Object> args = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) args.add(familyIds[i]);
+
+        jdbc.update("DELETE FROM epo_family_dirty WHERE family_id IN ("
+                + String.join(", ", Collections.nCopies(args.size(), "?")) + ")", args.toArray());
+    }
+
+    private List<Object[]> countCountries(long[] familyIds, int from, int to) {
+        List<Object> args = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) args.add(familyIds[i]);
+
+        return jdbc.query(
+                "SELECT family_id, COUNT(DISTINCT country) FROM epo_patent WHERE family_id IN ("
+                        + String.join(", ", Collections.nCopies(args.size(), "?"))
+                        + ") GROUP BY family_id",
+                (rs, i) -> new Object[]{rs.getLong(1), rs.getInt(2)},
+                args.toArray());
+    }
+
+    private void upsert(List<Object[]> sizes) {
+        if (sizes.isEmpty()) return;
+
+        String values = String.join(", ", Collections.nCopies(sizes.size(), "(CAST(? AS BIGINT), CAST(? AS INTEGER))"));
+        Object[] args = sizes.stream().flatMap(Arrays::stream).toArray();
+
+        jdbc.update("""
+                UPDATE epo_patent_family f
+                SET family_size = v.family_size
+                FROM (VALUES %s) AS v(family_id, family_size)
+                WHERE f.family_id = v.family_id
+                """.formatted(values), args);
+
+        jdbc.update("""
+                INSERT INTO epo_patent_family (family_id, family_size)
+                SELECT v.family_id, v.family_size
+                FROM (VALUES %s) AS v(family_id, family_size)
+                WHERE NOT EXISTS (
+                    SELECT 1 FROM epo_patent_family f WHERE f.family_id = v.family_id
+                )
+                """.formatted(values), args);
+    }
+}
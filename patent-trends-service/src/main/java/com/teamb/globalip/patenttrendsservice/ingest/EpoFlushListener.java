@@ -0,0 +1,28 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Called by a sink after a batch has been written, on the same connection and
+ * before the batch is committed.
+ */
+@FunctionalInterface
+interface EpoFlushListener {
+
+    EpoFlushListener NONE = (connection, written) -> {
+    };
+
+    /**
+     * @param written documents actually inserted, i.e. without ids that already existed
+     */
+    void flushed(Connection connection, List<EpoParsedDocument> written) throws SQLException;
+
+    default EpoFlushListener andThen(EpoFlushListener next) {
+        return (connection, written) -> {
+            flushed(connection, written);
+            next.flushed(connection, written);
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Per-file ingestion manifest stored in epo_ingest_checkpoint.
+ * doc_count is the number of exchange-documents of the file that are committed.
+ */
+@Component
+@Profile("ingest")
+@RequiredArgsConstructor
+public class EpoIngestCheckpointStore {
+
+    public enum Status { IN_PROGRESS, COMPLETED, FAILED }
+
+    public record Checkpoint(
+            String filePath,
+            long fileSize,
+            long fileMtime,
+            long docCount,
+            Status status
+    ) {
+        public boolean matches(long size, long mtime) {
+            return fileSize == size && fileMtime == mtime;
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+
+    public void createTableIfMissing() {
+        jdbc.execute("""
+            CREATE TABLE IF NOT EXISTS epo_ingest_checkpoint (
+                file_path  VARCHAR(1024) PRIMARY KEY,
+                file_size  BIGINT NOT NULL,
+                file_mtime BIGINT NOT NULL,
+                doc_count  BIGINT NOT NULL,
+                status     VARCHAR(16) NOT NULL,
+                updated_at TIMESTAMP NOT NULL
+            )
+        """);
+    }
+
+    public Optional<Checkpoint> find(String filePath) {
+        List<Checkpoint> rows = jdbc.query("""
+                SELECT file_path, file_size, file_mtime, doc_count, status
+                FROM epo_ingest_checkpoint
+                WHERE file_path = ?
+                """,
+                (rs, i) -> new Checkpoint(
+                        rs.getString(1),
+                        rs.getLong(2),
+                        rs.getLong(3),
+                        rs.getLong(4),
+                        Status.valueOf(rs.getString(5))
+                ),
+                filePath);
+        return rows.stream().findFirst();
+    }
+
+    public void start(String filePath, long fileSize, long fileMtime, long docCount) {
+        int updated = jdbc.update("""
+                UPDATE epo_ingest_checkpoint
+                SET file_size = ?, file_mtime = ?, doc_count = ?, status = ?, updated_at = CURRENT_TIMESTAMP
+                WHERE file_path = ?
+                """, fileSize, fileMtime, docCount, Status.IN_PROGRESS.name(), filePath);
+
+        if (updated == 0) {
+            jdbc.update("""
+                    INSERT INTO epo_ingest_checkpoint
+                        (file_path, file_size, file_mtime, doc_count, status, updated_at)
+                    VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+                    """, filePath, fileSize, fileMtime, docCount, Status.IN_PROGRESS.name());
+        }
+    }
+
+    /**
+     * Records progress inside the transaction that committed the documents.
+     */
+    public void progress(Connection connection, String filePath, long docCount) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("""
+                UPDATE epo_ingest_checkpoint
+                SET doc_count = ?, updated_at = CURRENT_TIMESTAMP
+                WHERE file_path = ?
+                """)) {
+            ps.setLong(1, docCount);
+            ps.setString(2, filePath);
+            ps.executeUpdate();
+        }
+    }
+
+    public void complete(String filePath, long docCount) {
+        jdbc.update("""
+                UPDATE epo_ingest_checkpoint
+                SET doc_count = ?, status = ?, updated_at = CURRENT_TIMESTAMP
+                WHERE file_path = ?
+                """, docCount, Status.COMPLETED.name(), filePath);
+    }
+
+    // doc_count is left at the last committed batch so the next run resumes there
+    public void fail(String filePath) {
+        jdbc.update("""
+                UPDATE epo_ingest_checkpoint
+                SET status = ?, updated_at = CURRENT_TIMESTAMP
+                WHERE file_path = ?
+                """, Status.FAILED.name(), filePath);
+    }
+}
@@ -17,7 +17,7 @@ import java.nio.file.Path;
 public class EpoIngestionRunner implements CommandLineRunner {
 
     private final EpoXmlIngestionService ingestionService;
-    //private final EpoFamilyAggregator familyAggregator;
+    private final EpoFamilyDeltaAggregator familyAggregator;
     private final IngestProperties ingestProperties;
 
     @Override
@@ -28,12 +28,18 @@ public class EpoIngestionRunner implements CommandLineRunner {
         log.info("======================================");
         log.info("EPO INGESTION STARTED");
         log.info("Source path: {}", path);
+        log.info("Workers: {}, bulk load: {}", ingestProperties.getWorkers(), ingestProperties.isBulkLoad());
         log.info("======================================");
 
         long start = System.currentTimeMillis();
 
-        ingestionService.ingestDirectory(Path.of(path));
-        //familyAggregator.updateFamilySizes();
+        // completed files are skipped via the checkpoint manifest, so a rerun resumes
+        try {
+            ingestionService.ingestDirectory(Path.of(path));
+        } finally {
+            // families of every committed batch, including those left by an earlier run that died
+            familyAggregator.applyTouchedFamilies();
+        }
 
         long end = System.currentTimeMillis();
 
@@ -0,0 +1,21 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentAssigneeEntity;
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentCpcEntity;
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentEntity;
+
+import java.util.List;
+
+/**
+ * One exchange-document with its CPC and applicant rows, as parsed from the XML.
+ */
+public record EpoParsedDocument(
+        EpoPatentEntity patent,
+        List<EpoPatentCpcEntity> cpcs,
+        List<EpoPatentAssigneeEntity> assignees
+) {
+
+    public String epoPatentId() {
+        return patent.getEpoPatentId();
+    }
+}
@@ -0,0 +1,161 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compact presence filter for epo_patent ids, replacing per-document existsById calls.
+ * <p>
+ * Ids stored before the run are hashed to 64 bits and kept as a sorted long[] behind a
+ * Bloom filter; ids written during the run are added to a second Bloom filter.
+ * {@link #mightContain} never returns false for a stored id, so callers only need an
+ * exact database check when it returns true.
+ */
+@Slf4j
+final class EpoPatentIdFilter {
+
+    private static final int HASHES = 7;
+    private static final int BITS_PER_ID = 10;
+    private static final int FETCH_SIZE = 10_000;
+
+    private final long[] existing;
+    private final Bloom existingBloom;
+    private final Bloom added;
+    private final boolean permissive;
+
+    private EpoPatentIdFilter(long[] existing, long expectedInserts, boolean permissive) {
+        this.existing = existing;
+        this.existingBloom = new Bloom(existing.length);
+        this.added = new Bloom(expectedInserts);
+        this.permissive = permissive;
+
+        for (long h : existing) {
+            existingBloom.add(h);
+        }
+    }
+
+    /**
+     * Streams every stored epo_patent id through a cursor into the filter.
+     */
+    static EpoPatentIdFilter load(DataSource dataSource, long expectedInserts) throws SQLException {
+        long start = System.nanoTime();
+        long[] hashes = new long[1 << 16];
+        int n = 0;
+
+        try (Connection c = dataSource.getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            // PostgreSQL only honours the fetch size outside auto-commit
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement()) {
+                st.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = st.executeQuery("SELECT epo_patent_id FROM epo_patent")) {
+                    while (rs.next()) {
+                        if (n == hashes.length) {
+                            hashes = Arrays.copyOf(hashes, n + (n >> 1));
+                        }
+                        hashes[n++] = hash(rs.getString(1));
+                    }
+                }
+            } finally {
+                c.commit();
+                c.setAutoCommit(autoCommit);
+            }
+        }
+
+        Arrays.sort(hashes, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || hashes[unique - 1] != hashes[i]) {
+                hashes[unique++] = hashes[i];
+            }
+        }
+
+        log.info("Loaded {} EPO patent ids into presence filter in {} ms",
+                unique, (System.nanoTime() - start) / 1_000_000);
+        return new EpoPatentIdFilter(Arrays.copyOf(hashes, unique), expectedInserts, false);
+    }
+
+    /**
+     * Filter that knows nothing, so every id needs the exact check.
+     */
+    static EpoPatentIdFilter permissive() {
+        return new EpoPatentIdFilter(new long[0], 0, true);
+    }
+
+    /**
+     * @return false if the id is certainly not stored; true if it may be
+     */
+    public boolean mightContain(String epoPatentId) {
+        if (permissive) return true;
+
+        long h = hash(epoPatentId);
+        if (existingBloom.mightContain(h) && Arrays.binarySearch(existing, h) >= 0) {
+            return true;
+        }
+        return added.mightContain(h);
+    }
+
+    /**
+     * Records an id written during this run. Safe to call from several workers.
+     */
+    public void add(String epoPatentId) {
+        added.add(hash(epoPatentId));
+    }
+
+    public int size() {
+        return existing.length;
+    }
+
+    // FNV-1a over the UTF-16 code units, finished with the MurmurHash3 fmix64 step
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Bloom {
+
+        private final AtomicLongArray words;
+        private final long bits;
+
+        Bloom(long expected) {
+            long words = Math.max(1, (Math.max(expected, 1) * BITS_PER_ID + 63) / 64);
+            this.words = new AtomicLongArray(Math.toIntExact(words));
+            this.bits = words * 64;
+        }
+
+        void add(long h) {
+            long h2 = (h >>> 32) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h + i * h2, bits);
+                words.getAndAccumulate((int) (bit >>> 6), 1L << bit, (word, mask) -> word | mask);
+            }
+        }
+
+        boolean mightContain(long h) {
+            long h2 = (h >>> 32) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentAssigneeRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentCpcRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Row-at-a-time sink writing through the JPA repositories. Each document and the
+ * listener's writes for it commit in one transaction, the listener running on the
+ * transaction's connection.
+ */
+@RequiredArgsConstructor
+class EpoRepositorySink implements EpoDocumentSink {
+
+    private final EpoPatentRepository patentRepo;
+    private final EpoPatentCpcRepository cpcRepo;
+    private final EpoPatentAssigneeRepository assigneeRepo;
+    private final DataSource dataSource;
+    private final PlatformTransactionManager transactionManager;
+    private final EpoFlushListener listener;
+    private final EpoPatentIdFilter idFilter;
+
+    @Override
+    public boolean contains(String epoPatentId) {
+        return idFilter.mightContain(epoPatentId) && patentRepo.existsById(epoPatentId);
+    }
+
+    @Override
+    public void accept(EpoParsedDocument document) throws SQLException {
+        TransactionStatus tx = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        try {
+            patentRepo.save(document.patent());
+            document.cpcs().forEach(cpcRepo::save);
+            document.assignees().forEach(assigneeRepo::save);
+
+            if (listener != EpoFlushListener.NONE) {
+                // the listener reads epo_patent, so the pending inserts go out first
+                patentRepo.flush();
+                Connection c = DataSourceUtils.getConnection(dataSource);
+                try {
+                    listener.flushed(c, List.of(document));
+                } finally {
+                    DataSourceUtils.releaseConnection(c, dataSource);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            transactionManager.rollback(tx);
+            throw e;
+        }
+        transactionManager.commit(tx);
+        idFilter.add(document.epoPatentId());
+    }
+
+    @Override
+    public void flush() {
+        // every row is written on accept
+    }
+}
@@ -0,0 +1,125 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentAssigneeEntity;
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentCpcEntity;
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts one batch of written documents into the shape of the epo_agg_* tables:
+ * filings per publication year and per country, patents per CPC section and per
+ * assignee. Years and sections are used as keys directly; country codes and
+ * assignee names are interned to dense ids first. Not thread-safe.
+ */
+final class EpoRollupAccumulator {
+
+    private final LongLongHashMap years = new LongLongHashMap();
+    private final LongLongHashMap sections = new LongLongHashMap();
+    private final Dictionary countries = new Dictionary();
+    private final Dictionary assignees = new Dictionary();
+
+    void add(EpoParsedDocument document) {
+        EpoPatentEntity p = document.patent();
+        if (p.getPublicationDate() != null) {
+            years.addTo(p.getPublicationDate().getYear(), 1);
+        }
+        if (p.getCountry() != null) {
+            countries.count(p.getCountry());
+        }
+
+        // a patent with several symbols in one section counts once for it
+        List<EpoPatentCpcEntity> cpcs = document.cpcs();
+        for (int i = 0; i < cpcs.size(); i++) {
+            String section = cpcs.get(i).getCpcSection();
+            if (section == null || section.length() != 1 || seenBefore(cpcs, i, section)) continue;
+            sections.addTo(section.charAt(0), 1);
+        }
+
+        // the parser already drops repeated applicant names within a document
+        for (EpoPatentAssigneeEntity a : document.assignees()) {
+            if (a.getOrganizationName() != null) {
+                assignees.count(a.getOrganizationName());
+            }
+        }
+    }
+
+    private static boolean seenBefore(List<EpoPatentCpcEntity> cpcs, int index, String section) {
+        for (int j = 0; j < index; j++) {
+            if (section.equals(cpcs.get(j).getCpcSection())) return true;
+        }
+        return false;
+    }
+
+    void addAll(List<EpoParsedDocument> documents) {
+        documents.forEach(this::add);
+    }
+
+    boolean isEmpty() {
+        return years.isEmpty() && sections.isEmpty() && countries.isEmpty() && assignees.isEmpty();
+    }
+
+    /**
+     * year, cnt ordered by year
+     */
+    List<Object[]> filingsByYear() {
+        List<Object[]> rows = new ArrayList<>(years.size());
+        years.forEachSorted((year, cnt) -> rows.add(new Object[]{(int) year, cnt}));
+        return rows;
+    }
+
+    /**
+     * cpc_section, cnt ordered by section
+     */
+    List<Object[]> patentsBySection() {
+        List<Object[]> rows = new ArrayList<>(sections.size());
+        sections.forEachSorted((section, cnt) -> rows.add(new Object[]{String.valueOf((char) section), cnt}));
+        return rows;
+    }
+
+    /**
+     * country, cnt ordered by country
+     */
+    List<Object[]> filingsByCountry() {
+        return countries.rows();
+    }
+
+    /**
+     * organization_name, cnt ordered by name
+     */
+    List<Object[]> patentsByAssignee() {
+        return assignees.rows();
+    }
+
+    private static final class Dictionary {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final LongLongHashMap counts = new LongLongHashMap();
+
+        void count(String name) {
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = names.size();
+                ids.put(name, id);
+                names.add(name);
+            }
+            counts.addTo(id, 1);
+        }
+
+        boolean isEmpty() {
+            return counts.isEmpty();
+        }
+
+        // sorted by name so concurrent upserts lock rows in the same order
+        List<Object[]> rows() {
+            List<Object[]> rows = new ArrayList<>(names.size());
+            counts.forEachSorted((id, cnt) -> rows.add(new Object[]{names.get((int) id), cnt}));
+            rows.sort((a, b) -> ((String) a[0]).compareTo((String) b[0]));
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the epo_agg_filing_trend, epo_agg_country_distribution, epo_agg_top_technologies
+ * and epo_agg_top_assignees tables current during ingest, so no GROUP BY pass over the
+ * raw tables is needed afterwards.
+ * <p>
+ * Each written batch is counted by an {@link EpoRollupAccumulator} and added onto the
+ * tables inside the batch transaction, so the rollups always match the committed rows,
+ * including after a failed file is resumed.
+ */
+@Service
+@Profile("ingest")
+@RequiredArgsConstructor
+public class EpoRollupAggregator {
+
+    private static final int UPSERT_CHUNK = 500;
+
+    private record Rollup(String table, String key, String keyType) {
+    }
+
+    private static final Rollup FILING_TREND = new Rollup("epo_agg_filing_trend", "year", "INTEGER");
+    private static final Rollup COUNTRIES = new Rollup("epo_agg_country_distribution", "country", "VARCHAR");
+    private static final Rollup TECHNOLOGIES = new Rollup("epo_agg_top_technologies", "cpc_section", "VARCHAR");
+    private static final Rollup ASSIGNEES = new Rollup("epo_agg_top_assignees", "organization_name", "VARCHAR");
+
+    private final JdbcTemplate jdbc;
+
+    /**
+     * Creates missing rollup tables and the unique key the upserts rely on; tables
+     * built earlier by CREATE TABLE AS get the key added.
+     */
+    public void createTablesIfMissing() {
+        for (Rollup r : List.of(FILING_TREND, COUNTRIES, TECHNOLOGIES, ASSIGNEES)) {
+            jdbc.execute("""
+                CREATE TABLE IF NOT EXISTS %s (
+                    %s %s NOT NULL,
+                    cnt BIGINT NOT NULL
+                )
+            """.formatted(r.table(), r.key(), r.keyType()));
+            jdbc.execute("CREATE UNIQUE INDEX IF NOT EXISTS %s_key ON %s (%s)"
+                    .formatted(r.table(), r.table(), r.key()));
+        }
+    }
+
+    EpoFlushListener listener() {
+        return (connection, written) -> {
+            EpoRollupAccumulator batch = new EpoRollupAccumulator();
+            batch.addAll(written);
+            apply(connection, batch);
+        };
+    }
+
+    /**
+     * Adds the counts of one batch onto the rollup tables, always in the same table
+     * and key order so concurrent batches cannot deadlock.
+     */
+    void apply(Connection c, EpoRollupAccumulator batch) throws SQLException {
+        if (batch.isEmpty()) return;
+
+        upsert(c, FILING_TREND, batch.filingsByYear());
+        upsert(c, COUNTRIES, batch.filingsByCountry());
+        upsert(c, TECHNOLOGIES, batch.patentsBySection());
+        upsert(c, ASSIGNEES, batch.patentsByAssignee());
+    }
+
+    private void upsert(Connection c, Rollup r, List<Object[]> rows) throws SQLException {
+        boolean postgres = c.isWrapperFor(PGConnection.class);
+
+        for (int from = 0; from < rows.size(); from += UPSERT_CHUNK) {
+            List<Object[]> chunk = rows.subList(from, Math.min(rows.size(), from + UPSERT_CHUNK));
+            if (!postgres) seedKeys(r, chunk);
+
+            String sql = postgres ? insertOnConflict(r, chunk.size()) : addToExisting(r, chunk.size());
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                int i = 1;
+                for (Object[] row : chunk) {
+                    ps.setObject(i++, row[0]);
+                    ps.setLong(i++, (Long) row[1]);
+                }
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private static String insertOnConflict(Rollup r, int rows) {
+        return """
+                INSERT INTO %1$s (%2$s, cnt) VALUES %3$s
+                ON CONFLICT (%2$s) DO UPDATE SET cnt = %1$s.cnt + EXCLUDED.cnt
+                """.formatted(r.table(), r.key(), String.join(", ", Collections.nCopies(rows, "(?, ?)")));
+    }
+
+    private static String addToExisting(Rollup r, int rows) {
+        return """
+                UPDATE %1$s t
+                SET cnt = t.cnt + v.cnt
+                FROM (VALUES %3$s) AS v(%2$s, cnt)
+                WHERE t.%2$s = v.%2$s
+                """.formatted(r.table(), r.key(), values(r, rows));
+    }
+
+    /*
+     * Without ON CONFLICT ... DO UPDATE (H2), new keys are committed with cnt 0 on a
+     * separate connection first, so concurrent batches only ever update existing rows.
+     */
+    private void seedKeys(Rollup r, List<Object[]> rows) {
+        Object[] args = new Object[rows.size() * 2];
+        for (int i = 0; i < rows.size(); i++) {
+            args[2 * i] = rows.get(i)[0];
+            args[2 * i + 1] = 0L;
+        }
+        try {
+            jdbc.update("""
+                    INSERT INTO %1$s (%2$s, cnt)
+                    SELECT v.%2$s, v.cnt
+                    FROM (VALUES %3$s) AS v(%2$s, cnt)
+                    WHERE NOT EXISTS (SELECT 1 FROM %1$s t WHERE t.%2$s = v.%2$s)
+                    """.formatted(r.table(), r.key(), values(r, rows.size())), args);
+        } catch (DuplicateKeyException e) {
+            // another batch seeded one of the keys first; retry for the rest
+            seedKeys(r, rows);
+        }
+    }
+
+    private static String values(Rollup r, int rows) {
+        String tuple = "(CAST(? AS %s), CAST(? AS BIGINT))".formatted(r.keyType());
+        return String.join(", ", Collections.nCopies(rows, tuple));
+    }
+}
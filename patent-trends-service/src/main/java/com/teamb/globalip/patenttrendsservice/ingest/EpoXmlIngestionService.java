@@ -3,7 +3,6 @@ package com.teamb.globalip.patenttrendsservice.ingest;
 import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentAssigneeEntity;
 import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentCpcEntity;
 import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentEntity;
-import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentFamilyEntity;
 import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentAssigneeRepository;
 import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentCpcRepository;
 import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentFamilyRepository;
@@ -12,18 +11,28 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import javax.sql.DataSource;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamReader;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -34,35 +43,204 @@ public class EpoXmlIngestionService {
     private final EpoPatentRepository patentRepo;
     private final EpoPatentCpcRepository cpcRepo;
     private final EpoPatentAssigneeRepository assigneeRepo;
+    private final DataSource dataSource;
+    private final IngestProperties ingestProperties;
+    private final EpoIngestCheckpointStore checkpoints;
+    private final EpoFamilyDeltaAggregator familyAggregator;
+    private final EpoRollupAggregator rollupAggregator;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Ingests every .xml file and DOCDB archive (.zip, .gz, .tar, .tar.gz) below root on a
+     * bounded worker pool; archives are streamed, never extracted. Inputs and archive entries
+     * recorded as completed in the checkpoint manifest are skipped and partially ingested
+     * ones resume after their last committed document. A failing input does not stop the
+     * others; the run fails at the end so it can simply be restarted.
+     *
+     * @return number of documents parsed in this run
+     */
+    public long ingestDirectory(Path root) throws Exception {
+        checkpoints.createTableIfMissing();
+        familyAggregator.createTableIfMissing();
+        rollupAggregator.createTablesIfMissing();
+        EpoPatentIdFilter idFilter = EpoPatentIdFilter.load(dataSource, ingestProperties.getIdFilterCapacity());
+        EpoArchiveReader reader = new EpoArchiveReader(ingestProperties.getArchiveBufferSize());
+
+        List<Path> inputs;
+        try (Stream<Path> files = Files.walk(root)) {
+            inputs = files.filter(Files::isRegularFile).filter(EpoArchiveReader::isSupported).toList();
+        }
 
-    private final XMLInputFactory factory = XMLInputFactory.newFactory();
+        int workers = Math.max(1, Math.min(ingestProperties.getWorkers(), inputs.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+
+        long start = System.nanoTime();
+        AtomicLong docs = new AtomicLong();
+        AtomicLong bytesRead = new AtomicLong();
+        List<String> skippedEntries = new CopyOnWriteArrayList<>();
+        List<Path> failed = new CopyOnWriteArrayList<>();
+
+        try {
+            List<Future<?>> tasks = inputs.stream()
+                    .<Future<?>>map(p -> pool.submit(() -> {
+                        try {
+                            docs.addAndGet(ingestInput(p, reader, idFilter, bytesRead, skippedEntries::add));
+                        } catch (Exception e) {
+                            failed.add(p);
+                            log.error("Failed at file: {}", p, e);
+                        }
+                    }))
+                    .toList();
+
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
 
-    public void ingestDirectory(Path root) throws Exception {
-        Files.walk(root)
-                .filter(p -> p.toString().endsWith(".xml"))
-                .forEach(p -> {
-                    try {
-                        ingestFile(p);
-                    } catch (Exception e) {
-                        throw new RuntimeException("Failed at file: " + p, e);
-                    }
-                });
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("Parsed {} EPO documents from {} inputs on {} workers in {} ms ({} docs/sec, {} KB/sec read)",
+                docs.get(), inputs.size(), workers, millis,
+                docs.get() * 1000 / millis, bytesRead.get() * 1000 / 1024 / millis);
+
+        if (!skippedEntries.isEmpty()) {
+            log.warn("Skipped {} archive entries that are not XML: {}", skippedEntries.size(), skippedEntries);
+        }
+        if (!failed.isEmpty()) {
+            throw new IllegalStateException(
+                    failed.size() + " EPO files failed, rerun to resume from checkpoint: " + failed);
+        }
+        return docs.get();
     }
 
     public void ingestFile(Path file) throws Exception {
-        try (InputStream is = Files.newInputStream(file)) {
-            XMLStreamReader r = factory.createXMLStreamReader(is);
+        try (EpoDocumentSink sink = newSink(EpoFlushListener.NONE, EpoPatentIdFilter.permissive());
+             InputStream in = Files.newInputStream(file)) {
+            ingestStream(in, sink, 0, new AtomicLong());
+        }
+    }
+
+    private long ingestInput(Path file,
+                             EpoArchiveReader reader,
+                             EpoPatentIdFilter idFilter,
+                             AtomicLong bytesRead,
+                             Consumer<String> skipped) throws Exception {
+        String key = file.toAbsolutePath().normalize().toString();
+        long size = Files.size(file);
+        long mtime = Files.getLastModifiedTime(file).toMillis();
+
+        if (!EpoArchiveReader.isArchive(file)) {
+            try (InputStream in = reader.open(file, bytesRead)) {
+                return ingestCheckpointed(key, size, mtime, in, idFilter);
+            }
+        }
+
+        // the archive's own row lets a rerun skip it without decompressing anything
+        Optional<EpoIngestCheckpointStore.Checkpoint> checkpoint = checkpoints.find(key);
+        if (checkpoint.isPresent() && checkpoint.get().matches(size, mtime)
+                && checkpoint.get().status() == EpoIngestCheckpointStore.Status.COMPLETED) {
+            log.debug("Skipping completed archive {}", file);
+            return 0;
+        }
+
+        checkpoints.start(key, size, mtime, 0);
+        try {
+            long docs = reader.read(file, key, bytesRead, skipped, (entry, in) ->
+                    ingestCheckpointed(entry, size, mtime, in, idFilter));
+            checkpoints.complete(key, docs);
+            return docs;
+        } catch (Exception e) {
+            checkpoints.fail(key);
+            throw e;
+        }
+    }
+
+    /**
+     * Ingests one XML document stream, checkpointed under key. Entries inside an archive
+     * carry the size and mtime of the archive file.
+     */
+    private long ingestCheckpointed(String key,
+                                    long size,
+                                    long mtime,
+                                    InputStream in,
+                                    EpoPatentIdFilter idFilter) throws Exception {
+        long resumeFrom = 0;
+        Optional<EpoIngestCheckpointStore.Checkpoint> checkpoint = checkpoints.find(key);
+
+        if (checkpoint.isPresent() && checkpoint.get().matches(size, mtime)) {
+            if (checkpoint.get().status() == EpoIngestCheckpointStore.Status.COMPLETED) {
+                log.debug("Skipping completed file {}", key);
+                return 0;
+            }
+            resumeFrom = checkpoint.get().docCount();
+            log.info("Resuming {} after {} documents", key, resumeFrom);
+        }
+
+        checkpoints.start(key, size, mtime, resumeFrom);
+
+        AtomicLong position = new AtomicLong();
+        try {
+            long docs;
+            EpoFlushListener listener = familyAggregator.listener()
+                    .andThen(rollupAggregator.listener())
+                    .andThen((c, written) -> checkpoints.progress(c, key, position.get()));
+            try (EpoDocumentSink sink = newSink(listener, idFilter)) {
+                docs = ingestStream(in, sink, resumeFrom, position);
+            }
+            checkpoints.complete(key, position.get());
+            return docs;
+        } catch (Exception e) {
+            checkpoints.fail(key);
+            throw e;
+        }
+    }
 
+    /**
+     * @param skip     leading exchange-documents to skip without parsing
+     * @param position incremented once each document is fully handled
+     */
+    private long ingestStream(InputStream in,
+                              EpoDocumentSink sink,
+                              long skip,
+                              AtomicLong position) throws Exception {
+        long docs = 0;
+        XMLStreamReader r = XMLInputFactory.newFactory().createXMLStreamReader(in);
+
+        try {
             while (r.hasNext()) {
                 if (r.next() == XMLStreamConstants.START_ELEMENT &&
                         "exchange-document".equals(r.getLocalName())) {
-                    parseExchangeDocument(r);
+
+                    if (position.get() < skip) {
+                        // committed by an earlier run, which recorded its families as dirty
+                        skipCurrentElement(r);
+                        position.incrementAndGet();
+                        continue;
+                    }
+
+                    EpoParsedDocument doc = parseExchangeDocument(r, sink);
+                    position.incrementAndGet();
+                    if (doc != null) {
+                        sink.accept(doc);
+                        docs++;
+                    }
                 }
             }
+        } finally {
+            r.close();
         }
+        return docs;
+    }
+
+    private EpoDocumentSink newSink(EpoFlushListener listener, EpoPatentIdFilter idFilter) {
+        return ingestProperties.isBulkLoad()
+                ? new EpoBulkWriter(dataSource, ingestProperties, listener, idFilter)
+                : new EpoRepositorySink(patentRepo, cpcRepo, assigneeRepo, dataSource, transactionManager, listener, idFilter);
     }
 
-    private void parseExchangeDocument(XMLStreamReader r) throws Exception {
+    private EpoParsedDocument parseExchangeDocument(XMLStreamReader r,
+                                                    EpoDocumentSink sink) throws Exception {
 
         String country = r.getAttributeValue(null, "country");
         String docNumber = r.getAttributeValue(null, "doc-number");
@@ -72,9 +250,9 @@ public class EpoXmlIngestionService {
 
         String epoPatentId = country + docNumber + kind;
 
-        if (patentRepo.existsById(epoPatentId)) {
+        if (sink.contains(epoPatentId)) {
             skipCurrentElement(r);
-            return;
+            return null;
         }
 
         EpoPatentEntity patent = new EpoPatentEntity(
@@ -86,7 +264,8 @@ public class EpoXmlIngestionService {
                 familyIdStr == null ? null : Long.parseLong(familyIdStr)
         );
 
-        patentRepo.save(patent);
+        List<EpoPatentCpcEntity> cpcs = new ArrayList<>();
+        List<EpoPatentAssigneeEntity> assignees = new ArrayList<>();
 
         Set<String> cpcSeen = new HashSet<>();
         Set<String> assigneeSeen = new HashSet<>();
@@ -99,10 +278,10 @@ public class EpoXmlIngestionService {
                 switch (r.getLocalName()) {
 
                     case "patent-classification" ->
-                            parseCpc(r, epoPatentId, cpcSeen);
+                            parseCpc(r, epoPatentId, cpcSeen, cpcs);
 
                     case "applicant" ->
-                            parseApplicant(r, epoPatentId, assigneeSeen);
+                            parseApplicant(r, epoPatentId, assigneeSeen, assignees);
                 }
             }
 
@@ -111,10 +290,13 @@ public class EpoXmlIngestionService {
                 break;
             }
         }
+
+        return new EpoParsedDocument(patent, cpcs, assignees);
     }
     private void parseCpc(XMLStreamReader r,
                           String epoPatentId,
-                          Set<String> seen) throws Exception {
+                          Set<String> seen,
+                          List<EpoPatentCpcEntity> out) throws Exception {
 
         String symbol = null;
 
@@ -143,7 +325,7 @@ public class EpoXmlIngestionService {
         String key = epoPatentId + "|" + section + "|" + cpcClass;
 
         if (seen.add(key)) {
-            cpcRepo.save(new EpoPatentCpcEntity(
+            out.add(new EpoPatentCpcEntity(
                     null,
                     epoPatentId,
                     section,
@@ -153,7 +335,8 @@ public class EpoXmlIngestionService {
     }
     private void parseApplicant(XMLStreamReader r,
                                 String epoPatentId,
-                                Set<String> seen) throws Exception {
+                                Set<String> seen,
+                                List<EpoPatentAssigneeEntity> out) throws Exception {
 
         String name = null;
 
@@ -177,7 +360,7 @@ public class EpoXmlIngestionService {
         name = normalize(name);
 
         if (seen.add(name)) {
-            assigneeRepo.save(new EpoPatentAssigneeEntity(
+            out.add(new EpoPatentAssigneeEntity(
                     null,
                     epoPatentId,
                     name
@@ -5,6 +5,8 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 @ConfigurationProperties(prefix = "spring")
 @Getter
@@ -12,4 +14,20 @@ import org.springframework.context.annotation.Configuration;
 public class IngestProperties {
 
     private String filepath;
-}
\ No newline at end of file
+
+    // Files parsed concurrently, each with its own reader and write batch
+    private int workers = 4;
+
+    // Buffer parsed documents and write them with COPY / multi-row INSERT
+    private boolean bulkLoad = false;
+
+    private int batchSize = 5000;
+
+    private Duration flushInterval = Duration.ofSeconds(10);
+
+    // Read buffer for plain files and for each decompression layer of an archive
+    private int archiveBufferSize = 256 * 1024;
+
+    // Documents expected to be inserted by one run; sizes the in-memory id filter
+    private long idFilterCapacity = 10_000_000;
+}
@@ -0,0 +1,93 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing set of primitive longs. Not thread-safe.
+ */
+final class LongHashSet {
+
+    private static final long EMPTY = 0L;
+
+    private long[] slots;
+    private int size;
+    private boolean containsEmpty;
+
+    LongHashSet() {
+        this(1024);
+    }
+
+    LongHashSet(int expected) {
+        slots = new long[tableSize(expected)];
+    }
+
+    boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) return false;
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+
+        if ((size + 1) * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        if (insert(slots, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long[] toArray() {
+        long[] out = new long[size];
+        int i = 0;
+        if (containsEmpty) out[i++] = EMPTY;
+        for (long v : slots) {
+            if (v != EMPTY) out[i++] = v;
+        }
+        return out;
+    }
+
+    void clear() {
+        Arrays.fill(slots, EMPTY);
+        size = 0;
+        containsEmpty = false;
+    }
+
+    private static boolean insert(long[] table, long value) {
+        int mask = table.length - 1;
+        int i = mix(value) & mask;
+        while (table[i] != EMPTY) {
+            if (table[i] == value) return false;
+            i = (i + 1) & mask;
+        }
+        table[i] = value;
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        long[] table = new long[capacity];
+        for (long v : slots) {
+            if (v != EMPTY) insert(table, v);
+        }
+        slots = table;
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSize(int expected) {
+        return Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+    }
+}
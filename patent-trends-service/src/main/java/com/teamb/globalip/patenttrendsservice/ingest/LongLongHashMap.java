@@ -0,0 +1,126 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from primitive long keys to long counters. Not thread-safe.
+ */
+final class LongLongHashMap {
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    private static final long EMPTY = 0L;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private boolean containsEmpty;
+    private long emptyValue;
+
+    LongLongHashMap() {
+        this(64);
+    }
+
+    LongLongHashMap(int expected) {
+        int capacity = tableSize(expected);
+        keys = new long[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * Adds delta to the value of key, starting from 0 for a new key.
+     */
+    void addTo(long key, long delta) {
+        if (key == EMPTY) {
+            if (!containsEmpty) {
+                containsEmpty = true;
+                size++;
+            }
+            emptyValue += delta;
+            return;
+        }
+
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int i = slot(keys, key);
+        if (keys[i] == EMPTY) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] += delta;
+    }
+
+    long get(long key) {
+        if (key == EMPTY) return emptyValue;
+        int i = slot(keys, key);
+        return keys[i] == EMPTY ? 0 : values[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Visits entries in ascending key order.
+     */
+    void forEachSorted(EntryConsumer consumer) {
+        long[] sorted = new long[size];
+        int n = 0;
+        if (containsEmpty) sorted[n++] = EMPTY;
+        for (long k : keys) {
+            if (k != EMPTY) sorted[n++] = k;
+        }
+        Arrays.sort(sorted);
+        for (long k : sorted) {
+            consumer.accept(k, get(k));
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, 0L);
+        size = 0;
+        containsEmpty = false;
+        emptyValue = 0;
+    }
+
+    private static int slot(long[] table, long key) {
+        int mask = table.length - 1;
+        int i = mix(key) & mask;
+        while (table[i] != EMPTY && table[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != EMPTY) {
+                int i = slot(keys, oldKeys[j]);
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSize(int expected) {
+        return Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+    }
+}
@@ -0,0 +1,183 @@
+package com.teamb.globalip.patenttrendsservice.aggregate;
+
+import com.teamb.globalip.patenttrendsservice.aggregate.AggregateRefreshEngine.Outcome;
+import com.teamb.globalip.patenttrendsservice.aggregate.AggregateRefreshEngine.Result;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregateRefreshEngineTest {
+
+    private JdbcTemplate jdbc;
+    private AggregateRegistry registry;
+    private AggregateRefreshEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:aggregates;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR");
+        jdbc = new JdbcTemplate(ds);
+        jdbc.execute("DROP ALL OBJECTS");
+        jdbc.execute("""
+                CREATE TABLE patent (
+                    patent_id VARCHAR(32) PRIMARY KEY, patent_type VARCHAR(32), grant_date DATE,
+                    title VARCHAR(256), wipo_kind VARCHAR(8), claim_count INT, withdrawn BOOLEAN,
+                    source_file VARCHAR(64), country VARCHAR(8))""");
+        jdbc.execute("""
+                CREATE TABLE patent_application (
+                    application_id VARCHAR(32) PRIMARY KEY, patent_id VARCHAR(32),
+                    patent_application_type VARCHAR(8), filing_date DATE, series_code VARCHAR(8),
+                    rule_47_flag BOOLEAN)""");
+        jdbc.execute("""
+                CREATE TABLE patent_assignee (
+                    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, patent_id VARCHAR(32),
+                    assignee_id UUID, organization_name VARCHAR(256), assignee_type INT, location_id UUID)""");
+        jdbc.execute("""
+                CREATE TABLE patent_cpc (
+                    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, patent_id VARCHAR(32),
+                    cpc_section VARCHAR(4), cpc_class VARCHAR(8), cpc_subclass VARCHAR(8),
+                    cpc_group VARCHAR(32), cpc_type VARCHAR(16))""");
+        jdbc.execute("""
+                CREATE TABLE patent_citation (
+                    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, patent_id VARCHAR(32),
+                    cited_patent_id VARCHAR(32), citation_date DATE, citation_category VARCHAR(32))""");
+
+        registry = new PatentsViewAggregates().aggregateRegistry();
+        engine = new AggregateRefreshEngine(jdbc, registry, new AggregateRefreshStateStore(jdbc));
+    }
+
+    // one patent per 40 days from 2015 on, filed two years before grant
+    private void loadPatents(int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            LocalDate granted = LocalDate.of(2015, 1, 1).plusDays(i * 40L);
+            String id = "US" + (10_000_000 + i);
+            jdbc.update("INSERT INTO patent VALUES (?, ?, ?, ?, 'B2', ?, ?, 'ipg.xml', ?)",
+                    id, i % 4 == 0 ? "design" : "utility", granted, "Title " + i,
+                    5 + i % 17, i % 29 == 0, i % 3 == 0 ? "JP" : "US");
+            jdbc.update("INSERT INTO patent_application VALUES (?, ?, 'utility', ?, '16', false)",
+                    "APP" + i, id, granted.minusYears(2).minusDays(i % 90));
+            jdbc.update("INSERT INTO patent_assignee (patent_id, organization_name) VALUES (?, ?)",
+                    id, "ORG " + i % 7);
+            jdbc.update("INSERT INTO patent_cpc (patent_id, cpc_section, cpc_group) VALUES (?, ?, ?)",
+                    id, "H", "H04L" + i % 5);
+            jdbc.update("INSERT INTO patent_cpc (patent_id, cpc_section, cpc_group) VALUES (?, ?, ?)",
+                    id, String.valueOf((char) ('A' + i % 3)), "X" + i % 11);
+            if (i > 0) {
+                jdbc.update("INSERT INTO patent_citation (patent_id, cited_patent_id, citation_date) VALUES (?, ?, ?)",
+                        id, "US" + (10_000_000 + i / 2), LocalDate.of(2015, 1, 1).plusDays(i / 2 * 40L));
+            }
+        }
+    }
+
+    private Map<String, Result> byTable(List<Result> results) {
+        return results.stream().collect(Collectors.toMap(Result::aggregate, Function.identity()));
+    }
+
+    private Map<Integer, Long> filingTrend() {
+        Map<Integer, Long> rows = new TreeMap<>();
+        jdbc.query("SELECT year, filings FROM agg_filing_trend_yearly",
+                rs -> { rows.put(rs.getInt(1), rs.getLong(2)); });
+        return rows;
+    }
+
+    private Map<Integer, Long> filingTrendFromRaw() {
+        Map<Integer, Long> rows = new TreeMap<>();
+        jdbc.query("SELECT EXTRACT(YEAR FROM filing_date), COUNT(*) FROM patent_application GROUP BY 1",
+                rs -> { rows.put(rs.getInt(1), rs.getLong(2)); });
+        return rows;
+    }
+
+    @Test
+    void buildsEveryRegisteredAggregateThenRefreshesOnlyTouchedYears() {
+        loadPatents(0, 100);  // grants 2015-01 .. 2025-11
+
+        Map<String, Result> first = byTable(engine.refreshAll());
+        assertEquals(registry.all().size(), first.size());
+        first.values().forEach(r -> assertEquals(Outcome.FULL, r.outcome(), r.aggregate()));
+        assertEquals(filingTrendFromRaw(), filingTrend());
+
+        // every table the repositories read now exists and has rows
+        for (AggregateDefinition d : registry.all()) {
+            Long rows = jdbc.queryForObject("SELECT COUNT(*) FROM " + d.table(), Long.class);
+            assertTrue(rows > 0, d.table());
+        }
+
+        // nothing new: no table is touched
+        byTable(engine.refreshAll()).values()
+                .forEach(r -> assertEquals(Outcome.UNCHANGED, r.outcome(), r.aggregate()));
+
+        // sentinel in an old year must survive a partial refresh
+        jdbc.update("UPDATE agg_grant_claim_trend SET avg_claims = -1 WHERE year = 2015");
+
+        loadPatents(100, 10);  // grants 2025-12 .. 2026-12, filed 2023-2024
+
+        Map<String, Result> second = byTable(engine.refreshAll());
+        Result claims = second.get("agg_grant_claim_trend");
+        assertEquals(Outcome.PARTIAL, claims.outcome());
+        assertEquals(2025, claims.fromYear());
+        assertEquals(2026, claims.toYear());
+        assertEquals(Outcome.PARTIAL, second.get("agg_technology_evolution").outcome());
+        assertEquals(Outcome.FULL, second.get("agg_top_assignees").outcome());
+        assertEquals(Outcome.FULL, second.get("agg_filing_trend_yearly").outcome());
+
+        assertEquals(-1.0, jdbc.queryForObject(
+                "SELECT avg_claims FROM agg_grant_claim_trend WHERE year = 2015", Double.class));
+        assertEquals(filingTrendFromRaw(), filingTrend());
+
+        Map<Integer, Long> evolution = new TreeMap<>();
+        jdbc.query("SELECT year, SUM(patent_count) FROM agg_technology_evolution GROUP BY year",
+                rs -> { evolution.put(rs.getInt(1), rs.getLong(2)); });
+        assertEquals(18, evolution.get(2026));  // 9 grants with two sections each
+
+        assertEquals(110L, jdbc.queryForObject("SELECT SUM(patent_count) FROM agg_top_assignees", Long.class));
+        assertFalse(jdbc.queryForList(
+                "SELECT table_name FROM information_schema.tables WHERE table_name LIKE '%staging' OR table_name LIKE '%retired'").iterator().hasNext());
+
+        String partitions = jdbc.queryForObject(
+                "SELECT partitions FROM agg_refresh_state WHERE aggregate_name = 'agg_grant_claim_trend'", String.class);
+        assertEquals("2025-2026", partitions);
+    }
+
+    @Test
+    void newGrantFiledInAnOldYearUpdatesThatFilingYear() {
+        loadPatents(0, 100);
+        engine.refreshAll();
+        long filed2010 = filingTrend().getOrDefault(2010, 0L);
+
+        jdbc.update("INSERT INTO patent VALUES ('US20000000', 'utility', DATE '2026-06-01', 'Late', 'B2', 3, false, 'ipg.xml', 'US')");
+        jdbc.update("INSERT INTO patent_application VALUES ('APPLATE', 'US20000000', 'utility', DATE '2010-03-01', '12', false)");
+
+        assertEquals(Outcome.FULL, byTable(engine.refreshAll()).get("agg_filing_trend_yearly").outcome());
+        assertEquals(filed2010 + 1, filingTrend().get(2010));
+        assertEquals(filingTrendFromRaw(), filingTrend());
+    }
+
+    @Test
+    void skipsAggregatesWhoseSourcesAreMissingOrEmpty() {
+        jdbc.execute("DROP TABLE patent_citation");
+
+        Map<String, Result> results = byTable(engine.refreshAll());
+
+        assertEquals(Outcome.SKIPPED, results.get("agg_citation_lag_yearly").outcome());
+        assertEquals(Outcome.SKIPPED, results.get("agg_filing_trend_yearly").outcome());
+    }
+
+    @Test
+    void rejectsDefinitionsWithoutPartitionFilter() {
+        assertThrows(IllegalArgumentException.class, () -> AggregateDefinition.global(
+                "agg_x", List.of("patent"), "patent", "grant_date", "SELECT 1"));
+        assertThrows(IllegalArgumentException.class, () -> new AggregateRegistry()
+                .register(AggregateDefinition.global("agg_x", List.of("patent"), "patent", "grant_date", "SELECT {partitions}"))
+                .register(AggregateDefinition.global("agg_x", List.of("patent"), "patent", "grant_date", "SELECT {partitions}")));
+    }
+}
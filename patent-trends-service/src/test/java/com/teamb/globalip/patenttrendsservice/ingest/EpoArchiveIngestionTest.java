@@ -0,0 +1,163 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentAssigneeRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentCpcRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.teamb.globalip.patenttrendsservice.ingest.EpoIngestTestSupport.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class EpoArchiveIngestionTest {
+
+    @TempDir
+    Path dir;
+
+    private byte[] part0;
+    private byte[] part1;
+    private byte[] part2;
+
+    private void generateParts() throws IOException {
+        part0 = Files.readAllBytes(writeXml(dir.resolve("src/part0.xml"), 0, 700));
+        part1 = Files.readAllBytes(writeXml(dir.resolve("src/part1.xml"), 700, 700));
+        part2 = Files.readAllBytes(writeXml(dir.resolve("src/part2.xml"), 1400, 700));
+    }
+
+    private List<String> ingestAndDump(String name, Path input) throws Exception {
+        DataSource ds = dataSource(name);
+        IngestProperties props = bulkProperties(200);
+        props.setArchiveBufferSize(4096);
+
+        EpoXmlIngestionService service = new EpoXmlIngestionService(
+                mock(EpoPatentRepository.class),
+                mock(EpoPatentCpcRepository.class),
+                mock(EpoPatentAssigneeRepository.class),
+                ds, props, checkpoints(ds), families(ds), rollups(ds), transactions(ds));
+        assertEquals(2100, service.ingestDirectory(input));
+
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        List<String> dump = new ArrayList<>();
+        dump.addAll(jdbc.queryForList("""
+                SELECT epo_patent_id || '|' || country || '|' || kind || '|' || publication_date || '|' || family_id
+                FROM epo_patent ORDER BY 1""", String.class));
+        dump.addAll(jdbc.queryForList("""
+                SELECT epo_patent_id || '|' || cpc_section || '|' || cpc_class
+                FROM epo_patent_cpc ORDER BY 1""", String.class));
+        dump.addAll(jdbc.queryForList("""
+                SELECT epo_patent_id || '|' || organization_name
+                FROM epo_patent_assignee ORDER BY 1""", String.class));
+        return dump;
+    }
+
+    @Test
+    void plainNestedZipTarGzAndGzInputsProduceIdenticalTables() throws Exception {
+        generateParts();
+
+        Path plain = Files.createDirectories(dir.resolve("plain"));
+        Files.write(plain.resolve("part0.xml"), part0);
+        Files.write(plain.resolve("part1.xml"), part1);
+        Files.write(Files.createDirectories(plain.resolve("sub")).resolve("part2.xml"), part2);
+
+        Path zipped = Files.createDirectories(dir.resolve("zipped"));
+        Map<String, byte[]> inner = new LinkedHashMap<>();
+        inner.put("docdb/part1.xml.gz", gzip(part1));
+        inner.put("docdb/part2.xml", part2);
+        Map<String, byte[]> outer = new LinkedHashMap<>();
+        outer.put("part0.xml", part0);
+        outer.put("README.txt", "not xml".getBytes(StandardCharsets.UTF_8));
+        outer.put("nested/inner.zip", zip(inner));
+        Files.write(zipped.resolve("delivery.zip"), zip(outer));
+
+        Path tarred = Files.createDirectories(dir.resolve("tarred"));
+        Map<String, byte[]> tarEntries = new LinkedHashMap<>();
+        tarEntries.put("a/very/long/directory/name/that/does/not/fit/into/the/one/hundred/byte/ustar/name/field/part0.xml", part0);
+        tarEntries.put("part1.xml", part1);
+        Files.write(tarred.resolve("delivery.tar.gz"), gzip(tar(tarEntries)));
+        Files.write(tarred.resolve("part2.xml.gz"), gzip(part2));
+
+        List<String> expected = ingestAndDump("archive-plain", plain);
+        assertEquals(2100 + 4200 + 2100, expected.size());
+        assertEquals(expected, ingestAndDump("archive-zip", zipped));
+        assertEquals(expected, ingestAndDump("archive-tar", tarred));
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("empty-dir/"));
+            zip.closeEntry();
+            for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(e.getKey()));
+                zip.write(e.getValue());
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    // minimal ustar writer; names over 100 bytes use a GNU long-name record
+    private static byte[] tar(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+            byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+            if (name.length > 100) {
+                writeTarEntry(out, "././@LongLink".getBytes(StandardCharsets.UTF_8), 'L', name);
+            }
+            writeTarEntry(out, name, '0', e.getValue());
+        }
+        out.write(new byte[1024]);
+        return out.toByteArray();
+    }
+
+    private static void writeTarEntry(ByteArrayOutputStream out, byte[] name, char type, byte[] data) throws IOException {
+        byte[] header = new byte[512];
+        System.arraycopy(name, 0, header, 0, Math.min(100, name.length));
+        put(header, 100, "0000644\0");
+        put(header, 108, "0000000\0");
+        put(header, 116, "0000000\0");
+        put(header, 124, "%011o\0".formatted(data.length));
+        put(header, 136, "%011o\0".formatted(0));
+        put(header, 148, "        ");
+        header[156] = (byte) type;
+        put(header, 257, "ustar\0");
+        put(header, 263, "00");
+
+        int sum = 0;
+        for (byte b : header) sum += b & 0xff;
+        put(header, 148, "%06o\0 ".formatted(sum));
+
+        out.write(header);
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+
+    private static void put(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+}
@@ -0,0 +1,105 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentAssigneeEntity;
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentCpcEntity;
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentEntity;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentAssigneeRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentCpcRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.teamb.globalip.patenttrendsservice.ingest.EpoIngestTestSupport.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class EpoBulkWriterTest {
+
+    EpoPatentRepository patentRepo = mock(EpoPatentRepository.class);
+    EpoPatentCpcRepository cpcRepo = mock(EpoPatentCpcRepository.class);
+    EpoPatentAssigneeRepository assigneeRepo = mock(EpoPatentAssigneeRepository.class);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void bulkLoadWritesAllRowsWithoutRepositoryRoundTrips() throws Exception {
+        DataSource ds = dataSource("bulk");
+        writeXml(dir.resolve("a.xml"), 0, 6000);
+        writeXml(dir.resolve("nested/b.xml"), 6000, 4000);
+
+        EpoXmlIngestionService service = new EpoXmlIngestionService(
+                patentRepo, cpcRepo, assigneeRepo, ds, bulkProperties(1000), checkpoints(ds), families(ds), rollups(ds),
+                transactions(ds));
+
+        service.ingestDirectory(dir);
+
+        assertEquals(10_000, count(ds, "epo_patent"));
+        assertEquals(20_000, count(ds, "epo_patent_cpc"));
+        assertEquals(10_000, count(ds, "epo_patent_assignee"));
+        verifyNoInteractions(patentRepo, cpcRepo, assigneeRepo);
+    }
+
+    @Test
+    void reIngestingTheSameFilesAddsNoRows() throws Exception {
+        DataSource ds = dataSource("bulk-rerun");
+        writeXml(dir.resolve("a.xml"), 0, 500);
+        writeXml(dir.resolve("overlap.xml"), 250, 500);
+
+        EpoXmlIngestionService service = new EpoXmlIngestionService(
+                patentRepo, cpcRepo, assigneeRepo, ds, bulkProperties(100), checkpoints(ds), families(ds), rollups(ds),
+                transactions(ds));
+
+        service.ingestDirectory(dir);
+        new JdbcTemplate(ds).execute("DELETE FROM epo_ingest_checkpoint");
+        service.ingestDirectory(dir);
+
+        assertEquals(750, count(ds, "epo_patent"));
+        assertEquals(1500, count(ds, "epo_patent_cpc"));
+        assertEquals(750, count(ds, "epo_patent_assignee"));
+    }
+
+    @Test
+    void rowStoredConcurrentlyIsSkippedWithItsChildrenAndNotReported() throws Exception {
+        DataSource ds = dataSource("bulk-conflict");
+        // loaded before the row exists, so the filter lets the id through to the INSERT
+        EpoPatentIdFilter idFilter = EpoPatentIdFilter.load(ds, 10);
+        new JdbcTemplate(ds).update(
+                "INSERT INTO epo_patent (epo_patent_id, country, kind) VALUES ('EP0000001A1', 'EP', 'A1')");
+
+        List<EpoParsedDocument> reported = new ArrayList<>();
+        EpoBulkWriter writer = new EpoBulkWriter(ds, bulkProperties(100),
+                (connection, written) -> reported.addAll(written), idFilter);
+        writer.accept(document("EP0000001A1"));
+        writer.accept(document("EP0000002A1"));
+        writer.flush();
+
+        assertEquals(List.of("EP0000002A1"), reported.stream().map(EpoParsedDocument::epoPatentId).toList());
+        assertEquals(1, writer.getDocumentsWritten());
+        assertEquals(2, count(ds, "epo_patent"));
+        assertEquals(0, childRows(ds, "epo_patent_cpc", "EP0000001A1"));
+        assertEquals(0, childRows(ds, "epo_patent_assignee", "EP0000001A1"));
+        assertEquals(1, childRows(ds, "epo_patent_cpc", "EP0000002A1"));
+        assertEquals(1, childRows(ds, "epo_patent_assignee", "EP0000002A1"));
+    }
+
+    private static EpoParsedDocument document(String id) {
+        return new EpoParsedDocument(
+                new EpoPatentEntity(id, "EP", "A1", LocalDate.of(2020, 1, 15), null, 42L),
+                List.of(new EpoPatentCpcEntity(null, id, "H", "H04L")),
+                List.of(new EpoPatentAssigneeEntity(null, id, "ACME")));
+    }
+
+    private static long childRows(DataSource ds, String table, String id) {
+        Long n = new JdbcTemplate(ds).queryForObject(
+                "SELECT COUNT(*) FROM " + table + " WHERE epo_patent_id = ?", Long.class, id);
+        return n == null ? 0 : n;
+    }
+}
@@ -0,0 +1,122 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentAssigneeRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentCpcRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.teamb.globalip.patenttrendsservice.ingest.EpoIngestTestSupport.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class EpoFamilyDeltaAggregatorTest {
+
+    @TempDir
+    Path dir;
+
+    private static Map<Long, Integer> familyTable(JdbcTemplate jdbc) {
+        Map<Long, Integer> sizes = new TreeMap<>();
+        jdbc.query("SELECT family_id, family_size FROM epo_patent_family",
+                rs -> { sizes.put(rs.getLong(1), rs.getInt(2)); });
+        return sizes;
+    }
+
+    @Test
+    void incrementalSizesMatchFullRecompute() throws Exception {
+        DataSource ds = dataSource("families");
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        EpoFamilyDeltaAggregator aggregator = families(ds);
+
+        EpoXmlIngestionService service = new EpoXmlIngestionService(
+                mock(EpoPatentRepository.class),
+                mock(EpoPatentCpcRepository.class),
+                mock(EpoPatentAssigneeRepository.class),
+                ds, bulkProperties(250), checkpoints(ds), aggregator, rollups(ds), transactions(ds));
+
+        writeXml(dir.resolve("a.xml"), 0, 1500);
+        writeXml(dir.resolve("b.xml"), 1500, 1500);
+        service.ingestDirectory(dir);
+        assertEquals(1000, aggregator.touchedFamilies());
+        aggregator.applyTouchedFamilies();
+
+        // stale value on a family the second run does not touch must survive
+        jdbc.update("UPDATE epo_patent_family SET family_size = -1 WHERE family_id = 1500");
+
+        // second delivery: JP joins family 1001, plus a brand-new family
+        Files.writeString(dir.resolve("c.xml"), """
+                <exchange-documents>
+                  <exchange-document country="JP" doc-number="7000001" kind="A" family-id="1001" date-publ="20210101"/>
+                  <exchange-document country="CN" doc-number="7000002" kind="A" family-id="9999" date-publ="20210101"/>
+                  <exchange-document country="KR" doc-number="7000003" kind="A" family-id="9999" date-publ="20210101"/>
+                </exchange-documents>
+                """);
+        service.ingestDirectory(dir);
+        assertEquals(2, aggregator.touchedFamilies());
+        aggregator.applyTouchedFamilies();
+
+        Map<Long, Integer> incremental = familyTable(jdbc);
+        assertEquals(4, incremental.get(1001L));
+        assertEquals(2, incremental.get(9999L));
+        assertEquals(-1, incremental.get(1500L));
+
+        jdbc.update("UPDATE epo_patent_family SET family_size = 3 WHERE family_id = 1500");
+        incremental = familyTable(jdbc);
+
+        new EpoFamilyAggregator(jdbc).updateFamilySizes();
+        assertEquals(familyTable(jdbc), incremental);
+    }
+
+    @Test
+    void familiesOfFilesCompletedBeforeACrashAreAppliedOnRerun() throws Exception {
+        DataSource ds = dataSource("families-crash");
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+
+        writeXml(dir.resolve("a.xml"), 0, 300);
+        service(ds, families(ds)).ingestDirectory(dir);
+        // the process dies here, before applyTouchedFamilies
+
+        EpoFamilyDeltaAggregator restarted = families(ds);
+        assertEquals(0, service(ds, restarted).ingestDirectory(dir));
+        assertEquals(100, restarted.touchedFamilies());
+        restarted.applyTouchedFamilies();
+
+        assertEquals(100, familyTable(jdbc).size());
+        assertEquals(0, restarted.touchedFamilies());
+    }
+
+    private static EpoXmlIngestionService service(DataSource ds, EpoFamilyDeltaAggregator aggregator) {
+        return new EpoXmlIngestionService(
+                mock(EpoPatentRepository.class),
+                mock(EpoPatentCpcRepository.class),
+                mock(EpoPatentAssigneeRepository.class),
+                ds, bulkProperties(100), checkpoints(ds), aggregator, rollups(ds), transactions(ds));
+    }
+
+    @Test
+    void longHashSetKeepsDistinctValuesAcrossResizes() {
+        LongHashSet set = new LongHashSet(4);
+        for (long v = -5000; v < 5000; v++) {
+            assertTrue(set.add(v * 31));
+        }
+        assertFalse(set.add(0));
+        assertFalse(set.add(31 * 4999));
+        assertEquals(10_000, set.size());
+
+        long[] values = set.toArray();
+        Arrays.sort(values);
+        assertEquals(-5000L * 31, values[0]);
+        assertEquals(4999L * 31, values[values.length - 1]);
+
+        set.clear();
+        assertTrue(set.isEmpty());
+    }
+}
@@ -0,0 +1,125 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * H2 (PostgreSQL mode) stand-in for the EPO tables plus a synthetic exchange-document generator.
+ */
+final class EpoIngestTestSupport {
+
+    private EpoIngestTestSupport() {
+    }
+
+    static DataSource dataSource(String name) {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR");
+
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        jdbc.execute("DROP ALL OBJECTS");
+        jdbc.execute("""
+                CREATE TABLE epo_patent (
+                    epo_patent_id VARCHAR(64) PRIMARY KEY,
+                    country VARCHAR(8),
+                    kind VARCHAR(8),
+                    publication_date DATE,
+                    application_date DATE,
+                    family_id BIGINT
+                )""");
+        jdbc.execute("""
+                CREATE TABLE epo_patent_cpc (
+                    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                    epo_patent_id VARCHAR(64),
+                    cpc_section VARCHAR(4),
+                    cpc_class VARCHAR(64)
+                )""");
+        jdbc.execute("""
+                CREATE TABLE epo_patent_assignee (
+                    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                    epo_patent_id VARCHAR(64),
+                    organization_name VARCHAR(512),
+                    UNIQUE (epo_patent_id, organization_name)
+                )""");
+        jdbc.execute("""
+                CREATE TABLE epo_patent_family (
+                    family_id BIGINT PRIMARY KEY,
+                    family_size INT
+                )""");
+        return ds;
+    }
+
+    static EpoIngestCheckpointStore checkpoints(DataSource ds) {
+        return new EpoIngestCheckpointStore(new JdbcTemplate(ds));
+    }
+
+    static EpoFamilyDeltaAggregator families(DataSource ds) {
+        return new EpoFamilyDeltaAggregator(new JdbcTemplate(ds));
+    }
+
+    static EpoRollupAggregator rollups(DataSource ds) {
+        return new EpoRollupAggregator(new JdbcTemplate(ds));
+    }
+
+    static PlatformTransactionManager transactions(DataSource ds) {
+        return new DataSourceTransactionManager(ds);
+    }
+
+    static IngestProperties bulkProperties(int batchSize) {
+        IngestProperties props = new IngestProperties();
+        props.setBulkLoad(true);
+        props.setBatchSize(batchSize);
+        return props;
+    }
+
+    private static final String[] COUNTRIES = {"EP", "DE", "FR", "GB", "US"};
+
+    static String country(int i) {
+        return COUNTRIES[i % COUNTRIES.length];
+    }
+
+    /**
+     * Id the generated document i is stored under.
+     */
+    static String epoPatentId(int i) {
+        return "%s%07dA1".formatted(country(i), i);
+    }
+
+    /**
+     * Writes docs [from, from + count) with two CPC symbols and one applicant each.
+     */
+    static Path writeXml(Path file, int from, int count) throws IOException {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<exchange-documents>\n");
+
+        for (int i = from; i < from + count; i++) {
+            sb.append("""
+                    <exchange-document country="%s" doc-number="%07d" kind="A1" family-id="%d" date-publ="%d0115">
+                      <bibliographic-data>
+                        <patent-classifications>
+                          <patent-classification><classification-symbol>H04L 9/%d</classification-symbol></patent-classification>
+                          <patent-classification><classification-symbol>G06F  17/30</classification-symbol></patent-classification>
+                        </patent-classifications>
+                        <parties><applicants>
+                          <applicant><applicant-name><name>APPLICANT %d</name></applicant-name></applicant>
+                        </applicants></parties>
+                      </bibliographic-data>
+                    </exchange-document>
+                    """.formatted(country(i), i, 1000 + i / 3, 2000 + i % 20, i % 7, i % 50));
+        }
+
+        sb.append("</exchange-documents>\n");
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, sb);
+    }
+
+    static long count(DataSource ds, String table) {
+        Long n = new JdbcTemplate(ds).queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+        return n == null ? 0 : n;
+    }
+}
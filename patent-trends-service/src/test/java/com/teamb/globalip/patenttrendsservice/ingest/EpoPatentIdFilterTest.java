@@ -0,0 +1,128 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentAssigneeRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentCpcRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.teamb.globalip.patenttrendsservice.ingest.EpoIngestTestSupport.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class EpoPatentIdFilterTest {
+
+    private static final int SEEDED = 50_000;
+
+    @TempDir
+    Path dir;
+
+    private static DataSource seeded() {
+        DataSource ds = dataSource("id-filter");
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+
+        List<Object[]> rows = new ArrayList<>(SEEDED);
+        for (int i = 0; i < SEEDED; i++) {
+            rows.add(new Object[]{epoPatentId(i), country(i), "A1"});
+        }
+        jdbc.batchUpdate("INSERT INTO epo_patent (epo_patent_id, country, kind) VALUES (?, ?, ?)", rows);
+        return ds;
+    }
+
+    @Test
+    void neverReportsStoredIdsAsAbsent() throws Exception {
+        EpoPatentIdFilter filter = EpoPatentIdFilter.load(seeded(), 1000);
+
+        assertEquals(SEEDED, filter.size());
+        for (int i = 0; i < SEEDED; i++) {
+            assertTrue(filter.mightContain(epoPatentId(i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = SEEDED; i < 2 * SEEDED; i++) {
+            if (filter.mightContain(epoPatentId(i))) falsePositives++;
+        }
+        assertEquals(0, falsePositives, "stored ids are exact 64-bit hashes");
+    }
+
+    @Test
+    void tracksIdsAddedDuringTheRun() throws Exception {
+        EpoPatentIdFilter filter = EpoPatentIdFilter.load(dataSource("id-filter-empty"), 10_000);
+
+        assertFalse(filter.mightContain("EP1234567B1"));
+        filter.add("EP1234567B1");
+        assertTrue(filter.mightContain("EP1234567B1"));
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("DE%07dA1".formatted(i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("FR%07dA1".formatted(i))) falsePositives++;
+        }
+        assertTrue(falsePositives < 100, "false positive rate above 1%: " + falsePositives);
+    }
+
+    @Test
+    void rowModeOnlyQueriesRepositoryForPossibleDuplicates() throws Exception {
+        DataSource ds = seeded();
+        writeXml(dir.resolve("a.xml"), SEEDED - 10, 20);
+
+        EpoPatentRepository patentRepo = mock(EpoPatentRepository.class);
+        when(patentRepo.existsById(anyString())).thenReturn(true);
+
+        IngestProperties props = new IngestProperties();
+        new EpoXmlIngestionService(patentRepo, mock(EpoPatentCpcRepository.class),
+                mock(EpoPatentAssigneeRepository.class), ds, props, checkpoints(ds), families(ds), rollups(ds), transactions(ds))
+                .ingestDirectory(dir);
+
+        verify(patentRepo, times(10)).existsById(anyString());
+        verify(patentRepo, times(10)).save(any());
+    }
+
+    @Test
+    void filterSkipsPointQueriesForIdsThatAreNotStored() throws Exception {
+        DataSource ds = seeded();
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        AtomicInteger pointQueries = new AtomicInteger();
+        EpoPatentRepository patentRepo = mock(EpoPatentRepository.class);
+        when(patentRepo.existsById(anyString())).thenAnswer(inv -> {
+            pointQueries.incrementAndGet();
+            Integer n = jdbc.queryForObject("SELECT COUNT(*) FROM epo_patent WHERE epo_patent_id = ?",
+                    Integer.class, inv.getArgument(0, String.class));
+            return n != null && n > 0;
+        });
+
+        // every third id up to 60,000: 16,667 stored, 3,333 not
+        int lookups = 20_000;
+        List<Boolean> unfiltered = containsAll(sink(patentRepo, ds, EpoPatentIdFilter.permissive()), lookups);
+        int unfilteredQueries = pointQueries.getAndSet(0);
+        List<Boolean> filtered = containsAll(sink(patentRepo, ds, EpoPatentIdFilter.load(ds, 1000)), lookups);
+
+        assertEquals(unfiltered, filtered);
+        assertEquals(lookups, unfilteredQueries);
+        assertEquals(16_667, pointQueries.get(), "only stored ids should reach the database");
+    }
+
+    private static EpoRepositorySink sink(EpoPatentRepository patentRepo, DataSource ds, EpoPatentIdFilter filter) {
+        return new EpoRepositorySink(patentRepo, mock(EpoPatentCpcRepository.class), mock(EpoPatentAssigneeRepository.class),
+                ds, transactions(ds), EpoFlushListener.NONE, filter);
+    }
+
+    private static List<Boolean> containsAll(EpoRepositorySink sink, int lookups) {
+        List<Boolean> found = new ArrayList<>(lookups);
+        for (int i = 0; i < lookups; i++) {
+            found.add(sink.contains(epoPatentId(i * 3)));
+        }
+        return found;
+    }
+}
@@ -0,0 +1,69 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentEntity;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentAssigneeRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentCpcRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentRepository;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.teamb.globalip.patenttrendsservice.ingest.EpoIngestTestSupport.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class EpoRepositorySinkTest {
+
+    EpoPatentRepository patentRepo = mock(EpoPatentRepository.class);
+
+    @Test
+    void listenerWritesCommitWithTheDocument() throws Exception {
+        DataSource ds = dataSource("row-sink");
+        EpoPatentIdFilter idFilter = EpoPatentIdFilter.load(ds, 10);
+
+        sink(ds, (c, written) -> {
+            assertFalse(c.getAutoCommit());
+            insertFamily(c, 42);
+        }, idFilter).accept(document("EP0000001A1"));
+
+        verify(patentRepo).flush();
+        assertEquals(1, count(ds, "epo_patent_family"));
+        assertTrue(idFilter.mightContain("EP0000001A1"));
+    }
+
+    @Test
+    void failingListenerRollsBackItsWrites() throws Exception {
+        DataSource ds = dataSource("row-sink-rollback");
+        EpoPatentIdFilter idFilter = EpoPatentIdFilter.load(ds, 10);
+        EpoRepositorySink sink = sink(ds, (c, written) -> {
+            insertFamily(c, 42);
+            throw new SQLException("listener failed");
+        }, idFilter);
+
+        assertThrows(SQLException.class, () -> sink.accept(document("EP0000001A1")));
+
+        assertEquals(0, count(ds, "epo_patent_family"));
+        assertFalse(idFilter.mightContain("EP0000001A1"));
+    }
+
+    private EpoRepositorySink sink(DataSource ds, EpoFlushListener listener, EpoPatentIdFilter idFilter) {
+        return new EpoRepositorySink(patentRepo, mock(EpoPatentCpcRepository.class),
+                mock(EpoPatentAssigneeRepository.class), ds, transactions(ds), listener, idFilter);
+    }
+
+    private static void insertFamily(Connection c, long familyId) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("INSERT INTO epo_patent_family (family_id, family_size) VALUES (" + familyId + ", 1)");
+        }
+    }
+
+    private static EpoParsedDocument document(String id) {
+        return new EpoParsedDocument(
+                new EpoPatentEntity(id, "EP", "A1", LocalDate.of(2020, 1, 15), null, 42L), List.of(), List.of());
+    }
+}
@@ -0,0 +1,78 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentAssigneeRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentCpcRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.teamb.globalip.patenttrendsservice.ingest.EpoIngestTestSupport.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class EpoResumableIngestionTest {
+
+    @TempDir
+    Path dir;
+
+    private EpoXmlIngestionService service(DataSource ds, int workers) {
+        IngestProperties props = bulkProperties(100);
+        props.setWorkers(workers);
+        return new EpoXmlIngestionService(
+                mock(EpoPatentRepository.class),
+                mock(EpoPatentCpcRepository.class),
+                mock(EpoPatentAssigneeRepository.class),
+                ds, props, checkpoints(ds), families(ds), rollups(ds), transactions(ds));
+    }
+
+    @Test
+    void ingestsFilesConcurrentlyAndSkipsCompletedFilesOnRerun() throws Exception {
+        DataSource ds = dataSource("parallel");
+        for (int f = 0; f < 8; f++) {
+            writeXml(dir.resolve("part-" + f + ".xml"), f * 1000, 1000);
+        }
+
+        EpoXmlIngestionService service = service(ds, 4);
+
+        assertEquals(8000, service.ingestDirectory(dir));
+        assertEquals(8000, count(ds, "epo_patent"));
+        assertEquals(16000, count(ds, "epo_patent_cpc"));
+
+        List<String> statuses = new JdbcTemplate(ds).queryForList(
+                "SELECT DISTINCT status FROM epo_ingest_checkpoint", String.class);
+        assertEquals(List.of("COMPLETED"), statuses);
+
+        assertEquals(0, service.ingestDirectory(dir));
+    }
+
+    @Test
+    void resumesPartiallyIngestedFileAfterFailure() throws Exception {
+        DataSource ds = dataSource("resume");
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        writeXml(dir.resolve("a.xml"), 0, 1000);
+
+        // document 450 is rejected, so batches up to 400 commit and the fifth batch fails
+        jdbc.execute("ALTER TABLE epo_patent ADD CONSTRAINT reject_one CHECK (epo_patent_id <> 'EP0000450A1')");
+
+        EpoXmlIngestionService service = service(ds, 1);
+        assertThrows(IllegalStateException.class, () -> service.ingestDirectory(dir));
+
+        assertEquals(400, count(ds, "epo_patent"));
+        assertEquals(400L, jdbc.queryForObject("SELECT doc_count FROM epo_ingest_checkpoint", Long.class));
+        assertEquals("FAILED", jdbc.queryForObject("SELECT status FROM epo_ingest_checkpoint", String.class));
+
+        jdbc.execute("ALTER TABLE epo_patent DROP CONSTRAINT reject_one");
+        // a resumed run never revisits the committed prefix
+        jdbc.update("DELETE FROM epo_patent WHERE epo_patent_id = 'EP0000000A1'");
+
+        assertEquals(600, service.ingestDirectory(dir));
+        assertEquals(999, count(ds, "epo_patent"));
+        assertEquals(1000L, jdbc.queryForObject("SELECT doc_count FROM epo_ingest_checkpoint", Long.class));
+        assertEquals("COMPLETED", jdbc.queryForObject("SELECT status FROM epo_ingest_checkpoint", String.class));
+    }
+}
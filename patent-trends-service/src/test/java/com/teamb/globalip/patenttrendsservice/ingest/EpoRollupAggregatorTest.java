@@ -0,0 +1,140 @@
+package com.teamb.globalip.patenttrendsservice.ingest;
+
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentCpcEntity;
+import com.teamb.globalip.patenttrendsservice.domain.epo.EpoPatentEntity;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentAssigneeRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentCpcRepository;
+import com.teamb.globalip.patenttrendsservice.repository.epo.EpoPatentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.teamb.globalip.patenttrendsservice.ingest.EpoIngestTestSupport.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class EpoRollupAggregatorTest {
+
+    @TempDir
+    Path dir;
+
+    private static Map<String, Long> table(JdbcTemplate jdbc, String sql) {
+        Map<String, Long> rows = new TreeMap<>();
+        jdbc.query(sql, rs -> { rows.put(rs.getString(1), rs.getLong(2)); });
+        return rows;
+    }
+
+    private static void assertRollupsMatchGroupBy(JdbcTemplate jdbc) {
+        assertEquals(
+                table(jdbc, """
+                        SELECT EXTRACT(YEAR FROM publication_date), COUNT(*) FROM epo_patent
+                        WHERE publication_date IS NOT NULL GROUP BY 1"""),
+                table(jdbc, "SELECT year, cnt FROM epo_agg_filing_trend"));
+        assertEquals(
+                table(jdbc, """
+                        SELECT country, COUNT(*) FROM epo_patent
+                        WHERE country IS NOT NULL GROUP BY country"""),
+                table(jdbc, "SELECT country, cnt FROM epo_agg_country_distribution"));
+        assertEquals(
+                table(jdbc, """
+                        SELECT cpc_section, COUNT(DISTINCT epo_patent_id) FROM epo_patent_cpc
+                        GROUP BY cpc_section"""),
+                table(jdbc, "SELECT cpc_section, cnt FROM epo_agg_top_technologies"));
+        assertEquals(
+                table(jdbc, """
+                        SELECT organization_name, COUNT(*) FROM epo_patent_assignee
+                        GROUP BY organization_name"""),
+                table(jdbc, "SELECT organization_name, cnt FROM epo_agg_top_assignees"));
+    }
+
+    @Test
+    void rollupsMatchGroupByOverRawTablesAcrossRuns() throws Exception {
+        DataSource ds = dataSource("rollups");
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+
+        IngestProperties props = bulkProperties(250);
+        props.setWorkers(4);
+        EpoXmlIngestionService service = new EpoXmlIngestionService(
+                mock(EpoPatentRepository.class),
+                mock(EpoPatentCpcRepository.class),
+                mock(EpoPatentAssigneeRepository.class),
+                ds, props, checkpoints(ds), families(ds), rollups(ds), transactions(ds));
+
+        for (int f = 0; f < 4; f++) {
+            writeXml(dir.resolve("part" + f + ".xml"), f * 1000, 1000);
+        }
+        service.ingestDirectory(dir);
+        assertRollupsMatchGroupBy(jdbc);
+        assertEquals(80L, jdbc.queryForObject(
+                "SELECT cnt FROM epo_agg_top_assignees WHERE organization_name = 'APPLICANT 0'", Long.class));
+
+        // second delivery: a re-sent document, an undated one, two symbols in one section, two applicants
+        Files.writeString(dir.resolve("update.xml"), """
+                <exchange-documents>
+                  <exchange-document country="EP" doc-number="0000000" kind="A1" family-id="1000" date-publ="20000115"/>
+                  <exchange-document country="JP" doc-number="8000001" kind="A" family-id="8001">
+                    <bibliographic-data><parties><applicants>
+                      <applicant><applicant-name><name>APPLICANT 1</name></applicant-name></applicant>
+                      <applicant><applicant-name><name>NEW APPLICANT</name></applicant-name></applicant>
+                    </applicants></parties></bibliographic-data>
+                  </exchange-document>
+                  <exchange-document country="JP" doc-number="8000002" kind="A" family-id="8002" date-publ="19990301">
+                    <bibliographic-data><patent-classifications>
+                      <patent-classification><classification-symbol>H04L 9/00</classification-symbol></patent-classification>
+                      <patent-classification><classification-symbol>H04W 12/06</classification-symbol></patent-classification>
+                    </patent-classifications></bibliographic-data>
+                  </exchange-document>
+                </exchange-documents>
+                """);
+        service.ingestDirectory(dir);
+
+        assertEquals(4002, count(ds, "epo_patent"));
+        assertRollupsMatchGroupBy(jdbc);
+        assertEquals(1L, jdbc.queryForObject(
+                "SELECT cnt FROM epo_agg_filing_trend WHERE year = 1999", Long.class));
+    }
+
+    @Test
+    void accumulatorCountsPatentsOncePerSection() {
+        EpoRollupAccumulator acc = new EpoRollupAccumulator();
+        acc.add(new EpoParsedDocument(
+                new EpoPatentEntity(
+                        "EP1A1", "EP", "A1", LocalDate.of(2020, 1, 1), null, 1L),
+                List.of(
+                        new EpoPatentCpcEntity(null, "EP1A1", "H", "04L 9/00"),
+                        new EpoPatentCpcEntity(null, "EP1A1", "H", "04W 12/06"),
+                        new EpoPatentCpcEntity(null, "EP1A1", "G", "06F 17/30")),
+                List.of()));
+
+        assertEquals(List.of("[G, 1]", "[H, 1]"), acc.patentsBySection().stream().map(Arrays::toString).toList());
+        assertEquals(List.of("[2020, 1]"), acc.filingsByYear().stream().map(Arrays::toString).toList());
+    }
+
+    @Test
+    void longLongHashMapSumsAcrossResizes() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        for (int round = 0; round < 3; round++) {
+            for (long k = -500; k < 500; k++) map.addTo(k, k == 0 ? 7 : 1);
+        }
+
+        assertEquals(1000, map.size());
+        assertEquals(21, map.get(0));
+        assertEquals(3, map.get(-500));
+        assertEquals(0, map.get(12345));
+
+        long[] previous = {Long.MIN_VALUE};
+        map.forEachSorted((k, v) -> {
+            assertTrue(k > previous[0]);
+            previous[0] = k;
+        });
+    }
+}